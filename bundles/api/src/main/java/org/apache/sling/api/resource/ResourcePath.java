@@ -0,0 +1,373 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.api.resource;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * The <code>ResourcePath</code> is a read-only view on a region of a path
+ * string. Parents, names and segments of a path are returned as views on the
+ * same underlying string, so no characters are copied until
+ * {@link #toString()} is called.
+ * <p>
+ * The path is not normalized by this class. Trailing slashes are ignored for
+ * determining the parent, the name and the segments of a path, except for the
+ * root path <code>/</code>. Use {@link ResourceUtil#normalize(String)} to
+ * resolve <code>.</code> and <code>..</code> segments first if required.
+ * <p>
+ * Instances of this class are immutable and thread safe.
+ *
+ * @since 2.9 (Sling API Bundle 2.10.0)
+ */
+public final class ResourcePath implements CharSequence {
+
+    private static final char SEPARATOR = '/';
+
+    private final String path;
+
+    private final int start;
+
+    private final int end;
+
+    private String string;
+
+    private ResourcePath(final String path, final int start, final int end) {
+        this.path = path;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Creates a view on the complete path.
+     *
+     * @param path The path
+     * @return The view on the path
+     * @throws NullPointerException If <code>path</code> is <code>null</code>.
+     */
+    public static @Nonnull ResourcePath of(@Nonnull final String path) {
+        final ResourcePath result = new ResourcePath(path, 0, path.length());
+        result.string = path;
+        return result;
+    }
+
+    /**
+     * Checks whether the path is already in the form returned by
+     * {@link ResourceUtil#normalize(String)}: it is not empty, has no empty,
+     * <code>.</code> or <code>..</code> segments and no trailing slash unless
+     * it is the root path.
+     *
+     * @param path The path to check
+     * @return <code>true</code> if normalizing would not change the path.
+     * @throws NullPointerException If <code>path</code> is <code>null</code>.
+     */
+    public static boolean isNormalized(@Nonnull final CharSequence path) {
+        final int length = path.length();
+        if (length == 0) {
+            return false;
+        }
+        if (length == 1 && path.charAt(0) == SEPARATOR) {
+            return true;
+        }
+        if (path.charAt(length - 1) == SEPARATOR) {
+            return false;
+        }
+        int segmentStart = path.charAt(0) == SEPARATOR ? 1 : 0;
+        for (int i = segmentStart; i <= length; i++) {
+            if (i == length || path.charAt(i) == SEPARATOR) {
+                final int segmentLength = i - segmentStart;
+                if (segmentLength == 0) {
+                    // consecutive slashes
+                    return false;
+                }
+                if (segmentLength <= 2 && path.charAt(segmentStart) == '.'
+                        && (segmentLength == 1 || path.charAt(segmentStart + 1) == '.')) {
+                    // . or .. segment
+                    return false;
+                }
+                segmentStart = i + 1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns <code>true</code> if the path starts with a slash.
+     */
+    public boolean isAbsolute() {
+        return this.end > this.start && this.path.charAt(this.start) == SEPARATOR;
+    }
+
+    /**
+     * Returns <code>true</code> if this is the root path, i.e. consists of
+     * slashes only.
+     */
+    public boolean isRoot() {
+        return this.isAbsolute() && this.trimmedEnd() == this.start;
+    }
+
+    /**
+     * Returns the parent path.
+     *
+     * @return The parent path or <code>null</code> if this is the root path
+     *         or a single name without any slash.
+     */
+    public @CheckForNull ResourcePath getParent() {
+        final int trimmed = this.trimmedEnd();
+        if (trimmed == this.start) {
+            return null;
+        }
+        final int lastSlash = this.lastIndexOf(SEPARATOR, trimmed);
+        if (lastSlash < 0) {
+            return null;
+        }
+        if (lastSlash == this.start) {
+            return new ResourcePath(this.path, this.start, this.start + 1);
+        }
+        return new ResourcePath(this.path, this.start, lastSlash);
+    }
+
+    /**
+     * Returns the last segment of the path.
+     *
+     * @return The name or an empty path if this is the root path.
+     */
+    public @Nonnull ResourcePath getName() {
+        final int trimmed = this.trimmedEnd();
+        final int lastSlash = this.lastIndexOf(SEPARATOR, trimmed);
+        return new ResourcePath(this.path, lastSlash < 0 ? this.start : lastSlash + 1, trimmed);
+    }
+
+    /**
+     * Returns the number of segments of the path.
+     */
+    public int getSegmentCount() {
+        final int trimmed = this.trimmedEnd();
+        int pos = this.segmentStart(this.start, trimmed);
+        int count = 0;
+        while (pos < trimmed) {
+            count++;
+            pos = this.segmentStart(this.segmentEnd(pos, trimmed), trimmed);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the segment at the given index.
+     *
+     * @param index The index of the segment, starting with 0
+     * @return The segment
+     * @throws IndexOutOfBoundsException If there is no segment at the index
+     */
+    public @Nonnull ResourcePath getSegment(final int index) {
+        if (index >= 0) {
+            final int trimmed = this.trimmedEnd();
+            int pos = this.segmentStart(this.start, trimmed);
+            int current = 0;
+            while (pos < trimmed) {
+                final int segmentEnd = this.segmentEnd(pos, trimmed);
+                if (current == index) {
+                    return new ResourcePath(this.path, pos, segmentEnd);
+                }
+                current++;
+                pos = this.segmentStart(segmentEnd, trimmed);
+            }
+        }
+        throw new IndexOutOfBoundsException("No segment " + index + " in " + this);
+    }
+
+    /**
+     * Returns an iterator over the segments of the path. Empty segments
+     * caused by consecutive slashes are skipped.
+     */
+    public @Nonnull Iterator<ResourcePath> getSegments() {
+        final int trimmed = this.trimmedEnd();
+        return new Iterator<ResourcePath>() {
+
+            private int pos = segmentStart(start, trimmed);
+
+            public boolean hasNext() {
+                return this.pos < trimmed;
+            }
+
+            public ResourcePath next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final int segmentEnd = segmentEnd(this.pos, trimmed);
+                final ResourcePath segment = new ResourcePath(path, this.pos, segmentEnd);
+                this.pos = segmentStart(segmentEnd, trimmed);
+                return segment;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException("remove");
+            }
+        };
+    }
+
+    /**
+     * Returns the index of the first occurrence of the character in this
+     * path or -1.
+     */
+    public int indexOf(final char c) {
+        for (int i = this.start; i < this.end; i++) {
+            if (this.path.charAt(i) == c) {
+                return i - this.start;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the last occurrence of the character in this
+     * path or -1.
+     */
+    public int lastIndexOf(final char c) {
+        final int index = this.lastIndexOf(c, this.end);
+        return index < 0 ? -1 : index - this.start;
+    }
+
+    /**
+     * Returns this path without any trailing slashes. The root path is
+     * returned as <code>/</code>.
+     */
+    public @Nonnull ResourcePath trimTrailingSlashes() {
+        final int trimmed = this.trimmedEnd();
+        if (trimmed == this.end) {
+            return this;
+        }
+        if (trimmed == this.start && this.isAbsolute()) {
+            return new ResourcePath(this.path, this.start, this.start + 1);
+        }
+        return new ResourcePath(this.path, this.start, trimmed);
+    }
+
+    /**
+     * @see java.lang.CharSequence#length()
+     */
+    public int length() {
+        return this.end - this.start;
+    }
+
+    /**
+     * @see java.lang.CharSequence#charAt(int)
+     */
+    public char charAt(final int index) {
+        if (index < 0 || index >= this.length()) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return this.path.charAt(this.start + index);
+    }
+
+    /**
+     * Returns a view on the given region of this path.
+     *
+     * @see java.lang.CharSequence#subSequence(int, int)
+     */
+    public @Nonnull ResourcePath subSequence(final int from, final int to) {
+        if (from < 0 || to > this.length() || from > to) {
+            throw new IndexOutOfBoundsException(from + "-" + to);
+        }
+        return new ResourcePath(this.path, this.start + from, this.start + to);
+    }
+
+    /**
+     * Returns <code>true</code> if this path has the same characters as
+     * the given character sequence.
+     */
+    public boolean contentEquals(final CharSequence cs) {
+        if (cs.length() != this.length()) {
+            return false;
+        }
+        for (int i = 0; i < cs.length(); i++) {
+            if (cs.charAt(i) != this.path.charAt(this.start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof ResourcePath)) {
+            return false;
+        }
+        return this.contentEquals((ResourcePath) obj);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (int i = this.start; i < this.end; i++) {
+            h = 31 * h + this.path.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * Returns the path as a string. The string is created once on demand.
+     */
+    @Override
+    public @Nonnull String toString() {
+        String result = this.string;
+        if (result == null) {
+            result = this.path.substring(this.start, this.end);
+            this.string = result;
+        }
+        return result;
+    }
+
+    private int trimmedEnd() {
+        int pos = this.end;
+        while (pos > this.start && this.path.charAt(pos - 1) == SEPARATOR) {
+            pos--;
+        }
+        return pos;
+    }
+
+    private int lastIndexOf(final char c, final int before) {
+        for (int i = before - 1; i >= this.start; i--) {
+            if (this.path.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int segmentStart(int pos, final int limit) {
+        while (pos < limit && this.path.charAt(pos) == SEPARATOR) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private int segmentEnd(int pos, final int limit) {
+        while (pos < limit && this.path.charAt(pos) != SEPARATOR) {
+            pos++;
+        }
+        return pos;
+    }
+}
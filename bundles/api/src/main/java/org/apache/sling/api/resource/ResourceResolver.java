@@ -271,6 +271,10 @@ public interface ResourceResolver extends Adaptable, Closeable {
      * {@link #resolve(HttpServletRequest, String)} method. As such the URL
      * returned is expected to be an absolute URL including scheme, host, any
      * servlet context path and the actual path used to resolve the resource.
+     * <p>
+     * To map many paths for the same request, for example all links of a
+     * response, adapt this resource resolver to a
+     * {@link org.apache.sling.api.resource.mapping.ResourceMapper}.
      *
      * @param request The http servlet request object which may be used to apply
      *            more mapping functionality.
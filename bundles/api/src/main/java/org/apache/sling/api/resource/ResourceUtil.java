@@ -51,6 +51,11 @@ public class ResourceUtil {
             return path;
         }
 
+        // most paths are already normalized, return these without copying
+        if (ResourcePath.isNormalized(path)) {
+            return path;
+        }
+
         // prepare the path buffer with trailing slash (simplifies impl)
         int absOffset = (path.charAt(0) == '/') ? 0 : 1;
         char[] buf = new char[path.length() + 1 + absOffset];
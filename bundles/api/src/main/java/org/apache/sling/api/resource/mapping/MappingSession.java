@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.api.resource.mapping;
+
+import javax.annotation.Nonnull;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * A <code>MappingSession</code> maps resource paths for a single request.
+ * It is created by {@link ResourceMapper#createSession(javax.servlet.http.HttpServletRequest)}.
+ * <p>
+ * The session remembers the mapped paths, so mapping the same path again
+ * returns the previous result. Changes to the resources or the mappings
+ * made after a path has been mapped are therefore not reflected. A session
+ * should only be used while creating a single response.
+ * <p>
+ * A session is not thread safe.
+ *
+ * @since 1.0.0 (Sling API Bundle 2.9.2)
+ */
+@ProviderType
+public interface MappingSession {
+
+    /**
+     * Maps the resource path in the same way as
+     * {@link org.apache.sling.api.resource.ResourceResolver#map(javax.servlet.http.HttpServletRequest, String)}
+     * does for the request of this session.
+     *
+     * @param resourcePath The path to map
+     * @return The mapped path
+     * @throws IllegalStateException if the resource resolver has already been
+     *             closed.
+     */
+    @Nonnull String map(@Nonnull String resourcePath);
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.api.resource.mapping;
+
+import java.util.Collection;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.servlet.http.HttpServletRequest;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * The <code>ResourceMapper</code> maps many resource paths at once, for
+ * example all the links of a response. It is retrieved by adapting a
+ * {@link org.apache.sling.api.resource.ResourceResolver} to this interface.
+ * <p>
+ * The paths are mapped in the same way as by
+ * {@link org.apache.sling.api.resource.ResourceResolver#map(HttpServletRequest, String)},
+ * but the state derived from the request and the mappings is only
+ * determined once for all paths.
+ *
+ * @since 1.0.0 (Sling API Bundle 2.9.2)
+ */
+@ProviderType
+public interface ResourceMapper {
+
+    /**
+     * Maps all resource paths.
+     *
+     * @param request The request for which the paths are mapped or
+     *            <code>null</code> to map without a request.
+     * @param resourcePaths The paths to map
+     * @return A map containing the mapped path for each of the
+     *         <code>resourcePaths</code>, in the order of the collection.
+     * @throws IllegalStateException if the resource resolver has already been
+     *             closed.
+     */
+    @Nonnull Map<String, String> map(@CheckForNull HttpServletRequest request,
+            @Nonnull Collection<String> resourcePaths);
+
+    /**
+     * Creates a mapping session for the request. The session can be used for
+     * all paths mapped while a single response is created.
+     *
+     * @param request The request for which the paths are mapped or
+     *            <code>null</code> to map without a request.
+     * @return The mapping session
+     * @throws IllegalStateException if the resource resolver has already been
+     *             closed.
+     */
+    @Nonnull MappingSession createSession(@CheckForNull HttpServletRequest request);
+}
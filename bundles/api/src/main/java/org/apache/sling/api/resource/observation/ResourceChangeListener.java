@@ -57,6 +57,10 @@ public interface ResourceChangeListener {
      * of all search paths should be observed, the special value {@code .} should be used.
      * If one of the paths is a sub resource of another specified path,
      * the sub path is ignored.
+     * If a path starts with {@code glob:} it is a glob pattern: {@code *} matches
+     * any characters within a path segment, {@code **} any characters across
+     * segments and {@code ?} a single character within a segment, for example
+     * {@code glob:/apps/**.jsp}.
      */
     String PATHS = "resource.paths";
 
@@ -66,8 +70,19 @@ public interface ResourceChangeListener {
      */
     String CHANGES = "resource.change.types";
 
+    /**
+     * Array of property names - optional.
+     * This is a hint for the observation, the listener is only interested in
+     * changes of these properties. Changes of other properties might not be
+     * reported, changes of these properties are always reported. If this
+     * property is missing, changes of all properties are reported.
+     */
+    String PROPERTY_NAMES_HINT = "resource.property.names.hint";
+
     /**
      * Report a resource change based on the filter properties of this listener.
+     * The changes of an observation batch are reported with a single call,
+     * a path is contained at most once per change type.
      * @param changes The changes.
      */
     void onChange(@Nonnull List<ResourceChange> changes);
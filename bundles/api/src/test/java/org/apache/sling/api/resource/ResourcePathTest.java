@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.api.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+public class ResourcePathTest {
+
+    @Test public void testIsNormalized() {
+        assertTrue(ResourcePath.isNormalized("/"));
+        assertTrue(ResourcePath.isNormalized("a"));
+        assertTrue(ResourcePath.isNormalized("/a/b/c"));
+        assertTrue(ResourcePath.isNormalized("a/b"));
+        assertTrue(ResourcePath.isNormalized("/a/.../b"));
+        assertTrue(ResourcePath.isNormalized("/a/.b/..c"));
+
+        assertFalse(ResourcePath.isNormalized(""));
+        assertFalse(ResourcePath.isNormalized("//"));
+        assertFalse(ResourcePath.isNormalized("/a/"));
+        assertFalse(ResourcePath.isNormalized("/a//b"));
+        assertFalse(ResourcePath.isNormalized("/a/."));
+        assertFalse(ResourcePath.isNormalized("/a/.."));
+        assertFalse(ResourcePath.isNormalized("./a"));
+        assertFalse(ResourcePath.isNormalized("/a/../b"));
+    }
+
+    @Test public void testNormalizedPathIsReturned() {
+        final String path = "/content/sling/page";
+        assertSame(path, ResourceUtil.normalize(path));
+    }
+
+    @Test public void testGetParent() {
+        assertEquals("/a/b", ResourcePath.of("/a/b/c").getParent().toString());
+        assertEquals("/a/b", ResourcePath.of("/a/b/c/").getParent().toString());
+        assertEquals("/", ResourcePath.of("/a").getParent().toString());
+        assertEquals("a", ResourcePath.of("a/b").getParent().toString());
+        assertEquals("/", ResourcePath.of("/a/b").getParent().getParent().toString());
+        assertNull(ResourcePath.of("/").getParent());
+        assertNull(ResourcePath.of("///").getParent());
+        assertNull(ResourcePath.of("a").getParent());
+        assertNull(ResourcePath.of("").getParent());
+    }
+
+    @Test public void testGetName() {
+        assertEquals("c", ResourcePath.of("/a/b/c").getName().toString());
+        assertEquals("c", ResourcePath.of("/a/b/c//").getName().toString());
+        assertEquals("a", ResourcePath.of("a").getName().toString());
+        assertEquals("", ResourcePath.of("/").getName().toString());
+    }
+
+    @Test public void testSegments() {
+        final ResourcePath path = ResourcePath.of("/a/bb//c/");
+        assertEquals(3, path.getSegmentCount());
+        assertEquals("a", path.getSegment(0).toString());
+        assertEquals("bb", path.getSegment(1).toString());
+        assertEquals("c", path.getSegment(2).toString());
+        try {
+            path.getSegment(3);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (final IndexOutOfBoundsException ioobe) {
+            // expected
+        }
+
+        final Iterator<ResourcePath> segments = path.getSegments();
+        assertEquals("a", segments.next().toString());
+        assertEquals("bb", segments.next().toString());
+        assertEquals("c", segments.next().toString());
+        assertFalse(segments.hasNext());
+
+        assertEquals(0, ResourcePath.of("/").getSegmentCount());
+        assertFalse(ResourcePath.of("//").getSegments().hasNext());
+    }
+
+    @Test public void testCharSequence() {
+        final ResourcePath path = ResourcePath.of("/a/b.html");
+        final ResourcePath sub = path.subSequence(3, 4);
+        assertEquals(1, sub.length());
+        assertEquals('b', sub.charAt(0));
+        assertEquals("b", sub.toString());
+        assertEquals(4, path.lastIndexOf('.'));
+        assertEquals(0, path.indexOf('/'));
+        assertEquals(-1, sub.indexOf('/'));
+        assertTrue(path.subSequence(0, 2).contentEquals("/a"));
+        assertEquals(ResourcePath.of("/a").hashCode(), path.subSequence(0, 2).hashCode());
+        assertEquals(ResourcePath.of("/a"), path.subSequence(0, 2));
+        try {
+            sub.charAt(1);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (final IndexOutOfBoundsException ioobe) {
+            // expected
+        }
+    }
+
+    @Test public void testTrimTrailingSlashes() {
+        assertEquals("/a", ResourcePath.of("/a//").trimTrailingSlashes().toString());
+        assertEquals("/", ResourcePath.of("///").trimTrailingSlashes().toString());
+        final ResourcePath path = ResourcePath.of("/a");
+        assertSame(path, path.trimTrailingSlashes());
+    }
+}
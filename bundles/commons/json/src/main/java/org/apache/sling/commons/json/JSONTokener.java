@@ -28,6 +28,10 @@ SOFTWARE.
  * A JSONTokener takes a source string and extracts characters and tokens from
  * it. It is used by the JSONObject and JSONArray constructors to parse
  * JSON source strings.
+ * <p>
+ * The characters of the source string are scanned in a <code>char[]</code>,
+ * strings without escapes and unquoted values are taken from it without
+ * collecting them character by character first.
  * @author JSON.org
  * @version 2
  */
@@ -45,6 +49,23 @@ public class JSONTokener {
     private String mySource;
 
 
+    /**
+     * The characters of the source string.
+     */
+    private final char[] myChars;
+
+
+    /**
+     * The delimiters of unquoted text, indexed by character.
+     */
+    private static final boolean[] DELIMITERS = new boolean[128];
+    static {
+        for (final char c : ",:]}/\\\"[{;=#".toCharArray()) {
+            DELIMITERS[c] = true;
+        }
+    }
+
+
     /**
      * Construct a JSONTokener from a string.
      *
@@ -53,6 +74,7 @@ public class JSONTokener {
     public JSONTokener(String s) {
         this.myIndex = 0;
         this.mySource = s;
+        this.myChars = s.toCharArray();
     }
 
 
@@ -95,7 +117,7 @@ public class JSONTokener {
      * @return true if not yet at the end of the source.
      */
     public boolean more() {
-        return this.myIndex < this.mySource.length();
+        return this.myIndex < this.myChars.length;
     }
 
 
@@ -105,10 +127,8 @@ public class JSONTokener {
      * @return The next character, or 0 if past the end of the source string.
      */
     public char next() {
-        if (more()) {
-            char c = this.mySource.charAt(this.myIndex);
-            this.myIndex += 1;
-            return c;
+        if (this.myIndex < this.myChars.length) {
+            return this.myChars[this.myIndex++];
         }
         return 0;
     }
@@ -143,11 +163,11 @@ public class JSONTokener {
      public String next(int n) throws JSONException {
          int i = this.myIndex;
          int j = i + n;
-         if (j >= this.mySource.length()) {
+         if (j >= this.myChars.length) {
             throw syntaxError("Substring bounds error");
          }
          this.myIndex += n;
-         return this.mySource.substring(i, j);
+         return new String(this.myChars, i, n);
      }
 
 
@@ -208,8 +228,25 @@ public class JSONTokener {
      * @throws JSONException Unterminated string.
      */
     public String nextString(char quote) throws JSONException {
+        // fast path: no escapes up to the closing quote
+        final int start = this.myIndex;
+        int i = start;
+        while (i < this.myChars.length) {
+            final char c = this.myChars[i];
+            if (c == quote) {
+                this.myIndex = i + 1;
+                return new String(this.myChars, start, i - start);
+            }
+            if (c == '\\' || c == '\n' || c == '\r' || c == 0) {
+                break;
+            }
+            i++;
+        }
+
         char c;
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder(i - start + 16);
+        sb.append(this.myChars, start, i - start);
+        this.myIndex = i;
         for (;;) {
             c = next();
             switch (c) {
@@ -262,17 +299,17 @@ public class JSONTokener {
      * @return   A string.
      */
     public String nextTo(char d) {
-        StringBuffer sb = new StringBuffer();
-        for (;;) {
-            char c = next();
+        final int start = this.myIndex;
+        int i = start;
+        while (i < this.myChars.length) {
+            final char c = this.myChars[i];
             if (c == d || c == 0 || c == '\n' || c == '\r') {
-                if (c != 0) {
-                    back();
-                }
-                return sb.toString().trim();
+                break;
             }
-            sb.append(c);
+            i++;
         }
+        this.myIndex = i;
+        return new String(this.myChars, start, i - start).trim();
     }
 
 
@@ -283,19 +320,18 @@ public class JSONTokener {
      * @return A string, trimmed.
      */
     public String nextTo(String delimiters) {
-        char c;
-        StringBuffer sb = new StringBuffer();
-        for (;;) {
-            c = next();
+        final int start = this.myIndex;
+        int i = start;
+        while (i < this.myChars.length) {
+            final char c = this.myChars[i];
             if (delimiters.indexOf(c) >= 0 || c == 0 ||
                     c == '\n' || c == '\r') {
-                if (c != 0) {
-                    back();
-                }
-                return sb.toString().trim();
+                break;
             }
-            sb.append(c);
+            i++;
         }
+        this.myIndex = i;
+        return new String(this.myChars, start, i - start).trim();
     }
 
 
@@ -308,7 +344,6 @@ public class JSONTokener {
      */
     public Object nextValue() throws JSONException {
         char c = nextClean();
-        String s;
 
         switch (c) {
             case '"':
@@ -331,29 +366,40 @@ public class JSONTokener {
          * formatting character.
          */
 
-        StringBuffer sb = new StringBuffer();
-        char b = c;
-        while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
-            sb.append(c);
-            c = next();
+        if (c < ' ' || (c < DELIMITERS.length && DELIMITERS[c])) {
+            back();
+            throw syntaxError("Missing value.");
         }
-        back();
+        final int start = this.myIndex - 1;
+        int end = start + 1;
+        while (end < this.myChars.length) {
+            final char t = this.myChars[end];
+            if (t < ' ' || (t < DELIMITERS.length && DELIMITERS[t])) {
+                break;
+            }
+            end++;
+        }
+        // like back() after next() returned the delimiter or 0 at the end
+        this.myIndex = (end < this.myChars.length) ? end : end - 1;
+        while (end > start && this.myChars[end - 1] == ' ') {
+            end--;
+        }
+        final int length = end - start;
 
         /*
          * If it is true, false, or null, return the proper value.
          */
 
-        s = sb.toString().trim();
-        if (s.equals("")) {
+        if (length == 0) {
             throw syntaxError("Missing value.");
         }
-        if (s.equalsIgnoreCase("true")) {
+        if (matches(start, length, "true")) {
             return Boolean.TRUE;
         }
-        if (s.equalsIgnoreCase("false")) {
+        if (matches(start, length, "false")) {
             return Boolean.FALSE;
         }
-        if (s.equalsIgnoreCase("null")) {
+        if (matches(start, length, "null")) {
             return JSONObject.NULL;
         }
 
@@ -365,42 +411,65 @@ public class JSONTokener {
          * non-JSON forms as long as it accepts all correct JSON forms.
          */
 
+        final String s = new String(this.myChars, start, length);
+        final char b = c;
         if ((b >= '0' && b <= '9') || b == '.' || b == '-' || b == '+') {
             if (b == '0') {
                 if (s.length() > 2 &&
                         (s.charAt(1) == 'x' || s.charAt(1) == 'X')) {
                     try {
-                        return new Integer(Integer.parseInt(s.substring(2),
+                        return Integer.valueOf(Integer.parseInt(s.substring(2),
                                 16));
                     } catch (Exception e) {
                         /* Ignore the error */
                     }
                 } else {
                     try {
-                        return new Integer(Integer.parseInt(s, 8));
+                        return Integer.valueOf(Integer.parseInt(s, 8));
                     } catch (Exception e) {
                         /* Ignore the error */
                     }
                 }
             }
-            try {
-                return new Integer(s);
-            } catch (Exception e) {
+            // fractions and exponents can only be parsed as Double
+            if (s.indexOf('.') < 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
                 try {
-                    return new Long(s);
-                } catch (Exception f) {
-                    try {
-                        return new Double(s);
-                    }  catch (Exception g) {
-                        return s;
+                    final long l = Long.parseLong(s);
+                    if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+                        return Integer.valueOf((int) l);
                     }
+                    return Long.valueOf(l);
+                } catch (Exception e) {
+                    /* Ignore the error */
                 }
             }
+            try {
+                return Double.valueOf(s);
+            }  catch (Exception g) {
+                return s;
+            }
         }
         return s;
     }
 
 
+    /**
+     * Checks whether the characters at the given position match the given
+     * lower case word ignoring case.
+     */
+    private boolean matches(final int start, final int length, final String word) {
+        if (length != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.toLowerCase(this.myChars[start + i]) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
     /**
      * Skip characters until the next character is the requested character.
      * If the requested character is not found, no characters are skipped.
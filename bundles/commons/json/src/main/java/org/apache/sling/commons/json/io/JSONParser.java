@@ -0,0 +1,513 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.json.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
+
+/**
+ * The <code>JSONParser</code> is a streaming pull parser for JSON texts. In
+ * contrast to the <code>JSONTokener</code> it does not create
+ * <code>JSONObject</code>s and <code>JSONArray</code>s, instead the caller
+ * pulls one {@link Event} after the other with {@link #next()}. The text is
+ * read from the reader into a <code>char[]</code> buffer and the characters
+ * of keys and values are collected in a reused buffer, so they only become a
+ * <code>String</code> if {@link #getString()} or {@link #getValue()} is
+ * called.
+ * <p>
+ * For example, <pre>
+ * final JSONParser parser = new JSONParser(reader);
+ * while (parser.hasNext()) {
+ *     if (parser.next() == JSONParser.Event.KEY
+ *             &amp;&amp; "jcr:title".equals(parser.getString())) {
+ *         parser.next();
+ *         title = parser.getString();
+ *     }
+ * }</pre>
+ * <p>
+ * The parser accepts JSON texts as defined by RFC 4627. Unlike the
+ * <code>JSONTokener</code> it does not accept comments, unquoted or single
+ * quoted strings or hexadecimal and octal numbers. Each instance reads one
+ * JSON text and is not thread safe.
+ */
+public class JSONParser {
+
+    /** The events reported by {@link JSONParser#next()}. */
+    public enum Event {
+        START_OBJECT,
+        END_OBJECT,
+        START_ARRAY,
+        END_ARRAY,
+        KEY,
+        VALUE_STRING,
+        VALUE_NUMBER,
+        VALUE_TRUE,
+        VALUE_FALSE,
+        VALUE_NULL
+    }
+
+    private static final int BUFFER_SIZE = 4096;
+
+    /** A value is expected: at the start, after a colon or a comma in an array */
+    private static final int STATE_VALUE = 0;
+
+    /** A value or the end of the array is expected */
+    private static final int STATE_FIRST_VALUE = 1;
+
+    /** A key is expected after a comma in an object */
+    private static final int STATE_KEY = 2;
+
+    /** A key or the end of the object is expected */
+    private static final int STATE_FIRST_KEY = 3;
+
+    /** A comma or the end of the enclosing object or array is expected */
+    private static final int STATE_AFTER_VALUE = 4;
+
+    private final Reader reader;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /** The position of the next character in the buffer */
+    private int position;
+
+    /** The number of characters in the buffer */
+    private int limit;
+
+    /** The number of characters read before the buffer */
+    private long offset;
+
+    /** The characters of the current key, string or number */
+    private final StringBuilder text = new StringBuilder();
+
+    /** The enclosing objects and arrays, '{' or '[' */
+    private char[] stack = new char[32];
+
+    private int depth;
+
+    private int state = STATE_VALUE;
+
+    private Event event;
+
+    /**
+     * Creates a parser reading the JSON text from the reader.
+     * @param reader The reader, it is not closed by the parser.
+     */
+    public JSONParser(final Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Creates a parser for the JSON text.
+     * @param text The JSON text
+     */
+    public JSONParser(final String text) {
+        this(new StringReader(text));
+    }
+
+    /**
+     * Returns <code>true</code> until the outermost value has been read.
+     */
+    public boolean hasNext() {
+        return this.state != STATE_AFTER_VALUE || this.depth > 0;
+    }
+
+    /**
+     * Reads the next event.
+     * @return The event
+     * @throws JSONException If the text is not valid JSON, has ended or could
+     *             not be read.
+     */
+    public Event next() throws JSONException {
+        int c = this.nextClean();
+        switch (this.state) {
+        case STATE_AFTER_VALUE:
+            if (this.depth == 0) {
+                throw this.syntaxError(c == -1 ? "No more events" : "Text after the end");
+            }
+            if (c != ',') {
+                return this.end(c);
+            }
+            this.state = (this.stack[this.depth - 1] == '{') ? STATE_KEY : STATE_VALUE;
+            return this.next();
+
+        case STATE_FIRST_KEY:
+            if (c == '}') {
+                return this.end(c);
+            }
+            // fall through
+        case STATE_KEY:
+            if (c != '"') {
+                throw this.syntaxError("Expected a key");
+            }
+            this.readString();
+            if (this.nextClean() != ':') {
+                throw this.syntaxError("Expected a ':' after a key");
+            }
+            this.state = STATE_VALUE;
+            return this.event = Event.KEY;
+
+        case STATE_FIRST_VALUE:
+            if (c == ']') {
+                return this.end(c);
+            }
+            // fall through
+        default:
+            return this.event = this.readValue(c);
+        }
+    }
+
+    /**
+     * Returns the current event, <code>null</code> before the first call
+     * to {@link #next()}.
+     */
+    public Event getEvent() {
+        return this.event;
+    }
+
+    /**
+     * Returns the number of objects and arrays open at the current event. For
+     * the start and end events of an object or array this includes the
+     * object or array itself.
+     */
+    public int getDepth() {
+        if (this.event == Event.END_OBJECT || this.event == Event.END_ARRAY) {
+            return this.depth + 1;
+        }
+        return this.depth;
+    }
+
+    /**
+     * Returns the text of the current key, string or number.
+     * @throws IllegalStateException If the current event is not
+     *             {@link Event#KEY}, {@link Event#VALUE_STRING} or
+     *             {@link Event#VALUE_NUMBER}.
+     */
+    public String getString() {
+        if (this.event != Event.KEY && this.event != Event.VALUE_STRING && this.event != Event.VALUE_NUMBER) {
+            throw new IllegalStateException("No text for " + this.event);
+        }
+        return this.text.toString();
+    }
+
+    /**
+     * Returns the current value as the <code>JSONTokener</code> does: a
+     * <code>String</code>, <code>Boolean</code>, <code>Integer</code>,
+     * <code>Long</code>, <code>Double</code> or <code>JSONObject.NULL</code>.
+     * @throws IllegalStateException If the current event is not a key or value.
+     */
+    public Object getValue() {
+        if (this.event == null) {
+            throw new IllegalStateException("No value before the first event");
+        }
+        switch (this.event) {
+        case KEY:
+        case VALUE_STRING:
+            return this.text.toString();
+        case VALUE_NUMBER:
+            return this.getNumber();
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        case VALUE_NULL:
+            return JSONObject.NULL;
+        default:
+            throw new IllegalStateException("No value for " + this.event);
+        }
+    }
+
+    private Number getNumber() {
+        final String s = this.text.toString();
+        if (s.indexOf('.') < 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
+            try {
+                final long l = Long.parseLong(s);
+                if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+                    return Integer.valueOf((int) l);
+                }
+                return Long.valueOf(l);
+            } catch (NumberFormatException nfe) {
+                // too large for a long
+            }
+        }
+        return Double.valueOf(s);
+    }
+
+    /**
+     * Skips the children of the object or array just started, the next
+     * event is the end of it.
+     * @throws JSONException If the text is not valid JSON.
+     * @throws IllegalStateException If the current event is not the start of
+     *             an object or array.
+     */
+    public void skipChildren() throws JSONException {
+        if (this.event != Event.START_OBJECT && this.event != Event.START_ARRAY) {
+            throw new IllegalStateException("Not at the start of an object or array: " + this.event);
+        }
+        final int start = this.depth;
+        while (true) {
+            final int c = this.peekClean();
+            if (this.depth == start && (c == '}' || c == ']')) {
+                return;
+            }
+            this.next();
+        }
+    }
+
+    // ---------- scanning
+
+    private Event readValue(final int c) throws JSONException {
+        switch (c) {
+        case '{':
+            this.push('{');
+            this.state = STATE_FIRST_KEY;
+            return Event.START_OBJECT;
+        case '[':
+            this.push('[');
+            this.state = STATE_FIRST_VALUE;
+            return Event.START_ARRAY;
+        case '"':
+            this.readString();
+            this.state = STATE_AFTER_VALUE;
+            return Event.VALUE_STRING;
+        case 't':
+            this.readLiteral("true");
+            this.state = STATE_AFTER_VALUE;
+            return Event.VALUE_TRUE;
+        case 'f':
+            this.readLiteral("false");
+            this.state = STATE_AFTER_VALUE;
+            return Event.VALUE_FALSE;
+        case 'n':
+            this.readLiteral("null");
+            this.state = STATE_AFTER_VALUE;
+            return Event.VALUE_NULL;
+        case -1:
+            throw this.syntaxError("Unexpected end of text");
+        default:
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                this.readNumber(c);
+                this.state = STATE_AFTER_VALUE;
+                return Event.VALUE_NUMBER;
+            }
+            throw this.syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private Event end(final int c) throws JSONException {
+        final char open = (c == '}') ? '{' : (c == ']') ? '[' : 0;
+        if (open == 0 || this.stack[this.depth - 1] != open) {
+            throw this.syntaxError(c == -1 ? "Unexpected end of text" : "Expected a ',' or the end of the "
+                + (this.stack[this.depth - 1] == '{' ? "object" : "array"));
+        }
+        this.depth--;
+        this.state = STATE_AFTER_VALUE;
+        return this.event = (c == '}') ? Event.END_OBJECT : Event.END_ARRAY;
+    }
+
+    private void push(final char c) {
+        if (this.depth == this.stack.length) {
+            final char[] newStack = new char[this.stack.length * 2];
+            System.arraycopy(this.stack, 0, newStack, 0, this.stack.length);
+            this.stack = newStack;
+        }
+        this.stack[this.depth++] = c;
+    }
+
+    /**
+     * Reads the characters of a string after the opening quote into the text
+     * buffer. Runs of characters without escapes are copied at once.
+     */
+    private void readString() throws JSONException {
+        this.text.setLength(0);
+        while (true) {
+            if (this.position == this.limit && !this.fill()) {
+                throw this.syntaxError("Unterminated string");
+            }
+            final int start = this.position;
+            while (this.position < this.limit) {
+                final char c = this.buffer[this.position];
+                if (c == '"' || c == '\\' || c < ' ') {
+                    break;
+                }
+                this.position++;
+            }
+            this.text.append(this.buffer, start, this.position - start);
+            if (this.position == this.limit) {
+                continue;
+            }
+
+            final char c = this.buffer[this.position++];
+            if (c == '"') {
+                return;
+            } else if (c < ' ') {
+                throw this.syntaxError("Unescaped control character in string");
+            }
+
+            final int escaped = this.read();
+            switch (escaped) {
+            case '"':
+            case '\\':
+            case '/':
+                this.text.append((char) escaped);
+                break;
+            case 'b':
+                this.text.append('\b');
+                break;
+            case 't':
+                this.text.append('\t');
+                break;
+            case 'n':
+                this.text.append('\n');
+                break;
+            case 'f':
+                this.text.append('\f');
+                break;
+            case 'r':
+                this.text.append('\r');
+                break;
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    final int digit = Character.digit(this.read(), 16);
+                    if (digit < 0) {
+                        throw this.syntaxError("Illegal unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                this.text.append((char) value);
+                break;
+            default:
+                throw this.syntaxError("Illegal escape");
+            }
+        }
+    }
+
+    /**
+     * Reads a number following the JSON grammar into the text buffer.
+     */
+    private void readNumber(final int first) throws JSONException {
+        this.text.setLength(0);
+        int c = first;
+        if (c == '-') {
+            c = this.append(c);
+        }
+        if (c == '0') {
+            c = this.append(c);
+        } else {
+            c = this.appendDigits(c);
+        }
+        if (c == '.') {
+            c = this.appendDigits(this.append(c));
+        }
+        if (c == 'e' || c == 'E') {
+            c = this.append(c);
+            if (c == '+' || c == '-') {
+                c = this.append(c);
+            }
+            c = this.appendDigits(c);
+        }
+        if (c != -1) {
+            // not part of the number
+            this.position--;
+        }
+    }
+
+    private int appendDigits(int c) throws JSONException {
+        if (c < '0' || c > '9') {
+            throw this.syntaxError("Expected a digit");
+        }
+        while (c >= '0' && c <= '9') {
+            c = this.append(c);
+        }
+        return c;
+    }
+
+    private int append(final int c) throws JSONException {
+        this.text.append((char) c);
+        return this.read();
+    }
+
+    private void readLiteral(final String literal) throws JSONException {
+        for (int i = 1; i < literal.length(); i++) {
+            if (this.read() != literal.charAt(i)) {
+                throw this.syntaxError("Expected '" + literal + "'");
+            }
+        }
+    }
+
+    /**
+     * Returns the next character which is not whitespace or -1 at the end.
+     */
+    private int nextClean() throws JSONException {
+        while (true) {
+            final int c = this.read();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+    }
+
+    private int peekClean() throws JSONException {
+        final int c = this.nextClean();
+        if (c != -1) {
+            this.position--;
+        }
+        return c;
+    }
+
+    private int read() throws JSONException {
+        if (this.position == this.limit && !this.fill()) {
+            return -1;
+        }
+        return this.buffer[this.position++];
+    }
+
+    /**
+     * Reads the next characters into the buffer keeping the last character,
+     * so the current character can always be pushed back.
+     */
+    private boolean fill() throws JSONException {
+        int keep = 0;
+        if (this.limit > 0) {
+            this.buffer[0] = this.buffer[this.limit - 1];
+            keep = 1;
+        }
+        this.offset += this.limit - keep;
+        this.position = keep;
+        this.limit = keep;
+        try {
+            final int n = this.reader.read(this.buffer, keep, this.buffer.length - keep);
+            if (n <= 0) {
+                return false;
+            }
+            this.limit += n;
+            return true;
+        } catch (final IOException ioe) {
+            throw new JSONException(ioe);
+        }
+    }
+
+    private JSONException syntaxError(final String message) {
+        return new JSONException(message + " at character " + (this.offset + this.position));
+    }
+}
@@ -186,9 +186,33 @@ public class JSONRenderer {
         }
     }
 
+    /**
+     * The escape sequences of the ASCII characters, <code>null</code> for
+     * the characters written as they are. The slash is only escaped after a
+     * <code>&lt;</code>, see {@link #quote(Writer, String)}.
+     */
+    private static final String[] ESCAPES = new String[128];
+    static {
+        for (int i = 0; i < ' '; i++) {
+            ESCAPES[i] = unicodeEscape((char) i);
+        }
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\t'] = "\\t";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\f'] = "\\f";
+        ESCAPES['\r'] = "\\r";
+    }
+
+    private static String unicodeEscape(final char c) {
+        final String t = "000" + Integer.toHexString(c);
+        return "\\u" + t.substring(t.length() - 4);
+    }
+
     /** Quote the supplied string for JSON */
     public String quote(String string) {
-        final StringWriter sw = new StringWriter();
+        final StringWriter sw = new StringWriter((string == null) ? 2 : string.length() + 16);
         try {
             quote(sw, string);
         } catch(IOException ioex) {
@@ -197,59 +221,49 @@ public class JSONRenderer {
         return sw.toString();
     }
 
-    /** Quote the supplied string for JSON, to the supplied Writer */
+    /**
+     * Quote the supplied string for JSON, to the supplied Writer. The
+     * characters are looked up in an escape table and the runs of characters
+     * which need no escaping are written at once.
+     */
     public void quote(Writer w, String string) throws IOException {
         if (string == null || string.length() == 0) {
             w.write("\"\"");
             return;
         }
 
-        char         b;
-        char         c = 0;
-        int          i;
-        int          len = string.length();
-        String       t;
-
+        final int len = string.length();
+        int start = 0;
         w.write('"');
-        for (i = 0; i < len; i += 1) {
-            b = c;
-            c = string.charAt(i);
-            switch (c) {
-            case '\\':
-            case '"':
-                w.write('\\');
-                w.write(c);
-                break;
-            case '/':
-                if (b == '<') {
-                    w.write('\\');
-                }
-                w.write(c);
-                break;
-            case '\b':
-                w.write("\\b");
-                break;
-            case '\t':
-                w.write("\\t");
-                break;
-            case '\n':
-                w.write("\\n");
-                break;
-            case '\f':
-                w.write("\\f");
-                break;
-            case '\r':
-                w.write("\\r");
-                break;
-            default:
-                if (c < ' ' || (c >= '\u0080' && c < '\u00a0') ||
-                               (c >= '\u2000' && c < '\u2100')) {
-                    t = "000" + Integer.toHexString(c);
-                    w.write("\\u" + t.substring(t.length() - 4));
+        for (int i = 0; i < len; i++) {
+            final char c = string.charAt(i);
+            final String escape;
+            if (c < 128) {
+                if (c == '/') {
+                    if (i == 0 || string.charAt(i - 1) != '<') {
+                        continue;
+                    }
+                    escape = "\\/";
                 } else {
-                    w.write(c);
+                    escape = ESCAPES[c];
+                    if (escape == null) {
+                        continue;
+                    }
                 }
+            } else if ((c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100')) {
+                escape = unicodeEscape(c);
+            } else {
+                continue;
+            }
+
+            if (i > start) {
+                w.write(string, start, i - start);
             }
+            w.write(escape);
+            start = i + 1;
+        }
+        if (start < len) {
+            w.write(string, start, len - start);
         }
         w.write('"');
     }
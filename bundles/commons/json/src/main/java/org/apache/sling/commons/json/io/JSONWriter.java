@@ -56,6 +56,11 @@ SOFTWARE.
  * you. Objects and arrays can be nested up to 20 levels deep.
  * <p>
  * This can sometimes be easier than using a JSONObject to build a string.
+ * <p>
+ * The text of each call is collected in a small buffer and passed on to the
+ * writer before the call returns, so text written directly to the writer
+ * between calls stays in order. Strings are quoted directly into that
+ * buffer. The writer itself is never flushed.
  * @author JSON.org
  * @version 2
  */
@@ -65,6 +70,11 @@ public class JSONWriter {
     // the JsonRenderingTest.testRecursiveInfinity test
     private static final int maxdepth = 50;
 
+    /** The number of characters buffered within a call before they are written. */
+    private static final int BUFFER_SIZE = 1024;
+
+    private static final JSONRenderer renderer = new JSONRenderer();
+
     /**
      * indentations
      */
@@ -113,6 +123,11 @@ public class JSONWriter {
      */
     protected Writer writer;
 
+    /**
+     * The buffer in front of the writer.
+     */
+    private final Buffer out = new Buffer();
+
     /**
      * Make a fresh JSONWriter. It can be used to build one JSON text.
      */
@@ -150,28 +165,42 @@ public class JSONWriter {
         if (s == null) {
             throw new JSONException("Null pointer");
         }
+        try {
+            this.beginValue(!"{".equals(s) && !"[".equals(s));
+            this.out.write(s);
+            this.out.drain();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        this.endValue();
+        return this;
+    }
+
+    /**
+     * Check the mode and write the separator in front of a value.
+     * @param newLine if a new line is started in tidy mode
+     */
+    private void beginValue(boolean newLine) throws JSONException, IOException {
         if (this.mode == 'o' || this.mode == 'a') {
-            try {
-                if (this.comma && this.mode == 'a') {
-                    this.writer.write(',');
-                }
-                if (tidy && this.mode == 'a' && !"{".equals(s) && !"[".equals(s)) {
-                    this.writer.write('\n');
-                    this.writer.write(INDENTS[top]);
-                }
-                this.writer.write(s);
-            } catch (IOException e) {
-                throw new JSONException(e);
+            if (this.comma && this.mode == 'a') {
+                this.out.write(',');
             }
-            if (this.mode == 'o') {
-                this.mode = 'k';
+            if (tidy && this.mode == 'a' && newLine) {
+                this.out.write('\n');
+                this.out.write(INDENTS[top]);
             }
-            this.comma = true;
-            return this;
+            return;
         }
         throw new JSONException("Value out of sequence.");
     }
 
+    private void endValue() {
+        if (this.mode == 'o') {
+            this.mode = 'k';
+        }
+        this.comma = true;
+    }
+
     /**
      * Begin appending a new array. All values until the balancing
      * <code>endArray</code> will be appended to this array. The
@@ -206,10 +235,11 @@ public class JSONWriter {
         this.pop(m);
         try {
             if (tidy) {
-                this.writer.write('\n');
-                this.writer.write(INDENTS[top]);
+                this.out.write('\n');
+                this.out.write(INDENTS[top]);
             }
-            this.writer.write(c);
+            this.out.write(c);
+            this.out.drain();
         } catch (IOException e) {
             throw new JSONException(e);
         }
@@ -252,17 +282,18 @@ public class JSONWriter {
         if (this.mode == 'k') {
             try {
                 if (this.comma) {
-                    this.writer.write(',');
+                    this.out.write(',');
                 }
                 if (tidy) {
-                    this.writer.write('\n');
-                    this.writer.write(INDENTS[top]);
+                    this.out.write('\n');
+                    this.out.write(INDENTS[top]);
                 }
-                this.writer.write(JSONObject.quote(s));
-                this.writer.write(':');
+                renderer.quote(this.out, s);
+                this.out.write(':');
                 if (tidy) {
-                    this.writer.write(' ');
+                    this.out.write(' ');
                 }
+                this.out.drain();
                 this.comma = false;
                 this.mode = 'o';
                 return this;
@@ -367,6 +398,82 @@ public class JSONWriter {
      * @throws JSONException If the value is out of sequence.
      */
     public JSONWriter value(Object o) throws JSONException {
+        if (o instanceof String) {
+            try {
+                this.beginValue(true);
+                renderer.quote(this.out, (String) o);
+                this.out.drain();
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+            this.endValue();
+            return this;
+        }
         return this.append(JSONObject.valueToString(o));
     }
+
+    /**
+     * The buffer collecting the text of a call before it is written to the
+     * {@link JSONWriter#writer}.
+     */
+    private final class Buffer extends Writer {
+
+        private final char[] chars = new char[BUFFER_SIZE];
+
+        private int count;
+
+        @Override
+        public void write(int c) throws IOException {
+            if (this.count == this.chars.length) {
+                this.drain();
+            }
+            this.chars[this.count++] = (char) c;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            if (len > this.chars.length - this.count) {
+                this.drain();
+                if (len > this.chars.length) {
+                    JSONWriter.this.writer.write(str, off, len);
+                    return;
+                }
+            }
+            str.getChars(off, off + len, this.chars, this.count);
+            this.count += len;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            if (len > this.chars.length - this.count) {
+                this.drain();
+                if (len > this.chars.length) {
+                    JSONWriter.this.writer.write(cbuf, off, len);
+                    return;
+                }
+            }
+            System.arraycopy(cbuf, off, this.chars, this.count, len);
+            this.count += len;
+        }
+
+        /**
+         * Writes the buffered characters to the writer without flushing it.
+         */
+        void drain() throws IOException {
+            if (this.count > 0) {
+                JSONWriter.this.writer.write(this.chars, 0, this.count);
+                this.count = 0;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.drain();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.drain();
+        }
+    }
 }
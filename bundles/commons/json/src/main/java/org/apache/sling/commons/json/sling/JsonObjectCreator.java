@@ -128,7 +128,7 @@ public abstract class JsonObjectCreator {
     }
 
     /** Dump only a value in the correct format */
-    private static Object getValue(final Object value) {
+    static Object getValue(final Object value) {
         if ( value instanceof InputStream ) {
             // input stream is already handled
             return 0;
@@ -159,7 +159,7 @@ public abstract class JsonObjectCreator {
     }
 
     /** true if the current recursion level is active */
-    private static boolean recursionLevelActive(final int currentRecursionLevel,
+    static boolean recursionLevelActive(final int currentRecursionLevel,
             final int maxRecursionLevels) {
         return maxRecursionLevels < 0
             || currentRecursionLevel < maxRecursionLevels;
@@ -217,7 +217,7 @@ public abstract class JsonObjectCreator {
         }
     }
 
-    private static long getLength(final ValueMap    valueMap,
+    static long getLength(final ValueMap    valueMap,
                            final int         index,
                            final String      key,
                            final InputStream stream) {
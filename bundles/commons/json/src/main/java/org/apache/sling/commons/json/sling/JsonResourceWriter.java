@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.json.sling;
+
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.io.JSONWriter;
+
+/**
+ * Writes a resource to a JSONWriter. The output contains the same properties
+ * and children as the JSONObject created by the {@link JsonObjectCreator},
+ * but the resource tree is written depth-first without building the
+ * JSONObject tree. The children are streamed after the properties; a
+ * property having the name of a child is replaced by the child and therefore
+ * not written.
+ *
+ * @since 1.1
+ */
+public abstract class JsonResourceWriter {
+
+    /**
+     * Write the given resource, optionally recursing into its children.
+     * @param writer the writer to write the resource to
+     * @param resource the resource
+     * @param maxRecursionLevels the levels of children to write, all children
+     *            are written if negative
+     */
+    public static void write(final JSONWriter writer, final Resource resource, final int maxRecursionLevels)
+    throws JSONException {
+        write(writer, resource, 0, maxRecursionLevels);
+    }
+
+    private static void write(final JSONWriter writer,
+            final Resource resource,
+            final int currentRecursionLevel,
+            final int maxRecursionLevels)
+    throws JSONException {
+        final boolean writeChildren = JsonObjectCreator.recursionLevelActive(currentRecursionLevel, maxRecursionLevels);
+
+        final ValueMap valueMap = resource.adaptTo(ValueMap.class);
+
+        @SuppressWarnings("unchecked")
+        final Map propertyMap = (valueMap != null)
+                ? valueMap
+                : resource.adaptTo(Map.class);
+
+        writer.object();
+
+        if (propertyMap == null) {
+
+            // no map available, try string
+            final String value = resource.adaptTo(String.class);
+            if (value != null) {
+
+                // single value property or just plain String resource or...
+                final String key = ResourceUtil.getName(resource);
+                if (!isReplacedByChild(resource, key, writeChildren)) {
+                    writer.key(key);
+                    writer.value(value);
+                }
+
+            } else {
+
+                // Try multi-value "property"
+                final String[] values = resource.adaptTo(String[].class);
+                final String key = ResourceUtil.getName(resource);
+                if (values != null && !isReplacedByChild(resource, key, writeChildren)) {
+                    writer.key(key);
+                    writer.array();
+                    for (final String v : values) {
+                        writer.value(v);
+                    }
+                    writer.endArray();
+                }
+
+            }
+
+        } else {
+
+            @SuppressWarnings("unchecked")
+            final Iterator<Map.Entry> props = propertyMap.entrySet().iterator();
+
+            // the node's actual properties
+            while (props.hasNext()) {
+                @SuppressWarnings("unchecked")
+                final Map.Entry prop = props.next();
+
+                if ( prop.getValue() != null ) {
+                    writeProperty(writer, resource, valueMap, prop.getKey().toString(),
+                        prop.getValue(), writeChildren);
+                }
+            }
+        }
+
+        // the child nodes
+        if (writeChildren) {
+            final Iterator<Resource> children = ResourceUtil.listChildren(resource);
+            while (children.hasNext()) {
+                final Resource n = children.next();
+                writer.key(ResourceUtil.getName(n));
+                write(writer, n, currentRecursionLevel + 1, maxRecursionLevels);
+            }
+        }
+
+        writer.endObject();
+    }
+
+    /**
+     * Checks whether a child with the given name is written, which replaces
+     * the property of the same name.
+     */
+    private static boolean isReplacedByChild(final Resource resource,
+            final String key,
+            final boolean writeChildren) {
+        return writeChildren && resource.getChild(key) != null;
+    }
+
+    /**
+     * Write a single property
+     */
+    private static void writeProperty(final JSONWriter writer,
+            final Resource resource,
+            final ValueMap valueMap,
+            final String key,
+            final Object value,
+            final boolean writeChildren)
+    throws JSONException {
+        Object[] values = null;
+        if (value.getClass().isArray()) {
+            final int length = Array.getLength(value);
+            // write out empty array
+            if ( length == 0 ) {
+                if (!isReplacedByChild(resource, key, writeChildren)) {
+                    writer.key(key);
+                    writer.array();
+                    writer.endArray();
+                }
+                return;
+            }
+            values = new Object[length];
+            for(int i=0; i<length; i++) {
+                values[i] = Array.get(value, i);
+            }
+        }
+
+        // special handling for binaries: we dump the length and not the data!
+        if (value instanceof InputStream
+            || (values != null && values[0] instanceof InputStream)) {
+            // binary properties are marked with an initial colon in their
+            // name (colon is not allowed as a JCR property name)
+            writer.key(":" + key);
+            if (values == null) {
+                writer.value(JsonObjectCreator.getLength(valueMap, -1, key, (InputStream)value));
+            } else {
+                writer.array();
+                for (int i = 0; i < values.length; i++) {
+                    writer.value(JsonObjectCreator.getLength(valueMap, i, key, (InputStream)values[i]));
+                }
+                writer.endArray();
+            }
+            return;
+        }
+
+        if (isReplacedByChild(resource, key, writeChildren)) {
+            return;
+        }
+        writer.key(key);
+        if (values == null) {
+            writer.value(JsonObjectCreator.getValue(value));
+        } else {
+            writer.array();
+            for (Object v : values) {
+                writer.value(JsonObjectCreator.getValue(v));
+            }
+            writer.endArray();
+        }
+    }
+}
@@ -17,7 +17,7 @@
  * under the License.
  */
 
-@Version("1.0.0")
+@Version("1.1.0")
 package org.apache.sling.commons.json.sling;
 
 import aQute.bnd.annotation.Version;
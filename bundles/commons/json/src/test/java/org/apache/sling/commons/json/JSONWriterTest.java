@@ -16,6 +16,7 @@
  */
 package org.apache.sling.commons.json;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -95,4 +96,43 @@ public class JSONWriterTest {
     public void testMisplacedEndObjectB() throws JSONException {
         w.endObject();
     }
+
+    @Test
+    public void testEscaping() throws JSONException {
+        w.object();
+        w.key("a\"b").value("</script>\n\t\u0001\u0085\u2028\u00e9");
+        w.endObject();
+        assertEquals("{\"a\\\"b\":\"<\\/script>\\n\\t\\u0001\\u0085\\u2028\u00e9\"}", output.toString());
+    }
+
+    @Test
+    public void testWrittenPerCall() throws JSONException {
+        final StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            large.append("value ").append(i);
+        }
+
+        w.array();
+        assertEquals("[", output.toString());
+        w.value("short");
+        assertEquals("[\"short\"", output.toString());
+        w.value(large.toString());
+        w.object().key("nested");
+        assertEquals("[\"short\",\"" + large + "\",{\"nested\":", output.toString());
+        w.value(true).endObject();
+        w.endArray();
+        assertEquals("[\"short\",\"" + large + "\",{\"nested\":true}]", output.toString());
+    }
+
+    @Test
+    public void testDirectWritesKeepOrder() throws Exception {
+        w.array();
+        output.write("\n");
+        w.value(1);
+        output.write("\n");
+        w.value("two");
+        output.write("\n");
+        w.endArray();
+        assertEquals("[\n1\n,\"two\"\n]", output.toString());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.json.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.apache.sling.commons.json.JSONArray;
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
+import org.apache.sling.commons.json.io.JSONParser.Event;
+import org.junit.Test;
+
+public class JSONParserTest {
+
+    private static final String TEXT = "{\"jcr:primaryType\":\"cq:Page\",\"count\":42,\"big\":12345678901,"
+        + "\"ratio\":-1.5e3,\"flag\":true,\"off\":false,\"none\":null,"
+        + "\"text\":\"a \\\"quoted\\\" \\u00e9 <\\/b>\\n\",\"tags\":[\"a\",\"b\"],"
+        + "\"jcr:content\":{\"empty\":{},\"list\":[]}}";
+
+    /** Returns the text in chunks of a few characters */
+    private static Reader chunked(final String text) {
+        return new StringReader(text) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws java.io.IOException {
+                return super.read(cbuf, off, Math.min(len, 3));
+            }
+        };
+    }
+
+    private static Object build(final JSONParser parser, final Event event) throws JSONException {
+        switch (event) {
+        case START_OBJECT:
+            final JSONObject object = new JSONObject();
+            for (Event e = parser.next(); e != Event.END_OBJECT; e = parser.next()) {
+                assertEquals(Event.KEY, e);
+                final String key = parser.getString();
+                object.put(key, build(parser, parser.next()));
+            }
+            return object;
+        case START_ARRAY:
+            final JSONArray array = new JSONArray();
+            for (Event e = parser.next(); e != Event.END_ARRAY; e = parser.next()) {
+                array.put(build(parser, e));
+            }
+            return array;
+        default:
+            return parser.getValue();
+        }
+    }
+
+    @Test
+    public void testSameAsJSONObject() throws JSONException {
+        final JSONParser parser = new JSONParser(TEXT);
+        final Object parsed = build(parser, parser.next());
+        assertFalse(parser.hasNext());
+        assertEquals(new JSONObject(TEXT).toString(), parsed.toString());
+    }
+
+    @Test
+    public void testChunkedReader() throws JSONException {
+        final String tidy = new JSONObject(TEXT).toString(2);
+        final JSONParser parser = new JSONParser(chunked(tidy));
+        assertEquals(new JSONObject(TEXT).toString(), build(parser, parser.next()).toString());
+    }
+
+    @Test
+    public void testEvents() throws JSONException {
+        final JSONParser parser = new JSONParser("[1, {\"a\": [true]}, \"x\"]");
+        assertTrue(parser.hasNext());
+        assertEquals(Event.START_ARRAY, parser.next());
+        assertEquals(1, parser.getDepth());
+        assertEquals(Event.VALUE_NUMBER, parser.next());
+        assertEquals(Integer.valueOf(1), parser.getValue());
+        assertEquals(Event.START_OBJECT, parser.next());
+        assertEquals(2, parser.getDepth());
+        assertEquals(Event.KEY, parser.next());
+        assertEquals("a", parser.getString());
+        assertEquals(Event.START_ARRAY, parser.next());
+        assertEquals(Event.VALUE_TRUE, parser.next());
+        assertEquals(Event.END_ARRAY, parser.next());
+        assertEquals(3, parser.getDepth());
+        assertEquals(Event.END_OBJECT, parser.next());
+        assertEquals(2, parser.getDepth());
+        assertEquals(Event.VALUE_STRING, parser.next());
+        assertEquals("x", parser.getString());
+        assertEquals(Event.END_ARRAY, parser.next());
+        assertFalse(parser.hasNext());
+    }
+
+    @Test
+    public void testSkipChildren() throws JSONException {
+        final JSONParser parser = new JSONParser(TEXT);
+        assertEquals(Event.START_OBJECT, parser.next());
+        parser.skipChildren();
+        assertEquals(Event.END_OBJECT, parser.next());
+        assertFalse(parser.hasNext());
+    }
+
+    @Test
+    public void testInvalid() {
+        final String[] texts = {"{", "[1,]", "{\"a\"}", "{\"a\":}", "[01]", "[1.]", "[-]", "tru",
+            "[\"a\nb\"]", "{'a':1}", "[1 2]", "{\"a\":1,}", "[\"\\x\"]", "[1}"};
+        for (final String text : texts) {
+            try {
+                final JSONParser parser = new JSONParser(text);
+                while (parser.hasNext()) {
+                    parser.next();
+                }
+                fail("Expected JSONException for " + text);
+            } catch (final JSONException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoString() throws JSONException {
+        final JSONParser parser = new JSONParser("[true]");
+        parser.next();
+        parser.next();
+        parser.getString();
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.json.sling;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.commons.json.JSONObject;
+import org.apache.sling.commons.json.io.JSONWriter;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class JsonResourceWriterTest {
+
+    private ResourceResolver resolver;
+
+    private Map<Resource, List<Resource>> children;
+
+    @Before
+    public void setup() {
+        resolver = Mockito.mock(ResourceResolver.class);
+        children = new HashMap<Resource, List<Resource>>();
+        Mockito.when(resolver.listChildren(Mockito.any(Resource.class))).thenAnswer(new Answer<Iterator<Resource>>() {
+            public Iterator<Resource> answer(InvocationOnMock invocation) {
+                final List<Resource> list = children.get(invocation.getArguments()[0]);
+                return (list == null) ? new ArrayList<Resource>().iterator() : list.iterator();
+            }
+        });
+    }
+
+    private Resource resource(final Resource parent, final String name, final Map<String, Object> props) {
+        final String path = (parent == null) ? "/" + name : parent.getPath() + "/" + name;
+        final Resource r = Mockito.mock(Resource.class);
+        Mockito.when(r.getPath()).thenReturn(path);
+        Mockito.when(r.getResourceResolver()).thenReturn(resolver);
+        Mockito.when(r.adaptTo(ValueMap.class)).thenReturn(new ValueMapDecorator(props));
+        if (parent != null) {
+            List<Resource> list = children.get(parent);
+            if (list == null) {
+                list = new ArrayList<Resource>();
+                children.put(parent, list);
+            }
+            list.add(r);
+            Mockito.when(parent.getChild(name)).thenReturn(r);
+        }
+        return r;
+    }
+
+    private Resource resource(final Resource parent, final String name) {
+        final Map<String, Object> props = new LinkedHashMap<String, Object>();
+        props.put("title", name);
+        return resource(parent, name, props);
+    }
+
+    private String write(final Resource r, final int levels) throws Exception {
+        final StringWriter out = new StringWriter();
+        JsonResourceWriter.write(new JSONWriter(out), r, levels);
+        return out.toString();
+    }
+
+    private void assertSameAsCreator(final Resource r, final int levels) throws Exception {
+        assertEquals(JsonObjectCreator.create(r, levels).toString(), write(r, levels));
+    }
+
+    @Test
+    public void testWriteProperties() throws Exception {
+        final Calendar date = Calendar.getInstance(TimeZone.getTimeZone("GMT+01:00"));
+        date.setTimeInMillis(0);
+        final Map<String, Object> props = new LinkedHashMap<String, Object>();
+        props.put("string", "a \"quoted\" value");
+        props.put("long", 42L);
+        props.put("boolean", true);
+        props.put("date", date);
+        props.put("multi", new String[] {"a", "b"});
+        props.put("empty", new String[0]);
+        props.put("null", null);
+        final Resource r = resource(null, "props", props);
+
+        assertEquals("{\"string\":\"a \\\"quoted\\\" value\",\"long\":42,\"boolean\":true,"
+                + "\"date\":\"Thu Jan 01 1970 01:00:00 GMT+0100\",\"multi\":[\"a\",\"b\"],\"empty\":[]}",
+                write(r, 0));
+        assertSameAsCreator(r, 0);
+    }
+
+    @Test
+    public void testWriteBinary() throws Exception {
+        final Map<String, Object> props = new LinkedHashMap<String, Object>();
+        props.put("data", new ByteArrayInputStream(new byte[3]));
+        props.put("multi", new InputStream[] {new ByteArrayInputStream(new byte[1])});
+        final Resource r = Mockito.mock(Resource.class);
+        Mockito.when(r.getPath()).thenReturn("/binary");
+        Mockito.when(r.getResourceResolver()).thenReturn(resolver);
+        final ValueMap valueMap = Mockito.mock(ValueMap.class);
+        Mockito.when(valueMap.entrySet()).thenReturn(props.entrySet());
+        Mockito.when(valueMap.get("data", -1L)).thenReturn(3L);
+        Mockito.when(valueMap.get("multi", Long[].class)).thenReturn(new Long[] {1L});
+        Mockito.when(r.adaptTo(ValueMap.class)).thenReturn(valueMap);
+
+        assertEquals("{\":data\":3,\":multi\":[1]}", write(r, 0));
+    }
+
+    @Test
+    public void testWriteChildren() throws Exception {
+        final Resource root = resource(null, "root");
+        final Resource a = resource(root, "a");
+        resource(a, "b");
+        resource(root, "c");
+
+        assertEquals("{\"title\":\"root\"}", write(root, 0));
+        assertEquals("{\"title\":\"root\",\"a\":{\"title\":\"a\"},\"c\":{\"title\":\"c\"}}", write(root, 1));
+        assertEquals("{\"title\":\"root\",\"a\":{\"title\":\"a\",\"b\":{\"title\":\"b\"}},\"c\":{\"title\":\"c\"}}",
+                write(root, -1));
+        for (int levels = -1; levels <= 2; levels++) {
+            assertSameAsCreator(root, levels);
+        }
+    }
+
+    @Test
+    public void testChildReplacesProperty() throws Exception {
+        final Map<String, Object> props = new LinkedHashMap<String, Object>();
+        props.put("before", "x");
+        props.put("child", "property value");
+        props.put("after", "y");
+        final Resource root = resource(null, "root", props);
+        resource(root, "child");
+
+        // the child is written after the properties
+        assertEquals("{\"before\":\"x\",\"after\":\"y\",\"child\":{\"title\":\"child\"}}", write(root, 1));
+        assertEquals(JsonObjectCreator.create(root, 1).get("child").toString(),
+                new JSONObject(write(root, 1)).get("child").toString());
+
+        // without the children the property is written
+        assertEquals("{\"before\":\"x\",\"child\":\"property value\",\"after\":\"y\"}", write(root, 0));
+    }
+}
@@ -19,6 +19,8 @@ package org.apache.sling.engine.impl;
 import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
 
+import org.apache.sling.engine.impl.metrics.LatencyHistogram;
+import org.apache.sling.engine.impl.metrics.RequestMetrics;
 import org.apache.sling.engine.impl.request.RequestData;
 import org.apache.sling.engine.jmx.RequestProcessorMBean;
 
@@ -59,8 +61,16 @@ class RequestProcessorMBeanImpl extends StandardMBean implements RequestProcesso
 
     private volatile double peakRecursionDepthSumX2;
 
+    // latency histograms, recorded by the request processor
+    private final RequestMetrics metrics;
+
     RequestProcessorMBeanImpl() throws NotCompliantMBeanException {
+        this(new RequestMetrics());
+    }
+
+    RequestProcessorMBeanImpl(final RequestMetrics metrics) throws NotCompliantMBeanException {
         super(RequestProcessorMBean.class);
+        this.metrics = metrics;
         resetStatistics();
     }
 
@@ -132,7 +142,33 @@ class RequestProcessorMBeanImpl extends StandardMBean implements RequestProcesso
         }
     }
 
+    public double getP50RequestDurationMsec() {
+        return getPercentileMsec(50);
+    }
+
+    public double getP95RequestDurationMsec() {
+        return getPercentileMsec(95);
+    }
+
+    public double getP99RequestDurationMsec() {
+        return getPercentileMsec(99);
+    }
+
+    public double getP999RequestDurationMsec() {
+        return getPercentileMsec(99.9);
+    }
+
+    private double getPercentileMsec(final double percentile) {
+        final LatencyHistogram.Snapshot snapshot = this.metrics.getTotal().snapshot();
+        return snapshot.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    public String[] getRequestDurationPercentiles() {
+        return this.metrics.getPercentiles();
+    }
+
     public synchronized void resetStatistics() {
+        this.metrics.reset();
         this.durationMsecMin = Long.MAX_VALUE;
         this.durationMsecMax = 0;
         this.servletCallCountMin = Integer.MAX_VALUE;
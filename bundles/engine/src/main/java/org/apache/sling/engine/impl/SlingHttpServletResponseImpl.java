@@ -38,6 +38,9 @@ public class SlingHttpServletResponseImpl extends HttpServletResponseWrapper imp
 
     private final boolean firstSlingResponse;
 
+    /** The status set on this response, tracked for the request metrics */
+    private int status = SC_OK;
+
     public SlingHttpServletResponseImpl(RequestData requestData,
             HttpServletResponse response) {
         super(response);
@@ -115,12 +118,56 @@ public class SlingHttpServletResponseImpl extends HttpServletResponseWrapper imp
     @Override
     public void sendError(int status, String message) throws IOException {
         checkCommitted();
+        this.status = status;
 
         SlingRequestProcessorImpl eh = getRequestData().getSlingRequestProcessor();
         eh.handleError(status, message, requestData.getSlingRequest(), this);
     }
 
 
+    // ---------- Status tracking ---------------------------------------------
+
+    @Override
+    public void setStatus(int sc) {
+        this.status = sc;
+        super.setStatus(sc);
+    }
+
+    @Override
+    @Deprecated
+    public void setStatus(int sc, String sm) {
+        this.status = sc;
+        super.setStatus(sc, sm);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        this.status = SC_FOUND;
+        super.sendRedirect(location);
+    }
+
+    @Override
+    public void reset() {
+        this.status = SC_OK;
+        super.reset();
+    }
+
+    /**
+     * Records a status which is set on the response by other means than this
+     * response, like the error handling.
+     */
+    void recordStatus(int sc) {
+        this.status = sc;
+    }
+
+    /**
+     * Returns the last status set through this response, which defaults to
+     * {@code SC_OK}.
+     */
+    public int getStatus() {
+        return this.status;
+    }
+
     // ---------- Internal helper ---------------------------------------------
 
     @Override
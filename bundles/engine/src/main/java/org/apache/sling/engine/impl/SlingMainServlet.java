@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.regex.Pattern;
 
 import javax.servlet.GenericServlet;
+import javax.servlet.Servlet;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
@@ -55,6 +56,7 @@ import org.apache.sling.engine.SlingRequestProcessor;
 import org.apache.sling.engine.impl.filter.ServletFilterManager;
 import org.apache.sling.engine.impl.helper.RequestListenerManager;
 import org.apache.sling.engine.impl.helper.SlingServletContext;
+import org.apache.sling.engine.impl.metrics.RequestMetricsServlet;
 import org.apache.sling.engine.impl.request.RequestData;
 import org.apache.sling.engine.impl.request.RequestHistoryConsolePlugin;
 import org.apache.sling.engine.jmx.RequestProcessorMBean;
@@ -89,6 +91,9 @@ public class SlingMainServlet extends GenericServlet {
     @Property(intValue=RequestData.DEFAULT_MAX_INCLUSION_COUNTER)
     public static final String PROP_MAX_INCLUSION_COUNTER = "sling.max.inclusions";
 
+    @Property(intValue=RequestData.DEFAULT_TRACKER_SAMPLING_RATE)
+    public static final String PROP_TRACKER_SAMPLING_RATE = "sling.progress.tracker.sampling";
+
     public static final boolean DEFAULT_ALLOW_TRACE = false;
 
     @Property(boolValue=DEFAULT_ALLOW_TRACE)
@@ -105,11 +110,19 @@ public class SlingMainServlet extends GenericServlet {
     @Property(unbounded=PropertyUnbounded.ARRAY)
     private static final String PROP_TRACK_PATTERNS_REQUESTS = "sling.store.pattern.requests";
 
+    @Property(intValue = RequestHistoryConsolePlugin.DEFAULT_SAMPLING_RATE)
+    private static final String PROP_RECORD_REQUESTS_SAMPLING = "sling.record.requests.sampling";
+
     private static final String PROP_DEFAULT_PARAMETER_ENCODING = "sling.default.parameter.encoding";
 
     @Property
     private static final String PROP_SERVER_INFO = "sling.serverinfo";
 
+    private static final String DEFAULT_METRICS_PATH = "";
+
+    @Property(value = DEFAULT_METRICS_PATH)
+    private static final String PROP_METRICS_PATH = "sling.metrics.path";
+
 
     @Property(value = {"X-Content-Type-Options=nosniff"},
             label = "Additional response headers",
@@ -179,6 +192,8 @@ public class SlingMainServlet extends GenericServlet {
 
     private ServiceRegistration requestProcessorMBeanRegistration;
 
+    private ServiceRegistration metricsServletRegistration;
+
     private String configuredServerInfo;
 
     // ---------- Servlet API -------------------------------------------------
@@ -382,6 +397,9 @@ public class SlingMainServlet extends GenericServlet {
         RequestData.setMaxCallCounter(PropertiesUtil.toInteger(
             componentConfig.get(PROP_MAX_CALL_COUNTER),
             RequestData.DEFAULT_MAX_CALL_COUNTER));
+        RequestData.setTrackerSamplingRate(PropertiesUtil.toInteger(
+            componentConfig.get(PROP_TRACKER_SAMPLING_RATE),
+            RequestData.DEFAULT_TRACKER_SAMPLING_RATE));
         RequestData.setSlingMainServlet(this);
 
         // configure default request parameter encoding
@@ -438,7 +456,10 @@ public class SlingMainServlet extends GenericServlet {
                     compiledPatterns.add(Pattern.compile(pattern));
                 }
             }
-            RequestHistoryConsolePlugin.initPlugin(bundleContext, maxRequests, compiledPatterns);
+            int samplingRate = PropertiesUtil.toInteger(
+                componentConfig.get(PROP_RECORD_REQUESTS_SAMPLING),
+                RequestHistoryConsolePlugin.DEFAULT_SAMPLING_RATE);
+            RequestHistoryConsolePlugin.initPlugin(bundleContext, maxRequests, compiledPatterns, samplingRate);
         } catch (Throwable t) {
             log.debug(
                 "Unable to register web console request recorder plugin.", t);
@@ -448,13 +469,24 @@ public class SlingMainServlet extends GenericServlet {
             Dictionary<String, String> mbeanProps = new Hashtable<String, String>();
             mbeanProps.put("jmx.objectname", "org.apache.sling:type=engine,service=RequestProcessor");
 
-            RequestProcessorMBeanImpl mbean = new RequestProcessorMBeanImpl();
+            RequestProcessorMBeanImpl mbean = new RequestProcessorMBeanImpl(requestProcessor.getMetrics());
             requestProcessorMBeanRegistration = bundleContext.registerService(RequestProcessorMBean.class.getName(), mbean, mbeanProps);
             requestProcessor.setMBean(mbean);
         } catch (Throwable t) {
             log.debug("Unable to register mbean");
         }
 
+        // provide the request metrics in text format
+        final String metricsPath = PropertiesUtil.toString(componentConfig.get(PROP_METRICS_PATH), DEFAULT_METRICS_PATH);
+        if (metricsPath.trim().length() > 0) {
+            Hashtable<String, Object> metricsProps = new Hashtable<String, Object>();
+            metricsProps.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+            metricsProps.put(Constants.SERVICE_DESCRIPTION, "Sling Request Metrics");
+            metricsProps.put("sling.servlet.paths", metricsPath.trim());
+            metricsServletRegistration = bundleContext.registerService(Servlet.class.getName(),
+                new RequestMetricsServlet(requestProcessor.getMetrics()), metricsProps);
+        }
+
         // provide the SlingRequestProcessor service
         Hashtable<String, String> srpProps = new Hashtable<String, String>();
         srpProps.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
@@ -481,6 +513,11 @@ public class SlingMainServlet extends GenericServlet {
             requestProcessorMBeanRegistration = null;
         }
 
+        if (metricsServletRegistration != null) {
+            metricsServletRegistration.unregister();
+            metricsServletRegistration = null;
+        }
+
         // unregister request recorder plugin
         try {
             RequestHistoryConsolePlugin.destroyPlugin();
@@ -53,6 +53,7 @@ import org.apache.sling.engine.impl.filter.RequestSlingFilterChain;
 import org.apache.sling.engine.impl.filter.ServletFilterManager;
 import org.apache.sling.engine.impl.filter.ServletFilterManager.FilterChainType;
 import org.apache.sling.engine.impl.filter.SlingComponentFilterChain;
+import org.apache.sling.engine.impl.metrics.RequestMetrics;
 import org.apache.sling.engine.impl.parameters.ParameterSupport;
 import org.apache.sling.engine.impl.request.ContentData;
 import org.apache.sling.engine.impl.request.RequestData;
@@ -76,6 +77,9 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
 
     private RequestProcessorMBeanImpl mbean;
 
+    /** Latency histograms of the processed requests */
+    private final RequestMetrics metrics = new RequestMetrics();
+
     // ---------- helper setters
 
     void setServerInfo(final String serverInfo) {
@@ -110,6 +114,10 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
         this.mbean = mbean;
     }
 
+    RequestMetrics getMetrics() {
+        return this.metrics;
+    }
+
     /**
      * This method is directly called by the Sling main servlet.
      */
@@ -123,9 +131,6 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
         final SlingHttpServletRequest request = requestData.getSlingRequest();
         final SlingHttpServletResponse response = requestData.getSlingResponse();
 
-        // record the request for the web console display
-        RequestHistoryConsolePlugin.recordRequest(request);
-
         try {
             final ServletResolver sr = this.servletResolver;
 
@@ -140,7 +145,7 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
             Resource resource = requestData.initResource(resourceResolver);
             requestData.initServlet(resource, sr);
 
-            FilterHandle[] filters = filterManager.getFilters(FilterChainType.REQUEST);
+            FilterHandle[] filters = filterManager.getFilters(FilterChainType.REQUEST, request);
             if (filters != null) {
                 FilterChain processor = new RequestSlingFilterChain(this,
                     filters);
@@ -206,6 +211,7 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
             final String errorMessage = ue.getMessage()
                 + " service missing, cannot service requests";
             log.error("{} , sending status {}", errorMessage, status);
+            recordStatus(request, status);
             servletResponse.sendError(status, errorMessage);
 
         } catch (IOException ioe) {
@@ -229,9 +235,36 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
             if (mbean != null) {
                 mbean.addRequestData(requestData);
             }
+            recordRequest(requestData,
+                servletRequest.getAttribute(ParameterSupport.MARKER_IS_SERVICE_PROCESSING) == null);
         }
     }
 
+    /**
+     * Records the processing time of the request in the latency histograms
+     * and the request history of the web console. Requests processed on
+     * behalf of the {@link SlingRequestProcessor} service are not recorded
+     * in the latency histograms, as they are part of another request.
+     */
+    private void recordRequest(final RequestData requestData, final boolean recordMetrics) {
+        final ContentData contentData = requestData.getContentData();
+        final String resourceType = (contentData != null && contentData.getResource() != null)
+                ? contentData.getResource().getResourceType()
+                : null;
+        final SlingHttpServletResponse response = requestData.getSlingResponse();
+        final int status = (response instanceof SlingHttpServletResponseImpl)
+                ? ((SlingHttpServletResponseImpl) response).getStatus()
+                : HttpServletResponse.SC_OK;
+        final long durationNanos = requestData.getElapsedTimeNanos();
+        if (recordMetrics) {
+            this.metrics.record(requestData.getSlingRequest().getMethod(), status, resourceType,
+                durationNanos);
+        }
+
+        // record the request for the web console display
+        RequestHistoryConsolePlugin.recordRequest(requestData.getSlingRequest(), status, durationNanos);
+    }
+
     // ---------- SlingRequestProcessor interface
 
     /**
@@ -273,7 +306,7 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
             final FilterChainType filterChainType) throws IOException,
             ServletException {
 
-        FilterHandle filters[] = filterManager.getFilters(filterChainType);
+        FilterHandle filters[] = filterManager.getFilters(filterChainType, request);
         if (filters != null) {
 
             FilterChain processor = new SlingComponentFilterChain(filters);
@@ -331,11 +364,14 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
             final SlingHttpServletRequest request,
             SlingHttpServletResponse response) throws IOException {
 
+        // the error handler may set the status on another response
+        recordStatus(request, status);
+
         // wrap the response ensuring getWriter will fall back to wrapping
         // the response output stream if reset does not reset this
         response = new ErrorResponseWrapper(response);
 
-        FilterHandle[] filters = filterManager.getFilters(FilterChainType.ERROR);
+        FilterHandle[] filters = filterManager.getFilters(FilterChainType.ERROR, request);
         if (filters != null && filters.length > 0) {
             FilterChain processor = new AbstractSlingFilterChain(filters) {
 
@@ -358,6 +394,17 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
         }
     }
 
+    /**
+     * Records the status of the response of the request for the request
+     * metrics.
+     */
+    private static void recordStatus(final SlingHttpServletRequest request, final int status) {
+        final RequestData requestData = RequestData.getRequestData(request);
+        if (requestData != null && requestData.getSlingResponse() instanceof SlingHttpServletResponseImpl) {
+            ((SlingHttpServletResponseImpl) requestData.getSlingResponse()).recordStatus(status);
+        }
+    }
+
     // just rethrow the exception as explained in the class comment
     private void handleError(final Throwable throwable,
             final SlingHttpServletRequest request,
@@ -367,7 +414,7 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
         // the response output stream if reset does not reset this
         response = new ErrorResponseWrapper(response);
 
-        FilterHandle[] filters = filterManager.getFilters(FilterChainType.ERROR);
+        FilterHandle[] filters = filterManager.getFilters(FilterChainType.ERROR, request);
         if (filters != null && filters.length > 0) {
             FilterChain processor = new AbstractSlingFilterChain(filters) {
 
@@ -19,6 +19,7 @@
 package org.apache.sling.engine.impl.filter;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -48,7 +49,7 @@ public abstract class AbstractSlingFilterChain implements FilterChain {
             throws ServletException, IOException {
 
         final int filterIdx = ++this.current;
-        final long start = System.currentTimeMillis();
+        final long start = System.nanoTime();
 
         // the previous filter may have wrapped non-Sling request and response
         // wrappers (e.g. WebCastellum does this), so we have to make
@@ -60,25 +61,18 @@ public abstract class AbstractSlingFilterChain implements FilterChain {
 
             if (this.current < this.filters.length) {
 
-                // continue filtering with the next filter
+                // continue filtering with the next filter, the filters
+                // have already been selected for the request path
                 FilterHandle filter = this.filters[this.current];
-                
-                if (filter.select(slingRequest)) {
-                    trackFilter(slingRequest, filter);
-                    filter.getFilter().doFilter(slingRequest, slingResponse, this);
-                } else {
-                    if (this.current == this.filters.length-1) {
-                        this.render(slingRequest, slingResponse);
-                    } else {
-                       doFilter(slingRequest, slingResponse);
-                    }
-                }
+                trackFilter(slingRequest, filter);
+                filter.getFilter().doFilter(slingRequest, slingResponse, this);
+
             } else {
                 this.render(slingRequest, slingResponse);
             }
 
         } finally {
-            times[filterIdx] = System.currentTimeMillis() - start;
+            times[filterIdx] = System.nanoTime() - start;
             if (filterIdx == 0) {
                 consolidateFilterTimings(slingRequest);
             }
@@ -106,16 +100,23 @@ public abstract class AbstractSlingFilterChain implements FilterChain {
             RequestData data = RequestData.getRequestData(request);
             RequestProgressTracker tracker = (data != null) ? data.getRequestProgressTracker() : null;
 
-            for (int i = filters.length - 1; i > 0; i--) {
-                filters[i].trackTime(times[i] - times[i + 1]);
+            for (int i = filters.length - 1; i >= 0; i--) {
+                // a filter not calling the chain leaves the inner time 0
+                final long own = times[i] - times[i + 1];
+                filters[i].trackTime(own);
                 if (tracker != null) {
                     tracker.log("Filter timing: filter={0}, inner={1}, total={2}, outer={3}",
-                        filters[i].getFilter().getClass().getName(), times[i + 1], times[i], (times[i] - times[i + 1]));
+                        filters[i].getFilter().getClass().getName(), toMillis(times[i + 1]), toMillis(times[i]),
+                        toMillis(own));
                 }
             }
         }
     }
 
+    private static long toMillis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
     private SlingHttpServletRequest toSlingRequest(ServletRequest request) {
         if (request instanceof SlingHttpServletRequest) {
             return (SlingHttpServletRequest) request;
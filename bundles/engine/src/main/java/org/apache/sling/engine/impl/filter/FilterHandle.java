@@ -18,6 +18,7 @@
  */
 package org.apache.sling.engine.impl.filter;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
@@ -73,35 +74,58 @@ public class FilterHandle implements Comparable<FilterHandle> {
     }
     
     boolean select(SlingHttpServletRequest slingHttpServletRequest) {
-        boolean select = true;        
-        if (regex != null) {
-            String uri = slingHttpServletRequest.getPathInfo();
-            // assume root if uri is null
-            if (uri == null)
-            {
-                uri = "/";
-            }
-            select = this.regex.matcher(uri).matches();
-        }        
-        return select;
+        return select(getPath(slingHttpServletRequest));
+    }
+
+    boolean select(String path) {
+        return regex == null || this.regex.matcher(path).matches();
+    }
+
+    boolean hasPattern() {
+        return regex != null;
+    }
+
+    /**
+     * Returns the path the filter patterns are matched against.
+     */
+    static String getPath(SlingHttpServletRequest slingHttpServletRequest) {
+        String uri = slingHttpServletRequest.getPathInfo();
+        // assume root if uri is null
+        if (uri == null)
+        {
+            uri = "/";
+        }
+        return uri;
     }
 
     public long getCalls() {
         return calls.get();
     }
 
+    /**
+     * Returns the time spent in the filter itself, excluding the rest of
+     * the chain, in milliseconds.
+     */
     public long getTime() {
-        return time.get();
+        return TimeUnit.NANOSECONDS.toMillis(time.get());
     }
 
+    /**
+     * Returns the average time spent in the filter itself in microseconds
+     * or -1 if the filter has not been called.
+     */
     public long getTimePerCall() {
-        return (getCalls() > 0) ? (1000L * getTime() / getCalls()) : -1;
+        final long count = getCalls();
+        return (count > 0) ? (TimeUnit.NANOSECONDS.toMicros(time.get()) / count) : -1;
     }
 
     void track() {
         calls.incrementAndGet();
     }
 
+    /**
+     * @param time The time spent in the filter in nanoseconds
+     */
     void trackTime(long time) {
         this.time.addAndGet(time);
     }
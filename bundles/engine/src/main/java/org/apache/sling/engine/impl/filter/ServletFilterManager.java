@@ -22,6 +22,7 @@ import javax.servlet.Filter;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 
+import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.commons.osgi.OsgiUtil;
 import org.apache.sling.engine.EngineConstants;
 import org.apache.sling.engine.impl.helper.SlingFilterConfig;
@@ -123,6 +124,14 @@ public class ServletFilterManager extends ServiceTracker {
         return getFilterChain(chain).getFilters();
     }
 
+    /**
+     * Returns the filters of the chain which apply to the path of the
+     * request.
+     */
+    public FilterHandle[] getFilters(final FilterChainType chain, final SlingHttpServletRequest request) {
+        return getFilterChain(chain).getFilters(request);
+    }
+
     @Override
     public Object addingService(ServiceReference reference) {
         Object service = super.addingService(reference);
@@ -18,26 +18,41 @@
  */
 package org.apache.sling.engine.impl.filter;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 import javax.servlet.Filter;
 
+import org.apache.sling.api.SlingHttpServletRequest;
+
 /**
  * The <code>SlingFilterChainHelper</code> class is used by Sling to
  * support building lists of <code>Filter</code>s. To ensure filter
  * ordering, each filter is optionally registered with an ordering index. If
  * none is provided the default ordering index is Integer.MAX_VALUE to append
  * the filter to the end of the list.
+ * <p>
+ * The filters applying to a request path are selected once and the
+ * resulting chain is cached for further requests to the same path. The
+ * chains of the least recently requested paths are evicted once
+ * {@link #MAX_CACHED_CHAINS} paths are cached, and the cache is dropped
+ * whenever a filter is added or removed.
  */
 public class SlingFilterChainHelper {
 
     private static final FilterHandle[] EMPTY_FILTER_ARRAY = new FilterHandle[0];
 
+    /** The maximum number of request paths for which chains are cached */
+    static final int MAX_CACHED_CHAINS = 1000;
+
     private SortedSet<FilterHandle> filterList;
 
-    private FilterHandle[] filters = EMPTY_FILTER_ARRAY;
+    private volatile Chains chains = new Chains(EMPTY_FILTER_ARRAY);
 
     SlingFilterChainHelper() {
     }
@@ -48,7 +63,7 @@ public class SlingFilterChainHelper {
             filterList = new TreeSet<FilterHandle>();
         }
         filterList.add(new FilterHandle(filter, pattern, filterId, order, orderSource));
-        filters = getFiltersInternal();
+        chains = new Chains(getFiltersInternal());
         return filter;
     }
 
@@ -60,7 +75,7 @@ public class SlingFilterChainHelper {
                     || (test.getFilterId() != null && test.getFilterId().equals(
                         filterId))) {
                     fi.remove();
-                    filters = getFiltersInternal();
+                    chains = new Chains(getFiltersInternal());
                     return true;
                 }
             }
@@ -76,7 +91,16 @@ public class SlingFilterChainHelper {
      * This method doesn't need to be synced as it is called from synced methods.
      */
     public FilterHandle[] getFilters() {
-        return filters;
+        return chains.filters;
+    }
+
+    /**
+     * Returns the <code>Filter</code>s selected for the path of the request.
+     * This is the same as calling {@link FilterHandle#select} on each of the
+     * {@link #getFilters() filters} but the result is cached per path.
+     */
+    public FilterHandle[] getFilters(final SlingHttpServletRequest request) {
+        return chains.select(request);
     }
 
     private FilterHandle[] getFiltersInternal() {
@@ -85,4 +109,62 @@ public class SlingFilterChainHelper {
         }
         return filterList.toArray(new FilterHandle[filterList.size()]);
     }
-}
\ No newline at end of file
+
+    /**
+     * The immutable list of filters together with the chains selected from
+     * it, replaced as a whole when the filters change.
+     */
+    private static final class Chains {
+
+        private final FilterHandle[] filters;
+
+        /** Whether any filter is restricted to a path pattern */
+        private final boolean hasPatterns;
+
+        /** The chains by path, in access order for evicting the eldest */
+        private final Map<String, FilterHandle[]> selected;
+
+        Chains(final FilterHandle[] filters) {
+            this.filters = filters;
+            boolean patterns = false;
+            for (final FilterHandle filter : filters) {
+                patterns |= filter.hasPattern();
+            }
+            this.hasPatterns = patterns;
+            this.selected = patterns ? new LinkedHashMap<String, FilterHandle[]>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, FilterHandle[]> eldest) {
+                    return size() > MAX_CACHED_CHAINS;
+                }
+            } : null;
+        }
+
+        FilterHandle[] select(final SlingHttpServletRequest request) {
+            if (!this.hasPatterns) {
+                return this.filters;
+            }
+
+            final String path = FilterHandle.getPath(request);
+            FilterHandle[] chain;
+            synchronized (this.selected) {
+                chain = this.selected.get(path);
+            }
+            if (chain == null) {
+                final List<FilterHandle> list = new ArrayList<FilterHandle>(this.filters.length);
+                for (final FilterHandle filter : this.filters) {
+                    if (filter.select(path)) {
+                        list.add(filter);
+                    }
+                }
+                chain = list.toArray(new FilterHandle[list.size()]);
+
+                synchronized (this.selected) {
+                    this.selected.put(path, chain);
+                }
+            }
+            return chain;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>AsyncLogFileWriter</code> appends log lines to a file from a
+ * background thread.
+ * <p>
+ * Request threads hand the lines to a bounded multi producer, single
+ * consumer ring buffer without taking a lock. The writer thread drains the
+ * ring into a batch which is written to the file with a
+ * <code>FileChannel</code> once it reaches {@link #BATCH_SIZE} characters
+ * or once its first line has been waiting for {@link #FLUSH_INTERVAL}. If the
+ * ring is full, the line is dropped and counted instead of blocking the
+ * request.
+ * <p>
+ * If a maximum file size is configured, the file is rotated before it grows
+ * beyond that size: the current file is renamed to <i>name</i>.1, existing
+ * backups are shifted up and at most {@link #MAX_BACKUPS} backups are kept.
+ */
+class AsyncLogFileWriter {
+
+    /** The default number of lines kept in the ring buffer, a power of two. */
+    static final int DEFAULT_CAPACITY = 16384;
+
+    /** The number of characters collected before they are written. */
+    static final int BATCH_SIZE = 32 * 1024;
+
+    /** The maximum time in milliseconds lines are kept before written. */
+    static final long FLUSH_INTERVAL = 1000;
+
+    /** The number of rotated files kept. */
+    static final int MAX_BACKUPS = 5;
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator", "\n");
+
+    /** default log */
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final File file;
+
+    private final long maxSize;
+
+    private final Charset charset = Charset.defaultCharset();
+
+    private final AtomicReferenceArray<String> ring;
+
+    private final int mask;
+
+    /** The next slot claimed by a producer */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** The next slot read by the writer thread, only updated by it */
+    private final AtomicLong head = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final Thread writerThread;
+
+    private volatile boolean running = true;
+
+    // the following fields are only accessed by the writer thread
+
+    private final StringBuilder batch = new StringBuilder(BATCH_SIZE + 1024);
+
+    private FileChannel channel;
+
+    private long size;
+
+    private int batchLines;
+
+    /** The time the first line of the batch has been taken from the ring */
+    private long batchStart;
+
+    private long lastDropped;
+
+    AsyncLogFileWriter(final File file, final long maxSize) throws IOException {
+        this(file, maxSize, DEFAULT_CAPACITY);
+    }
+
+    AsyncLogFileWriter(final File file, final long maxSize, final int capacity) throws IOException {
+        this.file = file;
+        this.maxSize = maxSize;
+        final int ringSize = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        this.ring = new AtomicReferenceArray<String>(ringSize);
+        this.mask = ringSize - 1;
+
+        this.openFile();
+
+        this.writerThread = new Thread(new Runnable() {
+            public void run() {
+                AsyncLogFileWriter.this.runWriter();
+            }
+        }, "Sling Request Log Writer " + file.getName());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Hands the line to the writer thread.
+     *
+     * @param line The line to write without line separator
+     * @return <code>true</code> if the line has been queued,
+     *         <code>false</code> if it has been dropped because the ring is
+     *         full or the writer has been closed.
+     */
+    boolean write(final String line) {
+        if (!this.running) {
+            this.dropped.incrementAndGet();
+            return false;
+        }
+
+        final int capacity = this.mask + 1;
+        long slot;
+        do {
+            slot = this.tail.get();
+            if (slot - this.head.get() >= capacity) {
+                this.dropped.incrementAndGet();
+                LockSupport.unpark(this.writerThread);
+                return false;
+            }
+        } while (!this.tail.compareAndSet(slot, slot + 1));
+
+        this.ring.lazySet((int) (slot & this.mask), line);
+
+        // wake up the writer early if the ring is filling up
+        if (slot - this.head.get() == capacity / 2) {
+            LockSupport.unpark(this.writerThread);
+        }
+        return true;
+    }
+
+    /**
+     * Stops the writer thread after writing all queued lines and closes the
+     * file.
+     */
+    void close() {
+        this.running = false;
+        LockSupport.unpark(this.writerThread);
+        try {
+            this.writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    File getFile() {
+        return this.file;
+    }
+
+    /** Returns the number of lines written to the file. */
+    long getWrittenCount() {
+        return this.written.get();
+    }
+
+    /** Returns the number of lines dropped because the ring was full. */
+    long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    /** Returns the number of lines which could not be written to the file. */
+    long getFailedCount() {
+        return this.failed.get();
+    }
+
+    // ---------- writer thread ------------------------------------------------
+
+    private void runWriter() {
+        final long flushInterval = TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL);
+        try {
+            while (this.running) {
+                this.drain();
+                if (this.batch.length() == 0) {
+                    this.reportDropped();
+                    LockSupport.parkNanos(this, flushInterval);
+                } else {
+                    final long wait = flushInterval - (System.nanoTime() - this.batchStart);
+                    if (this.batch.length() >= BATCH_SIZE || wait <= 0) {
+                        this.writeBatch();
+                    } else {
+                        LockSupport.parkNanos(this, wait);
+                    }
+                }
+            }
+
+            // write the remaining lines
+            this.drain();
+            while (this.batchLines > 0) {
+                this.writeBatch();
+                this.drain();
+            }
+            this.reportDropped();
+        } finally {
+            this.closeFile();
+        }
+    }
+
+    /**
+     * Moves the queued lines to the batch until the batch is full.
+     */
+    private void drain() {
+        long next = this.head.get();
+        while (this.batch.length() < BATCH_SIZE) {
+            final int index = (int) (next & this.mask);
+            final String line = this.ring.get(index);
+            if (line == null) {
+                // empty or claimed but not yet published
+                break;
+            }
+            this.ring.lazySet(index, null);
+            next++;
+            this.head.lazySet(next);
+            if (this.batchLines == 0) {
+                this.batchStart = System.nanoTime();
+            }
+            this.batch.append(line).append(LINE_SEPARATOR);
+            this.batchLines++;
+        }
+    }
+
+    private void writeBatch() {
+        this.reportDropped();
+        if (this.batchLines == 0) {
+            return;
+        }
+
+        final int lines = this.batchLines;
+        try {
+            final ByteBuffer buffer = this.charset.encode(CharBuffer.wrap(this.batch));
+            if (this.maxSize > 0 && this.size > 0 && this.size + buffer.remaining() > this.maxSize) {
+                this.rotate();
+            }
+            if (this.channel == null) {
+                this.openFile();
+            }
+            while (buffer.hasRemaining()) {
+                this.size += this.channel.write(buffer);
+            }
+            this.written.addAndGet(lines);
+        } catch (final IOException ioe) {
+            this.failed.addAndGet(lines);
+            log.error("Failed writing " + lines + " lines to request log " + this.file, ioe);
+            this.closeFile();
+        } finally {
+            this.batch.setLength(0);
+            this.batchLines = 0;
+        }
+    }
+
+    private void reportDropped() {
+        final long current = this.dropped.get();
+        if (current != this.lastDropped) {
+            log.warn("Dropped {} lines for request log {} because the writer could not keep up",
+                current - this.lastDropped, this.file);
+            this.lastDropped = current;
+        }
+    }
+
+    private void rotate() throws IOException {
+        this.closeFile();
+
+        final String name = this.file.getAbsolutePath();
+        final File oldest = new File(name + "." + MAX_BACKUPS);
+        if (oldest.exists() && !oldest.delete()) {
+            log.warn("Cannot remove rotated request log {}", oldest);
+        }
+        for (int i = MAX_BACKUPS - 1; i > 0; i--) {
+            final File backup = new File(name + "." + i);
+            if (backup.exists()) {
+                backup.renameTo(new File(name + "." + (i + 1)));
+            }
+        }
+        if (!this.file.renameTo(new File(name + ".1"))) {
+            log.warn("Cannot rotate request log {}, continuing to append", this.file);
+        }
+
+        this.openFile();
+    }
+
+    private void openFile() throws IOException {
+        final File parent = this.file.getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        this.channel = new FileOutputStream(this.file, true).getChannel();
+        this.size = this.channel.size();
+    }
+
+    private void closeFile() {
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (final IOException ioe) {
+                // don't care
+            }
+            this.channel = null;
+        }
+    }
+}
@@ -55,6 +55,19 @@ class CustomLogFormat {
      */
     Parameter[] logParameters;
 
+    /**
+     * The maximum initial capacity of the buffer used to build log messages.
+     * Long log messages do not raise the capacity beyond this size.
+     */
+    private static final int MAX_BUFFER_SIZE = 4096;
+
+    /**
+     * The initial capacity of the buffer used to build log messages, which
+     * is raised to the length of longer messages to save growing the buffer
+     * for each request.
+     */
+    private volatile int bufferSize = 256;
+
     /**
      * Creates a new instance from of this class parsing the log format pattern.
      *
@@ -82,10 +95,13 @@ class CustomLogFormat {
      */
     String format(RequestLoggerRequest request, RequestLoggerResponse response) {
         if (this.logParameters != null) {
-            StringBuilder buf = new StringBuilder();
+            StringBuilder buf = new StringBuilder(this.bufferSize);
             for (int i = 0; i < this.logParameters.length; i++) {
                 this.logParameters[i].print(buf, request, response);
             }
+            if (buf.length() > this.bufferSize && buf.length() <= MAX_BUFFER_SIZE) {
+                this.bufferSize = buf.length();
+            }
             return buf.toString();
         }
 
@@ -606,24 +622,8 @@ class CustomLogFormat {
 
     static class TimeParameter extends BaseParameter {
 
-        /** date format - see access logging in service() */
-        private static final SimpleDateFormat accessLogFmt = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss ", Locale.US);
-
-        /** time format for GMT offset - see access logging in service() */
-        private static final DecimalFormat dfmt = new DecimalFormat("+0000;-0000");
-
-        /** the timezone for the timezone offset calculation */
-        private static final Calendar calendar = Calendar.getInstance();
-
-        /** last zone offset (cached by hours) */
-        private static String lastZoneOffset = "";
-
-        private static long lastZoneOffsetHour = -1;
-
-        /** last formatted time (cached in seconds) */
-        private static String lastTimeFormatted = "";
-
-        private static long lastTimeFormattedSeconds = -1;
+        /** The formatter and cached values of this parameter */
+        private final TimeFormatter formatter = new TimeFormatter();
 
         private final boolean requestStart;
 
@@ -639,15 +639,46 @@ class CustomLogFormat {
 
         protected String getValue(RequestLoggerResponse response) {
             long time = this.requestStart ? response.getRequestStart() : response.getRequestEnd();
-            return timeFormatted(time);
+            return this.formatter.format(time);
         }
+    }
 
-        // ---------- internal
-        // -----------------------------------------------------
+    /**
+     * The <code>TimeFormatter</code> formats the time of log messages. The
+     * formatted time is cached per second and read without locking, only
+     * formatting a new second is synchronized as the date formats are not
+     * thread safe.
+     */
+    private static class TimeFormatter {
+
+        /** date format - see access logging in service() */
+        private final SimpleDateFormat accessLogFmt = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss ", Locale.US);
 
-        static String timeFormatted(long time) {
-            if (time / 1000 != lastTimeFormattedSeconds) {
-                lastTimeFormattedSeconds = time / 1000;
+        /** time format for GMT offset - see access logging in service() */
+        private final DecimalFormat dfmt = new DecimalFormat("+0000;-0000");
+
+        /** the timezone for the timezone offset calculation */
+        private final Calendar calendar = Calendar.getInstance();
+
+        /** last zone offset (cached by hours) */
+        private String lastZoneOffset = "";
+
+        private long lastZoneOffsetHour = -1;
+
+        /** last formatted time (cached in seconds) */
+        private volatile FormattedTime lastTime = new FormattedTime(-1, "");
+
+        String format(long time) {
+            final FormattedTime formatted = this.lastTime;
+            if (time / 1000 == formatted.seconds) {
+                return formatted.value;
+            }
+            return this.formatSecond(time);
+        }
+
+        private synchronized String formatSecond(long time) {
+            FormattedTime formatted = this.lastTime;
+            if (time / 1000 != formatted.seconds) {
                 Date date = new Date(time);
                 StringBuilder buf = new StringBuilder(accessLogFmt.format(date));
                 if (time / 3600000 != lastZoneOffsetHour) {
@@ -660,9 +691,25 @@ class CustomLogFormat {
                     lastZoneOffset = dfmt.format(tzOffset);
                 }
                 buf.append(lastZoneOffset);
-                lastTimeFormatted = buf.toString();
+                formatted = new FormattedTime(time / 1000, buf.toString());
+                this.lastTime = formatted;
             }
-            return lastTimeFormatted;
+            return formatted.value;
+        }
+    }
+
+    /**
+     * A formatted time and the second it has been formatted for.
+     */
+    private static final class FormattedTime {
+
+        final long seconds;
+
+        final String value;
+
+        FormattedTime(final long seconds, final String value) {
+            this.seconds = seconds;
+            this.value = value;
         }
     }
 
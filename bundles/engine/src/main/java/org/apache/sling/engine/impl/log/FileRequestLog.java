@@ -19,10 +19,8 @@
 package org.apache.sling.engine.impl.log;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -32,53 +30,69 @@ import org.apache.sling.engine.RequestLog;
  * The <code>FileRequestLog</code> class is an implementation of the
  * {@link RequestLog} interface writing the log messages to an plain file. This
  * class supports sharing the files for different log formatters, in that an
- * internal map of log files is kept and access to the <code>PrintWriter</code>s
- * to write to the file is synchronized.
+ * internal map of log files is kept, each written by a single
+ * {@link AsyncLogFileWriter}.
  * <p>
  * This class has a defined lifecycle to ensure correct operation: To ensure no
  * log files are kept open, the {@link RequestLoggerFilter} object calls
  * {@link #dispose()} when it is being deactivated.
  * <p>
  * Note: Currently, each log file is kept open from the moment the log file is
- * first moment until the {@link #dispose()} method is called. Future
- * development should probably focus on the following issues: (1) Implement an
- * open/write/close cycle when logging a message, (2) close log files when the
- * last user has closed the log, (3) optimize the first strategy by keeping the
- * files open for some time.
+ * first moment until the {@link #dispose()} method is called or the file is
+ * rotated.
  * <p>
- * Note: Currently, the <code>PrintWriter</code> used to log the message is
- * flushed after each log message written. Future development should probably
- * implement better buffering in conjunction with the temporary open/close
- * cycles of the files.
+ * Log messages are not written by the request thread but queued without
+ * locking and written in batches by the background thread of the
+ * {@link AsyncLogFileWriter}. If the writer cannot keep up, messages are
+ * dropped rather than blocking requests.
  */
 class FileRequestLog implements RequestLog {
 
-    // The map of shared open files (actually PrintWriter instances)
-    private static Map<String, PrintWriter> logFiles = new HashMap<String, PrintWriter>();
+    // The map of shared open files
+    private static Map<String, AsyncLogFileWriter> logFiles = new HashMap<String, AsyncLogFileWriter>();
 
-    // Dispose class by closing all open PrintWeiter instances
+    // Dispose class by closing all open writers after writing pending messages
     static void dispose() {
-        for (final Writer w : logFiles.values()) {
-            try {
+        synchronized (logFiles) {
+            for (final AsyncLogFileWriter w : logFiles.values()) {
                 w.close();
-            } catch (IOException ioe) {
-                // don't care
+            }
+            logFiles.clear();
+        }
+    }
+
+    // Prints the statistics of all open writers
+    static void printStatistics(final PrintWriter pw) {
+        synchronized (logFiles) {
+            if (logFiles.isEmpty()) {
+                pw.println("No request log files are open");
+            }
+            for (final AsyncLogFileWriter w : logFiles.values()) {
+                pw.printf("%s: written: %d; dropped: %d; failed: %d%n", w.getFile(), w.getWrittenCount(),
+                    w.getDroppedCount(), w.getFailedCount());
             }
         }
-        logFiles.clear();
     }
 
-    // The PrintWriter used by this instance to write the messages
-    private PrintWriter output;
+    // The writer used by this instance to write the messages
+    private AsyncLogFileWriter output;
 
     FileRequestLog(File logFile) throws IOException {
+        this(logFile, 0);
+    }
+
+    /**
+     * @param logFile The file to write to
+     * @param maxSize The size in bytes after which the file is rotated or
+     *            zero to never rotate the file. If the file is shared with
+     *            another log, the size of the first log is used.
+     */
+    FileRequestLog(File logFile, long maxSize) throws IOException {
         synchronized (logFiles) {
             final String fileName = logFile.getAbsolutePath();
             this.output = logFiles.get(fileName);
             if (this.output == null) {
-                logFile.getParentFile().mkdirs();
-                FileWriter fw = new FileWriter(logFile, true);
-                this.output = new PrintWriter(fw);
+                this.output = new AsyncLogFileWriter(logFile, maxSize);
                 logFiles.put(fileName, this.output);
             }
         }
@@ -91,12 +105,9 @@ class FileRequestLog implements RequestLog {
         // use a local copy of the reference to not encounter NPE when this
         // log happens to be closed asynchronously while at the same time not
         // requiring synchronization
-        PrintWriter writer = this.output;
+        AsyncLogFileWriter writer = this.output;
         if (writer != null) {
-            synchronized (writer) {
-                writer.println(message);
-                writer.flush();
-            }
+            writer.write(message);
         }
     }
 
@@ -92,6 +92,9 @@ public class RequestLogger {
      */
     private Map<ServiceRegistration, RequestLoggerService> services = new HashMap<ServiceRegistration, RequestLoggerService>();
 
+    /** The web console configuration printer for the request log files */
+    private ServiceRegistration printerRegistration;
+
     // ---------- SCR Integration ----------------------------------------------
 
     @Activate
@@ -118,10 +121,16 @@ public class RequestLogger {
             Object accessLogType = props.get(PROP_ACCESS_LOG_OUTPUT_TYPE);
             createRequestLoggerService(services, bundleContext, false, ACCESS_LOG_FORMAT, accessLogName, accessLogType);
         }
+
+        this.printerRegistration = RequestLogConfigPrinter.register(bundleContext);
     }
 
     @Deactivate
     protected void deactivate() {
+        if (this.printerRegistration != null) {
+            this.printerRegistration.unregister();
+            this.printerRegistration = null;
+        }
         for (Entry<ServiceRegistration, RequestLoggerService> entry : services.entrySet()) {
             entry.getKey().unregister();
             entry.getValue().shutdown();
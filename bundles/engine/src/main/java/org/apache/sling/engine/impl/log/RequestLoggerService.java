@@ -30,6 +30,7 @@ import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.PropertyOption;
 import org.apache.felix.scr.annotations.Service;
+import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.engine.RequestLog;
 import org.osgi.framework.BundleContext;
 
@@ -65,6 +66,9 @@ public class RequestLoggerService {
     @Property(boolValue = false)
     public static final String PARAM_ON_ENTRY = "request.log.service.onentry";
 
+    @Property(longValue = 0)
+    public static final String PARAM_MAX_SIZE = "request.log.service.maxsize";
+
     private static final int OUTPUT_TYPE_LOGGER = 0;
 
     private static final int OUTPUT_TYPE_FILE = 1;
@@ -77,6 +81,8 @@ public class RequestLoggerService {
 
     private RequestLog log;
 
+    private long maxSize;
+
     /**
      * Public default constructor for SCR integration
      */
@@ -99,6 +105,9 @@ public class RequestLoggerService {
             this.logFormat = new CustomLogFormat(format.toString());
         }
 
+        // when to rotate log files
+        this.maxSize = PropertiesUtil.toLong(configuration.get(PARAM_MAX_SIZE), 0);
+
         // where to log to
         Object output = configuration.get(PARAM_OUTPUT);
         if (output != null) {
@@ -145,7 +154,7 @@ public class RequestLoggerService {
                         file = file.getAbsoluteFile();
                     }
 
-                    return new FileRequestLog(file);
+                    return new FileRequestLog(file, this.maxSize);
                 } catch (IOException ioe) {
                     // TODO: log
                 }
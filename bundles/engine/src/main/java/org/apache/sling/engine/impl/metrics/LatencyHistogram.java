@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The <code>LatencyHistogram</code> records durations in microseconds into
+ * buckets of logarithmically increasing width, in the style of an HDR
+ * histogram. Each power of two is split into 16 linear sub buckets, so a
+ * reported value is at most about 6% larger than the recorded value.
+ * Durations up to about 19 hours are recorded, longer durations are
+ * recorded as the maximum.
+ * <p>
+ * Recording is lock free. To reduce contention the counters are striped by
+ * thread and only summed up when a {@link #snapshot()} is taken.
+ */
+public class LatencyHistogram {
+
+    /** The number of bits of the value used to select the sub bucket. */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** The largest recorded value. */
+    static final long MAX_VALUE = (1L << 36) - 1;
+
+    /** The number of buckets. */
+    static final int BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+    /** Index of the sum of all values in a stripe. */
+    private static final int SUM = BUCKETS;
+
+    /** Index of the maximum value in a stripe. */
+    private static final int MAX = BUCKETS + 1;
+
+    /** The number of stripes, a power of two. */
+    private static final int STRIPES;
+    static {
+        final int processors = Math.min(4, Runtime.getRuntime().availableProcessors());
+        STRIPES = Integer.highestOneBit(Math.max(1, processors));
+    }
+
+    private final AtomicLongArray[] stripes;
+
+    public LatencyHistogram() {
+        this.stripes = new AtomicLongArray[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new AtomicLongArray(BUCKETS + 2);
+        }
+    }
+
+    /**
+     * Records a duration.
+     * @param micros The duration in microseconds
+     */
+    public void record(final long micros) {
+        final long value = (micros < 0) ? 0 : Math.min(micros, MAX_VALUE);
+        final AtomicLongArray stripe = this.stripes[(int) (Thread.currentThread().getId() & (STRIPES - 1))];
+        stripe.incrementAndGet(bucketIndex(value));
+        stripe.addAndGet(SUM, value);
+        long max;
+        while (value > (max = stripe.get(MAX)) && !stripe.compareAndSet(MAX, max, value)) {
+            // retry
+        }
+    }
+
+    /**
+     * Removes all recorded values. Values recorded concurrently may be kept.
+     */
+    public void reset() {
+        for (final AtomicLongArray stripe : this.stripes) {
+            for (int i = 0; i < stripe.length(); i++) {
+                stripe.set(i, 0);
+            }
+        }
+    }
+
+    /**
+     * Returns a consistent copy of the recorded values which can be queried
+     * without interfering with recording.
+     */
+    public Snapshot snapshot() {
+        final long[] counts = new long[BUCKETS];
+        long sum = 0;
+        long max = 0;
+        for (final AtomicLongArray stripe : this.stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+            sum += stripe.get(SUM);
+            max = Math.max(max, stripe.get(MAX));
+        }
+        return new Snapshot(counts, sum, max);
+    }
+
+    /**
+     * Returns the bucket of the value. Values smaller than twice the number
+     * of sub buckets are counted exactly.
+     */
+    static int bucketIndex(final long value) {
+        final int msb = 63 - Long.numberOfLeadingZeros(value | 1);
+        if (msb < SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        final int shift = msb - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the largest value counted in the bucket.
+     */
+    static long highestValue(final int index) {
+        final int block = index >>> SUB_BUCKET_BITS;
+        if (block <= 1) {
+            return index;
+        }
+        final int shift = block - 1;
+        final long lowest = ((long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1)))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * A copy of the recorded values.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long sum;
+
+        private final long max;
+
+        Snapshot(final long[] counts, final long sum, final long max) {
+            this.counts = counts;
+            long total = 0;
+            for (final long c : counts) {
+                total += c;
+            }
+            this.count = total;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Returns the number of recorded values.
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * Returns the sum of the recorded values in microseconds.
+         */
+        public long getSum() {
+            return this.sum;
+        }
+
+        /**
+         * Returns the largest recorded value in microseconds.
+         */
+        public long getMax() {
+            return this.max;
+        }
+
+        /**
+         * Returns the value below which the given percentage of the recorded
+         * values fall.
+         * @param percentile The percentile, between 0 and 100
+         * @return The value in microseconds or 0 if no value has been recorded.
+         */
+        public long getValueAtPercentile(final double percentile) {
+            if (this.count == 0) {
+                return 0;
+            }
+            final double p = Math.min(100.0, Math.max(0.0, percentile));
+            final long target = Math.max(1, (long) Math.ceil(p / 100.0 * this.count));
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= target) {
+                    return Math.min(highestValue(i), this.max);
+                }
+            }
+            return this.max;
+        }
+    }
+}
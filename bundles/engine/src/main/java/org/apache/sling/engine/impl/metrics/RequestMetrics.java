@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.metrics;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The <code>RequestMetrics</code> keep latency histograms of the processed
+ * requests, one for all requests and one for each request method, response
+ * status and resource type.
+ * <p>
+ * To limit the memory used, at most {@link #MAX_KEYS} histograms are kept
+ * per label, further values are recorded as {@link #OTHER}.
+ */
+public class RequestMetrics {
+
+    /** The name of the metric in the text format. */
+    public static final String METRIC_NAME = "sling_request_duration_seconds";
+
+    /** The maximum number of histograms per label. */
+    static final int MAX_KEYS = 100;
+
+    /** The key used once {@link #MAX_KEYS} is reached. */
+    static final String OTHER = "other";
+
+    /** The label of the histograms per request method. */
+    public static final String LABEL_METHOD = "method";
+
+    /** The label of the histograms per response status. */
+    public static final String LABEL_STATUS = "status";
+
+    /** The label of the histograms per resource type. */
+    public static final String LABEL_RESOURCE_TYPE = "resourceType";
+
+    /** The reported percentiles. */
+    private static final double[] PERCENTILES = {50, 95, 99, 99.9};
+
+    /** The quantile labels of the {@link #PERCENTILES}. */
+    private static final String[] QUANTILES = {"0.5", "0.95", "0.99", "0.999"};
+
+    /** The names of the {@link #PERCENTILES} in the descriptions. */
+    private static final String[] PERCENTILE_NAMES = {"p50", "p95", "p99", "p999"};
+
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    private final ConcurrentMap<String, LatencyHistogram> methods = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    private final ConcurrentMap<String, LatencyHistogram> statuses = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    private final ConcurrentMap<String, LatencyHistogram> resourceTypes = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    /**
+     * Records a processed request.
+     * @param method The request method
+     * @param status The response status
+     * @param resourceType The resource type of the request resource or
+     *            <code>null</code> if not resolved
+     * @param durationNanos The processing time in nanoseconds
+     */
+    public void record(final String method, final int status, final String resourceType,
+            final long durationNanos) {
+        final long micros = durationNanos / 1000;
+        this.total.record(micros);
+        getHistogram(this.methods, method).record(micros);
+        getHistogram(this.statuses, String.valueOf(status)).record(micros);
+        if (resourceType != null) {
+            getHistogram(this.resourceTypes, resourceType).record(micros);
+        }
+    }
+
+    private static LatencyHistogram getHistogram(final ConcurrentMap<String, LatencyHistogram> histograms,
+            final String key) {
+        String name = (key == null) ? OTHER : key;
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            if (histograms.size() >= MAX_KEYS) {
+                name = OTHER;
+                histogram = histograms.get(name);
+            }
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                final LatencyHistogram existing = histograms.putIfAbsent(name, histogram);
+                if (existing != null) {
+                    histogram = existing;
+                }
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns the histogram of all requests.
+     */
+    public LatencyHistogram getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        this.total.reset();
+        this.methods.clear();
+        this.statuses.clear();
+        this.resourceTypes.clear();
+    }
+
+    /**
+     * Returns a line with the count and the percentiles in milliseconds for
+     * each histogram.
+     */
+    public String[] getPercentiles() {
+        final List<String> lines = new ArrayList<String>();
+        lines.add(describe("all", this.total.snapshot()));
+        addPercentiles(lines, LABEL_METHOD, this.methods);
+        addPercentiles(lines, LABEL_STATUS, this.statuses);
+        addPercentiles(lines, LABEL_RESOURCE_TYPE, this.resourceTypes);
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    private static void addPercentiles(final List<String> lines, final String label,
+            final Map<String, LatencyHistogram> histograms) {
+        for (final Map.Entry<String, LatencyHistogram> entry : new TreeMap<String, LatencyHistogram>(histograms).entrySet()) {
+            lines.add(describe(label + "=" + entry.getKey(), entry.getValue().snapshot()));
+        }
+    }
+
+    private static String describe(final String name, final LatencyHistogram.Snapshot snapshot) {
+        final StringBuilder sb = new StringBuilder(name);
+        sb.append(" count=").append(snapshot.getCount());
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            sb.append(' ').append(PERCENTILE_NAMES[i]).append('=');
+            sb.append(snapshot.getValueAtPercentile(PERCENTILES[i]) / 1000.0).append("ms");
+        }
+        sb.append(" max=").append(snapshot.getMax() / 1000.0).append("ms");
+        return sb.toString();
+    }
+
+    /**
+     * Writes all histograms as summaries in the Prometheus text format. The
+     * histograms of each label are written as a separate metric, so
+     * aggregating a metric does not count requests more than once.
+     */
+    public void write(final PrintWriter pw) {
+        writeHeader(pw, METRIC_NAME, "Processing time of Sling requests.");
+        writeSummary(pw, METRIC_NAME, null, null, this.total.snapshot());
+        writeSummaries(pw, LABEL_METHOD, this.methods);
+        writeSummaries(pw, LABEL_STATUS, this.statuses);
+        writeSummaries(pw, LABEL_RESOURCE_TYPE, this.resourceTypes);
+    }
+
+    private static void writeHeader(final PrintWriter pw, final String name, final String help) {
+        pw.print("# HELP ");
+        pw.print(name);
+        pw.print(' ');
+        pw.println(help);
+        pw.print("# TYPE ");
+        pw.print(name);
+        pw.println(" summary");
+    }
+
+    private static void writeSummaries(final PrintWriter pw, final String label,
+            final Map<String, LatencyHistogram> histograms) {
+        final String name = "sling_request_duration_by_" + toSnakeCase(label) + "_seconds";
+        writeHeader(pw, name, "Processing time of Sling requests by " + label + ".");
+        for (final Map.Entry<String, LatencyHistogram> entry : new TreeMap<String, LatencyHistogram>(histograms).entrySet()) {
+            writeSummary(pw, name, label, entry.getKey(), entry.getValue().snapshot());
+        }
+    }
+
+    private static void writeSummary(final PrintWriter pw, final String name, final String label,
+            final String value, final LatencyHistogram.Snapshot snapshot) {
+        final String labels = (label == null) ? "" : label + "=\"" + escape(value) + "\"";
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            pw.print(name);
+            pw.print('{');
+            if (label != null) {
+                pw.print(labels);
+                pw.print(',');
+            }
+            pw.print("quantile=\"");
+            pw.print(QUANTILES[i]);
+            pw.print("\"} ");
+            pw.println(toSeconds(snapshot.getValueAtPercentile(PERCENTILES[i])));
+        }
+        final String suffix = (label == null) ? "" : "{" + labels + "}";
+        pw.print(name);
+        pw.print("_sum");
+        pw.print(suffix);
+        pw.print(' ');
+        pw.println(toSeconds(snapshot.getSum()));
+        pw.print(name);
+        pw.print("_count");
+        pw.print(suffix);
+        pw.print(' ');
+        pw.println(snapshot.getCount());
+    }
+
+    private static String toSnakeCase(final String label) {
+        final StringBuilder sb = new StringBuilder(label.length() + 4);
+        for (int i = 0; i < label.length(); i++) {
+            final char c = label.charAt(i);
+            if (Character.isUpperCase(c)) {
+                sb.append('_').append(Character.toLowerCase(c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String toSeconds(final long micros) {
+        return String.valueOf(micros / 1000000.0);
+    }
+
+    /**
+     * Escapes a label value as required by the text format.
+     */
+    static String escape(final String value) {
+        final StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
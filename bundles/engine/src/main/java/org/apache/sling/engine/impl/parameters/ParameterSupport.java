@@ -34,11 +34,16 @@ import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemFactory;
+import org.apache.commons.fileupload.FileItemHeadersSupport;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.RequestContext;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.fileupload.servlet.ServletRequestContext;
+import org.apache.commons.fileupload.util.Streams;
 import org.apache.sling.api.request.RequestParameter;
 import org.apache.sling.api.request.RequestParameterMap;
 import org.apache.sling.api.resource.ResourceResolver;
@@ -70,6 +75,25 @@ public class ParameterSupport {
     /** Content type signaling parameters in request body */
     private static final String WWW_FORM_URL_ENC = "application/x-www-form-urlencoded";
 
+    /**
+     * The name of the request header and query parameter selecting the upload
+     * mode of multipart requests. If set to {@link #UPLOAD_MODE_STREAM} one
+     * file part is not buffered but read directly from the request.
+     */
+    public static final String UPLOAD_MODE = "uploadmode";
+
+    /** The name of the request header selecting the upload mode. */
+    public static final String UPLOAD_MODE_HEADER = "Sling-UploadMode";
+
+    /** The streaming upload mode. */
+    public static final String UPLOAD_MODE_STREAM = "stream";
+
+    /**
+     * The name of the request header naming the file part streamed in
+     * streaming upload mode. If missing, the first file part is streamed.
+     */
+    public static final String UPLOAD_PART_HEADER = "Sling-UploadPart";
+
     /** default log */
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -334,6 +358,11 @@ public class ParameterSupport {
             }
         };
 
+        if (isStreamedUpload(parameters)) {
+            this.parseStreamedMultiPartPost(upload, rc, parameters);
+            return;
+        }
+
         // Parse the request
         List<?> /* FileItem */items = null;
         try {
@@ -351,4 +380,56 @@ public class ParameterSupport {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Returns whether streaming upload mode is requested by the
+     * {@link #UPLOAD_MODE_HEADER} request header or the {@link #UPLOAD_MODE}
+     * query parameter.
+     */
+    private boolean isStreamedUpload(final ParameterMap parameters) {
+        if (UPLOAD_MODE_STREAM.equals(this.getServletRequest().getHeader(UPLOAD_MODE_HEADER))) {
+            return true;
+        }
+        final RequestParameter mode = parameters.getValue(UPLOAD_MODE);
+        return mode != null && UPLOAD_MODE_STREAM.equals(mode.getString());
+    }
+
+    /**
+     * Parses the multipart request up to the streamed file part. All parts
+     * before the streamed part are buffered as usual, the streamed part is
+     * read from the request when its input stream is retrieved. Parts after
+     * the streamed part are not available as request parameters and are
+     * logged once the streamed part has been read, clients should therefore
+     * send the streamed part as the last part.
+     */
+    private void parseStreamedMultiPartPost(final ServletFileUpload upload, final RequestContext rc,
+            final ParameterMap parameters) {
+        final String streamedPart = this.getServletRequest().getHeader(UPLOAD_PART_HEADER);
+        final FileItemFactory factory = upload.getFileItemFactory();
+        try {
+            final FileItemIterator items = upload.getItemIterator(rc);
+            while (items.hasNext()) {
+                final FileItemStream item = items.next();
+                if (!item.isFormField()
+                    && (streamedPart == null || streamedPart.equals(item.getFieldName()))) {
+                    // the iterator must not be advanced anymore to keep the stream open
+                    parameters.addParameter(new MultipartRequestParameter(
+                        new StreamedFileItem(item, factory, items)), false);
+                    return;
+                }
+
+                final FileItem fileItem = factory.createItem(item.getFieldName(), item.getContentType(),
+                    item.isFormField(), item.getName());
+                Streams.copy(item.openStream(), fileItem.getOutputStream(), true);
+                if (fileItem instanceof FileItemHeadersSupport) {
+                    ((FileItemHeadersSupport) fileItem).setHeaders(item.getHeaders());
+                }
+                parameters.addParameter(new MultipartRequestParameter(fileItem), false);
+            }
+        } catch (FileUploadException fue) {
+            this.log.error("parseStreamedMultiPartPost: Error parsing request", fue);
+        } catch (IOException ioe) {
+            this.log.error("parseStreamedMultiPartPost: Error parsing request", ioe);
+        }
+    }
+
+}
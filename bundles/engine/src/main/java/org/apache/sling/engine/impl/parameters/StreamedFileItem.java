@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemFactory;
+import org.apache.commons.fileupload.FileItemHeaders;
+import org.apache.commons.fileupload.FileItemHeadersSupport;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.util.Streams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>StreamedFileItem</code> is a {@code FileItem} whose contents is
+ * read directly from the request input stream instead of being buffered in
+ * memory or a temporary file.
+ * <p>
+ * The input stream can only be retrieved once. If the contents is requested
+ * as a byte array or string before the input stream has been retrieved, it
+ * is buffered by the file item factory, like a part of a non streamed
+ * request, and all further calls are served from there. This also happens
+ * if the size is requested before the input stream has been retrieved, as
+ * the size of the streamed contents is not known up front.
+ * <p>
+ * Parts following the streamed part in the request are not available as
+ * request parameters. They are logged once the streamed part has been read.
+ */
+class StreamedFileItem implements FileItem {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggerFactory.getLogger(StreamedFileItem.class);
+
+    private final transient FileItemStream item;
+
+    private final transient FileItemFactory factory;
+
+    /** The parts following the streamed part, <code>null</code> once logged */
+    private transient FileItemIterator remaining;
+
+    private String fieldName;
+
+    private boolean formField;
+
+    private FileItemHeaders headers;
+
+    /** Whether the stream of the item has been handed out or consumed */
+    private boolean streamUsed;
+
+    /** The number of bytes read from the handed out stream */
+    private long bytesRead;
+
+    /** The contents if it has been buffered */
+    private FileItem buffered;
+
+    StreamedFileItem(final FileItemStream item, final FileItemFactory factory, final FileItemIterator remaining) {
+        this.item = item;
+        this.factory = factory;
+        this.remaining = remaining;
+        this.fieldName = item.getFieldName();
+        this.formField = item.isFormField();
+        this.headers = item.getHeaders();
+    }
+
+    public InputStream getInputStream() throws IOException {
+        if (this.buffered != null) {
+            return this.buffered.getInputStream();
+        }
+        if (this.streamUsed) {
+            throw new IOException("The input stream of the streamed parameter " + this.fieldName
+                + " can only be retrieved once");
+        }
+        this.streamUsed = true;
+        return new FilterInputStream(this.item.openStream()) {
+
+            @Override
+            public int read() throws IOException {
+                final int b = super.read();
+                if (b != -1) {
+                    bytesRead++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                final int n = super.read(b, off, len);
+                if (n > 0) {
+                    bytesRead += n;
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(final long n) throws IOException {
+                final long skipped = super.skip(n);
+                bytesRead += skipped;
+                return skipped;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    logIgnoredParts();
+                }
+            }
+        };
+    }
+
+    public String getContentType() {
+        return this.item.getContentType();
+    }
+
+    public String getName() {
+        return this.item.getName();
+    }
+
+    public boolean isInMemory() {
+        return this.buffered != null && this.buffered.isInMemory();
+    }
+
+    /**
+     * Returns the size of the buffered contents or the number of bytes read
+     * from the input stream once it has been retrieved. Otherwise the
+     * contents is buffered to determine its size.
+     */
+    public long getSize() {
+        if (this.buffered == null && this.streamUsed) {
+            return this.bytesRead;
+        }
+        return this.buffer().getSize();
+    }
+
+    public byte[] get() {
+        return this.buffer().get();
+    }
+
+    public String getString(final String encoding) throws UnsupportedEncodingException {
+        return this.buffer().getString(encoding);
+    }
+
+    public String getString() {
+        return this.buffer().getString();
+    }
+
+    public void write(final File file) throws Exception {
+        if (this.buffered != null) {
+            this.buffered.write(file);
+            return;
+        }
+        final InputStream in = this.getInputStream();
+        try {
+            final OutputStream out = new FileOutputStream(file);
+            try {
+                Streams.copy(in, out, false);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    public void delete() {
+        // the request stream is not read anymore after this
+        if (this.buffered != null) {
+            this.buffered.delete();
+            this.buffered = null;
+        }
+        this.streamUsed = true;
+    }
+
+    public String getFieldName() {
+        return this.fieldName;
+    }
+
+    public void setFieldName(final String name) {
+        this.fieldName = name;
+    }
+
+    public boolean isFormField() {
+        return this.formField;
+    }
+
+    public void setFormField(final boolean state) {
+        this.formField = state;
+    }
+
+    public OutputStream getOutputStream() throws IOException {
+        throw new IOException("Streamed parameters cannot be written");
+    }
+
+    public FileItemHeaders getHeaders() {
+        return this.headers;
+    }
+
+    public void setHeaders(final FileItemHeaders headers) {
+        this.headers = headers;
+    }
+
+    /**
+     * Reads the streamed contents into a file item of the factory, which
+     * keeps small contents in memory and writes larger contents to a
+     * temporary file.
+     */
+    private FileItem buffer() {
+        if (this.buffered == null) {
+            if (this.streamUsed) {
+                throw new IllegalStateException("The input stream of the streamed parameter " + this.fieldName
+                    + " has already been retrieved");
+            }
+            final FileItem fileItem = this.factory.createItem(this.fieldName, this.getContentType(),
+                this.formField, this.getName());
+            try {
+                Streams.copy(this.getInputStream(), fileItem.getOutputStream(), true);
+            } catch (final IOException ioe) {
+                fileItem.delete();
+                throw new IllegalStateException("Cannot read streamed parameter " + this.fieldName, ioe);
+            }
+            if (fileItem instanceof FileItemHeadersSupport) {
+                ((FileItemHeadersSupport) fileItem).setHeaders(this.headers);
+            }
+            this.buffered = fileItem;
+        }
+        return this.buffered;
+    }
+
+    /**
+     * Logs the parts following the streamed part, which are not available
+     * as request parameters.
+     */
+    private void logIgnoredParts() {
+        final FileItemIterator items = this.remaining;
+        if (items == null) {
+            return;
+        }
+        this.remaining = null;
+        try {
+            while (items.hasNext()) {
+                log.warn("Ignoring part {} following the streamed part {}, it must be sent before the streamed part",
+                    items.next().getFieldName(), this.fieldName);
+            }
+        } catch (final FileUploadException fue) {
+            log.warn("Cannot read parts following the streamed part " + this.fieldName, fue);
+        } catch (final IOException ioe) {
+            log.warn("Cannot read parts following the streamed part " + this.fieldName, ioe);
+        }
+    }
+}
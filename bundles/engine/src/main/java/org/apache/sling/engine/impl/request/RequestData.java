@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.Servlet;
 import javax.servlet.ServletException;
@@ -112,6 +113,21 @@ public class RequestData {
      */
     private static int maxCallCounter = DEFAULT_MAX_CALL_COUNTER;
 
+    /**
+     * The default sampling rate of the request progress tracker, tracking
+     * every request.
+     */
+    public static final int DEFAULT_TRACKER_SAMPLING_RATE = 1;
+
+    /**
+     * Only one in this number of requests is fully tracked by the request
+     * progress tracker (default {@link #DEFAULT_TRACKER_SAMPLING_RATE}).
+     */
+    private static int trackerSamplingRate = DEFAULT_TRACKER_SAMPLING_RATE;
+
+    /** Counts the requests to select the fully tracked requests. */
+    private static final AtomicLong TRACKER_SAMPLING_COUNTER = new AtomicLong();
+
     /**
      * The name of the request attribute to override the max call number (-1 for infinite or integer value).
      */
@@ -128,6 +144,8 @@ public class RequestData {
 
     private final long startTimestamp;
 
+    private final long startNanos;
+
     /** The original servlet Servlet Request Object */
     private HttpServletRequest servletRequest;
 
@@ -190,6 +208,22 @@ public class RequestData {
         return maxInclusionCounter;
     }
 
+    public static void setTrackerSamplingRate(int trackerSamplingRate) {
+        RequestData.trackerSamplingRate = trackerSamplingRate;
+    }
+
+    public static int getTrackerSamplingRate() {
+        return trackerSamplingRate;
+    }
+
+    /**
+     * Returns whether the next request should be fully tracked.
+     */
+    private static boolean isTrackingSampled() {
+        final int rate = trackerSamplingRate;
+        return rate <= 1 || TRACKER_SAMPLING_COUNTER.getAndIncrement() % rate == 0;
+    }
+
     public static void setSlingMainServlet(final SlingMainServlet slingMainServlet) {
         RequestData.SLING_MAIN_SERVLET = slingMainServlet;
         RequestData.REQUEST_FACTORY = null;
@@ -206,6 +240,7 @@ public class RequestData {
     public RequestData(SlingRequestProcessorImpl slingRequestProcessor,
             HttpServletRequest request, HttpServletResponse response) {
         this.startTimestamp = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
 
         this.slingRequestProcessor = slingRequestProcessor;
 
@@ -216,7 +251,7 @@ public class RequestData {
         this.slingResponse = new SlingHttpServletResponseImpl(this,
             servletResponse);
 
-        this.requestProgressTracker = new SlingRequestProgressTracker();
+        this.requestProgressTracker = new SlingRequestProgressTracker(isTrackingSampled());
         this.requestProgressTracker.log(
         		"Method={0}, PathInfo={1}",
         		this.slingRequest.getMethod(), this.slingRequest.getPathInfo()
@@ -627,6 +662,10 @@ public class RequestData {
         return System.currentTimeMillis() - startTimestamp;
     }
 
+    public long getElapsedTimeNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
     /**
      * Sets the name of the currently active servlet and returns the name of the
      * previously active servlet.
@@ -24,10 +24,12 @@ import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -46,6 +48,15 @@ import org.osgi.framework.ServiceRegistration;
  * Felix OSGi console plugin that displays info about recent requests processed
  * by Sling. Info about all requests can be found in the logs, but this is
  * useful when testing or explaining things.
+ * <p>
+ * The requests are recorded when they have been processed into a fixed size
+ * ring buffer without locking, so recording may be left enabled on busy
+ * instances. The recorded requests can also be queried as JSON from
+ * <code>requests/data.json</code>, optionally filtered by the
+ * {@link #MIN_DURATION minimum duration} in milliseconds, a {@link #PATH path}
+ * regular expression and limited to a {@link #LIMIT number} of the most
+ * recent requests. The request progress tracker messages are only included
+ * if the {@link #TRACKER} parameter is <code>true</code>.
  */
 @SuppressWarnings("serial")
 public class RequestHistoryConsolePlugin {
@@ -56,24 +67,53 @@ public class RequestHistoryConsolePlugin {
 
     public static final String CLEAR = "clear";
 
-    private static Plugin instance;
+    /** The query parameter for the minimum duration in milliseconds */
+    public static final String MIN_DURATION = "minDuration";
+
+    /** The query parameter for the path regular expression */
+    public static final String PATH = "path";
+
+    /** The query parameter for the maximum number of requests returned */
+    public static final String LIMIT = "limit";
+
+    /** The query parameter to include the request progress tracker messages */
+    public static final String TRACKER = "tracker";
+
+    private static final String JSON_SUFFIX = "/data.json";
+
+    private static volatile Plugin instance;
 
     private static ServiceRegistration serviceRegistration;
 
     public static final int STORED_REQUESTS_COUNT = 20;
 
+    public static final int DEFAULT_SAMPLING_RATE = 1;
+
     private RequestHistoryConsolePlugin() {
     }
 
-    public static void recordRequest(SlingHttpServletRequest r) {
-        if (instance != null) {
-            instance.addRequest(r);
+    /**
+     * Records a processed request.
+     *
+     * @param r The request
+     * @param status The response status
+     * @param durationNanos The processing time in nanoseconds
+     */
+    public static void recordRequest(SlingHttpServletRequest r, int status, long durationNanos) {
+        final Plugin plugin = instance;
+        if (plugin != null) {
+            plugin.addRequest(r, status, durationNanos);
         }
     }
 
     public static void initPlugin(BundleContext context, int maxRequests, List<Pattern> storePatterns) {
+        initPlugin(context, maxRequests, storePatterns, DEFAULT_SAMPLING_RATE);
+    }
+
+    public static void initPlugin(BundleContext context, int maxRequests, List<Pattern> storePatterns,
+            int samplingRate) {
         if (instance == null) {
-            Plugin tmp = new Plugin(maxRequests, storePatterns);
+            Plugin tmp = new Plugin(maxRequests, storePatterns, samplingRate);
             final Dictionary<String, Object> props = new Hashtable<String, Object>();
             props.put(Constants.SERVICE_DESCRIPTION,
                 "Web Console Plugin to display information about recent Sling requests");
@@ -104,15 +144,21 @@ public class RequestHistoryConsolePlugin {
 
     public static final class Plugin extends HttpServlet {
 
-        private final RequestInfoMap requests;
+        private final RequestInfoRing requests;
 
         private final List<Pattern> storePatterns;
 
-        Plugin(int maxRequests, List<Pattern> storePatterns) {
+        private final int samplingRate;
+
+        /** The number of requests offered for recording */
+        private final AtomicLong offered = new AtomicLong();
+
+        Plugin(int maxRequests, List<Pattern> storePatterns, int samplingRate) {
             this.requests = (maxRequests > 0)
-                    ? new RequestInfoMap(maxRequests)
+                    ? new RequestInfoRing(maxRequests)
                     : null;
             this.storePatterns = storePatterns;
+            this.samplingRate = Math.max(1, samplingRate);
         }
 
         public void deactivate() {
@@ -124,60 +170,59 @@ public class RequestHistoryConsolePlugin {
             clear();
         }
 
-        private void addRequest(SlingHttpServletRequest r) {
+        void addRequest(SlingHttpServletRequest r, int status, long durationNanos) {
             if (requests != null) {
                 String requestPath = r.getPathInfo();
                 boolean accept = true;
                 if (storePatterns != null && storePatterns.size() > 0) {
                     accept = false;
-                    for (Pattern pattern : storePatterns) {
-                        if (pattern.matcher(requestPath).matches()) {
-                            accept = true;
-                            break;
+                    if (requestPath != null) {
+                        for (Pattern pattern : storePatterns) {
+                            if (pattern.matcher(requestPath).matches()) {
+                                accept = true;
+                                break;
+                            }
                         }
                     }
                 }
 
-                if (accept) {
-                    synchronized (requests) {
-                        RequestInfo info = new RequestInfo(r);
-                        requests.put(info.getKey(), info);
-                    }
+                if (accept && (samplingRate == 1 || offered.getAndIncrement() % samplingRate == 0)) {
+                    requests.add(new RequestInfo(requests.nextKey(), r, status, durationNanos));
                 }
             }
         }
 
+        RequestInfoRing getRequests() {
+            return requests;
+        }
+
         private void clear() {
             if (requests != null) {
-                synchronized (requests) {
-                    requests.clear();
-                }
+                requests.clear();
             }
         }
 
         private String getLinksTable(String currentRequestIndex) {
             final List<String> links = new ArrayList<String>();
             if (requests != null) {
-                synchronized (requests) {
-                    for (RequestInfo info : requests.values()) {
-                        final String key = ResponseUtil.escapeXml(info.getKey());
-                        final boolean isCurrent = info.getKey().equals(
-                            currentRequestIndex);
-                        final StringBuilder sb = new StringBuilder();
-                        sb.append("<span style='white-space: pre; text-align:right; font-size:80%'>");
-                        sb.append(String.format("%1$8s", key));
-                        sb.append("</span> ");
-                        sb.append("<a href='" + LABEL + "?index=" + key + "'>");
-                        if (isCurrent) {
-                            sb.append("<b>");
-                        }
-                        sb.append(ResponseUtil.escapeXml(info.getLabel()));
-                        if (isCurrent) {
-                            sb.append("</b>");
-                        }
-                        sb.append("</a> ");
-                        links.add(sb.toString());
+                for (RequestInfo info : requests.values()) {
+                    final String key = ResponseUtil.escapeXml(info.getKey());
+                    final boolean isCurrent = info.getKey().equals(
+                        currentRequestIndex);
+                    final StringBuilder sb = new StringBuilder();
+                    sb.append("<span style='white-space: pre; text-align:right; font-size:80%'>");
+                    sb.append(String.format("%1$8s", key));
+                    sb.append("</span> ");
+                    sb.append("<a href='" + LABEL + "?index=" + key + "'>");
+                    if (isCurrent) {
+                        sb.append("<b>");
+                    }
+                    sb.append(ResponseUtil.escapeXml(info.getLabel()));
+                    if (isCurrent) {
+                        sb.append("</b>");
                     }
+                    sb.append("</a> ");
+                    links.add(sb.toString());
                 }
             }
 
@@ -212,13 +257,17 @@ public class RequestHistoryConsolePlugin {
         protected void doGet(HttpServletRequest req, HttpServletResponse resp)
                 throws ServletException, IOException {
 
+            final String pathInfo = req.getPathInfo();
+            if (pathInfo != null && pathInfo.endsWith(JSON_SUFFIX)) {
+                writeJson(req, resp);
+                return;
+            }
+
             // Select request to display
             RequestInfo info = null;
             String key = req.getParameter(INDEX);
             if (key != null && requests != null) {
-                synchronized (requests) {
-                    info = requests.get(key);
-                }
+                info = requests.get(key);
             }
 
             final PrintWriter pw = resp.getWriter();
@@ -247,9 +296,10 @@ public class RequestHistoryConsolePlugin {
                 pw.println("<thead>");
                 pw.println("<tr>");
                 pw.printf(
-                    "<th class='ui-widget-header'>Request %s (%s %s) by %s - RequestProgressTracker Info</th>%n",
+                    "<th class='ui-widget-header'>Request %s (%s %s) by %s - status %d in %dms - RequestProgressTracker Info</th>%n",
                     key, ResponseUtil.escapeXml(info.getMethod()),
-                    ResponseUtil.escapeXml(info.getPathInfo()), ResponseUtil.escapeXml(info.getUser()));
+                    ResponseUtil.escapeXml(info.getPathInfo()), ResponseUtil.escapeXml(info.getUser()),
+                    info.getStatus(), info.getDuration());
                 pw.println("</tr>");
                 pw.println("</thead>");
 
@@ -267,6 +317,62 @@ public class RequestHistoryConsolePlugin {
             }
         }
 
+        /**
+         * Writes the recorded requests matching the query parameters as JSON,
+         * most recent first.
+         */
+        private void writeJson(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            final long minDuration;
+            final Pattern path;
+            final int limit;
+            try {
+                minDuration = toLong(req.getParameter(MIN_DURATION), 0);
+                limit = (int) toLong(req.getParameter(LIMIT), Integer.MAX_VALUE);
+                final String pathParam = req.getParameter(PATH);
+                path = (pathParam == null || pathParam.length() == 0) ? null : Pattern.compile(pathParam);
+            } catch (final NumberFormatException nfe) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid number: " + nfe.getMessage());
+                return;
+            } catch (final PatternSyntaxException pse) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid path pattern: " + pse.getMessage());
+                return;
+            }
+
+            final boolean tracker = Boolean.valueOf(req.getParameter(TRACKER));
+
+            resp.setContentType("application/json");
+            resp.setCharacterEncoding("UTF-8");
+            final PrintWriter pw = resp.getWriter();
+            pw.print("{\"enabled\":");
+            pw.print(requests != null);
+            pw.print(",\"requests\":[");
+            if (requests != null) {
+                final List<RequestInfo> infos = requests.values();
+                int count = 0;
+                for (int i = infos.size() - 1; i >= 0 && count < limit; i--) {
+                    final RequestInfo info = infos.get(i);
+                    if (info.getDuration() < minDuration) {
+                        continue;
+                    }
+                    if (path != null && (info.getPathInfo() == null || !path.matcher(info.getPathInfo()).matches())) {
+                        continue;
+                    }
+                    if (count++ > 0) {
+                        pw.print(',');
+                    }
+                    info.writeJson(pw, tracker);
+                }
+            }
+            pw.println("]}");
+        }
+
+        private static long toLong(final String value, final long defaultValue) {
+            if (value == null || value.length() == 0) {
+                return defaultValue;
+            }
+            return Long.parseLong(value);
+        }
+
         @Override
         protected void doPost(HttpServletRequest req, HttpServletResponse resp)
                 throws IOException {
@@ -277,9 +383,9 @@ public class RequestHistoryConsolePlugin {
         }
     }
 
-    private static class RequestInfo {
+    static class RequestInfo {
 
-        private static AtomicLong requestCounter = new AtomicLong(0);
+        private final long sequence;
 
         private final String key;
 
@@ -289,16 +395,30 @@ public class RequestHistoryConsolePlugin {
 
         private final String user;
 
+        private final int status;
+
+        private final long durationNanos;
+
+        private final long timestamp;
+
         private final RequestProgressTracker tracker;
 
-        RequestInfo(SlingHttpServletRequest request) {
-            this.key = String.valueOf(requestCounter.incrementAndGet());
+        RequestInfo(long sequence, SlingHttpServletRequest request, int status, long durationNanos) {
+            this.sequence = sequence;
+            this.key = String.valueOf(sequence);
             this.method = request.getMethod();
             this.pathInfo = request.getPathInfo();
             this.user = request.getRemoteUser();
+            this.status = status;
+            this.durationNanos = durationNanos;
+            this.timestamp = System.currentTimeMillis();
             this.tracker = request.getRequestProgressTracker();
         }
 
+        long getSequence() {
+            return sequence;
+        }
+
         public String getKey() {
             return key;
         }
@@ -315,6 +435,17 @@ public class RequestHistoryConsolePlugin {
             return user;
         }
 
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns the processing time in milliseconds.
+         */
+        public long getDuration() {
+            return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        }
+
         public String getLabel() {
             final StringBuilder sb = new StringBuilder();
 
@@ -334,25 +465,146 @@ public class RequestHistoryConsolePlugin {
         public RequestProgressTracker getTracker() {
             return tracker;
         }
+
+        void writeJson(final PrintWriter pw, final boolean withTracker) {
+            pw.print("{\"index\":");
+            pw.print(sequence);
+            pw.print(",\"method\":");
+            writeString(pw, method);
+            pw.print(",\"path\":");
+            writeString(pw, pathInfo);
+            pw.print(",\"user\":");
+            writeString(pw, user);
+            pw.print(",\"status\":");
+            pw.print(status);
+            pw.print(",\"duration\":");
+            pw.print(getDuration());
+            pw.print(",\"timestamp\":");
+            pw.print(timestamp);
+            if (withTracker && tracker != null) {
+                pw.print(",\"tracker\":[");
+                final Iterator<String> it = tracker.getMessages();
+                boolean first = true;
+                while (it.hasNext()) {
+                    if (!first) {
+                        pw.print(',');
+                    }
+                    first = false;
+                    writeString(pw, it.next().trim());
+                }
+                pw.print(']');
+            }
+            pw.print('}');
+        }
+
+        static void writeString(final PrintWriter pw, final String value) {
+            if (value == null) {
+                pw.print("null");
+                return;
+            }
+            pw.print('"');
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        pw.print("\\\"");
+                        break;
+                    case '\\':
+                        pw.print("\\\\");
+                        break;
+                    case '\n':
+                        pw.print("\\n");
+                        break;
+                    case '\r':
+                        pw.print("\\r");
+                        break;
+                    case '\t':
+                        pw.print("\\t");
+                        break;
+                    default:
+                        if (c < 0x20 || c == '<' || c == '>') {
+                            // also escape markup characters for use in pages
+                            pw.printf("\\u%04x", (int) c);
+                        } else {
+                            pw.print(c);
+                        }
+                }
+            }
+            pw.print('"');
+        }
     }
 
-    private static class RequestInfoMap extends
-            LinkedHashMap<String, RequestInfo> {
+    /**
+     * The <code>RequestInfoRing</code> keeps the most recent requests in a
+     * fixed size array. Adding a request claims the next slot with an atomic
+     * counter and overwrites the oldest entry without locking.
+     */
+    static class RequestInfoRing {
+
+        private final AtomicReferenceArray<RequestInfo> slots;
 
-        private int maxSize;
+        private final AtomicLong counter = new AtomicLong();
 
-        RequestInfoMap(int maxSize) {
-            this.maxSize = maxSize;
+        RequestInfoRing(int maxSize) {
+            this.slots = new AtomicReferenceArray<RequestInfo>(maxSize);
         }
 
-        @Override
-        protected boolean removeEldestEntry(
-                java.util.Map.Entry<String, RequestInfo> eldest) {
-            return size() > maxSize;
+        long nextKey() {
+            return counter.incrementAndGet();
+        }
+
+        void add(RequestInfo info) {
+            slots.set((int) (info.getSequence() % slots.length()), info);
+        }
+
+        RequestInfo get(String key) {
+            final long sequence;
+            try {
+                sequence = Long.parseLong(key);
+            } catch (final NumberFormatException nfe) {
+                return null;
+            }
+            if (sequence <= 0) {
+                return null;
+            }
+            final RequestInfo info = slots.get((int) (sequence % slots.length()));
+            return (info != null && info.getSequence() == sequence) ? info : null;
         }
 
-        public int getMaxSize() {
-            return maxSize;
+        /**
+         * Returns the recorded requests, oldest first.
+         */
+        List<RequestInfo> values() {
+            final List<RequestInfo> values = new ArrayList<RequestInfo>(slots.length());
+            final long last = counter.get();
+            for (long sequence = Math.max(1, last - slots.length() + 1); sequence <= last; sequence++) {
+                final RequestInfo info = slots.get((int) (sequence % slots.length()));
+                // skip slots not written yet or already overwritten
+                if (info != null && info.getSequence() == sequence) {
+                    values.add(info);
+                }
+            }
+            return values;
+        }
+
+        int size() {
+            int size = 0;
+            for (int i = 0; i < slots.length(); i++) {
+                if (slots.get(i) != null) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        int getMaxSize() {
+            return slots.length();
+        }
+
+        void clear() {
+            for (int i = 0; i < slots.length(); i++) {
+                slots.set(i, null);
+            }
         }
     }
-}
\ No newline at end of file
+}
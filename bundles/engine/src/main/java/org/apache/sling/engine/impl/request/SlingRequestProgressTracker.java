@@ -20,11 +20,10 @@ package org.apache.sling.engine.impl.request;
 
 import java.io.PrintWriter;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.sling.api.request.RequestProgressTracker;
 
@@ -88,6 +87,19 @@ import org.apache.sling.api.request.RequestProgressTracker;
  * <li>The absolute time of the timer in parenthesis.
  * <li>The entry message
  * </ol>
+ * <p>
+ * <b>Recording Entries</b>
+ * <p>
+ * Entries are recorded as the kind of step, the time stamp and references
+ * to the message format and arguments in arrays which are reused after a
+ * {@link #reset()}. Messages are only formatted when they are read through
+ * the {@link #getMessages()} or {@link #dump(PrintWriter)} methods. As a
+ * consequence changes to mutable arguments done after logging are reflected
+ * in the messages.
+ * <p>
+ * A tracker may be created with tracking disabled, in which case only the
+ * start and the end of the request processing are recorded. This is used
+ * to only track a sample of the requests.
  */
 public class SlingRequestProgressTracker implements RequestProgressTracker {
 
@@ -106,50 +118,111 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
     /** TIMER_END format explanation */
     private static final String TIMER_END_FORMAT = "{<elapsed msec>,<timer name>} <optional message>";
 
+    /** Comment added if tracking is disabled */
+    private static final String TRACKING_DISABLED = "tracking disabled for this request";
+
     /** The leading millisecond number is left-padded with white-space to this width. */
     private static final int PADDING_WIDTH = 7;
 
+    /** The number of entries for which space is allocated initially. */
+    private static final int INITIAL_CAPACITY = 32;
+
+    /** Entry type of a comment, the text is the comment */
+    private static final byte TYPE_COMMENT = 0;
+
+    /** Entry type of a log message, the text is the message or format */
+    private static final byte TYPE_LOG = 1;
+
+    /** Entry type of a timer start, the text is the timer name */
+    private static final byte TYPE_TIMER_START = 2;
+
+    /** Entry type of a timer end, the text is the timer name */
+    private static final byte TYPE_TIMER_END = 3;
+
+    /** Whether all entries are recorded. */
+    private final boolean enabled;
+
     /**
-     * The system time at creation of this instance or the last {@link #reset()}.
+     * The system time in nanoseconds at creation of this instance or the
+     * last {@link #reset()}.
      */
     private long processingStart;
 
     /**
-     * The system time when {@link #done()} was called or -1 while processing is in progress.
+     * The system time in nanoseconds when {@link #done()} was called.
      */
     private long processingEnd;
 
+    /** Whether {@link #done()} has been called. */
+    private boolean finished;
+
+    /** The number of recorded entries. */
+    private int size;
+
+    /** The type of each entry. */
+    private byte[] types = new byte[INITIAL_CAPACITY];
+
+    /** The system time in nanoseconds of each entry. */
+    private long[] times = new long[INITIAL_CAPACITY];
+
+    /** The start time of the timer for timer end entries. */
+    private long[] timerStarts = new long[INITIAL_CAPACITY];
+
+    /** The message, format or timer name of each entry. */
+    private String[] texts = new String[INITIAL_CAPACITY];
+
+    /** The optional message format of timer end entries. */
+    private String[] formats = new String[INITIAL_CAPACITY];
+
     /**
-     * The list of tracking entries.
+     * The format arguments of each entry or <code>null</code> if the
+     * message must not be formatted.
      */
-    private final List<TrackingEntry> entries = new ArrayList<TrackingEntry>();
+    private Object[][] args = new Object[INITIAL_CAPACITY][];
+
     /**
-     * Map of named timers indexed by timer name storing the system time of
-     * start of the respective timer.
+     * Creates a new request progress tracker.
      */
-    private final Map<String, Long> namedTimerEntries = new HashMap<String, Long>();
+    public SlingRequestProgressTracker() {
+        this(true);
+    }
 
     /**
      * Creates a new request progress tracker.
+     * @param enabled Whether all entries are recorded. If <code>false</code>
+     *            only the processing time of the request is recorded.
      */
-    public SlingRequestProgressTracker() {
+    public SlingRequestProgressTracker(final boolean enabled) {
+        this.enabled = enabled;
         reset();
     }
 
+    /**
+     * Returns whether all entries are recorded by this tracker.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
     /**
      * Resets this timer by removing all current entries and timers and adds an
      * initial timer entry
      */
     public void reset() {
-        // remove all entries
-        entries.clear();
-        namedTimerEntries.clear();
+        // remove all entries, releasing the references
+        Arrays.fill(texts, 0, size, null);
+        Arrays.fill(formats, 0, size, null);
+        Arrays.fill(args, 0, size, null);
+        size = 0;
 
         // enter initial messages
         processingStart = startTimerInternal(REQUEST_PROCESSING_TIMER);
-        processingEnd = -1;
+        finished = false;
 
-        entries.add(new TrackingEntry(COMMENT_PREFIX + "timer_end format is " + TIMER_END_FORMAT));
+        add(TYPE_COMMENT, processingStart, "timer_end format is " + TIMER_END_FORMAT, null, null, 0);
+        if (!enabled) {
+            add(TYPE_COMMENT, processingStart, TRACKING_DISABLED, null, null, 0);
+        }
     }
 
     /**
@@ -157,17 +230,21 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
      */
     public Iterator<String> getMessages() {
         return new Iterator<String>() {
-            private final Iterator<TrackingEntry> entryIter = entries.iterator();
+            private final int end = size;
+
+            private int index;
 
             public boolean hasNext() {
-                return entryIter.hasNext();
+                return index < end;
             }
 
             public String next() {
-                // throws NoSuchElementException if no entries any more
-                final TrackingEntry entry = entryIter.next();
-                final long offset = entry.getTimeStamp() - getTimeStamp();
-                return formatMessage(offset, entry.getMessage());
+                if (index >= end) {
+                    throw new NoSuchElementException();
+                }
+                final int i = index++;
+                final long offset = toMillis(times[i] - getTimeStamp());
+                return formatMessage(offset, getMessage(i));
             }
 
             public void remove() {
@@ -176,6 +253,38 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
         };
     }
 
+    /**
+     * Formats the message of the entry at the given index.
+     */
+    private String getMessage(final int i) {
+        switch (types[i]) {
+            case TYPE_COMMENT:
+                return COMMENT_PREFIX + texts[i];
+
+            case TYPE_LOG:
+                if (args[i] == null) {
+                    return LOG_PREFIX + texts[i];
+                }
+                return LOG_PREFIX + MessageFormat.format(texts[i], args[i]);
+
+            case TYPE_TIMER_START:
+                return "TIMER_START{" + texts[i] + "}";
+
+            default:
+                final StringBuilder sb = new StringBuilder();
+                sb.append("TIMER_END{");
+                sb.append(toMillis(times[i] - timerStarts[i]));
+                sb.append(',');
+                sb.append(texts[i]);
+                sb.append('}');
+                if (formats[i] != null) {
+                    sb.append(' ');
+                    sb.append(MessageFormat.format(formats[i], args[i]));
+                }
+                return sb.toString();
+        }
+    }
+
     private String formatMessage(long offset, String message) {
         // Set exact length to avoid array copies within StringBuilder
         final StringBuilder sb = new StringBuilder(PADDING_WIDTH + 1 +  message.length() + 1);
@@ -205,13 +314,16 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
 
     /** Creates an entry with the given message. */
     public void log(String message) {
-        entries.add(new TrackingEntry(LOG_PREFIX + message));
+        if (enabled) {
+            add(TYPE_LOG, System.nanoTime(), message, null, null, 0);
+        }
     }
 
     /** Creates an entry with the given entry tag and message */
     public void log(String format, Object... args) {
-        String message = MessageFormat.format(format, args);
-        entries.add(new TrackingEntry(LOG_PREFIX + message));
+        if (enabled) {
+            add(TYPE_LOG, System.nanoTime(), format, null, args != null ? args : new Object[0], 0);
+        }
     }
 
     /**
@@ -219,20 +331,21 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
      * reset to the current time.
      */
     public void startTimer(String name) {
-        startTimerInternal(name);
+        if (enabled) {
+            startTimerInternal(name);
+        }
     }
 
     /**
-     * Start the named timer and returns the start time in milliseconds.
+     * Start the named timer and returns the start time in nanoseconds.
      * Logs a message with format
      * <pre>
      * TIMER_START{<name>} <optional message>
      * </pre>
      */
     private long startTimerInternal(String name) {
-        long timer = System.currentTimeMillis();
-        namedTimerEntries.put(name, timer);
-        entries.add(new TrackingEntry(timer, "TIMER_START{" + name + "}"));
+        final long timer = System.nanoTime();
+        add(TYPE_TIMER_START, timer, name, null, null, 0);
         return timer;
     }
 
@@ -240,8 +353,8 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
      * Log a timer entry, including start, end and elapsed time.
      */
     public void logTimer(String name) {
-        if (namedTimerEntries.containsKey(name)) {
-            logTimerInternal(name, null, namedTimerEntries.get(name));
+        if (enabled) {
+            logTimerInternal(name, null, null);
         }
     }
 
@@ -249,70 +362,68 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
      * Log a timer entry, including start, end and elapsed time.
      */
     public void logTimer(String name, String format, Object... args) {
-        if (namedTimerEntries.containsKey(name)) {
-            logTimerInternal(name, MessageFormat.format(format, args), namedTimerEntries.get(name));
+        if (enabled) {
+            logTimerInternal(name, format, args);
         }
     }
 
     /**
-     * Log a timer entry, including start, end and elapsed time using TIMER_END_FORMAT
+     * Log a timer entry, including start, end and elapsed time using
+     * TIMER_END_FORMAT if the timer has been started.
      */
-    private void logTimerInternal(String name, String msg, long startTime) {
-        final StringBuilder sb = new StringBuilder();
-        sb.append("TIMER_END{");
-        sb.append(System.currentTimeMillis() - startTime);
-        sb.append(',');
-        sb.append(name);
-        sb.append('}');
-        if(msg != null) {
-            sb.append(' ');
-            sb.append(msg);
+    private void logTimerInternal(String name, String format, Object[] args) {
+        // the last start entry of the timer holds the current start time
+        for (int i = size - 1; i >= 0; i--) {
+            if (types[i] == TYPE_TIMER_START && texts[i].equals(name)) {
+                add(TYPE_TIMER_END, System.nanoTime(), name, format,
+                    format != null && args == null ? new Object[0] : args, times[i]);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records an entry, growing the arrays if required.
+     */
+    private void add(final byte type, final long time, final String text,
+            final String format, final Object[] arguments, final long timerStart) {
+        if (size == types.length) {
+            final int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            times = Arrays.copyOf(times, capacity);
+            timerStarts = Arrays.copyOf(timerStarts, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+            formats = Arrays.copyOf(formats, capacity);
+            args = Arrays.copyOf(args, capacity);
         }
-        entries.add(new TrackingEntry(sb.toString()));
+        types[size] = type;
+        times[size] = time;
+        timerStarts[size] = timerStart;
+        texts[size] = text;
+        formats[size] = format;
+        args[size] = arguments;
+        size++;
     }
 
     public void done() {
-        if(processingEnd != -1) return;
-        logTimer(REQUEST_PROCESSING_TIMER, REQUEST_PROCESSING_TIMER);
-        processingEnd = System.currentTimeMillis();
+        if(finished) return;
+        logTimerInternal(REQUEST_PROCESSING_TIMER, REQUEST_PROCESSING_TIMER, null);
+        processingEnd = System.nanoTime();
+        finished = true;
     }
 
     private long getTimeStamp() {
         return processingStart;
     }
 
-    public long getDuration() {
-        if (processingEnd != -1) {
-            return processingEnd - processingStart;
-        }
-        return System.currentTimeMillis() - processingStart;
+    private static long toMillis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
     }
 
-    /** Process tracker entry keeping timestamp, tag and message */
-    private static class TrackingEntry {
-
-        // creation time stamp
-        private final long timeStamp;
-
-        // tracking message
-        private final String message;
-
-        TrackingEntry(String message) {
-            this.timeStamp = System.currentTimeMillis();
-            this.message = message;
-        }
-
-        TrackingEntry(long timeStamp, String message) {
-            this.timeStamp = timeStamp;
-            this.message = message;
-        }
-
-        long getTimeStamp() {
-            return timeStamp;
-        }
-
-        String getMessage() {
-            return message;
+    public long getDuration() {
+        if (finished) {
+            return toMillis(processingEnd - processingStart);
         }
+        return toMillis(System.nanoTime() - processingStart);
     }
 }
@@ -133,6 +133,53 @@ public interface RequestProcessorMBean {
      */
     double getStandardDeviationServletCallCount();
 
+    /**
+     * Returns the median request processing time in milliseconds since
+     * resetting the statistics.
+     *
+     * @see #resetStatistics()
+     * @since 1.1.0
+     */
+    double getP50RequestDurationMsec();
+
+    /**
+     * Returns the request processing time in milliseconds below which 95% of
+     * the requests have been processed since resetting the statistics.
+     *
+     * @see #resetStatistics()
+     * @since 1.1.0
+     */
+    double getP95RequestDurationMsec();
+
+    /**
+     * Returns the request processing time in milliseconds below which 99% of
+     * the requests have been processed since resetting the statistics.
+     *
+     * @see #resetStatistics()
+     * @since 1.1.0
+     */
+    double getP99RequestDurationMsec();
+
+    /**
+     * Returns the request processing time in milliseconds below which 99.9%
+     * of the requests have been processed since resetting the statistics.
+     *
+     * @see #resetStatistics()
+     * @since 1.1.0
+     */
+    double getP999RequestDurationMsec();
+
+    /**
+     * Returns the number of requests and the request processing time
+     * percentiles for all requests and per request method, response status
+     * and resource type since resetting the statistics. Each entry describes
+     * one group of requests.
+     *
+     * @see #resetStatistics()
+     * @since 1.1.0
+     */
+    String[] getRequestDurationPercentiles();
+
     /**
      * Resets all statistics values and restarts from zero.
      */
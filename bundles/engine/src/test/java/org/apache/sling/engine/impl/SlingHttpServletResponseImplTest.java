@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.engine.impl.request.RequestData;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SlingHttpServletResponseImplTest {
+
+    private Mockery context = new JUnit4Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+
+    @Test
+    public void testStatusTracking() throws Exception {
+        final HttpServletResponse servletResponse = context.mock(HttpServletResponse.class);
+        final RequestData requestData = context.mock(RequestData.class, "requestData");
+
+        context.checking(new Expectations() {{
+            allowing(servletResponse).setStatus(with(any(Integer.class)));
+            allowing(servletResponse).sendRedirect(with(any(String.class)));
+            allowing(servletResponse).reset();
+        }});
+
+        final SlingHttpServletResponseImpl response = new SlingHttpServletResponseImpl(requestData, servletResponse);
+        Assert.assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+
+        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        Assert.assertEquals(HttpServletResponse.SC_NOT_FOUND, response.getStatus());
+
+        response.reset();
+        Assert.assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+
+        response.sendRedirect("/target");
+        Assert.assertEquals(HttpServletResponse.SC_FOUND, response.getStatus());
+
+        // set by the error handling on another response
+        response.recordStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        Assert.assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, response.getStatus());
+    }
+}
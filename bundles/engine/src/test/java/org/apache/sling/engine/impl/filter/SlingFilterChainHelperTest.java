@@ -17,9 +17,13 @@
 package org.apache.sling.engine.impl.filter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import javax.servlet.Filter;
 
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
@@ -50,4 +54,71 @@ public class SlingFilterChainHelperTest {
         assertEquals("3:-100", entries[3].getOrderSource());
         assertEquals("4:-1000", entries[4].getOrderSource());
     }
+
+    @Test public void testSelectByPath() {
+        final SlingFilterChainHelper chain = new SlingFilterChainHelper();
+
+        chain.addFilter(context.mock(Filter.class, "A"), null, 1L, 100, "1:100");
+        chain.addFilter(context.mock(Filter.class, "B"), "/content/.*", 2L, 50, "2:50");
+        chain.addFilter(context.mock(Filter.class, "C"), "/apps/.*", 3L, 10, "3:10");
+
+        final SlingHttpServletRequest content = request("/content/page.html");
+        final SlingHttpServletRequest root = request(null);
+
+        FilterHandle[] entries = chain.getFilters(content);
+        assertEquals(2, entries.length);
+        assertEquals("1:100", entries[0].getOrderSource());
+        assertEquals("2:50", entries[1].getOrderSource());
+        assertSame(entries, chain.getFilters(content));
+
+        entries = chain.getFilters(root);
+        assertEquals(1, entries.length);
+        assertEquals("1:100", entries[0].getOrderSource());
+
+        // the cached chains are dropped when the filters change
+        chain.addFilter(context.mock(Filter.class, "D"), "/content/.*", 4L, 0, "4:0");
+        entries = chain.getFilters(content);
+        assertEquals(3, entries.length);
+        assertEquals("4:0", entries[2].getOrderSource());
+
+        chain.removeFilterById(2L);
+        assertEquals(2, chain.getFilters(content).length);
+    }
+
+    @Test public void testEvictLeastRecentlyUsedChain() {
+        final SlingFilterChainHelper chain = new SlingFilterChainHelper();
+        chain.addFilter(context.mock(Filter.class, "A"), "/content/.*", 1L, 100, "1:100");
+
+        final SlingHttpServletRequest first = request("/content/first.html");
+        final FilterHandle[] firstEntries = chain.getFilters(first);
+        final SlingHttpServletRequest eldest = request("/content/eldest.html");
+        final FilterHandle[] eldestEntries = chain.getFilters(eldest);
+        for (int i = 1; i < SlingFilterChainHelper.MAX_CACHED_CHAINS; i++) {
+            chain.getFilters(request("/content/page" + i + ".html"));
+            // keep the first path recently used
+            assertSame(firstEntries, chain.getFilters(first));
+        }
+
+        // the recently used chain is kept, the eldest one has been evicted
+        assertSame(firstEntries, chain.getFilters(first));
+        assertNotSame(eldestEntries, chain.getFilters(eldest));
+    }
+
+    @Test public void testNoPatterns() {
+        final SlingFilterChainHelper chain = new SlingFilterChainHelper();
+        chain.addFilter(context.mock(Filter.class, "A"), null, 1L, 100, "1:100");
+        chain.addFilter(context.mock(Filter.class, "B"), "", 2L, 50, "2:50");
+
+        // without patterns all filters apply and no path is needed
+        assertSame(chain.getFilters(), chain.getFilters(context.mock(SlingHttpServletRequest.class)));
+    }
+
+    private SlingHttpServletRequest request(final String pathInfo) {
+        final SlingHttpServletRequest request = context.mock(SlingHttpServletRequest.class, "request " + pathInfo);
+        context.checking(new Expectations() {{
+            allowing(request).getPathInfo();
+            will(returnValue(pathInfo));
+        }});
+        return request;
+    }
 }
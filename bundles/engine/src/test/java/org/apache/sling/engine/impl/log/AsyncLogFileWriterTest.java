@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class AsyncLogFileWriterTest extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.dir = File.createTempFile("requestlog", "");
+        this.dir.delete();
+        this.dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        final File[] files = this.dir.listFiles();
+        if (files != null) {
+            for (final File f : files) {
+                f.delete();
+            }
+        }
+        this.dir.delete();
+        super.tearDown();
+    }
+
+    public void testWriteConcurrently() throws Exception {
+        final File file = new File(this.dir, "access.log");
+        final AsyncLogFileWriter writer = new AsyncLogFileWriter(file, 0);
+
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        // retry dropped lines to check all are written
+                        while (!writer.write("thread" + id + " line" + i)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (final Thread t : threads) {
+            t.join();
+        }
+        writer.close();
+
+        final List<String> lines = readLines(file);
+        assertEquals(4000, lines.size());
+        assertEquals(4000, writer.getWrittenCount());
+        assertEquals(0, writer.getFailedCount());
+        for (int t = 0; t < threads.length; t++) {
+            int last = -1;
+            for (final String line : lines) {
+                if (line.startsWith("thread" + t + " ")) {
+                    final int i = Integer.parseInt(line.substring(line.indexOf("line") + 4));
+                    assertEquals(last + 1, i);
+                    last = i;
+                }
+            }
+            assertEquals(999, last);
+        }
+    }
+
+    public void testDropWhenFull() throws Exception {
+        final File file = new File(this.dir, "full.log");
+        final AsyncLogFileWriter writer = new AsyncLogFileWriter(file, 0, 4);
+        int queued = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (writer.write("line" + i)) {
+                queued++;
+            }
+        }
+        writer.close();
+        assertEquals(10000 - queued, writer.getDroppedCount());
+        assertEquals(queued, readLines(file).size());
+
+        assertFalse(writer.write("closed"));
+    }
+
+    public void testRotate() throws Exception {
+        final File file = new File(this.dir, "rotated.log");
+        final StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            line.append('x');
+        }
+
+        for (int round = 0; round < AsyncLogFileWriter.MAX_BACKUPS + 2; round++) {
+            final AsyncLogFileWriter writer = new AsyncLogFileWriter(file, 150);
+            writer.write(line.toString());
+            writer.close();
+        }
+
+        assertEquals(1, readLines(file).size());
+        for (int i = 1; i <= AsyncLogFileWriter.MAX_BACKUPS; i++) {
+            final File backup = new File(file.getPath() + "." + i);
+            assertTrue(backup.exists());
+            assertEquals(1, readLines(backup).size());
+        }
+        assertFalse(new File(file.getPath() + "." + (AsyncLogFileWriter.MAX_BACKUPS + 1)).exists());
+    }
+
+    private static List<String> readLines(final File file) throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        final BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class RequestMetricsTest {
+
+    @Test
+    public void testLabels() {
+        final RequestMetrics metrics = new RequestMetrics();
+        metrics.record("GET", 200, "sling/test", 2000000L);
+        metrics.record("POST", 500, null, 4000000L);
+        for (int i = 0; i < RequestMetrics.MAX_KEYS + 10; i++) {
+            metrics.record("M" + i, 200, null, 1000L);
+        }
+        assertEquals(RequestMetrics.MAX_KEYS + 12, metrics.getTotal().snapshot().getCount());
+
+        final String[] lines = metrics.getPercentiles();
+        assertTrue(lines[0], lines[0].startsWith("all count=" + (RequestMetrics.MAX_KEYS + 12) + " p50="));
+        // all, the capped methods plus other, two statuses and one resource type
+        assertEquals(1 + RequestMetrics.MAX_KEYS + 1 + 2 + 1, lines.length);
+
+        final StringWriter out = new StringWriter();
+        metrics.write(new PrintWriter(out));
+        final String text = out.toString();
+        assertTrue(text, text.contains("# TYPE sling_request_duration_seconds summary"));
+        assertTrue(text, text.contains("sling_request_duration_by_method_seconds_count{method=\"GET\"} 1"));
+        assertTrue(text, text.contains("sling_request_duration_by_method_seconds_count{method=\"other\"}"));
+        assertTrue(text, text.contains("sling_request_duration_by_status_seconds_count{status=\"500\"} 1"));
+        assertTrue(text, text.contains("sling_request_duration_by_resource_type_seconds{resourceType=\"sling/test\",quantile=\"0.5\"}"));
+
+        metrics.reset();
+        assertEquals(1, metrics.getPercentiles().length);
+    }
+
+    @Test
+    public void testEscape() {
+        assertEquals("a\\\"b\\\\c\\n", RequestMetrics.escape("a\"b\\c\n"));
+    }
+
+    @Test
+    public void testWrite() {
+        final RequestMetrics metrics = new RequestMetrics();
+        metrics.record("GET", 200, "sling/test", 2000000L);
+        metrics.record("GET", 404, null, 4000000L);
+
+        final StringWriter out = new StringWriter();
+        metrics.write(new PrintWriter(out));
+        final String[] lines = out.toString().split("\n");
+
+        assertEquals("# HELP sling_request_duration_seconds Processing time of Sling requests.", lines[0]);
+        assertEquals("# TYPE sling_request_duration_seconds summary", lines[1]);
+        assertTrue(lines[2], lines[2].startsWith("sling_request_duration_seconds{quantile=\"0.5\"} 0.00"));
+        assertTrue(lines[5], lines[5].startsWith("sling_request_duration_seconds{quantile=\"0.999\"} 0.004"));
+        assertEquals("sling_request_duration_seconds_sum 0.006", lines[6]);
+        assertEquals("sling_request_duration_seconds_count 2", lines[7]);
+        assertEquals("# HELP sling_request_duration_by_method_seconds Processing time of Sling requests by method.",
+            lines[8]);
+        assertEquals("# TYPE sling_request_duration_by_method_seconds summary", lines[9]);
+        assertEquals("sling_request_duration_by_method_seconds_sum{method=\"GET\"} 0.006", lines[14]);
+        assertEquals("sling_request_duration_by_method_seconds_count{method=\"GET\"} 2", lines[15]);
+        assertEquals("sling_request_duration_by_status_seconds_count{status=\"200\"} 1", lines[23]);
+        assertEquals("sling_request_duration_by_status_seconds_count{status=\"404\"} 1", lines[29]);
+        assertEquals("sling_request_duration_by_resource_type_seconds_count{resourceType=\"sling/test\"} 1",
+            lines[37]);
+        assertEquals(38, lines.length);
+
+        // every sample line has a name, optional labels and a value
+        for (final String line : lines) {
+            assertTrue(line, line.startsWith("# ") || line.matches("[a-z_]+(\\{[^}]*\\})? [0-9.E-]+"));
+        }
+    }
+}
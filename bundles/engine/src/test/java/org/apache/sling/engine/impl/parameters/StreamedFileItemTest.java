@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.fileupload.FileItemHeaders;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.disk.DiskFileItemFactory;
+
+public class StreamedFileItemTest extends TestCase {
+
+    private static final byte[] CONTENT = "streamed content".getBytes();
+
+    private int opened;
+
+    private FileItemStream createItem() {
+        return new FileItemStream() {
+
+            public InputStream openStream() throws IOException {
+                opened++;
+                return new ByteArrayInputStream(CONTENT);
+            }
+
+            public String getContentType() {
+                return "application/octet-stream";
+            }
+
+            public String getName() {
+                return "file.bin";
+            }
+
+            public String getFieldName() {
+                return "file";
+            }
+
+            public boolean isFormField() {
+                return false;
+            }
+
+            public FileItemHeaders getHeaders() {
+                return null;
+            }
+
+            public void setHeaders(FileItemHeaders headers) {
+                // not used
+            }
+        };
+    }
+
+    public void testStreamOnlyOnce() throws IOException {
+        final MultipartRequestParameter param = new MultipartRequestParameter(new StreamedFileItem(createItem(), new DiskFileItemFactory(), null));
+        assertEquals("file", param.getName());
+        assertEquals("file.bin", param.getFileName());
+        assertFalse(param.isFormField());
+
+        final InputStream in = param.getInputStream();
+        assertEquals(CONTENT[0], in.read());
+        assertEquals(1, param.getSize());
+        try {
+            param.getInputStream();
+            fail("Stream must only be retrieved once");
+        } catch (final IOException expected) {
+            // expected
+        }
+        try {
+            param.get();
+            fail("Content must not be available after the stream has been retrieved");
+        } catch (final IllegalStateException expected) {
+            // expected
+        }
+        assertEquals(1, opened);
+    }
+
+    public void testBufferedOnGet() throws IOException {
+        final MultipartRequestParameter param = new MultipartRequestParameter(new StreamedFileItem(createItem(), new DiskFileItemFactory(), null));
+        assertEquals("streamed content", param.getString());
+        assertEquals(CONTENT.length, param.getSize());
+
+        // the stream is now served from the buffered item
+        final InputStream in = param.getInputStream();
+        assertEquals(CONTENT[0], in.read());
+        assertEquals(CONTENT[0], param.getInputStream().read());
+        assertEquals(1, opened);
+    }
+
+    public void testBufferedOnSize() throws IOException {
+        final MultipartRequestParameter param = new MultipartRequestParameter(new StreamedFileItem(createItem(), new DiskFileItemFactory(), null));
+        assertEquals(CONTENT.length, param.getSize());
+
+        // the stream is now served from the buffered item
+        assertEquals(CONTENT[0], param.getInputStream().read());
+        assertEquals("streamed content", param.getString());
+        assertEquals(1, opened);
+    }
+
+    public void testWrite() throws Exception {
+        final StreamedFileItem item = new StreamedFileItem(createItem(), new DiskFileItemFactory(), null);
+        final File file = File.createTempFile("streamed", ".bin");
+        try {
+            item.write(file);
+            assertEquals(CONTENT.length, file.length());
+            final InputStream in = new FileInputStream(file);
+            try {
+                assertEquals(CONTENT[0], in.read());
+            } finally {
+                in.close();
+            }
+        } finally {
+            file.delete();
+        }
+        assertEquals(1, opened);
+    }
+}
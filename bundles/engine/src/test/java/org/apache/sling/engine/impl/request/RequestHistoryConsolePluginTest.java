@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.engine.impl.request.RequestHistoryConsolePlugin.Plugin;
+import org.apache.sling.engine.impl.request.RequestHistoryConsolePlugin.RequestInfo;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(JMock.class)
+public class RequestHistoryConsolePluginTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    private int requestCount;
+
+    @Test
+    public void testRingKeepsMostRecent() {
+        final Plugin plugin = new Plugin(3, null, 1);
+        for (int i = 1; i <= 5; i++) {
+            plugin.addRequest(request("/content/page" + i), 200, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        final List<RequestInfo> infos = plugin.getRequests().values();
+        assertEquals(3, infos.size());
+        assertEquals("/content/page3", infos.get(0).getPathInfo());
+        assertEquals("/content/page5", infos.get(2).getPathInfo());
+        assertEquals(5, infos.get(2).getDuration());
+
+        assertEquals("/content/page4", plugin.getRequests().get("4").getPathInfo());
+        assertNull(plugin.getRequests().get("1"));
+        assertNull(plugin.getRequests().get("foo"));
+    }
+
+    @Test
+    public void testPatternsAndSampling() {
+        final List<Pattern> patterns = Collections.singletonList(Pattern.compile("/content/.*"));
+        final Plugin plugin = new Plugin(10, patterns, 2);
+        for (int i = 1; i <= 4; i++) {
+            plugin.addRequest(request("/content/page" + i), 200, 0);
+            plugin.addRequest(request("/apps/script" + i), 200, 0);
+        }
+
+        final List<RequestInfo> infos = plugin.getRequests().values();
+        assertEquals(2, infos.size());
+        assertEquals("/content/page1", infos.get(0).getPathInfo());
+        assertEquals("/content/page3", infos.get(1).getPathInfo());
+    }
+
+    @Test
+    public void testJsonQuery() throws Exception {
+        final Plugin plugin = new Plugin(10, null, 1);
+        plugin.addRequest(request("/content/fast"), 200, TimeUnit.MILLISECONDS.toNanos(2));
+        plugin.addRequest(request("/content/slow\"quoted\""), 500, TimeUnit.MILLISECONDS.toNanos(2000));
+        plugin.addRequest(request("/apps/slow"), 200, TimeUnit.MILLISECONDS.toNanos(3000));
+
+        String json = query(plugin, "1000", null);
+        assertTrue(json, json.startsWith("{\"enabled\":true,\"requests\":[{\"index\":3,\"method\":\"GET\",\"path\":\"/apps/slow\""));
+        assertTrue(json, json.contains("\"path\":\"/content/slow\\\"quoted\\\"\",\"user\":null,\"status\":500,\"duration\":2000"));
+        assertTrue(json, !json.contains("/content/fast"));
+
+        json = query(plugin, null, "/content/.*");
+        assertTrue(json, json.contains("/content/fast"));
+        assertTrue(json, !json.contains("/apps/slow"));
+    }
+
+    private String query(final Plugin plugin, final String minDuration, final String path) throws Exception {
+        final HttpServletRequest req = context.mock(HttpServletRequest.class, "query" + (++requestCount));
+        final HttpServletResponse resp = context.mock(HttpServletResponse.class, "response" + requestCount);
+        final StringWriter out = new StringWriter();
+        context.checking(new Expectations() {{
+            allowing(req).getPathInfo();
+            will(returnValue("/requests/data.json"));
+            allowing(req).getParameter(RequestHistoryConsolePlugin.MIN_DURATION);
+            will(returnValue(minDuration));
+            allowing(req).getParameter(RequestHistoryConsolePlugin.PATH);
+            will(returnValue(path));
+            allowing(req).getParameter(with(any(String.class)));
+            will(returnValue(null));
+            allowing(resp).setContentType("application/json");
+            allowing(resp).setCharacterEncoding("UTF-8");
+            allowing(resp).getWriter();
+            will(returnValue(new PrintWriter(out)));
+        }});
+        plugin.doGet(req, resp);
+        return out.toString();
+    }
+
+    private SlingHttpServletRequest request(final String path) {
+        final SlingHttpServletRequest request = context.mock(SlingHttpServletRequest.class, "request" + (++requestCount));
+        context.checking(new Expectations() {{
+            allowing(request).getMethod();
+            will(returnValue("GET"));
+            allowing(request).getPathInfo();
+            will(returnValue(path));
+            allowing(request).getRemoteUser();
+            will(returnValue(null));
+            allowing(request).getRequestProgressTracker();
+            will(returnValue(null));
+        }});
+        return request;
+    }
+}
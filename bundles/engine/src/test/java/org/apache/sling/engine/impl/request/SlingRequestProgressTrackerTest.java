@@ -17,6 +17,8 @@
 package org.apache.sling.engine.impl.request;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Iterator;
 
@@ -62,6 +64,54 @@ public class SlingRequestProgressTrackerTest {
         assertEquals(expected.length, messageCounter);
     }
 
+    @Test
+    public void manyEntries() {
+        final SlingRequestProgressTracker tracker = new SlingRequestProgressTracker();
+        for (int i = 0; i < 100; i++) {
+            tracker.log("entry {0}", i);
+        }
+        tracker.log("plain {0}");
+
+        final Iterator<String> messages = tracker.getMessages();
+        // skip initial timer and comment
+        messages.next();
+        messages.next();
+        for (int i = 0; i < 100; i++) {
+            assertEquals("LOG entry " + i + "\n", messages.next().substring(8));
+        }
+        assertEquals("LOG plain {0}\n", messages.next().substring(8));
+        assertFalse(messages.hasNext());
+    }
+
+    @Test
+    public void disabledTracking() {
+        final SlingRequestProgressTracker tracker = new SlingRequestProgressTracker(false);
+        assertFalse(tracker.isEnabled());
+        tracker.startTimer("foo");
+        tracker.log("one {0}", "eins");
+        tracker.logTimer("foo");
+        tracker.done();
+
+        final String[] expected = {
+                "TIMER_START{Request Processing}\n",
+                "COMMENT timer_end format is {<elapsed msec>,<timer name>} <optional message>\n",
+                "COMMENT tracking disabled for this request\n",
+                "TIMER_END{?,Request Processing} Request Processing\n"
+        };
+
+        final Iterator<String> messages = tracker.getMessages();
+        for (final String e : expected) {
+            assertTrue(messages.hasNext());
+            final String m = messages.next();
+            if (e.startsWith("TIMER_END{")) {
+                assertEquals(substringAfter(e, ','), substringAfter(m, ','));
+            } else {
+                assertEquals(e, m.substring(8));
+            }
+        }
+        assertFalse(messages.hasNext());
+    }
+
     private String substringAfter(String string, char ch) {
         final int pos = string.indexOf(ch);
         return string.substring(pos);
@@ -21,18 +21,11 @@ package org.apache.sling.event.impl.jobs;
 
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
 
-import org.apache.sling.api.resource.ModifiableValueMap;
-import org.apache.sling.api.resource.PersistenceException;
-import org.apache.sling.api.resource.Resource;
-import org.apache.sling.api.resource.ResourceResolver;
-import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.event.impl.jobs.config.JobManagerConfiguration;
 import org.apache.sling.event.impl.jobs.config.QueueConfigurationManager.QueueInfo;
 import org.apache.sling.event.impl.jobs.config.TopologyCapabilities;
-import org.apache.sling.event.impl.support.ResourceHelper;
+import org.apache.sling.event.impl.support.Environment;
 import org.apache.sling.event.jobs.Job;
 import org.apache.sling.event.jobs.Queue;
 import org.apache.sling.event.jobs.consumer.JobExecutor;
@@ -80,29 +73,7 @@ public class JobHandler {
      * @return <code>true</code> if rescheduling was successful, <code>false</code> otherwise.
      */
     public boolean reschedule() {
-        final ResourceResolver resolver = this.configuration.createResourceResolver();
-        try {
-            final Resource jobResource = resolver.getResource(job.getResourcePath());
-            if ( jobResource != null ) {
-                final ModifiableValueMap mvm = jobResource.adaptTo(ModifiableValueMap.class);
-                mvm.put(Job.PROPERTY_JOB_RETRY_COUNT, job.getProperty(Job.PROPERTY_JOB_RETRY_COUNT, Integer.class));
-                if ( job.getProperty(Job.PROPERTY_RESULT_MESSAGE) != null ) {
-                    mvm.put(Job.PROPERTY_RESULT_MESSAGE, job.getProperty(Job.PROPERTY_RESULT_MESSAGE));
-                }
-                mvm.remove(Job.PROPERTY_JOB_STARTED_TIME);
-                mvm.put(JobImpl.PROPERTY_JOB_QUEUED, Calendar.getInstance());
-                try {
-                    resolver.commit();
-                    return true;
-                } catch ( final PersistenceException pe ) {
-                    this.configuration.getMainLogger().debug("Unable to update reschedule properties for job " + job.getId(), pe);
-                }
-            }
-        } finally {
-            resolver.close();
-        }
-
-        return false;
+        return this.configuration.getJobStore().reschedule(this.job);
     }
 
     /**
@@ -115,52 +86,29 @@ public class JobHandler {
                           final boolean keepJobInHistory,
                           final Long duration) {
         final boolean isSuccess = (state == Job.JobState.SUCCEEDED);
-        final ResourceResolver resolver = this.configuration.createResourceResolver();
-        try {
-            final Resource jobResource = resolver.getResource(job.getResourcePath());
-            if ( jobResource != null ) {
-                try {
-                    String newPath = null;
-                    if ( keepJobInHistory ) {
-                        final ValueMap vm = ResourceHelper.getValueMap(jobResource);
-                        newPath = this.configuration.getStoragePath(job.getTopic(), job.getId(), isSuccess);
-                        final Map<String, Object> props = new HashMap<String, Object>(vm);
-                        props.put(JobImpl.PROPERTY_FINISHED_STATE, state.name());
-                        if ( isSuccess ) {
-                            // we set the finish date to start date + duration
-                            final Date finishDate = new Date();
-                            finishDate.setTime(job.getProcessingStarted().getTime().getTime() + duration);
-                            final Calendar finishCal = Calendar.getInstance();
-                            finishCal.setTime(finishDate);
-                            props.put(JobImpl.PROPERTY_FINISHED_DATE, finishCal);
-                        } else {
-                            // current time is good enough
-                            props.put(JobImpl.PROPERTY_FINISHED_DATE, Calendar.getInstance());
-                        }
-                        if ( job.getProperty(Job.PROPERTY_RESULT_MESSAGE) != null ) {
-                            props.put(Job.PROPERTY_RESULT_MESSAGE, job.getProperty(Job.PROPERTY_RESULT_MESSAGE));
-                        }
-                        ResourceHelper.getOrCreateResource(resolver, newPath, props);
-                    }
-                    resolver.delete(jobResource);
-                    resolver.commit();
+        String newPath = null;
+        Calendar finishCal = null;
+        if ( keepJobInHistory ) {
+            newPath = this.configuration.getStoragePath(job.getTopic(), job.getId(), isSuccess);
+            if ( isSuccess ) {
+                // we set the finish date to start date + duration
+                final Date finishDate = new Date();
+                finishDate.setTime(job.getProcessingStarted().getTime().getTime() + duration);
+                finishCal = Calendar.getInstance();
+                finishCal.setTime(finishDate);
+            } else {
+                // current time is good enough
+                finishCal = Calendar.getInstance();
+            }
+        }
+        this.configuration.getJobStore().finish(this.job, state, finishCal, newPath);
 
-                    if ( keepJobInHistory && configuration.getMainLogger().isDebugEnabled() ) {
-                        if ( isSuccess ) {
-                            configuration.getMainLogger().debug("Kept successful job {} at {}", Utility.toString(job), newPath);
-                        } else {
-                            configuration.getMainLogger().debug("Moved cancelled job {} to {}", Utility.toString(job), newPath);
-                        }
-                    }
-                } catch ( final PersistenceException pe ) {
-                    this.configuration.getMainLogger().warn("Unable to finish job " + job.getId(), pe);
-                } catch (final InstantiationException ie) {
-                    // something happened with the resource in the meantime
-                    this.configuration.getMainLogger().debug("Unable to instantiate job", ie);
-                }
+        if ( keepJobInHistory && configuration.getMainLogger().isDebugEnabled() ) {
+            if ( isSuccess ) {
+                configuration.getMainLogger().debug("Kept successful job {} at {}", Utility.toString(job), newPath);
+            } else {
+                configuration.getMainLogger().debug("Moved cancelled job {} to {}", Utility.toString(job), newPath);
             }
-        } finally {
-            resolver.close();
         }
     }
 
@@ -170,79 +118,26 @@ public class JobHandler {
     public void reassign() {
         final QueueInfo queueInfo = this.configuration.getQueueConfigurationManager().getQueueInfo(job.getTopic());
         // Sanity check if queue configuration has changed
-        final TopologyCapabilities caps = this.configuration.getTopologyCapabilities();
-        final String targetId = (caps == null ? null : caps.detectTarget(job.getTopic(), job.getProperties(), queueInfo));
-
-        final ResourceResolver resolver = this.configuration.createResourceResolver();
-        try {
-            final Resource jobResource = resolver.getResource(job.getResourcePath());
-            if ( jobResource != null ) {
-                try {
-                    final ValueMap vm = ResourceHelper.getValueMap(jobResource);
-                    final String newPath = this.configuration.getUniquePath(targetId, job.getTopic(), job.getId(), job.getProperties());
-
-                    final Map<String, Object> props = new HashMap<String, Object>(vm);
-                    props.remove(Job.PROPERTY_JOB_QUEUE_NAME);
-                    if ( targetId == null ) {
-                        props.remove(Job.PROPERTY_JOB_TARGET_INSTANCE);
-                    } else {
-                        props.put(Job.PROPERTY_JOB_TARGET_INSTANCE, targetId);
-                    }
-                    props.remove(Job.PROPERTY_JOB_STARTED_TIME);
-
-                    try {
-                        ResourceHelper.getOrCreateResource(resolver, newPath, props);
-                        resolver.delete(jobResource);
-                        resolver.commit();
-                    } catch ( final PersistenceException pe ) {
-                        this.configuration.getMainLogger().warn("Unable to reassign job " + job.getId(), pe);
-                    }
-                } catch (final InstantiationException ie) {
-                    // something happened with the resource in the meantime
-                    this.configuration.getMainLogger().debug("Unable to instantiate job", ie);
-                }
-            }
-        } finally {
-            resolver.close();
+        final String targetId;
+        if ( this.configuration.getJobStore().isDistributed() ) {
+            final TopologyCapabilities caps = this.configuration.getTopologyCapabilities();
+            targetId = (caps == null ? null : caps.detectTarget(job.getTopic(), job.getProperties(), queueInfo));
+        } else {
+            // jobs of a local store stay at this instance
+            targetId = Environment.APPLICATION_ID;
         }
+        final String newPath = this.configuration.getUniquePath(targetId, job.getTopic(), job.getId(), job.getProperties());
+        this.configuration.getJobStore().reassign(this.job, newPath, targetId);
     }
 
     /**
-     * Update the property of a job in the resource tree
+     * Update the property of a job in the job store
      * @param propNames the property names to update
      * @return {@code true} if the update was successful.
      */
     public boolean persistJobProperties(final String... propNames) {
         if ( propNames != null ) {
-            final ResourceResolver resolver = this.configuration.createResourceResolver();
-            try {
-                final Resource jobResource = resolver.getResource(job.getResourcePath());
-                if ( jobResource != null ) {
-                    final ModifiableValueMap mvm = jobResource.adaptTo(ModifiableValueMap.class);
-                    for(final String propName : propNames) {
-                        final Object val = job.getProperty(propName);
-                        if ( val != null ) {
-                            if ( val.getClass().isEnum() ) {
-                                mvm.put(propName, val.toString());
-                            } else {
-                                mvm.put(propName, val);
-                            }
-                        } else {
-                            mvm.remove(propName);
-                        }
-                    }
-                    resolver.commit();
-
-                    return true;
-                } else {
-                    this.configuration.getMainLogger().debug("No job resource found at {}", job.getResourcePath());
-                }
-            } catch ( final PersistenceException ignore ) {
-                this.configuration.getMainLogger().debug("Unable to persist properties", ignore);
-            } finally {
-                resolver.close();
-            }
-            return false;
+            return this.configuration.getJobStore().updateProperties(this.job, propNames);
         }
         return true;
     }
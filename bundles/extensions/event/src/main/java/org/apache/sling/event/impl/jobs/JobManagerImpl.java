@@ -21,7 +21,9 @@ package org.apache.sling.event.impl.jobs;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -33,11 +35,9 @@ import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
-import org.apache.jackrabbit.util.ISO9075;
 import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.PersistenceException;
-import org.apache.sling.api.resource.QuerySyntaxException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
@@ -51,6 +51,7 @@ import org.apache.sling.event.impl.jobs.queues.JobQueueImpl;
 import org.apache.sling.event.impl.jobs.queues.QueueManager;
 import org.apache.sling.event.impl.jobs.scheduling.JobSchedulerImpl;
 import org.apache.sling.event.impl.jobs.stats.StatisticsManager;
+import org.apache.sling.event.impl.jobs.store.JobStore;
 import org.apache.sling.event.impl.jobs.tasks.CleanUpTask;
 import org.apache.sling.event.impl.support.Environment;
 import org.apache.sling.event.impl.support.ResourceHelper;
@@ -162,6 +163,10 @@ public class JobManagerImpl
         if ( task != null ) {
             task.run();
         }
+        final JobStore store = this.configuration.getJobStore();
+        if ( store != null ) {
+            store.maintain();
+        }
     }
 
     /**
@@ -329,22 +334,10 @@ public class JobManagerImpl
                 final boolean isHistoryJob = this.configuration.isStoragePath(job.getResourcePath());
                 // if history job, simply remove - otherwise move to history!
                 if ( isHistoryJob ) {
-                    final ResourceResolver resolver = this.configuration.createResourceResolver();
-                    try {
-                        final Resource jobResource = resolver.getResource(job.getResourcePath());
-                        if ( jobResource != null ) {
-                            resolver.delete(jobResource);
-                            resolver.commit();
-                            logger.debug("Removed job with id: {}", jobId);
-                        } else {
-                            logger.debug("Unable to remove job with id - resource already removed: {}", jobId);
-                        }
+                    if ( this.configuration.getJobStore().remove(job) ) {
                         NotificationUtility.sendNotification(this.eventAdmin, NotificationConstants.TOPIC_JOB_REMOVED, job, null);
-                    } catch ( final PersistenceException pe) {
-                        logger.warn("Unable to remove job at " + job.getResourcePath(), pe);
+                    } else {
                         result = false;
-                    } finally {
-                        resolver.close();
                     }
                 } else {
                     final JobHandler jh = new JobHandler(job, null, this.configuration);
@@ -390,36 +383,7 @@ public class JobManagerImpl
     @Override
     public Job getJobByName(final String name) {
         Utility.logDeprecated(logger, "Deprecated JobManager.getJobByName(String) is called.");
-        final StringBuilder buf = new StringBuilder(64);
-
-        final ResourceResolver resolver = this.configuration.createResourceResolver();
-        try {
-
-            buf.append("//element(*,");
-            buf.append(ResourceHelper.RESOURCE_TYPE_JOB);
-            buf.append(")[@");
-            buf.append(ISO9075.encode(JobUtil.PROPERTY_JOB_NAME));
-            buf.append(" = '");
-            buf.append(name);
-            buf.append("']");
-            final Iterator<Resource> result = resolver.findResources(buf.toString(), "xpath");
-
-            while ( result.hasNext() ) {
-                final Resource jobResource = result.next();
-                // sanity check for the path
-                if ( this.configuration.isJob(jobResource.getPath()) ) {
-                    final JobImpl job = Utility.readJob(logger, jobResource);
-                    if ( job != null ) {
-                        return job;
-                    }
-                }
-            }
-        } catch (final QuerySyntaxException qse) {
-            logger.warn("Query syntax wrong " + buf.toString(), qse);
-        } finally {
-            resolver.close();
-        }
-        return null;
+        return this.configuration.getJobStore().getJobByName(name);
     }
 
     /**
@@ -428,39 +392,12 @@ public class JobManagerImpl
     @Override
     public Job getJobById(final String id) {
         logger.debug("Getting job by id: {}", id);
-        final ResourceResolver resolver = this.configuration.createResourceResolver();
-        final StringBuilder buf = new StringBuilder(64);
-        try {
-
-            buf.append("//element(*,");
-            buf.append(ResourceHelper.RESOURCE_TYPE_JOB);
-            buf.append(")[@");
-            buf.append(ResourceHelper.PROPERTY_JOB_ID);
-            buf.append(" = '");
-            buf.append(id);
-            buf.append("']");
+        final JobImpl job = this.configuration.getJobStore().getJobById(id);
+        if ( job != null ) {
             if ( logger.isDebugEnabled() ) {
-                logger.debug("Exceuting query: {}", buf.toString());
-            }
-            final Iterator<Resource> result = resolver.findResources(buf.toString(), "xpath");
-
-            while ( result.hasNext() ) {
-                final Resource jobResource = result.next();
-                // sanity check for the path
-                if ( this.configuration.isJob(jobResource.getPath()) ) {
-                    final JobImpl job = Utility.readJob(logger, jobResource);
-                    if ( job != null ) {
-                        if ( logger.isDebugEnabled() ) {
-                            logger.debug("Found job with id {} = {}", id, Utility.toString(job));
-                        }
-                        return job;
-                    }
-                }
+                logger.debug("Found job with id {} = {}", id, Utility.toString(job));
             }
-        } catch (final QuerySyntaxException qse) {
-            logger.warn("Query syntax wrong " + buf.toString(), qse);
-        } finally {
-            resolver.close();
+            return job;
         }
         logger.debug("Job not found with id: {}", id);
         return null;
@@ -493,14 +430,6 @@ public class JobManagerImpl
         return this.internalRemoveJobById(jobId, true);
     }
 
-    private enum Operation {
-        LESS,
-        LESS_OR_EQUALS,
-        EQUALS,
-        GREATER_OR_EQUALS,
-        GREATER
-    }
-
     /**
      * @see org.apache.sling.event.jobs.JobManager#findJobs(org.apache.sling.event.jobs.JobManager.QueryType, java.lang.String, long, java.util.Map[])
      */
@@ -509,170 +438,7 @@ public class JobManagerImpl
             final String topic,
             final long limit,
             final Map<String, Object>... templates) {
-        final boolean isHistoryQuery = type == QueryType.HISTORY
-                                       || type == QueryType.SUCCEEDED
-                                       || type == QueryType.CANCELLED
-                                       || type == QueryType.DROPPED
-                                       || type == QueryType.ERROR
-                                       || type == QueryType.GIVEN_UP
-                                       || type == QueryType.STOPPED;
-        final List<Job> result = new ArrayList<Job>();
-        final ResourceResolver resolver = this.configuration.createResourceResolver();
-        final StringBuilder buf = new StringBuilder(64);
-        try {
-
-            buf.append("//element(*,");
-            buf.append(ResourceHelper.RESOURCE_TYPE_JOB);
-            buf.append(")[@");
-            buf.append(ISO9075.encode(ResourceHelper.PROPERTY_JOB_TOPIC));
-            if (topic != null) {
-                buf.append(" = '");
-                buf.append(topic);
-                buf.append("'");
-            }
-
-            // restricting on the type - history or unfinished
-            if ( isHistoryQuery ) {
-                buf.append(" and @");
-                buf.append(ISO9075.encode(JobImpl.PROPERTY_FINISHED_STATE));
-                if ( type == QueryType.SUCCEEDED || type == QueryType.DROPPED || type == QueryType.ERROR || type == QueryType.GIVEN_UP || type == QueryType.STOPPED ) {
-                    buf.append(" = '");
-                    buf.append(type.name());
-                    buf.append("'");
-                } else if ( type == QueryType.CANCELLED ) {
-                    buf.append(" and (@");
-                    buf.append(ISO9075.encode(JobImpl.PROPERTY_FINISHED_STATE));
-                    buf.append(" = '");
-                    buf.append(QueryType.DROPPED.name());
-                    buf.append("' or @");
-                    buf.append(ISO9075.encode(JobImpl.PROPERTY_FINISHED_STATE));
-                    buf.append(" = '");
-                    buf.append(QueryType.ERROR.name());
-                    buf.append("' or @");
-                    buf.append(ISO9075.encode(JobImpl.PROPERTY_FINISHED_STATE));
-                    buf.append(" = '");
-                    buf.append(QueryType.GIVEN_UP.name());
-                    buf.append("' or @");
-                    buf.append(ISO9075.encode(JobImpl.PROPERTY_FINISHED_STATE));
-                    buf.append(" = '");
-                    buf.append(QueryType.STOPPED.name());
-                    buf.append("')");
-                }
-            } else {
-                buf.append(" and not(@");
-                buf.append(ISO9075.encode(JobImpl.PROPERTY_FINISHED_STATE));
-                buf.append(")");
-                if ( type == QueryType.ACTIVE ) {
-                    buf.append(" and @");
-                    buf.append(ISO9075.encode(Job.PROPERTY_JOB_STARTED_TIME));
-                } else if ( type == QueryType.QUEUED ) {
-                    buf.append(" and not(@");
-                    buf.append(ISO9075.encode(Job.PROPERTY_JOB_STARTED_TIME));
-                    buf.append(")");
-                }
-            }
-
-            if ( templates != null && templates.length > 0 ) {
-                int index = 0;
-                for (final Map<String,Object> template : templates) {
-                    // skip empty templates
-                    if ( template.size() == 0 ) {
-                        continue;
-                    }
-                    if ( index == 0 ) {
-                        buf.append(" and (");
-                    } else {
-                        buf.append(" or ");
-                    }
-                    buf.append('(');
-                    final Iterator<Map.Entry<String, Object>> i = template.entrySet().iterator();
-                    boolean first = true;
-                    while ( i.hasNext() ) {
-                        final Map.Entry<String, Object> current = i.next();
-                        final String key = ISO9075.encode(current.getKey());
-                        final char firstChar = key.length() > 0 ? key.charAt(0) : 0;
-                        final String propName;
-                        final Operation op;
-                        if ( firstChar == '=' ) {
-                            propName = key.substring(1);
-                            op  = Operation.EQUALS;
-                        } else if ( firstChar == '<' ) {
-                            final char secondChar = key.length() > 1 ? key.charAt(1) : 0;
-                            if ( secondChar == '=' ) {
-                                op = Operation.LESS_OR_EQUALS;
-                                propName = key.substring(2);
-                            } else {
-                                op = Operation.LESS;
-                                propName = key.substring(1);
-                            }
-                        } else if ( firstChar == '>' ) {
-                            final char secondChar = key.length() > 1 ? key.charAt(1) : 0;
-                            if ( secondChar == '=' ) {
-                                op = Operation.GREATER_OR_EQUALS;
-                                propName = key.substring(2);
-                            } else {
-                                op = Operation.GREATER;
-                                propName = key.substring(1);
-                            }
-                        } else {
-                            propName = key;
-                            op  = Operation.EQUALS;
-                        }
-
-                        if ( first ) {
-                            first = false;
-                            buf.append('@');
-                        } else {
-                            buf.append(" and @");
-                        }
-                        buf.append(propName);
-                        buf.append(' ');
-                        switch ( op ) {
-                            case EQUALS : buf.append('=');break;
-                            case LESS : buf.append('<'); break;
-                            case LESS_OR_EQUALS : buf.append("<="); break;
-                            case GREATER : buf.append('>'); break;
-                            case GREATER_OR_EQUALS : buf.append(">="); break;
-                        }
-                        buf.append(" '");
-                        buf.append(current.getValue());
-                        buf.append("'");
-                    }
-                    buf.append(')');
-                    index++;
-                }
-                if ( index > 0 ) {
-                    buf.append(')');
-                }
-            }
-            buf.append("] order by @");
-            if ( isHistoryQuery ) {
-                buf.append(JobImpl.PROPERTY_FINISHED_DATE);
-                buf.append(" descending");
-            } else {
-                buf.append(Job.PROPERTY_JOB_CREATED);
-                buf.append(" ascending");
-            }
-            final Iterator<Resource> iter = resolver.findResources(buf.toString(), "xpath");
-            long count = 0;
-
-            while ( iter.hasNext() && (limit < 1 || count < limit) ) {
-                final Resource jobResource = iter.next();
-                // sanity check for the path
-                if ( this.configuration.isJob(jobResource.getPath()) ) {
-                    final JobImpl job = Utility.readJob(logger, jobResource);
-                    if ( job != null ) {
-                        count++;
-                        result.add(job);
-                    }
-                }
-             }
-        } catch (final QuerySyntaxException qse) {
-            logger.warn("Query syntax wrong " + buf.toString(), qse);
-        } finally {
-            resolver.close();
-        }
-        return result;
+        return this.configuration.getJobStore().findJobs(type, topic, limit, templates);
     }
 
 
@@ -738,7 +504,7 @@ public class JobManagerImpl
     }
 
     /**
-     * Persist the job in the resource tree
+     * Persist the job in the job store
      * @param jobTopic The required job topic
      * @param jobName The optional job name
      * @param passedJobProperties The optional job properties
@@ -754,8 +520,14 @@ public class JobManagerImpl
             logger.debug("Discarding duplicate job {}", Utility.toString(jobTopic, jobName, jobProperties));
             return null;
         } else {
-            final TopologyCapabilities caps = this.configuration.getTopologyCapabilities();
-            info.targetId = (caps == null ? null : caps.detectTarget(jobTopic, jobProperties, info));
+            final JobStore store = this.configuration.getJobStore();
+            if ( store.isDistributed() ) {
+                final TopologyCapabilities caps = this.configuration.getTopologyCapabilities();
+                info.targetId = (caps == null ? null : caps.detectTarget(jobTopic, jobProperties, info));
+            } else {
+                // jobs of a local store are processed by this instance
+                info.targetId = Environment.APPLICATION_ID;
+            }
 
             if ( logger.isDebugEnabled() ) {
                 if ( info.targetId != null ) {
@@ -764,13 +536,20 @@ public class JobManagerImpl
                     logger.debug("Persisting job {} into queue {}", Utility.toString(jobTopic, jobName, jobProperties), info.queueName);
                 }
             }
-            final ResourceResolver resolver = this.configuration.createResourceResolver();
             try {
-                final JobImpl job = this.writeJob(resolver,
+                final JobImpl job = this.writeJob(store,
                         jobTopic,
                         jobName,
                         jobProperties,
                         info);
+                if ( !store.isDistributed() ) {
+                    // there is no resource event for the new job, announce it like the new job sender
+                    final Dictionary<String, Object> eventProps = new Hashtable<String, Object>();
+                    eventProps.put(NotificationConstants.NOTIFICATION_PROPERTY_JOB_ID, job.getId());
+                    eventProps.put(NotificationConstants.NOTIFICATION_PROPERTY_JOB_TOPIC, jobTopic);
+                    eventProps.put(Job.PROPERTY_JOB_QUEUE_NAME, info.queueName);
+                    this.eventAdmin.postEvent(new Event(NotificationConstants.TOPIC_JOB_ADDED, eventProps));
+                }
                 if ( info.targetId != null ) {
                     this.configuration.getAuditLogger().debug("ASSIGN OK {} : {}",
                             info.targetId, job.getId());
@@ -782,8 +561,6 @@ public class JobManagerImpl
             } catch (final PersistenceException re ) {
                 // something went wrong, so let's log it
                 this.logger.error("Exception during persisting new job '" + Utility.toString(jobTopic, jobName, jobProperties) + "'", re);
-            } finally {
-                resolver.close();
             }
             if ( errors != null ) {
                 errors.add("Unable to persist new job.");
@@ -793,13 +570,13 @@ public class JobManagerImpl
     }
 
     /**
-     * Write a job to the resource tree.
-     * @param resolver The resolver resolver
+     * Write a job to the job store.
+     * @param store The job store
      * @param event The event
      * @param info The queue information (queue name etc.)
      * @throws PersistenceException
      */
-    private JobImpl writeJob(final ResourceResolver resolver,
+    private JobImpl writeJob(final JobStore store,
             final String jobTopic,
             final String jobName,
             final Map<String, Object> jobProperties,
@@ -838,18 +615,10 @@ public class JobManagerImpl
             properties.remove(Job.PROPERTY_JOB_TARGET_INSTANCE);
         }
 
-        // create path and resource
-        properties.put(ResourceResolver.PROPERTY_RESOURCE_TYPE, ResourceHelper.RESOURCE_TYPE_JOB);
         if ( logger.isDebugEnabled() ) {
             logger.debug("Storing new job {} at {}", Utility.toString(jobTopic, jobName, properties), path);
         }
-        ResourceHelper.getOrCreateResource(resolver,
-                path,
-                properties);
-
-        // update property types - priority, add path and create job
-        properties.put(JobImpl.PROPERTY_RESOURCE_PATH, path);
-        return new JobImpl(jobTopic, jobName, jobId, properties);
+        return store.addJob(path, properties);
     }
 
     /**
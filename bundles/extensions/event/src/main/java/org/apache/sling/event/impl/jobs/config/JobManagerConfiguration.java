@@ -18,6 +18,8 @@
  */
 package org.apache.sling.event.impl.jobs.config;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.Date;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -33,12 +35,16 @@ import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Modified;
 import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.PropertyOption;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
 import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.commons.scheduler.Scheduler;
 import org.apache.sling.discovery.TopologyEvent;
@@ -46,12 +52,16 @@ import org.apache.sling.discovery.TopologyEvent.Type;
 import org.apache.sling.discovery.TopologyEventListener;
 import org.apache.sling.event.impl.EnvironmentComponent;
 import org.apache.sling.event.impl.jobs.Utility;
+import org.apache.sling.event.impl.jobs.store.JobStore;
+import org.apache.sling.event.impl.jobs.store.ResourceJobStore;
+import org.apache.sling.event.impl.jobs.store.SegmentJobStore;
 import org.apache.sling.event.impl.jobs.tasks.CheckTopologyTask;
 import org.apache.sling.event.impl.jobs.tasks.FindUnfinishedJobsTask;
 import org.apache.sling.event.impl.jobs.tasks.UpgradeTask;
 import org.apache.sling.event.impl.support.Environment;
 import org.apache.sling.event.impl.support.ResourceHelper;
 import org.apache.sling.event.jobs.Job;
+import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -80,6 +90,26 @@ import org.slf4j.LoggerFactory;
               value=JobManagerConfiguration.DEFAULT_SCHEDULED_JOBS_PATH, propertyPrivate=true),
     @Property(name=JobManagerConfiguration.PROPERTY_BACKGROUND_LOAD_DELAY,
               longValue=JobManagerConfiguration.DEFAULT_BACKGROUND_LOAD_DELAY, propertyPrivate=true),
+    @Property(name=JobManagerConfiguration.PROPERTY_JOB_STORE,
+              value=JobManagerConfiguration.DEFAULT_JOB_STORE,
+              options={@PropertyOption(name=JobManagerConfiguration.JOB_STORE_RESOURCE,value="Resource Tree"),
+                       @PropertyOption(name=JobManagerConfiguration.JOB_STORE_SEGMENT,value="Segment Log")},
+              label="Job Store",
+              description="Where jobs are stored: in the resource tree shared by all instances (default) or "
+                        + "in a local segment log in the file system. Jobs in the segment log are processed by "
+                        + "this instance only. The store is selected on activation, changing it does not migrate existing jobs."),
+    @Property(name=JobManagerConfiguration.PROPERTY_SEGMENT_PATH,
+              label="Segment Log Path",
+              description="The directory of the segment log. If not set, the bundle data area is used."),
+    @Property(name=JobManagerConfiguration.PROPERTY_SEGMENT_SIZE,
+              intValue=JobManagerConfiguration.DEFAULT_SEGMENT_SIZE,
+              label="Segment Size",
+              description="The maximum size of a segment of the segment log in MB."),
+    @Property(name=JobManagerConfiguration.PROPERTY_SEGMENT_FSYNC,
+              boolValue=JobManagerConfiguration.DEFAULT_SEGMENT_FSYNC,
+              label="Segment Log Sync",
+              description="If enabled, changes of jobs are synced to disk before the job manager returns. "
+                        + "If disabled, the latest changes might be lost in a crash."),
 })
 public class JobManagerConfiguration implements TopologyEventListener {
 
@@ -122,6 +152,33 @@ public class JobManagerConfiguration implements TopologyEventListener {
     /** Default value for deprecation warnings. */
     public static final boolean DEFAULT_LOG_DEPRECATION_WARNINGS = true;
 
+    /** Configuration property for the job store. */
+    public static final String PROPERTY_JOB_STORE = "job.store";
+
+    /** Job store persisting jobs as resources. */
+    public static final String JOB_STORE_RESOURCE = "resource";
+
+    /** Job store persisting jobs in a segment log. */
+    public static final String JOB_STORE_SEGMENT = "segment";
+
+    /** Default job store. */
+    public static final String DEFAULT_JOB_STORE = JOB_STORE_RESOURCE;
+
+    /** Configuration property for the directory of the segment log. */
+    public static final String PROPERTY_SEGMENT_PATH = "job.store.segment.path";
+
+    /** Configuration property for the segment size in MB. */
+    public static final String PROPERTY_SEGMENT_SIZE = "job.store.segment.size";
+
+    /** Default segment size in MB. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64;
+
+    /** Configuration property for syncing the segment log. */
+    public static final String PROPERTY_SEGMENT_FSYNC = "job.store.segment.fsync";
+
+    /** Default for syncing the segment log. */
+    public static final boolean DEFAULT_SEGMENT_FSYNC = true;
+
     /** The jobs base path with a slash. */
     private String jobsBasePathWithSlash;
 
@@ -177,6 +234,12 @@ public class JobManagerConfiguration implements TopologyEventListener {
     @Reference
     private Scheduler scheduler;
 
+    @Reference(cardinality=ReferenceCardinality.OPTIONAL_UNARY, policy=ReferencePolicy.DYNAMIC)
+    private volatile DynamicClassLoaderManager dynamicClassLoaderManager;
+
+    /** The job store. */
+    private volatile JobStore jobStore;
+
     /** Is this still active? */
     private final AtomicBoolean active = new AtomicBoolean(false);
 
@@ -187,11 +250,12 @@ public class JobManagerConfiguration implements TopologyEventListener {
 
     /**
      * Activate this component.
+     * @param bundleContext The bundle context
      * @param props Configuration properties
-     * @throws RuntimeException If the default paths can't be created
+     * @throws RuntimeException If the default paths or the job store can't be created
      */
     @Activate
-    protected void activate(final Map<String, Object> props) {
+    protected void activate(final BundleContext bundleContext, final Map<String, Object> props) {
         this.update(props);
         this.jobsBasePathWithSlash = PropertiesUtil.toString(props.get(PROPERTY_REPOSITORY_PATH),
                 DEFAULT_REPOSITORY_PATH) + '/';
@@ -227,10 +291,55 @@ public class JobManagerConfiguration implements TopologyEventListener {
         } finally {
             resolver.close();
         }
+        this.jobStore = this.createJobStore(bundleContext, props);
         this.active.set(true);
         this.queueConfigManager.addListener(this);
     }
 
+    /**
+     * Create the configured job store.
+     * @throws RuntimeException If the job store can't be created
+     */
+    private JobStore createJobStore(final BundleContext bundleContext, final Map<String, Object> props) {
+        final String type = PropertiesUtil.toString(props.get(PROPERTY_JOB_STORE), DEFAULT_JOB_STORE);
+        if ( JOB_STORE_SEGMENT.equals(type) ) {
+            final String path = PropertiesUtil.toString(props.get(PROPERTY_SEGMENT_PATH), null);
+            final File directory = path != null ? new File(path) : bundleContext.getDataFile("jobstore");
+            final long size = PropertiesUtil.toInteger(props.get(PROPERTY_SEGMENT_SIZE), DEFAULT_SEGMENT_SIZE) * 1024L * 1024L;
+            final boolean fsync = PropertiesUtil.toBoolean(props.get(PROPERTY_SEGMENT_FSYNC), DEFAULT_SEGMENT_FSYNC);
+            try {
+                return new SegmentJobStore(directory, size, fsync, new StoreClassLoader());
+            } catch ( final IOException ioe ) {
+                logger.error("Unable to open job store at " + directory + " : " + ioe.getMessage(), ioe);
+                throw new RuntimeException(ioe);
+            }
+        }
+        if ( !JOB_STORE_RESOURCE.equals(type) ) {
+            logger.warn("Unknown job store {}, using the resource tree.", type);
+        }
+        return new ResourceJobStore(this);
+    }
+
+    /**
+     * Class loader for job properties read by the job store, delegating
+     * to the dynamic class loader if available.
+     */
+    private final class StoreClassLoader extends ClassLoader {
+
+        public StoreClassLoader() {
+            super(JobManagerConfiguration.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> findClass(final String name) throws ClassNotFoundException {
+            final DynamicClassLoaderManager dclm = dynamicClassLoaderManager;
+            if ( dclm != null ) {
+                return dclm.getDynamicClassLoader().loadClass(name);
+            }
+            throw new ClassNotFoundException(name);
+        }
+    }
+
     /**
      * Update with a new configuration
      */
@@ -249,6 +358,10 @@ public class JobManagerConfiguration implements TopologyEventListener {
         this.active.set(false);
         this.stopProcessing();
         this.queueConfigManager.removeListener();
+        final JobStore store = this.jobStore;
+        if ( store != null ) {
+            store.close();
+        }
     }
 
     public boolean isActive() {
@@ -283,6 +396,14 @@ public class JobManagerConfiguration implements TopologyEventListener {
         return this.topologyCapabilities;
     }
 
+    /**
+     * Get the job store.
+     * @return The job store
+     */
+    public JobStore getJobStore() {
+        return this.jobStore;
+    }
+
     public QueueConfigurationManager getQueueConfigurationManager() {
         return this.queueConfigManager;
     }
@@ -31,22 +31,17 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import org.apache.sling.api.resource.PersistenceException;
-import org.apache.sling.api.resource.Resource;
-import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.event.EventUtil;
 import org.apache.sling.event.impl.EventingThreadPool;
 import org.apache.sling.event.impl.jobs.InternalJobState;
 import org.apache.sling.event.impl.jobs.JobHandler;
 import org.apache.sling.event.impl.jobs.JobImpl;
-import org.apache.sling.event.impl.jobs.JobTopicTraverser;
 import org.apache.sling.event.impl.jobs.Utility;
 import org.apache.sling.event.impl.jobs.config.InternalQueueConfiguration;
 import org.apache.sling.event.impl.jobs.deprecated.JobStatusNotifier;
 import org.apache.sling.event.impl.jobs.deprecated.JobStatusNotifierImpl;
 import org.apache.sling.event.impl.jobs.notifications.NotificationUtility;
-import org.apache.sling.event.impl.support.BatchResourceRemover;
 import org.apache.sling.event.jobs.Job;
 import org.apache.sling.event.jobs.Job.JobState;
 import org.apache.sling.event.jobs.JobProcessor;
@@ -689,47 +684,7 @@ public class JobQueueImpl
         logger.debug("Removing all jobs for queue {} : {}", queueName, topics);
 
         if ( !topics.isEmpty() ) {
-
-            final ResourceResolver resolver = this.services.configuration.createResourceResolver();
-            try {
-                final Resource baseResource = resolver.getResource(this.services.configuration.getLocalJobsPath());
-
-                // sanity check - should never be null
-                if ( baseResource != null ) {
-                    final BatchResourceRemover brr = new BatchResourceRemover();
-
-                    for(final String t : topics) {
-                        final Resource topicResource = baseResource.getChild(t.replace('/', '.'));
-                        if ( topicResource != null ) {
-                            JobTopicTraverser.traverse(logger, topicResource, new JobTopicTraverser.JobCallback() {
-
-                                @Override
-                                public boolean handle(final JobImpl job) {
-                                    final Resource jobResource = topicResource.getResourceResolver().getResource(job.getResourcePath());
-                                    // sanity check
-                                    if ( jobResource != null ) {
-                                        try {
-                                            brr.delete(jobResource);
-                                        } catch ( final PersistenceException ignore) {
-                                            logger.error("Unable to remove job " + job, ignore);
-                                            topicResource.getResourceResolver().revert();
-                                            topicResource.getResourceResolver().refresh();
-                                        }
-                                    }
-                                    return true;
-                                }
-                            });
-                        }
-                    }
-                    try {
-                        resolver.commit();
-                    } catch ( final PersistenceException ignore) {
-                        logger.error("Unable to remove jobs", ignore);
-                    }
-                }
-            } finally {
-                resolver.close();
-            }
+            this.services.configuration.getJobStore().removeJobs(topics);
         }
     }
 
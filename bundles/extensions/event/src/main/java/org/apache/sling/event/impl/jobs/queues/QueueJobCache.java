@@ -28,8 +28,6 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.apache.sling.api.resource.Resource;
-import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.event.impl.jobs.JobConsumerManager;
 import org.apache.sling.event.impl.jobs.JobHandler;
 import org.apache.sling.event.impl.jobs.JobImpl;
@@ -177,13 +175,22 @@ public class QueueJobCache {
                                 handler = null;
                                 retry = true;
                             }
-                        } else {
+                        } else if ( this.configuration.getJobStore().isDistributed() ) {
                             statisticsManager.jobDequeued(queue.getName(), handler.getJob().getTopic());
                             // no consumer on this instance, assign to another instance
                             handler.reassign();
 
                             handler = null;
                             retry = true;
+                        } else {
+                            statisticsManager.jobDequeued(queue.getName(), handler.getJob().getTopic());
+                            // no consumer, the job stays queued in the local store until a consumer is available
+                            if ( logger.isDebugEnabled() ) {
+                                logger.debug("No consumer for job {}", Utility.toString(job));
+                            }
+                            handler = null;
+                            // don't load the same jobs again
+                            retry = !this.cache.isEmpty();
                         }
 
                     }
@@ -203,21 +210,11 @@ public class QueueJobCache {
 
         final Map<String, List<JobImpl>> topicCache = new HashMap<String, List<JobImpl>>();
 
-        final ResourceResolver resolver = this.configuration.createResourceResolver();
-        try {
-            final Resource baseResource = resolver.getResource(this.configuration.getLocalJobsPath());
-            // sanity check - should never be null
-            if ( baseResource != null ) {
-                for(final String topic : checkingTopics) {
-
-                    final Resource topicResource = baseResource.getChild(topic.replace('/', '.'));
-                    if ( topicResource != null ) {
-                        topicCache.put(topic, loadJobs(queueName, topic, topicResource, statisticsManager));
-                    }
-                }
+        for(final String topic : checkingTopics) {
+            final List<JobImpl> list = loadJobs(queueName, topic, statisticsManager);
+            if ( !list.isEmpty() ) {
+                topicCache.put(topic, list);
             }
-        } finally {
-            resolver.close();
         }
         orderTopics(topicCache);
 
@@ -255,18 +252,16 @@ public class QueueJobCache {
     /**
      * Load the next N x numberOf(topics) jobs.
      * @param topic The topic
-     * @param topicResource The parent resource of the jobs
      * @return The cache which will be filled with the jobs.
      */
     private List<JobImpl> loadJobs(final String queueName, final String topic,
-            final Resource topicResource,
             final StatisticsManager statisticsManager) {
         logger.debug("Loading jobs from topic {}", topic);
         final List<JobImpl> list = new ArrayList<JobImpl>();
 
         final AtomicBoolean scanTopic = new AtomicBoolean(false);
 
-        JobTopicTraverser.traverse(logger, topicResource, new JobTopicTraverser.JobCallback() {
+        this.configuration.getJobStore().loadJobs(topic, new JobTopicTraverser.JobCallback() {
 
             @Override
             public boolean handle(final JobImpl job) {
@@ -36,8 +36,6 @@ import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
-import org.apache.sling.api.resource.Resource;
-import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.commons.scheduler.Scheduler;
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolManager;
@@ -375,29 +373,10 @@ public class QueueManager
     }
 
     /**
-     * Scan the resource tree for topics.
+     * Scan the job store for topics.
      */
     private Set<String> scanTopics() {
-        final Set<String> topics = new HashSet<String>();
-
-        final ResourceResolver resolver = this.configuration.createResourceResolver();
-        try {
-            final Resource baseResource = resolver.getResource(this.configuration.getLocalJobsPath());
-
-            // sanity check - should never be null
-            if ( baseResource != null ) {
-                final Iterator<Resource> topicIter = baseResource.listChildren();
-                while ( topicIter.hasNext() ) {
-                    final Resource topicResource = topicIter.next();
-                    final String topic = topicResource.getName().replace('.', '/');
-                    logger.debug("Found topic {}", topic);
-                    topics.add(topic);
-                }
-            }
-        } finally {
-            resolver.close();
-        }
-        return topics;
+        return this.configuration.getJobStore().getTopics();
     }
 
     /**
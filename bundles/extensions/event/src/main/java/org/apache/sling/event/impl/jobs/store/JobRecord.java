@@ -0,0 +1,433 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.sling.event.impl.jobs.JobImpl;
+import org.apache.sling.event.impl.support.ResourceHelper;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobUtil;
+
+/**
+ * A record of the {@link SegmentJobStore}.
+ * <p>
+ * A job record holds the path and the properties of a job. The fields
+ * needed to index the job, including its priority, are written in front of
+ * the properties, so the index can be built without decoding the properties. A removal record
+ * marks a job as removed.
+ * <p>
+ * Strings are written as length and UTF-8 bytes, values with a type tag.
+ * Values of other types than the ones supported by a tag are serialized.
+ */
+final class JobRecord {
+
+    static final byte TYPE_JOB = 1;
+
+    static final byte TYPE_REMOVAL = 2;
+
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_BOOLEAN = 2;
+    private static final byte VALUE_INTEGER = 3;
+    private static final byte VALUE_LONG = 4;
+    private static final byte VALUE_DOUBLE = 5;
+    private static final byte VALUE_CALENDAR = 6;
+    private static final byte VALUE_STRING_ARRAY = 7;
+    private static final byte VALUE_SERIALIZED = 8;
+
+    final byte type;
+
+    final String id;
+
+    /** The encoded record */
+    final byte[] body;
+
+    // fields of a job record
+
+    final String topic;
+
+    final String name;
+
+    final String path;
+
+    final long created;
+
+    final boolean started;
+
+    /** The finished date or {@code 0} if the job is not finished */
+    final long finished;
+
+    /** The finished state or {@code null} if the job is not finished */
+    final String finishedState;
+
+    /** The priority, higher values are processed first */
+    final int priority;
+
+    /** The position of the properties in the body */
+    private final int propertiesOffset;
+
+    // fields of a removal record
+
+    /** The oldest segment which might contain a job record of the job */
+    final int firstSegment;
+
+    /** The segment containing the latest job record of the job */
+    final int lastSegment;
+
+    private JobRecord(final byte type, final String id, final byte[] body,
+            final String topic, final String name, final String path,
+            final long created, final boolean started, final long finished, final String finishedState,
+            final int priority, final int propertiesOffset,
+            final int firstSegment, final int lastSegment) {
+        this.type = type;
+        this.id = id;
+        this.body = body;
+        this.topic = topic;
+        this.name = name;
+        this.path = path;
+        this.created = created;
+        this.started = started;
+        this.finished = finished;
+        this.finishedState = finishedState;
+        this.priority = priority;
+        this.propertiesOffset = propertiesOffset;
+        this.firstSegment = firstSegment;
+        this.lastSegment = lastSegment;
+    }
+
+    /**
+     * Create a job record.
+     * @param path The path of the job
+     * @param properties The persisted properties of the job
+     * @throws IOException If a property value can't be serialized
+     */
+    static JobRecord forJob(final String path, final Map<String, Object> properties)
+    throws IOException {
+        final String id = (String)properties.get(ResourceHelper.PROPERTY_JOB_ID);
+        final String topic = (String)properties.get(ResourceHelper.PROPERTY_JOB_TOPIC);
+        final String name = (String)properties.get(JobUtil.PROPERTY_JOB_NAME);
+        final Object createdValue = properties.get(Job.PROPERTY_JOB_CREATED);
+        final long created = createdValue instanceof Calendar ? ((Calendar)createdValue).getTimeInMillis() : 0;
+        final boolean started = properties.get(Job.PROPERTY_JOB_STARTED_TIME) != null;
+        final Object state = properties.get(JobImpl.PROPERTY_FINISHED_STATE);
+        final String finishedState = state == null ? null : state.toString();
+        final Object finishedValue = properties.get(JobImpl.PROPERTY_FINISHED_DATE);
+        final long finished = finishedValue instanceof Calendar ? ((Calendar)finishedValue).getTimeInMillis() : 0;
+        final int priority = priority(properties.get(Job.PROPERTY_JOB_PRIORITY));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_JOB);
+        writeString(out, id);
+        writeString(out, topic);
+        writeString(out, name);
+        writeString(out, path);
+        out.writeLong(created);
+        out.writeBoolean(started);
+        out.writeLong(finished);
+        writeString(out, finishedState);
+        out.writeInt(priority);
+        final int propertiesOffset = out.size();
+
+        int count = 0;
+        for(final Object value : properties.values()) {
+            if ( value != null ) {
+                count++;
+            }
+        }
+        out.writeInt(count);
+        for(final Map.Entry<String, Object> entry : properties.entrySet()) {
+            if ( entry.getValue() != null ) {
+                writeString(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        }
+        out.flush();
+        return new JobRecord(TYPE_JOB, id, bytes.toByteArray(),
+                topic, name, path, created, started, finished, finishedState, priority, propertiesOffset, -1, -1);
+    }
+
+    /**
+     * The priority of a job from the {@link Job#PROPERTY_JOB_PRIORITY} property,
+     * which is either a {@link JobUtil.JobPriority} or its name.
+     * @return {@code 1} for {@code MAX}, {@code -1} for {@code MIN} and {@code 0} otherwise
+     */
+    static int priority(final Object value) {
+        if ( value != null ) {
+            final String name = value.toString();
+            if ( JobUtil.JobPriority.MAX.name().equals(name) ) {
+                return 1;
+            } else if ( JobUtil.JobPriority.MIN.name().equals(name) ) {
+                return -1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Create a removal record.
+     * @param id The job id
+     * @param firstSegment The oldest segment which might contain a job record
+     * @param lastSegment The segment containing the latest job record
+     */
+    static JobRecord forRemoval(final String id, final int firstSegment, final int lastSegment) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(TYPE_REMOVAL);
+            writeString(out, id);
+            out.writeInt(firstSegment);
+            out.writeInt(lastSegment);
+            out.flush();
+        } catch ( final IOException ioe ) {
+            // can't happen with a byte array
+            throw new IllegalStateException(ioe);
+        }
+        return new JobRecord(TYPE_REMOVAL, id, bytes.toByteArray(),
+                null, null, null, 0, false, 0, null, 0, -1, firstSegment, lastSegment);
+    }
+
+    /**
+     * Read the fields of an encoded record, the properties are decoded
+     * by {@link #readProperties(ClassLoader)}.
+     * @throws IOException If the record is malformed
+     */
+    static JobRecord read(final byte[] body) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        final byte type = in.readByte();
+        final String id = readString(in);
+        if ( type == TYPE_JOB ) {
+            final String topic = readString(in);
+            final String name = readString(in);
+            final String path = readString(in);
+            final long created = in.readLong();
+            final boolean started = in.readBoolean();
+            final long finished = in.readLong();
+            final String finishedState = readString(in);
+            final int priority = in.readInt();
+            final int propertiesOffset = body.length - in.available();
+            return new JobRecord(type, id, body,
+                    topic, name, path, created, started, finished, finishedState, priority, propertiesOffset, -1, -1);
+        } else if ( type == TYPE_REMOVAL ) {
+            final int firstSegment = in.readInt();
+            final int lastSegment = in.readInt();
+            return new JobRecord(type, id, body,
+                    null, null, null, 0, false, 0, null, 0, -1, firstSegment, lastSegment);
+        }
+        throw new IOException("Unknown record type " + type);
+    }
+
+    /**
+     * Decode the properties of a job record for updating them. Values which
+     * can't be deserialized are kept as they are, so writing the properties
+     * again does not lose them.
+     * @param classLoader The class loader for serialized values
+     */
+    Map<String, Object> readProperties(final ClassLoader classLoader) throws IOException {
+        return this.readProperties(classLoader, true);
+    }
+
+    /**
+     * Create the job of a job record. Values which can't be deserialized
+     * are reported in the read error list of the properties, like the
+     * resource based store does.
+     * @param classLoader The class loader for serialized values
+     */
+    JobImpl toJob(final ClassLoader classLoader) throws IOException {
+        final Map<String, Object> properties = this.readProperties(classLoader, false);
+        properties.put(JobImpl.PROPERTY_RESOURCE_PATH, this.path);
+        return new JobImpl(this.topic, this.name, this.id, properties);
+    }
+
+    private Map<String, Object> readProperties(final ClassLoader classLoader, final boolean keepUnreadable)
+    throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(this.body,
+                this.propertiesOffset, this.body.length - this.propertiesOffset));
+        final int count = in.readInt();
+        final Map<String, Object> properties = new HashMap<String, Object>(count * 4 / 3 + 1);
+        List<Exception> readErrors = null;
+        for(int i = 0; i < count; i++) {
+            final String key = readString(in);
+            Object value = readValue(in);
+            if ( value instanceof Serialized ) {
+                try {
+                    value = ((Serialized)value).deserialize(classLoader);
+                } catch ( final Exception e ) {
+                    if ( !keepUnreadable ) {
+                        if ( readErrors == null ) {
+                            readErrors = new ArrayList<Exception>();
+                        }
+                        readErrors.add(new Exception("Unable to deserialize property '" + key + "'", e));
+                        continue;
+                    }
+                }
+            }
+            properties.put(key, value);
+        }
+        if ( readErrors != null ) {
+            properties.put(ResourceHelper.PROPERTY_MARKER_READ_ERROR_LIST, readErrors);
+        }
+        return properties;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if ( value == null ) {
+            out.writeInt(-1);
+        } else {
+            final byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if ( length == -1 ) {
+            return null;
+        }
+        if ( length < 0 || length > in.available() ) {
+            throw new IOException("Invalid string length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void writeValue(final DataOutputStream out, final Object value) throws IOException {
+        if ( value instanceof String ) {
+            out.writeByte(VALUE_STRING);
+            writeString(out, (String)value);
+        } else if ( value instanceof Boolean ) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean((Boolean)value);
+        } else if ( value instanceof Integer ) {
+            out.writeByte(VALUE_INTEGER);
+            out.writeInt((Integer)value);
+        } else if ( value instanceof Long ) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong((Long)value);
+        } else if ( value instanceof Double ) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble((Double)value);
+        } else if ( value instanceof Calendar ) {
+            out.writeByte(VALUE_CALENDAR);
+            out.writeLong(((Calendar)value).getTimeInMillis());
+            writeString(out, ((Calendar)value).getTimeZone().getID());
+        } else if ( value instanceof String[] ) {
+            final String[] array = (String[])value;
+            out.writeByte(VALUE_STRING_ARRAY);
+            out.writeInt(array.length);
+            for(final String s : array) {
+                writeString(out, s);
+            }
+        } else if ( value instanceof Serialized ) {
+            out.writeByte(VALUE_SERIALIZED);
+            out.writeInt(((Serialized)value).bytes.length);
+            out.write(((Serialized)value).bytes);
+        } else if ( value instanceof Serializable ) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream oos = new ObjectOutputStream(bytes);
+            oos.writeObject(value);
+            oos.close();
+            out.writeByte(VALUE_SERIALIZED);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        } else {
+            throw new IOException("Value of type " + value.getClass().getName() + " is not serializable.");
+        }
+    }
+
+    private static Object readValue(final DataInputStream in) throws IOException {
+        final byte type = in.readByte();
+        switch ( type ) {
+            case VALUE_STRING : return readString(in);
+            case VALUE_BOOLEAN : return in.readBoolean();
+            case VALUE_INTEGER : return in.readInt();
+            case VALUE_LONG : return in.readLong();
+            case VALUE_DOUBLE : return in.readDouble();
+            case VALUE_CALENDAR : final long time = in.readLong();
+                                  final Calendar cal = Calendar.getInstance(TimeZone.getTimeZone(readString(in)));
+                                  cal.setTimeInMillis(time);
+                                  return cal;
+            case VALUE_STRING_ARRAY : final String[] array = new String[in.readInt()];
+                                      for(int i = 0; i < array.length; i++) {
+                                          array[i] = readString(in);
+                                      }
+                                      return array;
+            case VALUE_SERIALIZED : final int length = in.readInt();
+                                    if ( length < 0 || length > in.available() ) {
+                                        throw new IOException("Invalid value length " + length);
+                                    }
+                                    final byte[] bytes = new byte[length];
+                                    in.readFully(bytes);
+                                    return new Serialized(bytes);
+        }
+        throw new IOException("Unknown value type " + type);
+    }
+
+    /**
+     * A serialized value, which is deserialized with the class loader
+     * of the store.
+     */
+    private static final class Serialized {
+
+        public final byte[] bytes;
+
+        public Serialized(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        public Object deserialize(final ClassLoader classLoader) throws IOException, ClassNotFoundException {
+            final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(this.bytes)) {
+
+                @Override
+                protected Class<?> resolveClass(final ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+                    if ( classLoader != null ) {
+                        try {
+                            return Class.forName(desc.getName(), false, classLoader);
+                        } catch ( final ClassNotFoundException cnfe ) {
+                            // fall back to the default resolution
+                        }
+                    }
+                    return super.resolveClass(desc);
+                }
+            };
+            try {
+                return ois.readObject();
+            } finally {
+                ois.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs.store;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.event.impl.jobs.JobImpl;
+import org.apache.sling.event.impl.jobs.JobTopicTraverser;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager.QueryType;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+
+/**
+ * The job store persists the jobs of the job manager.
+ * <p>
+ * A job is identified by its id and located by a path as created by the
+ * job manager configuration: the path tells whether a job is unassigned,
+ * assigned to an instance or kept in the history. A store which is not
+ * based on the resource tree uses the same paths, without creating
+ * resources for them.
+ * <p>
+ * Implementations must be thread safe.
+ */
+public interface JobStore {
+
+    /**
+     * Whether the jobs are stored in the resource tree shared by all
+     * instances. Jobs of a shared store are distributed in the topology,
+     * new jobs are announced by resource events. All jobs of a store which
+     * is not shared are processed by this instance, and the job manager
+     * announces new jobs itself.
+     * @return {@code true} if this store is shared by the instances.
+     */
+    boolean isDistributed();
+
+    /**
+     * Persist a new job.
+     * @param path The path of the job
+     * @param properties The properties of the job, including the id
+     *                   and the topic.
+     * @return The new job
+     * @throws PersistenceException If the job can't be persisted
+     */
+    JobImpl addJob(String path, Map<String, Object> properties)
+    throws PersistenceException;
+
+    /**
+     * Get a job by id.
+     * @param id The job id
+     * @return The job or {@code null}
+     */
+    JobImpl getJobById(String id);
+
+    /**
+     * Get a job by name.
+     * @param name The job name
+     * @return The job or {@code null}
+     */
+    JobImpl getJobByName(String name);
+
+    /**
+     * Find jobs, see {@link org.apache.sling.event.jobs.JobManager#findJobs(QueryType, String, long, Map...)}.
+     * Unfinished jobs are returned in creation order, finished jobs
+     * latest finished first.
+     */
+    List<Job> findJobs(QueryType type, String topic, long limit, Map<String, Object>... templates);
+
+    /**
+     * Get the topics of the jobs assigned to this instance.
+     * @return The set of topics
+     */
+    Set<String> getTopics();
+
+    /**
+     * Call the callback for the jobs of a topic assigned to this instance,
+     * in creation order, until the callback returns {@code false}.
+     * @param topic The topic
+     * @param callback The callback
+     */
+    void loadJobs(String topic, JobTopicTraverser.JobCallback callback);
+
+    /**
+     * Update properties of a job.
+     * @param job The job
+     * @param propNames The names of the properties to update, properties
+     *                  which are not set in the job are removed.
+     * @return {@code true} if the update was successful.
+     */
+    boolean updateProperties(JobImpl job, String... propNames);
+
+    /**
+     * Reschedule a job: update the retry count and the result message,
+     * remove the started time and set the queued time.
+     * @param job The job
+     * @return {@code true} if rescheduling was successful.
+     */
+    boolean reschedule(JobImpl job);
+
+    /**
+     * Finish a job.
+     * @param job The job
+     * @param state The finished state
+     * @param finishedDate The finished date, only used for the history
+     * @param historyPath The path to keep the job in the history or
+     *                    {@code null} to remove the job.
+     */
+    void finish(JobImpl job, Job.JobState state, Calendar finishedDate, String historyPath);
+
+    /**
+     * Move a job to a new path and assign it to a new target.
+     * The queue name and the started time of the job are removed.
+     * @param job The job
+     * @param path The new path
+     * @param targetId The new target instance or {@code null}
+     */
+    void reassign(JobImpl job, String path, String targetId);
+
+    /**
+     * Remove a job.
+     * @param job The job
+     * @return {@code false} if removing failed.
+     */
+    boolean remove(JobImpl job);
+
+    /**
+     * Remove all jobs of the topics assigned to this instance.
+     * @param topics The topics
+     */
+    void removeJobs(Set<String> topics);
+
+    /**
+     * Remove the finished jobs created before the given date.
+     * @param removeDate The date
+     * @param topics The topics or {@code null} for all topics
+     * @param states The finished states or {@code null} for all states
+     * @param context The execution context, checked for being stopped
+     */
+    void cleanUpHistory(Calendar removeDate, String[] topics, List<String> states, JobExecutionContext context);
+
+    /**
+     * Periodic maintenance of the store, invoked by the job manager.
+     */
+    void maintain();
+
+    /**
+     * Dispose the store.
+     */
+    void close();
+}
@@ -0,0 +1,732 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs.store;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jackrabbit.util.ISO9075;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.QuerySyntaxException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.event.impl.jobs.JobImpl;
+import org.apache.sling.event.impl.jobs.JobTopicTraverser;
+import org.apache.sling.event.impl.jobs.Utility;
+import org.apache.sling.event.impl.jobs.config.JobManagerConfiguration;
+import org.apache.sling.event.impl.support.BatchResourceRemover;
+import org.apache.sling.event.impl.support.ResourceHelper;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager.QueryType;
+import org.apache.sling.event.jobs.JobUtil;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The resource job store persists each job as a resource in the resource
+ * tree shared by all instances. Jobs are found by queries and by traversing
+ * the folders of the topics. This is the default job store.
+ */
+public class ResourceJobStore implements JobStore {
+
+    /** Logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The job manager configuration. */
+    private final JobManagerConfiguration configuration;
+
+    public ResourceJobStore(final JobManagerConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    @Override
+    public boolean isDistributed() {
+        return true;
+    }
+
+    @Override
+    public JobImpl addJob(final String path, final Map<String, Object> properties)
+    throws PersistenceException {
+        final Map<String, Object> props = new HashMap<String, Object>(properties);
+        props.put(ResourceResolver.PROPERTY_RESOURCE_TYPE, ResourceHelper.RESOURCE_TYPE_JOB);
+
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        try {
+            ResourceHelper.getOrCreateResource(resolver,
+                    path,
+                    props);
+        } finally {
+            resolver.close();
+        }
+
+        // update property types - priority, add path and create job
+        props.put(JobImpl.PROPERTY_RESOURCE_PATH, path);
+        return new JobImpl((String)props.get(ResourceHelper.PROPERTY_JOB_TOPIC),
+                (String)props.get(JobUtil.PROPERTY_JOB_NAME),
+                (String)props.get(ResourceHelper.PROPERTY_JOB_ID),
+                props);
+    }
+
+    @Override
+    public JobImpl getJobById(final String id) {
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        final StringBuilder buf = new StringBuilder(64);
+        try {
+
+            buf.append("//element(*,");
+            buf.append(ResourceHelper.RESOURCE_TYPE_JOB);
+            buf.append(")[@");
+            buf.append(ResourceHelper.PROPERTY_JOB_ID);
+            buf.append(" = '");
+            buf.append(id);
+            buf.append("']");
+            if ( logger.isDebugEnabled() ) {
+                logger.debug("Exceuting query: {}", buf.toString());
+            }
+            final Iterator<Resource> result = resolver.findResources(buf.toString(), "xpath");
+
+            while ( result.hasNext() ) {
+                final Resource jobResource = result.next();
+                // sanity check for the path
+                if ( this.configuration.isJob(jobResource.getPath()) ) {
+                    final JobImpl job = Utility.readJob(logger, jobResource);
+                    if ( job != null ) {
+                        return job;
+                    }
+                }
+            }
+        } catch (final QuerySyntaxException qse) {
+            logger.warn("Query syntax wrong " + buf.toString(), qse);
+        } finally {
+            resolver.close();
+        }
+        return null;
+    }
+
+    @Override
+    public JobImpl getJobByName(final String name) {
+        final StringBuilder buf = new StringBuilder(64);
+
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        try {
+
+            buf.append("//element(*,");
+            buf.append(ResourceHelper.RESOURCE_TYPE_JOB);
+            buf.append(")[@");
+            buf.append(ISO9075.encode(JobUtil.PROPERTY_JOB_NAME));
+            buf.append(" = '");
+            buf.append(name);
+            buf.append("']");
+            final Iterator<Resource> result = resolver.findResources(buf.toString(), "xpath");
+
+            while ( result.hasNext() ) {
+                final Resource jobResource = result.next();
+                // sanity check for the path
+                if ( this.configuration.isJob(jobResource.getPath()) ) {
+                    final JobImpl job = Utility.readJob(logger, jobResource);
+                    if ( job != null ) {
+                        return job;
+                    }
+                }
+            }
+        } catch (final QuerySyntaxException qse) {
+            logger.warn("Query syntax wrong " + buf.toString(), qse);
+        } finally {
+            resolver.close();
+        }
+        return null;
+    }
+
+    private enum Operation {
+        LESS,
+        LESS_OR_EQUALS,
+        EQUALS,
+        GREATER_OR_EQUALS,
+        GREATER
+    }
+
+    @Override
+    public List<Job> findJobs(final QueryType type,
+            final String topic,
+            final long limit,
+            final Map<String, Object>... templates) {
+        final boolean isHistoryQuery = type == QueryType.HISTORY
+                                       || type == QueryType.SUCCEEDED
+                                       || type == QueryType.CANCELLED
+                                       || type == QueryType.DROPPED
+                                       || type == QueryType.ERROR
+                                       || type == QueryType.GIVEN_UP
+                                       || type == QueryType.STOPPED;
+        final List<Job> result = new ArrayList<Job>();
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        final StringBuilder buf = new StringBuilder(64);
+        try {
+
+            buf.append("//element(*,");
+            buf.append(ResourceHelper.RESOURCE_TYPE_JOB);
+            buf.append(")[@");
+            buf.append(ISO9075.encode(ResourceHelper.PROPERTY_JOB_TOPIC));
+            if (topic != null) {
+                buf.append(" = '");
+                buf.append(topic);
+                buf.append("'");
+            }
+
+            // restricting on the type - history or unfinished
+            if ( isHistoryQuery ) {
+                buf.append(" and @");
+                buf.append(ISO9075.encode(JobImpl.PROPERTY_FINISHED_STATE));
+                if ( type == QueryType.SUCCEEDED || type == QueryType.DROPPED || type == QueryType.ERROR || type == QueryType.GIVEN_UP || type == QueryType.STOPPED ) {
+                    buf.append(" = '");
+                    buf.append(type.name());
+                    buf.append("'");
+                } else if ( type == QueryType.CANCELLED ) {
+                    buf.append(" and (@");
+                    buf.append(ISO9075.encode(JobImpl.PROPERTY_FINISHED_STATE));
+                    buf.append(" = '");
+                    buf.append(QueryType.DROPPED.name());
+                    buf.append("' or @");
+                    buf.append(ISO9075.encode(JobImpl.PROPERTY_FINISHED_STATE));
+                    buf.append(" = '");
+                    buf.append(QueryType.ERROR.name());
+                    buf.append("' or @");
+                    buf.append(ISO9075.encode(JobImpl.PROPERTY_FINISHED_STATE));
+                    buf.append(" = '");
+                    buf.append(QueryType.GIVEN_UP.name());
+                    buf.append("' or @");
+                    buf.append(ISO9075.encode(JobImpl.PROPERTY_FINISHED_STATE));
+                    buf.append(" = '");
+                    buf.append(QueryType.STOPPED.name());
+                    buf.append("')");
+                }
+            } else {
+                buf.append(" and not(@");
+                buf.append(ISO9075.encode(JobImpl.PROPERTY_FINISHED_STATE));
+                buf.append(")");
+                if ( type == QueryType.ACTIVE ) {
+                    buf.append(" and @");
+                    buf.append(ISO9075.encode(Job.PROPERTY_JOB_STARTED_TIME));
+                } else if ( type == QueryType.QUEUED ) {
+                    buf.append(" and not(@");
+                    buf.append(ISO9075.encode(Job.PROPERTY_JOB_STARTED_TIME));
+                    buf.append(")");
+                }
+            }
+
+            if ( templates != null && templates.length > 0 ) {
+                int index = 0;
+                for (final Map<String,Object> template : templates) {
+                    // skip empty templates
+                    if ( template.size() == 0 ) {
+                        continue;
+                    }
+                    if ( index == 0 ) {
+                        buf.append(" and (");
+                    } else {
+                        buf.append(" or ");
+                    }
+                    buf.append('(');
+                    final Iterator<Map.Entry<String, Object>> i = template.entrySet().iterator();
+                    boolean first = true;
+                    while ( i.hasNext() ) {
+                        final Map.Entry<String, Object> current = i.next();
+                        final String key = ISO9075.encode(current.getKey());
+                        final char firstChar = key.length() > 0 ? key.charAt(0) : 0;
+                        final String propName;
+                        final Operation op;
+                        if ( firstChar == '=' ) {
+                            propName = key.substring(1);
+                            op  = Operation.EQUALS;
+                        } else if ( firstChar == '<' ) {
+                            final char secondChar = key.length() > 1 ? key.charAt(1) : 0;
+                            if ( secondChar == '=' ) {
+                                op = Operation.LESS_OR_EQUALS;
+                                propName = key.substring(2);
+                            } else {
+                                op = Operation.LESS;
+                                propName = key.substring(1);
+                            }
+                        } else if ( firstChar == '>' ) {
+                            final char secondChar = key.length() > 1 ? key.charAt(1) : 0;
+                            if ( secondChar == '=' ) {
+                                op = Operation.GREATER_OR_EQUALS;
+                                propName = key.substring(2);
+                            } else {
+                                op = Operation.GREATER;
+                                propName = key.substring(1);
+                            }
+                        } else {
+                            propName = key;
+                            op  = Operation.EQUALS;
+                        }
+
+                        if ( first ) {
+                            first = false;
+                            buf.append('@');
+                        } else {
+                            buf.append(" and @");
+                        }
+                        buf.append(propName);
+                        buf.append(' ');
+                        switch ( op ) {
+                            case EQUALS : buf.append('=');break;
+                            case LESS : buf.append('<'); break;
+                            case LESS_OR_EQUALS : buf.append("<="); break;
+                            case GREATER : buf.append('>'); break;
+                            case GREATER_OR_EQUALS : buf.append(">="); break;
+                        }
+                        buf.append(" '");
+                        buf.append(current.getValue());
+                        buf.append("'");
+                    }
+                    buf.append(')');
+                    index++;
+                }
+                if ( index > 0 ) {
+                    buf.append(')');
+                }
+            }
+            buf.append("] order by @");
+            if ( isHistoryQuery ) {
+                buf.append(JobImpl.PROPERTY_FINISHED_DATE);
+                buf.append(" descending");
+            } else {
+                buf.append(Job.PROPERTY_JOB_CREATED);
+                buf.append(" ascending");
+            }
+            final Iterator<Resource> iter = resolver.findResources(buf.toString(), "xpath");
+            long count = 0;
+
+            while ( iter.hasNext() && (limit < 1 || count < limit) ) {
+                final Resource jobResource = iter.next();
+                // sanity check for the path
+                if ( this.configuration.isJob(jobResource.getPath()) ) {
+                    final JobImpl job = Utility.readJob(logger, jobResource);
+                    if ( job != null ) {
+                        count++;
+                        result.add(job);
+                    }
+                }
+             }
+        } catch (final QuerySyntaxException qse) {
+            logger.warn("Query syntax wrong " + buf.toString(), qse);
+        } finally {
+            resolver.close();
+        }
+        return result;
+    }
+
+    @Override
+    public Set<String> getTopics() {
+        final Set<String> topics = new HashSet<String>();
+
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        try {
+            final Resource baseResource = resolver.getResource(this.configuration.getLocalJobsPath());
+
+            // sanity check - should never be null
+            if ( baseResource != null ) {
+                final Iterator<Resource> topicIter = baseResource.listChildren();
+                while ( topicIter.hasNext() ) {
+                    final Resource topicResource = topicIter.next();
+                    final String topic = topicResource.getName().replace('.', '/');
+                    logger.debug("Found topic {}", topic);
+                    topics.add(topic);
+                }
+            }
+        } finally {
+            resolver.close();
+        }
+        return topics;
+    }
+
+    @Override
+    public void loadJobs(final String topic, final JobTopicTraverser.JobCallback callback) {
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        try {
+            final Resource baseResource = resolver.getResource(this.configuration.getLocalJobsPath());
+            // sanity check - should never be null
+            if ( baseResource != null ) {
+                final Resource topicResource = baseResource.getChild(topic.replace('/', '.'));
+                if ( topicResource != null ) {
+                    JobTopicTraverser.traverse(logger, topicResource, callback);
+                }
+            }
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Override
+    public boolean updateProperties(final JobImpl job, final String... propNames) {
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        try {
+            final Resource jobResource = resolver.getResource(job.getResourcePath());
+            if ( jobResource != null ) {
+                final ModifiableValueMap mvm = jobResource.adaptTo(ModifiableValueMap.class);
+                for(final String propName : propNames) {
+                    final Object val = job.getProperty(propName);
+                    if ( val != null ) {
+                        if ( val.getClass().isEnum() ) {
+                            mvm.put(propName, val.toString());
+                        } else {
+                            mvm.put(propName, val);
+                        }
+                    } else {
+                        mvm.remove(propName);
+                    }
+                }
+                resolver.commit();
+
+                return true;
+            } else {
+                logger.debug("No job resource found at {}", job.getResourcePath());
+            }
+        } catch ( final PersistenceException ignore ) {
+            logger.debug("Unable to persist properties", ignore);
+        } finally {
+            resolver.close();
+        }
+        return false;
+    }
+
+    @Override
+    public boolean reschedule(final JobImpl job) {
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        try {
+            final Resource jobResource = resolver.getResource(job.getResourcePath());
+            if ( jobResource != null ) {
+                final ModifiableValueMap mvm = jobResource.adaptTo(ModifiableValueMap.class);
+                mvm.put(Job.PROPERTY_JOB_RETRY_COUNT, job.getProperty(Job.PROPERTY_JOB_RETRY_COUNT, Integer.class));
+                if ( job.getProperty(Job.PROPERTY_RESULT_MESSAGE) != null ) {
+                    mvm.put(Job.PROPERTY_RESULT_MESSAGE, job.getProperty(Job.PROPERTY_RESULT_MESSAGE));
+                }
+                mvm.remove(Job.PROPERTY_JOB_STARTED_TIME);
+                mvm.put(JobImpl.PROPERTY_JOB_QUEUED, Calendar.getInstance());
+                try {
+                    resolver.commit();
+                    return true;
+                } catch ( final PersistenceException pe ) {
+                    logger.debug("Unable to update reschedule properties for job " + job.getId(), pe);
+                }
+            }
+        } finally {
+            resolver.close();
+        }
+
+        return false;
+    }
+
+    @Override
+    public void finish(final JobImpl job,
+            final Job.JobState state,
+            final Calendar finishedDate,
+            final String historyPath) {
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        try {
+            final Resource jobResource = resolver.getResource(job.getResourcePath());
+            if ( jobResource != null ) {
+                try {
+                    if ( historyPath != null ) {
+                        final ValueMap vm = ResourceHelper.getValueMap(jobResource);
+                        final Map<String, Object> props = new HashMap<String, Object>(vm);
+                        props.put(JobImpl.PROPERTY_FINISHED_STATE, state.name());
+                        props.put(JobImpl.PROPERTY_FINISHED_DATE, finishedDate);
+                        if ( job.getProperty(Job.PROPERTY_RESULT_MESSAGE) != null ) {
+                            props.put(Job.PROPERTY_RESULT_MESSAGE, job.getProperty(Job.PROPERTY_RESULT_MESSAGE));
+                        }
+                        ResourceHelper.getOrCreateResource(resolver, historyPath, props);
+                    }
+                    resolver.delete(jobResource);
+                    resolver.commit();
+                } catch ( final PersistenceException pe ) {
+                    logger.warn("Unable to finish job " + job.getId(), pe);
+                } catch (final InstantiationException ie) {
+                    // something happened with the resource in the meantime
+                    logger.debug("Unable to instantiate job", ie);
+                }
+            }
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Override
+    public void reassign(final JobImpl job, final String path, final String targetId) {
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        try {
+            final Resource jobResource = resolver.getResource(job.getResourcePath());
+            if ( jobResource != null ) {
+                try {
+                    final ValueMap vm = ResourceHelper.getValueMap(jobResource);
+
+                    final Map<String, Object> props = new HashMap<String, Object>(vm);
+                    props.remove(Job.PROPERTY_JOB_QUEUE_NAME);
+                    if ( targetId == null ) {
+                        props.remove(Job.PROPERTY_JOB_TARGET_INSTANCE);
+                    } else {
+                        props.put(Job.PROPERTY_JOB_TARGET_INSTANCE, targetId);
+                    }
+                    props.remove(Job.PROPERTY_JOB_STARTED_TIME);
+
+                    try {
+                        ResourceHelper.getOrCreateResource(resolver, path, props);
+                        resolver.delete(jobResource);
+                        resolver.commit();
+                    } catch ( final PersistenceException pe ) {
+                        logger.warn("Unable to reassign job " + job.getId(), pe);
+                    }
+                } catch (final InstantiationException ie) {
+                    // something happened with the resource in the meantime
+                    logger.debug("Unable to instantiate job", ie);
+                }
+            }
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Override
+    public boolean remove(final JobImpl job) {
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        try {
+            final Resource jobResource = resolver.getResource(job.getResourcePath());
+            if ( jobResource != null ) {
+                resolver.delete(jobResource);
+                resolver.commit();
+                logger.debug("Removed job with id: {}", job.getId());
+            } else {
+                logger.debug("Unable to remove job with id - resource already removed: {}", job.getId());
+            }
+            return true;
+        } catch ( final PersistenceException pe) {
+            logger.warn("Unable to remove job at " + job.getResourcePath(), pe);
+            return false;
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Override
+    public void removeJobs(final Set<String> topics) {
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        try {
+            final Resource baseResource = resolver.getResource(this.configuration.getLocalJobsPath());
+
+            // sanity check - should never be null
+            if ( baseResource != null ) {
+                final BatchResourceRemover brr = new BatchResourceRemover();
+
+                for(final String t : topics) {
+                    final Resource topicResource = baseResource.getChild(t.replace('/', '.'));
+                    if ( topicResource != null ) {
+                        JobTopicTraverser.traverse(logger, topicResource, new JobTopicTraverser.JobCallback() {
+
+                            @Override
+                            public boolean handle(final JobImpl job) {
+                                final Resource jobResource = topicResource.getResourceResolver().getResource(job.getResourcePath());
+                                // sanity check
+                                if ( jobResource != null ) {
+                                    try {
+                                        brr.delete(jobResource);
+                                    } catch ( final PersistenceException ignore) {
+                                        logger.error("Unable to remove job " + job, ignore);
+                                        topicResource.getResourceResolver().revert();
+                                        topicResource.getResourceResolver().refresh();
+                                    }
+                                }
+                                return true;
+                            }
+                        });
+                    }
+                }
+                try {
+                    resolver.commit();
+                } catch ( final PersistenceException ignore) {
+                    logger.error("Unable to remove jobs", ignore);
+                }
+            }
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Override
+    public void cleanUpHistory(final Calendar removeDate,
+            final String[] topics,
+            final List<String> states,
+            final JobExecutionContext context) {
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        try {
+            if ( states == null || states.contains(Job.JobState.SUCCEEDED.name()) ) {
+                this.cleanup(removeDate, resolver, context, configuration.getStoredSuccessfulJobsPath(), topics, null);
+            }
+            if ( states == null || states.contains(Job.JobState.DROPPED.name())
+                 || states.contains(Job.JobState.ERROR.name())
+                 || states.contains(Job.JobState.GIVEN_UP.name())
+                 || states.contains(Job.JobState.STOPPED.name())) {
+                this.cleanup(removeDate, resolver, context, configuration.getStoredCancelledJobsPath(), topics, states);
+            }
+
+        } catch (final PersistenceException pe) {
+            // in the case of an error, we just log this as a warning
+            this.logger.warn("Exception during job resource tree cleanup.", pe);
+        } finally {
+            resolver.close();
+        }
+    }
+
+    private void cleanup(final Calendar removeDate,
+            final ResourceResolver resolver,
+            final JobExecutionContext context,
+            final String basePath,
+            final String[] topics,
+            final List<String> stateList)
+    throws PersistenceException {
+        final Resource baseResource = resolver.getResource(basePath);
+        // sanity check - should never be null
+        if ( baseResource != null ) {
+            final Iterator<Resource> topicIter = baseResource.listChildren();
+            while ( !context.isStopped() && topicIter.hasNext() ) {
+                final Resource topicResource = topicIter.next();
+
+                // check topic
+                boolean found = topics == null;
+                int index = 0;
+                while ( !found && index < topics.length ) {
+                    if ( topicResource.getName().equals(topics[index]) ) {
+                        found = true;
+                    }
+                    index++;
+                }
+                if ( !found ) {
+                    continue;
+                }
+
+                // now years
+                final Iterator<Resource> yearIter = topicResource.listChildren();
+                while ( !context.isStopped() && yearIter.hasNext() ) {
+                    final Resource yearResource = yearIter.next();
+                    final int year = Integer.valueOf(yearResource.getName());
+                    final boolean oldYear = year < removeDate.get(Calendar.YEAR);
+
+                    // months
+                    final Iterator<Resource> monthIter = yearResource.listChildren();
+                    while ( !context.isStopped() && monthIter.hasNext() ) {
+                        final Resource monthResource = monthIter.next();
+                        final int month = Integer.valueOf(monthResource.getName());
+                        final boolean oldMonth = oldYear || month < (removeDate.get(Calendar.MONTH) + 1);
+
+                        // days
+                        final Iterator<Resource> dayIter = monthResource.listChildren();
+                        while ( !context.isStopped() && dayIter.hasNext() ) {
+                            final Resource dayResource = dayIter.next();
+                            final int day = Integer.valueOf(dayResource.getName());
+                            final boolean oldDay = oldMonth || day < removeDate.get(Calendar.DAY_OF_MONTH);
+
+                            // hours
+                            final Iterator<Resource> hourIter = dayResource.listChildren();
+                            while ( !context.isStopped() && hourIter.hasNext() ) {
+                                final Resource hourResource = hourIter.next();
+                                final int hour = Integer.valueOf(hourResource.getName());
+                                final boolean oldHour = oldDay || hour < removeDate.get(Calendar.HOUR_OF_DAY);
+
+                                // minutes
+                                final Iterator<Resource> minuteIter = hourResource.listChildren();
+                                while ( !context.isStopped() && minuteIter.hasNext() ) {
+                                    final Resource minuteResource = minuteIter.next();
+
+                                    // check if we can delete the minute
+                                    final int minute = Integer.valueOf(minuteResource.getName());
+                                    final boolean oldMinute = oldHour || minute <= removeDate.get(Calendar.MINUTE);
+                                    if ( oldMinute ) {
+                                        final Iterator<Resource> jobIter = minuteResource.listChildren();
+                                        while ( !context.isStopped() && jobIter.hasNext() ) {
+                                            final Resource jobResource = jobIter.next();
+                                            boolean remove = stateList == null;
+                                            if ( !remove ) {
+                                                final ValueMap vm = ResourceUtil.getValueMap(jobResource);
+                                                final String state = vm.get(JobImpl.PROPERTY_FINISHED_STATE, String.class);
+                                                if ( state != null && stateList.contains(state) ) {
+                                                    remove = true;
+                                                }
+                                            }
+                                            if ( remove ) {
+                                                resolver.delete(jobResource);
+                                                resolver.commit();
+                                            }
+                                        }
+                                    }
+                                    // check if we can delete the minute
+                                    if ( !context.isStopped() && oldMinute && !minuteResource.listChildren().hasNext()) {
+                                        resolver.delete(minuteResource);
+                                        resolver.commit();
+                                    }
+                                }
+
+                                // check if we can delete the hour
+                                if ( !context.isStopped() && oldHour && !hourResource.listChildren().hasNext()) {
+                                    resolver.delete(hourResource);
+                                    resolver.commit();
+                                }
+                            }
+                            // check if we can delete the day
+                            if ( !context.isStopped() && oldDay && !dayResource.listChildren().hasNext()) {
+                                resolver.delete(dayResource);
+                                resolver.commit();
+                            }
+                        }
+
+                        // check if we can delete the month
+                        if ( !context.isStopped() && oldMonth && !monthResource.listChildren().hasNext() ) {
+                            resolver.delete(monthResource);
+                            resolver.commit();
+                        }
+                    }
+
+                    // check if we can delete the year
+                    if ( !context.isStopped() && oldYear && !yearResource.listChildren().hasNext() ) {
+                        resolver.delete(yearResource);
+                        resolver.commit();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void maintain() {
+        // nothing to do, the clean up task maintains the resource tree
+    }
+
+    @Override
+    public void close() {
+        // nothing to do
+    }
+}
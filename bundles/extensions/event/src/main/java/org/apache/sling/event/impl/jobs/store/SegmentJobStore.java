@@ -0,0 +1,1236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs.store;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.event.impl.jobs.JobImpl;
+import org.apache.sling.event.impl.jobs.JobTopicTraverser;
+import org.apache.sling.event.impl.support.ResourceHelper;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager.QueryType;
+import org.apache.sling.event.jobs.JobUtil;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The segment job store persists the jobs of this instance in an append
+ * only log of segment files in the file system.
+ * <p>
+ * Each change of a job appends a record with the complete job to the active
+ * segment, removing a job appends a removal record. A record is written as
+ * length, CRC32 checksum and body. If the active segment exceeds the maximum
+ * size, it is synced and a new segment is started. On startup the segments
+ * are replayed to build the index. A corrupt tail of the newest segment -
+ * left by a crash while writing - is truncated, a corrupt record in an
+ * older segment fails opening the store.
+ * <p>
+ * The index keeps the location of the latest record of each job and the
+ * unfinished jobs of each topic in priority and creation order, so loading
+ * the jobs of a topic neither queries nor traverses anything. Records are
+ * only decoded when a job is read, and read without holding the store lock.
+ * <p>
+ * Writers append under the store lock and sync outside of it: one writer
+ * forces the file for all records appended so far while the others wait,
+ * so concurrent writers share a single fsync. Segments with less than half
+ * of live data are compacted by copying the live records to the active
+ * segment in small batches and deleting the segment.
+ * <p>
+ * The store is local to this instance: all jobs are processed here.
+ */
+public class SegmentJobStore implements JobStore {
+
+    /** The suffix of segment files. */
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    /** Length and checksum in front of the record body. */
+    private static final int HEADER_SIZE = 8;
+
+    /** Segments with less live data than this ratio are compacted. */
+    private static final double COMPACTION_RATIO = 0.5;
+
+    /** Number of jobs read at once while loading the jobs of a topic. */
+    private static final int LOAD_BATCH_SIZE = 16;
+
+    /** Number of records copied at once while compacting a segment. */
+    private static final int COMPACTION_BATCH_SIZE = 64;
+
+    /** Logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The directory of the segments. */
+    private final File directory;
+
+    /** The maximum size of a segment in bytes. */
+    private final long maxSegmentSize;
+
+    /** Whether writes are synced to disk before returning. */
+    private final boolean fsync;
+
+    /** The class loader for serialized property values. */
+    private final ClassLoader classLoader;
+
+    /** All segments by number, guarded by this. */
+    private final TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+
+    /** The segment records are appended to, guarded by this. */
+    private Segment active;
+
+    /** All jobs by id, guarded by this. */
+    private final Map<String, Entry> jobs = new HashMap<String, Entry>();
+
+    /** The unfinished jobs by topic in priority and creation order, guarded by this. */
+    private final Map<String, TreeSet<Entry>> topics = new HashMap<String, TreeSet<Entry>>();
+
+    /** Job ids by name, guarded by this. */
+    private final Map<String, String> names = new HashMap<String, String>();
+
+    /** The number of appended records, guarded by this. */
+    private long appended;
+
+    /** Lock for syncing. */
+    private final Object syncLock = new Object();
+
+    /** The number of synced records, guarded by syncLock. */
+    private long synced;
+
+    /** Whether a writer is syncing, guarded by syncLock. */
+    private boolean syncing;
+
+    /** Lock for compacting, only one segment is compacted at a time. */
+    private final Object compactionLock = new Object();
+
+    private volatile boolean closed;
+
+    /**
+     * Open the store, creating the directory if required.
+     * @param directory The directory of the segments
+     * @param maxSegmentSize The maximum size of a segment in bytes
+     * @param fsync Whether writes are synced to disk before returning
+     * @param classLoader The class loader for serialized property values
+     * @throws IOException If the segments can't be opened or a segment
+     *                     other than the newest one is corrupt
+     */
+    public SegmentJobStore(final File directory,
+            final long maxSegmentSize,
+            final boolean fsync,
+            final ClassLoader classLoader)
+    throws IOException {
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        this.fsync = fsync;
+        this.classLoader = classLoader;
+        if ( !directory.isDirectory() && !directory.mkdirs() ) {
+            throw new IOException("Unable to create job store directory " + directory);
+        }
+        try {
+            this.open();
+        } catch ( final IOException ioe ) {
+            this.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Replay all segments and reset jobs which were active.
+     */
+    private synchronized void open() throws IOException {
+        final File[] files = this.directory.listFiles(new FilenameFilter() {
+
+            @Override
+            public boolean accept(final File dir, final String name) {
+                return name.endsWith(SEGMENT_SUFFIX)
+                        && name.substring(0, name.length() - SEGMENT_SUFFIX.length()).matches("[0-9]+");
+            }
+        });
+        if ( files != null ) {
+            for(final File file : files) {
+                final int number = Integer.parseInt(file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length()));
+                this.segments.put(number, new Segment(number, file));
+            }
+        }
+        final Integer newest = this.segments.isEmpty() ? null : this.segments.lastKey();
+        for(final Segment segment : this.segments.values()) {
+            this.replay(segment, newest.equals(segment.number));
+        }
+        if ( this.segments.isEmpty() ) {
+            this.active = this.createSegment(0);
+        } else {
+            this.active = this.segments.lastEntry().getValue();
+            if ( this.active.size >= this.maxSegmentSize ) {
+                this.active = this.createSegment(this.active.number + 1);
+            }
+        }
+        logger.info("Opened job store at {} with {} jobs in {} segments.",
+                new Object[] {this.directory, this.jobs.size(), this.segments.size()});
+
+        // jobs which were active when the instance stopped are queued again
+        final List<Entry> started = new ArrayList<Entry>();
+        for(final Entry entry : this.jobs.values()) {
+            if ( entry.started && entry.finishedState == null ) {
+                started.add(entry);
+            }
+        }
+        for(final Entry entry : started) {
+            logger.debug("Rescheduling unfinished job {}", entry.id);
+            final JobRecord record = this.readRecord(entry);
+            final Map<String, Object> props = record.readProperties(this.classLoader);
+            final Integer retries = (Integer)props.get(Job.PROPERTY_JOB_RETRY_COUNT);
+            props.put(Job.PROPERTY_JOB_RETRY_COUNT, retries == null ? 1 : retries + 1);
+            props.remove(Job.PROPERTY_JOB_STARTED_TIME);
+            props.put(JobImpl.PROPERTY_JOB_QUEUED, Calendar.getInstance());
+            this.append(JobRecord.forJob(record.path, props));
+        }
+        this.sync(this.appended);
+    }
+
+    /**
+     * Replay the records of a segment.
+     * @param newest Whether this is the newest segment, only its tail might
+     *               be corrupt as older segments are synced when rolling
+     */
+    private void replay(final Segment segment, final boolean newest) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        final long fileSize = segment.channel.size();
+        long position = 0;
+        while ( position < fileSize ) {
+            header.clear();
+            final byte[] body;
+            if ( position + HEADER_SIZE <= fileSize ) {
+                readFully(segment.channel, header, position);
+                header.flip();
+                final int length = header.getInt();
+                final int checksum = header.getInt();
+                if ( length > 0 && position + HEADER_SIZE + length <= fileSize ) {
+                    final byte[] bytes = new byte[length];
+                    readFully(segment.channel, ByteBuffer.wrap(bytes), position + HEADER_SIZE);
+                    body = checksum(bytes) == checksum ? bytes : null;
+                } else {
+                    body = null;
+                }
+            } else {
+                body = null;
+            }
+            JobRecord record = null;
+            if ( body != null ) {
+                try {
+                    record = JobRecord.read(body);
+                } catch ( final IOException ioe ) {
+                    logger.debug("Unable to read record", ioe);
+                }
+            }
+            if ( record == null ) {
+                if ( !newest ) {
+                    throw new IOException("Corrupt job store segment " + segment.file + " at " + position);
+                }
+                // the rest of the segment can't be read, a write interrupted by a crash
+                logger.warn("Truncating corrupt tail of segment {} at {}", segment.file, position);
+                segment.channel.truncate(position);
+                break;
+            }
+            this.apply(record, segment, position);
+            position += HEADER_SIZE + body.length;
+        }
+        segment.size = position;
+    }
+
+    private Segment createSegment(final int number) throws IOException {
+        final Segment segment = new Segment(number,
+                new File(this.directory, String.format("%010d", number) + SEGMENT_SUFFIX));
+        this.segments.put(number, segment);
+        return segment;
+    }
+
+    /**
+     * Append a record to the active segment and update the index.
+     * The caller must sync after releasing the store lock.
+     * @return The number of appended records for syncing
+     */
+    private long append(final JobRecord record) throws IOException {
+        if ( this.closed ) {
+            throw new IOException("Job store is closed.");
+        }
+        final long size = HEADER_SIZE + record.body.length;
+        if ( this.active.size > 0 && this.active.size + size > this.maxSegmentSize ) {
+            // the new segment is synced by the next writer, the old one now - even
+            // without fsync, so a crash can only leave a torn tail in the newest segment
+            this.active.channel.force(false);
+            this.active = this.createSegment(this.active.number + 1);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + record.body.length);
+        buffer.putInt(record.body.length);
+        buffer.putInt(checksum(record.body));
+        buffer.put(record.body);
+        buffer.flip();
+        final long position = this.active.size;
+        while ( buffer.hasRemaining() ) {
+            this.active.channel.write(buffer, position + buffer.position());
+        }
+        this.active.size += size;
+        this.apply(record, this.active, position);
+        this.appended++;
+        return this.appended;
+    }
+
+    /**
+     * Update the index with a record.
+     */
+    private void apply(final JobRecord record, final Segment segment, final long position) {
+        final int size = HEADER_SIZE + record.body.length;
+        Entry entry = this.jobs.get(record.id);
+        if ( entry != null ) {
+            final Segment previous = this.segments.get(entry.segment);
+            if ( previous != null ) {
+                previous.live -= HEADER_SIZE + entry.length;
+            }
+            this.unindex(entry);
+        }
+        if ( record.type == JobRecord.TYPE_JOB ) {
+            if ( entry == null ) {
+                entry = new Entry(record.id, record.topic, record.created, segment.number);
+                this.jobs.put(record.id, entry);
+            }
+            entry.name = record.name;
+            entry.path = record.path;
+            entry.started = record.started;
+            entry.finishedState = record.finishedState;
+            entry.finished = record.finished;
+            entry.priority = record.priority;
+            entry.segment = segment.number;
+            entry.position = position;
+            entry.length = record.body.length;
+            segment.live += size;
+            this.index(entry);
+        } else if ( entry != null ) {
+            this.jobs.remove(record.id);
+        }
+    }
+
+    private void index(final Entry entry) {
+        if ( entry.finishedState == null ) {
+            TreeSet<Entry> set = this.topics.get(entry.topic);
+            if ( set == null ) {
+                set = new TreeSet<Entry>(ENTRY_COMPARATOR);
+                this.topics.put(entry.topic, set);
+            }
+            set.add(entry);
+        }
+        if ( entry.name != null ) {
+            this.names.put(entry.name, entry.id);
+        }
+    }
+
+    private void unindex(final Entry entry) {
+        if ( entry.finishedState == null ) {
+            final TreeSet<Entry> set = this.topics.get(entry.topic);
+            if ( set != null ) {
+                set.remove(entry);
+                if ( set.isEmpty() ) {
+                    this.topics.remove(entry.topic);
+                }
+            }
+        }
+        if ( entry.name != null && entry.id.equals(this.names.get(entry.name)) ) {
+            this.names.remove(entry.name);
+        }
+    }
+
+    /**
+     * Wait until the given number of records is synced to disk. If no
+     * other writer is syncing, this writer syncs all records appended so
+     * far, otherwise it waits for the other writer and checks again.
+     */
+    private void sync(final long count) throws IOException {
+        if ( !this.fsync ) {
+            return;
+        }
+        synchronized ( this.syncLock ) {
+            while ( this.synced < count && this.syncing ) {
+                try {
+                    this.syncLock.wait();
+                } catch ( final InterruptedException ie ) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while syncing job store");
+                }
+            }
+            if ( this.synced >= count ) {
+                return;
+            }
+            this.syncing = true;
+        }
+        long target = count;
+        try {
+            final FileChannel channel;
+            synchronized ( this ) {
+                target = this.appended;
+                channel = this.active.channel;
+            }
+            // records appended to a previous segment were synced when rolling
+            channel.force(false);
+        } finally {
+            synchronized ( this.syncLock ) {
+                this.syncing = false;
+                if ( target > this.synced ) {
+                    this.synced = target;
+                }
+                this.syncLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Append a record and wait until it is synced.
+     */
+    private void write(final JobRecord record) throws IOException {
+        final long count;
+        synchronized ( this ) {
+            count = this.append(record);
+        }
+        this.sync(count);
+    }
+
+    /**
+     * Read the record of an entry, the caller must hold the store lock.
+     */
+    private JobRecord readRecord(final Entry entry) throws IOException {
+        final Segment segment = this.segments.get(entry.segment);
+        if ( segment == null ) {
+            throw new IOException("Job store is closed.");
+        }
+        final byte[] body = new byte[entry.length];
+        readFully(segment.channel, ByteBuffer.wrap(body), entry.position + HEADER_SIZE);
+        return JobRecord.read(body);
+    }
+
+    /**
+     * Read the latest version of a job without holding the store lock
+     * while reading. If the segment is compacted meanwhile, the record is
+     * read again from its new location.
+     * @return The record or {@code null} if the job has been removed.
+     */
+    private JobRecord readRecord(final String id) throws IOException {
+        while ( true ) {
+            final Segment segment;
+            final long position;
+            final int length;
+            synchronized ( this ) {
+                final Entry entry = this.jobs.get(id);
+                if ( entry == null ) {
+                    return null;
+                }
+                segment = this.segments.get(entry.segment);
+                position = entry.position;
+                length = entry.length;
+            }
+            try {
+                final byte[] body = new byte[length];
+                readFully(segment.channel, ByteBuffer.wrap(body), position + HEADER_SIZE);
+                return JobRecord.read(body);
+            } catch ( final ClosedChannelException cce ) {
+                synchronized ( this ) {
+                    if ( this.closed || this.segments.get(segment.number) == segment ) {
+                        throw cce;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isDistributed() {
+        return false;
+    }
+
+    @Override
+    public JobImpl addJob(final String path, final Map<String, Object> properties)
+    throws PersistenceException {
+        try {
+            this.write(JobRecord.forJob(path, properties));
+        } catch ( final IOException ioe ) {
+            throw new PersistenceException("Unable to persist job at " + path, ioe);
+        }
+        final Map<String, Object> props = new HashMap<String, Object>(properties);
+        props.put(JobImpl.PROPERTY_RESOURCE_PATH, path);
+        return new JobImpl((String)props.get(ResourceHelper.PROPERTY_JOB_TOPIC),
+                (String)props.get(JobUtil.PROPERTY_JOB_NAME),
+                (String)props.get(ResourceHelper.PROPERTY_JOB_ID),
+                props);
+    }
+
+    @Override
+    public JobImpl getJobById(final String id) {
+        try {
+            final JobRecord record = this.readRecord(id);
+            if ( record != null ) {
+                return record.toJob(this.classLoader);
+            }
+        } catch ( final IOException ioe ) {
+            logger.warn("Unable to read job " + id, ioe);
+        }
+        return null;
+    }
+
+    @Override
+    public JobImpl getJobByName(final String name) {
+        final String id;
+        synchronized ( this ) {
+            id = this.names.get(name);
+        }
+        if ( id != null ) {
+            return this.getJobById(id);
+        }
+        return null;
+    }
+
+    @Override
+    public List<Job> findJobs(final QueryType type,
+            final String topic,
+            final long limit,
+            final Map<String, Object>... templates) {
+        final boolean isHistoryQuery = type == QueryType.HISTORY
+                                       || type == QueryType.SUCCEEDED
+                                       || type == QueryType.CANCELLED
+                                       || type == QueryType.DROPPED
+                                       || type == QueryType.ERROR
+                                       || type == QueryType.GIVEN_UP
+                                       || type == QueryType.STOPPED;
+        final List<Entry> candidates = new ArrayList<Entry>();
+        synchronized ( this ) {
+            final Iterable<Entry> entries;
+            if ( isHistoryQuery ) {
+                entries = this.jobs.values();
+            } else if ( topic != null ) {
+                final TreeSet<Entry> set = this.topics.get(topic);
+                entries = set != null ? set : Collections.<Entry>emptyList();
+            } else {
+                final List<Entry> all = new ArrayList<Entry>();
+                for(final TreeSet<Entry> set : this.topics.values()) {
+                    all.addAll(set);
+                }
+                Collections.sort(all, ENTRY_COMPARATOR);
+                entries = all;
+            }
+            for(final Entry entry : entries) {
+                if ( (topic == null || topic.equals(entry.topic)) && matches(type, entry) ) {
+                    candidates.add(entry.copy());
+                }
+            }
+        }
+
+        if ( isHistoryQuery ) {
+            // latest finished first
+            Collections.sort(candidates, new Comparator<Entry>() {
+
+                @Override
+                public int compare(final Entry o1, final Entry o2) {
+                    return o1.finished > o2.finished ? -1 : (o1.finished == o2.finished ? 0 : 1);
+                }
+            });
+        }
+
+        final List<Job> result = new ArrayList<Job>();
+        for(final Entry candidate : candidates) {
+            if ( limit > 0 && result.size() >= limit ) {
+                break;
+            }
+            final JobImpl job;
+            try {
+                final JobRecord record = this.readRecord(candidate.id);
+                // skip jobs changed since taking the candidates
+                if ( record == null || !equals(record.finishedState, candidate.finishedState)
+                     || record.started != candidate.started ) {
+                    continue;
+                }
+                job = record.toJob(this.classLoader);
+            } catch ( final IOException ioe ) {
+                logger.warn("Unable to read job " + candidate.id, ioe);
+                continue;
+            }
+            if ( matches(job, templates) ) {
+                result.add(job);
+            }
+        }
+        return result;
+    }
+
+    private static boolean matches(final QueryType type, final Entry entry) {
+        switch ( type ) {
+            case ALL : return entry.finishedState == null;
+            case ACTIVE : return entry.finishedState == null && entry.started;
+            case QUEUED : return entry.finishedState == null && !entry.started;
+            case HISTORY : return entry.finishedState != null;
+            case CANCELLED : return entry.finishedState != null
+                                    && !entry.finishedState.equals(QueryType.SUCCEEDED.name());
+            default : return type.name().equals(entry.finishedState);
+        }
+    }
+
+    /**
+     * Check the properties of a job against the templates, see
+     * {@link org.apache.sling.event.jobs.JobManager#findJobs(QueryType, String, long, Map...)}.
+     */
+    private static boolean matches(final JobImpl job, final Map<String, Object>... templates) {
+        if ( templates == null ) {
+            return true;
+        }
+        boolean hasTemplate = false;
+        for(final Map<String, Object> template : templates) {
+            // skip empty templates
+            if ( template.size() == 0 ) {
+                continue;
+            }
+            hasTemplate = true;
+            boolean matches = true;
+            for(final Map.Entry<String, Object> current : template.entrySet()) {
+                final String key = current.getKey();
+                final char firstChar = key.length() > 0 ? key.charAt(0) : 0;
+                final char secondChar = key.length() > 1 ? key.charAt(1) : 0;
+                final String propName;
+                if ( firstChar == '=' ) {
+                    propName = key.substring(1);
+                } else if ( (firstChar == '<' || firstChar == '>') && secondChar == '=' ) {
+                    propName = key.substring(2);
+                } else if ( firstChar == '<' || firstChar == '>' ) {
+                    propName = key.substring(1);
+                } else {
+                    propName = key;
+                }
+                final Object value = job.getProperty(propName);
+                if ( value == null ) {
+                    matches = false;
+                    break;
+                }
+                final int result = compare(value, current.getValue());
+                if ( firstChar == '<' ) {
+                    matches = secondChar == '=' ? result <= 0 : result < 0;
+                } else if ( firstChar == '>' ) {
+                    matches = secondChar == '=' ? result >= 0 : result > 0;
+                } else {
+                    matches = result == 0;
+                }
+                if ( !matches ) {
+                    break;
+                }
+            }
+            if ( matches ) {
+                return true;
+            }
+        }
+        return !hasTemplate;
+    }
+
+    private static int compare(final Object value, final Object templateValue) {
+        if ( value instanceof Number && templateValue instanceof Number ) {
+            return Double.compare(((Number)value).doubleValue(), ((Number)templateValue).doubleValue());
+        }
+        if ( value instanceof Calendar && templateValue instanceof Calendar ) {
+            return ((Calendar)value).compareTo((Calendar)templateValue);
+        }
+        return value.toString().compareTo(String.valueOf(templateValue));
+    }
+
+    private static boolean equals(final String a, final String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public synchronized Set<String> getTopics() {
+        return new HashSet<String>(this.topics.keySet());
+    }
+
+    @Override
+    public void loadJobs(final String topic, final JobTopicTraverser.JobCallback callback) {
+        Entry last = null;
+        boolean proceed = true;
+        while ( proceed ) {
+            final List<Entry> entries = new ArrayList<Entry>(LOAD_BATCH_SIZE);
+            synchronized ( this ) {
+                final TreeSet<Entry> set = this.topics.get(topic);
+                if ( set != null ) {
+                    final Iterator<Entry> iter = (last == null ? set : set.tailSet(last, false)).iterator();
+                    while ( iter.hasNext() && entries.size() < LOAD_BATCH_SIZE ) {
+                        last = iter.next().copy();
+                        entries.add(last);
+                    }
+                }
+            }
+            if ( entries.isEmpty() ) {
+                break;
+            }
+            for(final Entry entry : entries) {
+                try {
+                    final JobRecord record = this.readRecord(entry.id);
+                    // skip jobs removed or finished since taking the batch
+                    if ( record == null || record.finishedState != null ) {
+                        continue;
+                    }
+                    proceed = callback.handle(record.toJob(this.classLoader));
+                } catch ( final IOException ioe ) {
+                    logger.warn("Unable to read job " + entry.id, ioe);
+                }
+                if ( !proceed ) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Update a job with a function of its persisted properties. The record
+     * is read and the update is encoded outside of the store lock, if the
+     * job is changed or moved meanwhile, the update is done again.
+     * @return {@code false} if the job does not exist or can't be written.
+     */
+    private boolean update(final JobImpl job, final Update update) {
+        long count = 0;
+        while ( count == 0 ) {
+            final Entry current;
+            synchronized ( this ) {
+                final Entry entry = this.jobs.get(job.getId());
+                if ( entry == null ) {
+                    logger.debug("No job found with id {}", job.getId());
+                    return false;
+                }
+                current = entry.copy();
+            }
+            try {
+                final JobRecord record = this.readRecord(current.id);
+                if ( record == null ) {
+                    logger.debug("No job found with id {}", job.getId());
+                    return false;
+                }
+                final Map<String, Object> props = record.readProperties(this.classLoader);
+                final String path = update.update(props, record.path);
+                final JobRecord newRecord = path == null
+                        ? JobRecord.forRemoval(current.id, current.firstSegment, current.segment)
+                        : JobRecord.forJob(path, props);
+                synchronized ( this ) {
+                    final Entry entry = this.jobs.get(current.id);
+                    if ( entry == null ) {
+                        logger.debug("No job found with id {}", job.getId());
+                        return false;
+                    }
+                    if ( entry.segment == current.segment && entry.position == current.position ) {
+                        count = this.append(newRecord);
+                    }
+                }
+            } catch ( final IOException ioe ) {
+                logger.warn("Unable to update job " + job.getId(), ioe);
+                return false;
+            }
+        }
+        try {
+            this.sync(count);
+            return true;
+        } catch ( final IOException ioe ) {
+            logger.warn("Unable to sync job store", ioe);
+        }
+        return false;
+    }
+
+    /**
+     * A change of the persisted properties of a job.
+     */
+    private interface Update {
+
+        /**
+         * Update the properties.
+         * @return The new path of the job or {@code null} to remove it.
+         */
+        String update(Map<String, Object> props, String path);
+    }
+
+    @Override
+    public boolean updateProperties(final JobImpl job, final String... propNames) {
+        return this.update(job, new Update() {
+
+            @Override
+            public String update(final Map<String, Object> props, final String path) {
+                for(final String propName : propNames) {
+                    final Object val = job.getProperty(propName);
+                    if ( val != null ) {
+                        if ( val.getClass().isEnum() ) {
+                            props.put(propName, val.toString());
+                        } else {
+                            props.put(propName, val);
+                        }
+                    } else {
+                        props.remove(propName);
+                    }
+                }
+                return path;
+            }
+        });
+    }
+
+    @Override
+    public boolean reschedule(final JobImpl job) {
+        return this.update(job, new Update() {
+
+            @Override
+            public String update(final Map<String, Object> props, final String path) {
+                props.put(Job.PROPERTY_JOB_RETRY_COUNT, job.getProperty(Job.PROPERTY_JOB_RETRY_COUNT, Integer.class));
+                if ( job.getProperty(Job.PROPERTY_RESULT_MESSAGE) != null ) {
+                    props.put(Job.PROPERTY_RESULT_MESSAGE, job.getProperty(Job.PROPERTY_RESULT_MESSAGE));
+                }
+                props.remove(Job.PROPERTY_JOB_STARTED_TIME);
+                props.put(JobImpl.PROPERTY_JOB_QUEUED, Calendar.getInstance());
+                return path;
+            }
+        });
+    }
+
+    @Override
+    public void finish(final JobImpl job,
+            final Job.JobState state,
+            final Calendar finishedDate,
+            final String historyPath) {
+        this.update(job, new Update() {
+
+            @Override
+            public String update(final Map<String, Object> props, final String path) {
+                props.put(JobImpl.PROPERTY_FINISHED_STATE, state.name());
+                props.put(JobImpl.PROPERTY_FINISHED_DATE, finishedDate);
+                if ( job.getProperty(Job.PROPERTY_RESULT_MESSAGE) != null ) {
+                    props.put(Job.PROPERTY_RESULT_MESSAGE, job.getProperty(Job.PROPERTY_RESULT_MESSAGE));
+                }
+                return historyPath;
+            }
+        });
+    }
+
+    @Override
+    public void reassign(final JobImpl job, final String newPath, final String targetId) {
+        this.update(job, new Update() {
+
+            @Override
+            public String update(final Map<String, Object> props, final String path) {
+                props.remove(Job.PROPERTY_JOB_QUEUE_NAME);
+                if ( targetId == null ) {
+                    props.remove(Job.PROPERTY_JOB_TARGET_INSTANCE);
+                } else {
+                    props.put(Job.PROPERTY_JOB_TARGET_INSTANCE, targetId);
+                }
+                props.remove(Job.PROPERTY_JOB_STARTED_TIME);
+                return newPath;
+            }
+        });
+    }
+
+    @Override
+    public boolean remove(final JobImpl job) {
+        final long count;
+        synchronized ( this ) {
+            final Entry entry = this.jobs.get(job.getId());
+            if ( entry == null ) {
+                logger.debug("Unable to remove job with id - already removed: {}", job.getId());
+                return true;
+            }
+            try {
+                count = this.append(JobRecord.forRemoval(entry.id, entry.firstSegment, entry.segment));
+            } catch ( final IOException ioe ) {
+                logger.warn("Unable to remove job " + job.getId(), ioe);
+                return false;
+            }
+        }
+        try {
+            this.sync(count);
+            logger.debug("Removed job with id: {}", job.getId());
+            return true;
+        } catch ( final IOException ioe ) {
+            logger.warn("Unable to sync job store", ioe);
+        }
+        return false;
+    }
+
+    /**
+     * Remove the jobs of the given entries which are still at the same
+     * version, and sync once for all of them.
+     */
+    private void removeAll(final List<Entry> entries, final JobExecutionContext context) {
+        long count = 0;
+        synchronized ( this ) {
+            for(final Entry candidate : entries) {
+                if ( context != null && context.isStopped() ) {
+                    break;
+                }
+                final Entry entry = this.jobs.get(candidate.id);
+                if ( entry != null && entry.segment == candidate.segment && entry.position == candidate.position ) {
+                    try {
+                        count = this.append(JobRecord.forRemoval(entry.id, entry.firstSegment, entry.segment));
+                    } catch ( final IOException ioe ) {
+                        logger.error("Unable to remove job " + entry.id, ioe);
+                        break;
+                    }
+                }
+            }
+        }
+        if ( count > 0 ) {
+            try {
+                this.sync(count);
+            } catch ( final IOException ioe ) {
+                logger.error("Unable to remove jobs", ioe);
+            }
+        }
+    }
+
+    @Override
+    public void removeJobs(final Set<String> topics) {
+        final List<Entry> entries = new ArrayList<Entry>();
+        synchronized ( this ) {
+            for(final String t : topics) {
+                final TreeSet<Entry> set = this.topics.get(t);
+                if ( set != null ) {
+                    for(final Entry entry : set) {
+                        entries.add(entry.copy());
+                    }
+                }
+            }
+        }
+        this.removeAll(entries, null);
+    }
+
+    @Override
+    public void cleanUpHistory(final Calendar removeDate,
+            final String[] topics,
+            final List<String> states,
+            final JobExecutionContext context) {
+        // like the history folders of the resource store, jobs created in the minute of the date are removed
+        final Calendar limit = (Calendar)removeDate.clone();
+        limit.set(Calendar.SECOND, 0);
+        limit.set(Calendar.MILLISECOND, 0);
+        limit.add(Calendar.MINUTE, 1);
+        final long limitTime = limit.getTimeInMillis();
+
+        final List<Entry> entries = new ArrayList<Entry>();
+        synchronized ( this ) {
+            for(final Entry entry : this.jobs.values()) {
+                if ( entry.finishedState == null || entry.created >= limitTime ) {
+                    continue;
+                }
+                if ( states != null && !states.contains(entry.finishedState) ) {
+                    continue;
+                }
+                boolean found = topics == null;
+                int index = 0;
+                while ( !found && index < topics.length ) {
+                    if ( entry.topic.replace('/', '.').equals(topics[index]) ) {
+                        found = true;
+                    }
+                    index++;
+                }
+                if ( found ) {
+                    entries.add(entry.copy());
+                }
+            }
+        }
+        this.removeAll(entries, context);
+    }
+
+    @Override
+    public void maintain() {
+        final List<Integer> candidates = new ArrayList<Integer>();
+        synchronized ( this ) {
+            for(final Segment segment : this.segments.values()) {
+                if ( segment != this.active && segment.live < segment.size * COMPACTION_RATIO ) {
+                    candidates.add(segment.number);
+                }
+            }
+        }
+        for(final Integer number : candidates) {
+            if ( this.closed ) {
+                break;
+            }
+            try {
+                this.compact(number);
+            } catch ( final IOException ioe ) {
+                logger.warn("Unable to compact job store segment " + number, ioe);
+            }
+        }
+    }
+
+    /**
+     * Copy the live records of a segment to the active segment and
+     * delete the segment. The segment is not written anymore, so its
+     * records are read without holding the store lock and only the copying
+     * of each batch holds it.
+     */
+    private void compact(final int number) throws IOException {
+        synchronized ( this.compactionLock ) {
+            final Segment segment;
+            final long size;
+            synchronized ( this ) {
+                segment = this.segments.get(number);
+                if ( segment == null || segment == this.active ) {
+                    return;
+                }
+                size = segment.size;
+            }
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            // the copies might be spread over several segments if the active one is rolled
+            final Set<Segment> written = new LinkedHashSet<Segment>();
+            final List<JobRecord> records = new ArrayList<JobRecord>(COMPACTION_BATCH_SIZE);
+            final List<Long> positions = new ArrayList<Long>(COMPACTION_BATCH_SIZE);
+            long position = 0;
+            int copied = 0;
+            while ( position < size ) {
+                records.clear();
+                positions.clear();
+                while ( position < size && records.size() < COMPACTION_BATCH_SIZE ) {
+                    header.clear();
+                    readFully(segment.channel, header, position);
+                    header.flip();
+                    final int length = header.getInt();
+                    final byte[] body = new byte[length];
+                    readFully(segment.channel, ByteBuffer.wrap(body), position + HEADER_SIZE);
+                    records.add(JobRecord.read(body));
+                    positions.add(position);
+                    position += HEADER_SIZE + length;
+                }
+                synchronized ( this ) {
+                    if ( this.segments.get(number) != segment ) {
+                        // closed meanwhile
+                        return;
+                    }
+                    for(int i = 0; i < records.size(); i++) {
+                        final JobRecord record = records.get(i);
+                        if ( this.isLive(record, number, positions.get(i)) ) {
+                            this.append(record);
+                            written.add(this.active);
+                            copied++;
+                        }
+                    }
+                }
+            }
+            // the copies must be on disk before the segment is deleted
+            for(final Segment target : written) {
+                target.channel.force(false);
+            }
+            synchronized ( this ) {
+                if ( this.segments.get(number) != segment ) {
+                    return;
+                }
+                this.segments.remove(number);
+                segment.close();
+            }
+            if ( !segment.file.delete() ) {
+                logger.warn("Unable to delete job store segment {}", segment.file);
+            }
+            logger.debug("Compacted job store segment {}, copied {} records.", segment.file, copied);
+        }
+    }
+
+    /**
+     * Check whether a record of a segment has to be kept when compacting
+     * the segment, the caller must hold the store lock.
+     */
+    private boolean isLive(final JobRecord record, final int number, final long position) {
+        if ( record.type == JobRecord.TYPE_JOB ) {
+            final Entry entry = this.jobs.get(record.id);
+            return entry != null && entry.segment == number && entry.position == position;
+        }
+        // a removal record is needed as long as a segment might contain an older job record
+        for(final Integer n : this.segments.subMap(record.firstSegment, true, record.lastSegment, true).keySet()) {
+            if ( n != number ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        synchronized ( this ) {
+            this.closed = true;
+            for(final Segment segment : this.segments.values()) {
+                try {
+                    if ( this.fsync ) {
+                        segment.channel.force(false);
+                    }
+                    segment.close();
+                } catch ( final IOException ioe ) {
+                    logger.warn("Unable to close job store segment " + segment.file, ioe);
+                }
+            }
+            this.segments.clear();
+            this.jobs.clear();
+            this.topics.clear();
+            this.names.clear();
+        }
+    }
+
+    private static int checksum(final byte[] body) {
+        final CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return (int)crc.getValue();
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+    throws IOException {
+        while ( buffer.hasRemaining() ) {
+            final int read = channel.read(buffer, position + buffer.position());
+            if ( read == -1 ) {
+                throw new IOException("Unexpected end of segment at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    /** Orders the unfinished jobs of a topic by priority, highest first, and creation. */
+    private static final Comparator<Entry> ENTRY_COMPARATOR = new Comparator<Entry>() {
+
+        @Override
+        public int compare(final Entry o1, final Entry o2) {
+            if ( o1.priority != o2.priority ) {
+                return o1.priority > o2.priority ? -1 : 1;
+            }
+            if ( o1.created != o2.created ) {
+                return o1.created < o2.created ? -1 : 1;
+            }
+            if ( o1.counter != o2.counter ) {
+                return o1.counter < o2.counter ? -1 : 1;
+            }
+            return o1.id.compareTo(o2.id);
+        }
+    };
+
+    /**
+     * A segment file.
+     */
+    private static final class Segment {
+
+        public final int number;
+
+        public final File file;
+
+        public final RandomAccessFile raf;
+
+        public final FileChannel channel;
+
+        /** The size of the records. */
+        public long size;
+
+        /** The size of the latest job records. */
+        public long live;
+
+        public Segment(final int number, final File file) throws IOException {
+            this.number = number;
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = this.raf.getChannel();
+        }
+
+        public void close() throws IOException {
+            this.channel.close();
+            this.raf.close();
+        }
+    }
+
+    /**
+     * The index entry of a job.
+     */
+    private static final class Entry {
+
+        public final String id;
+
+        public final String topic;
+
+        public final long created;
+
+        /** The counter of the job id, orders jobs created in the same millisecond. */
+        public final long counter;
+
+        /** The oldest segment which might contain a record of the job. */
+        public final int firstSegment;
+
+        public String name;
+
+        public String path;
+
+        public boolean started;
+
+        public String finishedState;
+
+        public long finished;
+
+        public int priority;
+
+        /** The location of the latest record. */
+        public int segment;
+
+        public long position;
+
+        public int length;
+
+        public Entry(final String id, final String topic, final long created, final int firstSegment) {
+            this.id = id;
+            this.topic = topic;
+            this.created = created;
+            this.firstSegment = firstSegment;
+            long c = 0;
+            final int pos = id.lastIndexOf('_');
+            if ( pos != -1 ) {
+                try {
+                    c = Long.parseLong(id.substring(pos + 1));
+                } catch ( final NumberFormatException ignore ) {
+                    // ignore
+                }
+            }
+            this.counter = c;
+        }
+
+        /**
+         * A copy to be used outside of the store lock.
+         */
+        public Entry copy() {
+            final Entry copy = new Entry(this.id, this.topic, this.created, this.firstSegment);
+            copy.name = this.name;
+            copy.path = this.path;
+            copy.started = this.started;
+            copy.finishedState = this.finishedState;
+            copy.finished = this.finished;
+            copy.priority = this.priority;
+            copy.segment = this.segment;
+            copy.position = this.position;
+            copy.length = this.length;
+            return copy;
+        }
+    }
+}
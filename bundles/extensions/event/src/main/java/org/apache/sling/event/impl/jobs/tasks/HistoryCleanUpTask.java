@@ -21,26 +21,17 @@ package org.apache.sling.event.impl.jobs.tasks;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Iterator;
 import java.util.List;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
-import org.apache.sling.api.resource.PersistenceException;
-import org.apache.sling.api.resource.Resource;
-import org.apache.sling.api.resource.ResourceResolver;
-import org.apache.sling.api.resource.ResourceUtil;
-import org.apache.sling.api.resource.ValueMap;
-import org.apache.sling.event.impl.jobs.JobImpl;
 import org.apache.sling.event.impl.jobs.config.JobManagerConfiguration;
 import org.apache.sling.event.jobs.Job;
 import org.apache.sling.event.jobs.consumer.JobExecutionContext;
 import org.apache.sling.event.jobs.consumer.JobExecutionResult;
 import org.apache.sling.event.jobs.consumer.JobExecutor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Task to clean up the history,
@@ -65,8 +56,6 @@ public class HistoryCleanUpTask implements JobExecutor {
 
     private static final int DEFAULT_AGE = 60 * 24 * 2; // older than two days
 
-    private final Logger logger = LoggerFactory.getLogger(this.getClass());
-
     @Reference
     private JobManagerConfiguration configuration;
 
@@ -95,142 +84,7 @@ public class HistoryCleanUpTask implements JobExecutor {
         } else {
             stateList = null;
         }
-        final ResourceResolver resolver = this.configuration.createResourceResolver();
-        try {
-            if ( stateList == null || stateList.contains(Job.JobState.SUCCEEDED.name()) ) {
-                this.cleanup(removeDate, resolver, context, configuration.getStoredSuccessfulJobsPath(), topics, null);
-            }
-            if ( stateList == null || stateList.contains(Job.JobState.DROPPED.name())
-                 || stateList.contains(Job.JobState.ERROR.name())
-                 || stateList.contains(Job.JobState.GIVEN_UP.name())
-                 || stateList.contains(Job.JobState.STOPPED.name())) {
-                this.cleanup(removeDate, resolver, context, configuration.getStoredCancelledJobsPath(), topics, stateList);
-            }
-
-        } catch (final PersistenceException pe) {
-            // in the case of an error, we just log this as a warning
-            this.logger.warn("Exception during job resource tree cleanup.", pe);
-        } finally {
-            resolver.close();
-        }
+        this.configuration.getJobStore().cleanUpHistory(removeDate, topics, stateList, context);
         return context.result().succeeded();
     }
-
-    private void cleanup(final Calendar removeDate,
-            final ResourceResolver resolver,
-            final JobExecutionContext context,
-            final String basePath,
-            final String[] topics,
-            final List<String> stateList)
-    throws PersistenceException {
-        final Resource baseResource = resolver.getResource(basePath);
-        // sanity check - should never be null
-        if ( baseResource != null ) {
-            final Iterator<Resource> topicIter = baseResource.listChildren();
-            while ( !context.isStopped() && topicIter.hasNext() ) {
-                final Resource topicResource = topicIter.next();
-
-                // check topic
-                boolean found = topics == null;
-                int index = 0;
-                while ( !found && index < topics.length ) {
-                    if ( topicResource.getName().equals(topics[index]) ) {
-                        found = true;
-                    }
-                    index++;
-                }
-                if ( !found ) {
-                    continue;
-                }
-
-                // now years
-                final Iterator<Resource> yearIter = topicResource.listChildren();
-                while ( !context.isStopped() && yearIter.hasNext() ) {
-                    final Resource yearResource = yearIter.next();
-                    final int year = Integer.valueOf(yearResource.getName());
-                    final boolean oldYear = year < removeDate.get(Calendar.YEAR);
-
-                    // months
-                    final Iterator<Resource> monthIter = yearResource.listChildren();
-                    while ( !context.isStopped() && monthIter.hasNext() ) {
-                        final Resource monthResource = monthIter.next();
-                        final int month = Integer.valueOf(monthResource.getName());
-                        final boolean oldMonth = oldYear || month < (removeDate.get(Calendar.MONTH) + 1);
-
-                        // days
-                        final Iterator<Resource> dayIter = monthResource.listChildren();
-                        while ( !context.isStopped() && dayIter.hasNext() ) {
-                            final Resource dayResource = dayIter.next();
-                            final int day = Integer.valueOf(dayResource.getName());
-                            final boolean oldDay = oldMonth || day < removeDate.get(Calendar.DAY_OF_MONTH);
-
-                            // hours
-                            final Iterator<Resource> hourIter = dayResource.listChildren();
-                            while ( !context.isStopped() && hourIter.hasNext() ) {
-                                final Resource hourResource = hourIter.next();
-                                final int hour = Integer.valueOf(hourResource.getName());
-                                final boolean oldHour = oldDay || hour < removeDate.get(Calendar.HOUR_OF_DAY);
-
-                                // minutes
-                                final Iterator<Resource> minuteIter = hourResource.listChildren();
-                                while ( !context.isStopped() && minuteIter.hasNext() ) {
-                                    final Resource minuteResource = minuteIter.next();
-
-                                    // check if we can delete the minute
-                                    final int minute = Integer.valueOf(minuteResource.getName());
-                                    final boolean oldMinute = oldHour || minute <= removeDate.get(Calendar.MINUTE);
-                                    if ( oldMinute ) {
-                                        final Iterator<Resource> jobIter = minuteResource.listChildren();
-                                        while ( !context.isStopped() && jobIter.hasNext() ) {
-                                            final Resource jobResource = jobIter.next();
-                                            boolean remove = stateList == null;
-                                            if ( !remove ) {
-                                                final ValueMap vm = ResourceUtil.getValueMap(jobResource);
-                                                final String state = vm.get(JobImpl.PROPERTY_FINISHED_STATE, String.class);
-                                                if ( state != null && stateList.contains(state) ) {
-                                                    remove = true;
-                                                }
-                                            }
-                                            if ( remove ) {
-                                                resolver.delete(jobResource);
-                                                resolver.commit();
-                                            }
-                                        }
-                                    }
-                                    // check if we can delete the minute
-                                    if ( !context.isStopped() && oldMinute && !minuteResource.listChildren().hasNext()) {
-                                        resolver.delete(minuteResource);
-                                        resolver.commit();
-                                    }
-                                }
-
-                                // check if we can delete the hour
-                                if ( !context.isStopped() && oldHour && !hourResource.listChildren().hasNext()) {
-                                    resolver.delete(hourResource);
-                                    resolver.commit();
-                                }
-                            }
-                            // check if we can delete the day
-                            if ( !context.isStopped() && oldDay && !dayResource.listChildren().hasNext()) {
-                                resolver.delete(dayResource);
-                                resolver.commit();
-                            }
-                        }
-
-                        // check if we can delete the month
-                        if ( !context.isStopped() && oldMonth && !monthResource.listChildren().hasNext() ) {
-                            resolver.delete(monthResource);
-                            resolver.commit();
-                        }
-                    }
-
-                    // check if we can delete the year
-                    if ( !context.isStopped() && oldYear && !yearResource.listChildren().hasNext() ) {
-                        resolver.delete(yearResource);
-                        resolver.commit();
-                    }
-                }
-            }
-        }
-    }
 }
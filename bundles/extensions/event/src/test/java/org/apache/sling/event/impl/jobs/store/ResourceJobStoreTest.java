@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs.store;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.event.impl.jobs.JobImpl;
+import org.apache.sling.event.impl.jobs.config.JobManagerConfiguration;
+import org.apache.sling.event.jobs.Job;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ResourceJobStoreTest {
+
+    private static final String PATH = "/var/eventing/jobs/assigned/app/sling.test/2015/1/1/10/30/app_1";
+
+    private ResourceResolver resolver;
+
+    private Resource resource;
+
+    private ModifiableValueMap valueMap;
+
+    private ResourceJobStore store;
+
+    @Before public void setup() {
+        this.resolver = Mockito.mock(ResourceResolver.class);
+        this.resource = Mockito.mock(Resource.class);
+        this.valueMap = Mockito.mock(ModifiableValueMap.class);
+        Mockito.when(this.resource.adaptTo(ModifiableValueMap.class)).thenReturn(this.valueMap);
+        final JobManagerConfiguration config = Mockito.mock(JobManagerConfiguration.class);
+        Mockito.when(config.createResourceResolver()).thenReturn(this.resolver);
+        this.store = new ResourceJobStore(config);
+    }
+
+    private JobImpl createJob(final Map<String, Object> properties) {
+        final Map<String, Object> props = new HashMap<String, Object>(properties);
+        props.put(JobImpl.PROPERTY_RESOURCE_PATH, PATH);
+        return new JobImpl("sling/test", null, "2015/1/1/10/30/app_1", props);
+    }
+
+    private void addJobResource() {
+        Mockito.when(this.resolver.getResource(PATH)).thenReturn(this.resource);
+    }
+
+    @Test public void testIsDistributed() {
+        assertTrue(this.store.isDistributed());
+    }
+
+    @Test public void testRemove() throws Exception {
+        this.addJobResource();
+
+        assertTrue(this.store.remove(this.createJob(new HashMap<String, Object>())));
+        Mockito.verify(this.resolver).delete(this.resource);
+        Mockito.verify(this.resolver).commit();
+        Mockito.verify(this.resolver).close();
+    }
+
+    @Test public void testRemoveAlreadyRemoved() throws Exception {
+        assertTrue(this.store.remove(this.createJob(new HashMap<String, Object>())));
+        Mockito.verify(this.resolver, Mockito.never()).delete(Mockito.any(Resource.class));
+        Mockito.verify(this.resolver).close();
+    }
+
+    @Test public void testRemoveFails() throws Exception {
+        this.addJobResource();
+        Mockito.doThrow(new PersistenceException("failed")).when(this.resolver).commit();
+
+        assertFalse(this.store.remove(this.createJob(new HashMap<String, Object>())));
+        Mockito.verify(this.resolver).close();
+    }
+
+    @Test public void testUpdateProperties() throws Exception {
+        this.addJobResource();
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put("text", "value");
+        props.put("state", Job.JobState.QUEUED);
+
+        assertTrue(this.store.updateProperties(this.createJob(props), "text", "state", "missing"));
+        Mockito.verify(this.valueMap).put("text", "value");
+        Mockito.verify(this.valueMap).put("state", Job.JobState.QUEUED.toString());
+        Mockito.verify(this.valueMap).remove("missing");
+        Mockito.verify(this.resolver).commit();
+        Mockito.verify(this.resolver).close();
+    }
+
+    @Test public void testUpdatePropertiesWithoutResource() throws Exception {
+        assertFalse(this.store.updateProperties(this.createJob(new HashMap<String, Object>()), "text"));
+        Mockito.verify(this.resolver, Mockito.never()).commit();
+        Mockito.verify(this.resolver).close();
+    }
+
+    @Test public void testReschedule() throws Exception {
+        this.addJobResource();
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put(Job.PROPERTY_JOB_RETRY_COUNT, 2);
+
+        assertTrue(this.store.reschedule(this.createJob(props)));
+        Mockito.verify(this.valueMap).put(Job.PROPERTY_JOB_RETRY_COUNT, 2);
+        Mockito.verify(this.valueMap).remove(Job.PROPERTY_JOB_STARTED_TIME);
+        Mockito.verify(this.valueMap).put(Mockito.eq(JobImpl.PROPERTY_JOB_QUEUED), Mockito.any());
+        Mockito.verify(this.resolver).commit();
+        Mockito.verify(this.resolver).close();
+    }
+}
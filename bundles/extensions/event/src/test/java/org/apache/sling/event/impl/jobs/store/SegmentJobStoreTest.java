@@ -0,0 +1,399 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.event.impl.jobs.JobImpl;
+import org.apache.sling.event.impl.jobs.JobTopicTraverser;
+import org.apache.sling.event.impl.support.ResourceHelper;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager.QueryType;
+import org.apache.sling.event.jobs.JobUtil;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class SegmentJobStoreTest {
+
+    private static final String TOPIC = "sling/test";
+
+    private File directory;
+
+    private SegmentJobStore store;
+
+    private int counter;
+
+    @Before public void setup() throws IOException {
+        this.directory = File.createTempFile("jobstore", null);
+        this.directory.delete();
+        this.store = new SegmentJobStore(this.directory, 1024 * 1024, true, null);
+    }
+
+    @After public void cleanup() {
+        this.store.close();
+        final File[] files = this.directory.listFiles();
+        if ( files != null ) {
+            for(final File f : files) {
+                f.delete();
+            }
+        }
+        this.directory.delete();
+    }
+
+    private void reopen(final long maxSegmentSize) throws IOException {
+        this.reopen(maxSegmentSize, true);
+    }
+
+    private void reopen(final long maxSegmentSize, final boolean fsync) throws IOException {
+        this.store.close();
+        this.store = new SegmentJobStore(this.directory, maxSegmentSize, fsync, null);
+    }
+
+    private JobImpl addJob(final String topic, final String name) throws IOException {
+        return this.addJob(topic, name, null);
+    }
+
+    private JobImpl addJob(final String topic, final String name, final JobUtil.JobPriority priority)
+    throws IOException {
+        this.counter++;
+        final String id = "2015/1/1/10/30/app_" + this.counter;
+        final Calendar created = Calendar.getInstance();
+        created.setTimeInMillis(1420108200000L + this.counter);
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put(ResourceHelper.PROPERTY_JOB_ID, id);
+        props.put(ResourceHelper.PROPERTY_JOB_TOPIC, topic);
+        if ( name != null ) {
+            props.put(JobUtil.PROPERTY_JOB_NAME, name);
+        }
+        props.put(Job.PROPERTY_JOB_CREATED, created);
+        props.put(Job.PROPERTY_JOB_RETRY_COUNT, 0);
+        props.put("text", "job " + this.counter);
+        props.put("count", this.counter);
+        props.put("tags", new String[] {"a", "b"});
+        props.put("list", new ArrayList<String>(Collections.singletonList("serialized")));
+        if ( priority != null ) {
+            props.put(Job.PROPERTY_JOB_PRIORITY, priority);
+        }
+        return this.store.addJob("/var/eventing/jobs/assigned/app/" + topic.replace('/', '.') + "/" + id, props);
+    }
+
+    private List<String> loadIds(final String topic) {
+        final List<String> ids = new ArrayList<String>();
+        this.store.loadJobs(topic, new JobTopicTraverser.JobCallback() {
+
+            @Override
+            public boolean handle(final JobImpl job) {
+                ids.add(job.getId());
+                return true;
+            }
+        });
+        return ids;
+    }
+
+    private File[] segments() {
+        final File[] files = this.directory.listFiles();
+        Arrays.sort(files);
+        return files;
+    }
+
+    @Test public void testAddAndGet() throws Exception {
+        final JobImpl added = this.addJob(TOPIC, "myname");
+        final JobImpl job = this.store.getJobById(added.getId());
+        assertNotNull(job);
+        assertEquals(TOPIC, job.getTopic());
+        assertEquals("myname", job.getName());
+        assertEquals(added.getResourcePath(), job.getResourcePath());
+        assertEquals("job 1", job.getProperty("text"));
+        assertEquals(1, job.getProperty("count"));
+        assertArrayEquals(new String[] {"a", "b"}, (String[])job.getProperty("tags"));
+        assertEquals(Collections.singletonList("serialized"), job.getProperty("list"));
+        assertEquals(added.getCreated().getTimeInMillis(), job.getCreated().getTimeInMillis());
+        assertFalse(job.hasReadErrors());
+
+        assertEquals(added.getId(), this.store.getJobByName("myname").getId());
+        assertNull(this.store.getJobById("2015/1/1/10/30/app_99"));
+        assertNull(this.store.getJobByName("unknown"));
+    }
+
+    @Test public void testReopen() throws Exception {
+        final JobImpl job1 = this.addJob(TOPIC, "first");
+        final JobImpl job2 = this.addJob(TOPIC, null);
+        assertTrue(this.store.remove(job2));
+
+        this.reopen(1024 * 1024);
+        assertEquals("job 1", this.store.getJobById(job1.getId()).getProperty("text"));
+        assertEquals(job1.getId(), this.store.getJobByName("first").getId());
+        assertNull(this.store.getJobById(job2.getId()));
+    }
+
+    @Test public void testLoadJobsInCreationOrder() throws Exception {
+        final List<String> expected = new ArrayList<String>();
+        for(int i = 0; i < 40; i++) {
+            expected.add(this.addJob(TOPIC, null).getId());
+            this.addJob("sling/other", null);
+        }
+        assertEquals(expected, this.loadIds(TOPIC));
+
+        final List<String> loaded = new ArrayList<String>();
+        this.store.loadJobs(TOPIC, new JobTopicTraverser.JobCallback() {
+
+            @Override
+            public boolean handle(final JobImpl job) {
+                loaded.add(job.getId());
+                return loaded.size() < 10;
+            }
+        });
+        assertEquals(expected.subList(0, 10), loaded);
+        assertTrue(this.loadIds("sling/unknown").isEmpty());
+    }
+
+    @Test public void testLoadJobsInPriorityOrder() throws Exception {
+        final JobImpl norm = this.addJob(TOPIC, null);
+        final JobImpl min = this.addJob(TOPIC, null, JobUtil.JobPriority.MIN);
+        final JobImpl max1 = this.addJob(TOPIC, null, JobUtil.JobPriority.MAX);
+        final JobImpl max2 = this.addJob(TOPIC, null, JobUtil.JobPriority.MAX);
+        final List<String> expected = Arrays.asList(max1.getId(), max2.getId(), norm.getId(), min.getId());
+        assertEquals(expected, this.loadIds(TOPIC));
+
+        // the priority is kept when updating and reopening
+        final JobImpl job = this.store.getJobById(min.getId());
+        job.setProperty("text", "updated");
+        assertTrue(this.store.updateProperties(job, "text"));
+        this.reopen(1024 * 1024);
+        assertEquals(expected, this.loadIds(TOPIC));
+    }
+
+    @Test public void testFinish() throws Exception {
+        final JobImpl job1 = this.addJob(TOPIC, null);
+        final JobImpl job2 = this.addJob(TOPIC, null);
+        final JobImpl job3 = this.addJob(TOPIC, null);
+
+        final Calendar finished = Calendar.getInstance();
+        this.store.finish(job1, Job.JobState.SUCCEEDED, finished, "/var/eventing/jobs/finished/" + job1.getId());
+        finished.add(Calendar.SECOND, 1);
+        this.store.finish(job2, Job.JobState.ERROR, finished, "/var/eventing/jobs/cancelled/" + job2.getId());
+
+        assertEquals(Collections.singletonList(job3.getId()), this.loadIds(TOPIC));
+        assertEquals(1, this.store.findJobs(QueryType.ALL, TOPIC, -1).size());
+        assertEquals(1, this.store.findJobs(QueryType.QUEUED, TOPIC, -1).size());
+        assertEquals(0, this.store.findJobs(QueryType.ACTIVE, TOPIC, -1).size());
+
+        final List<Job> history = this.store.findJobs(QueryType.HISTORY, null, -1);
+        assertEquals(2, history.size());
+        assertEquals(job2.getId(), history.get(0).getId());
+        assertEquals(job1.getId(), history.get(1).getId());
+        assertEquals(Job.JobState.ERROR, history.get(0).getJobState());
+        assertEquals("/var/eventing/jobs/cancelled/" + job2.getId(), ((JobImpl)history.get(0)).getResourcePath());
+
+        assertEquals(job1.getId(), this.store.findJobs(QueryType.SUCCEEDED, TOPIC, -1).get(0).getId());
+        assertEquals(job2.getId(), this.store.findJobs(QueryType.CANCELLED, TOPIC, -1).get(0).getId());
+        assertEquals(1, this.store.findJobs(QueryType.HISTORY, TOPIC, 1).size());
+
+        // finishing without history removes the job
+        this.store.finish(job3, Job.JobState.SUCCEEDED, finished, null);
+        assertNull(this.store.getJobById(job3.getId()));
+        assertTrue(this.loadIds(TOPIC).isEmpty());
+    }
+
+    @Test public void testTemplates() throws Exception {
+        for(int i = 0; i < 5; i++) {
+            this.addJob(TOPIC, null);
+        }
+        final Map<String, Object> equals = new HashMap<String, Object>();
+        equals.put("count", 2);
+        assertEquals(1, this.store.findJobs(QueryType.ALL, TOPIC, -1, equals).size());
+
+        final Map<String, Object> greater = new HashMap<String, Object>();
+        greater.put(">=count", 4);
+        assertEquals(2, this.store.findJobs(QueryType.ALL, TOPIC, -1, greater).size());
+        // templates are combined with or
+        assertEquals(3, this.store.findJobs(QueryType.ALL, TOPIC, -1, equals, greater).size());
+
+        final Map<String, Object> less = new HashMap<String, Object>();
+        less.put("<count", 3);
+        less.put("text", "job 2");
+        assertEquals(1, this.store.findJobs(QueryType.ALL, null, -1, less).size());
+        assertEquals(5, this.store.findJobs(QueryType.ALL, null, -1, new HashMap<String, Object>()).size());
+    }
+
+    @Test public void testUpdateAndReschedule() throws Exception {
+        final JobImpl added = this.addJob(TOPIC, null);
+        final JobImpl job = this.store.getJobById(added.getId());
+        job.setProperty(Job.PROPERTY_JOB_STARTED_TIME, Calendar.getInstance());
+        assertTrue(this.store.updateProperties(job, Job.PROPERTY_JOB_STARTED_TIME));
+        assertEquals(1, this.store.findJobs(QueryType.ACTIVE, TOPIC, -1).size());
+
+        job.retry();
+        assertTrue(this.store.reschedule(job));
+        final JobImpl rescheduled = this.store.getJobById(added.getId());
+        assertEquals(1, rescheduled.getRetryCount());
+        assertNull(rescheduled.getProcessingStarted());
+        assertNotNull(rescheduled.getProperty(JobImpl.PROPERTY_JOB_QUEUED));
+        assertEquals(1, this.store.findJobs(QueryType.QUEUED, TOPIC, -1).size());
+    }
+
+    @Test public void testStartedJobsAreQueuedOnOpen() throws Exception {
+        final JobImpl job = this.addJob(TOPIC, null);
+        job.setProperty(Job.PROPERTY_JOB_STARTED_TIME, Calendar.getInstance());
+        this.store.updateProperties(job, Job.PROPERTY_JOB_STARTED_TIME);
+
+        this.reopen(1024 * 1024);
+        final JobImpl reopened = this.store.getJobById(job.getId());
+        assertNull(reopened.getProcessingStarted());
+        assertEquals(1, reopened.getRetryCount());
+        assertEquals(Collections.singletonList(job.getId()), this.loadIds(TOPIC));
+    }
+
+    @Test public void testCorruptTailIsTruncated() throws Exception {
+        final JobImpl job1 = this.addJob(TOPIC, null);
+        final JobImpl job2 = this.addJob(TOPIC, null);
+        this.store.close();
+
+        // cut the last record in half
+        final File segment = this.segments()[0];
+        final RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        try {
+            raf.setLength(raf.length() - 20);
+        } finally {
+            raf.close();
+        }
+        this.store = new SegmentJobStore(this.directory, 1024 * 1024, true, null);
+        assertNotNull(this.store.getJobById(job1.getId()));
+        assertNull(this.store.getJobById(job2.getId()));
+
+        // appending after the truncated record
+        final JobImpl job3 = this.addJob(TOPIC, null);
+        this.reopen(1024 * 1024);
+        assertEquals(job3.getId(), this.store.getJobById(job3.getId()).getId());
+        assertEquals(2, this.loadIds(TOPIC).size());
+    }
+
+    @Test public void testCorruptOlderSegmentFailsOpening() throws Exception {
+        this.reopen(2048);
+        for(int i = 0; i < 20; i++) {
+            this.addJob(TOPIC, null);
+        }
+        this.store.close();
+        assertTrue(this.segments().length > 1);
+
+        // damage a record in the middle of the first segment
+        final RandomAccessFile raf = new RandomAccessFile(this.segments()[0], "rw");
+        try {
+            raf.seek(raf.length() / 2);
+            raf.writeLong(0);
+        } finally {
+            raf.close();
+        }
+        final long length = this.segments()[0].length();
+        try {
+            this.store = new SegmentJobStore(this.directory, 2048, true, null);
+            fail("Corrupt segment must not be opened");
+        } catch ( final IOException expected ) {
+            // expected
+        }
+        // the segment is not truncated
+        assertEquals(length, this.segments()[0].length());
+    }
+
+    @Test public void testCompaction() throws Exception {
+        this.reopen(2048);
+        final List<JobImpl> kept = new ArrayList<JobImpl>();
+        for(int i = 0; i < 60; i++) {
+            final JobImpl job = this.addJob(TOPIC, null);
+            if ( i % 10 == 0 ) {
+                kept.add(job);
+            } else {
+                this.store.remove(job);
+            }
+        }
+        final int before = this.segments().length;
+        assertTrue(before > 2);
+
+        this.store.maintain();
+        assertTrue(this.segments().length < before);
+
+        this.reopen(2048);
+        final List<String> expected = new ArrayList<String>();
+        for(final JobImpl job : kept) {
+            expected.add(job.getId());
+        }
+        // removed jobs must not come back
+        assertEquals(expected, this.loadIds(TOPIC));
+        assertEquals(kept.size(), this.store.findJobs(QueryType.ALL, null, -1).size());
+    }
+
+    @Test public void testCompactionIntoSeveralSegments() throws Exception {
+        this.reopen(2048, false);
+        final List<String> expected = new ArrayList<String>();
+        for(int i = 0; i < 60; i++) {
+            final JobImpl job = this.addJob(TOPIC, null);
+            if ( i % 4 == 0 ) {
+                expected.add(job.getId());
+            } else {
+                this.store.remove(job);
+            }
+        }
+        final File active = this.segments()[this.segments().length - 1];
+
+        this.store.maintain();
+        // the copies did not fit into the active segment
+        assertTrue(this.segments()[this.segments().length - 1].compareTo(active) > 0);
+
+        this.reopen(2048, false);
+        assertEquals(expected, this.loadIds(TOPIC));
+    }
+
+    @Test public void testCleanUpHistory() throws Exception {
+        final JobImpl job1 = this.addJob(TOPIC, null);
+        final JobImpl job2 = this.addJob("sling/other", null);
+        this.store.finish(job1, Job.JobState.SUCCEEDED, Calendar.getInstance(), "/history/1");
+        this.store.finish(job2, Job.JobState.SUCCEEDED, Calendar.getInstance(), "/history/2");
+
+        final JobExecutionContext context = Mockito.mock(JobExecutionContext.class);
+        final Calendar date = Calendar.getInstance();
+        this.store.cleanUpHistory(date, new String[] {"sling.test"}, null, context);
+        assertNull(this.store.getJobById(job1.getId()));
+        assertNotNull(this.store.getJobById(job2.getId()));
+
+        this.store.cleanUpHistory(date, null, Collections.singletonList(Job.JobState.ERROR.name()), context);
+        assertNotNull(this.store.getJobById(job2.getId()));
+        this.store.cleanUpHistory(date, null, null, context);
+        assertNull(this.store.getJobById(job2.getId()));
+    }
+}
@@ -77,7 +77,6 @@ public final class JcrModifiablePropertyMap
         }
         this.changedProperties.addAll(this.cache.keySet());
         this.cache.clear();
-        this.valueCache.clear();
     }
 
     /**
@@ -99,7 +98,6 @@ public final class JcrModifiablePropertyMap
         } catch (final RepositoryException re) {
             throw new IllegalArgumentException("Value for key " + key + " can't be put into node: " + value, re);
         }
-        this.valueCache.put(key, value);
         if ( this.changedProperties == null ) {
             this.changedProperties = new HashSet<String>();
         }
@@ -131,7 +129,6 @@ public final class JcrModifiablePropertyMap
         final String key = checkKey(aKey.toString());
         readFully();
         final Object oldValue = this.cache.remove(key);
-        this.valueCache.remove(key);
         if ( this.changedProperties == null ) {
             this.changedProperties = new HashSet<String>();
         }
@@ -147,7 +144,6 @@ public final class JcrModifiablePropertyMap
             this.changedProperties = null;
         }
         this.cache.clear();
-        this.valueCache.clear();
         this.fullyRead = false;
     }
 
@@ -20,10 +20,8 @@ package org.apache.sling.jcr.resource;
 
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -36,6 +34,7 @@ import javax.jcr.Value;
 import org.apache.jackrabbit.util.ISO9075;
 import org.apache.jackrabbit.util.Text;
 import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.jcr.resource.internal.helper.JcrPropertyMapCache;
 import org.apache.sling.jcr.resource.internal.helper.JcrPropertyMapCacheEntry;
 
 /**
@@ -52,10 +51,7 @@ public class JcrPropertyMap
     private final Node node;
 
     /** A cache for the properties. */
-    final Map<String, JcrPropertyMapCacheEntry> cache;
-
-    /** A cache for the values. */
-    final Map<String, Object> valueCache;
+    final JcrPropertyMapCache cache;
 
     /** Has the node been read completely? */
     boolean fullyRead;
@@ -81,8 +77,7 @@ public class JcrPropertyMap
      */
     public JcrPropertyMap(final Node node, final ClassLoader dynamicCL) {
         this.node = node;
-        this.cache = new LinkedHashMap<String, JcrPropertyMapCacheEntry>();
-        this.valueCache = new LinkedHashMap<String, Object>();
+        this.cache = new JcrPropertyMapCache();
         this.fullyRead = false;
         this.dynamicClassLoader = dynamicCL;
     }
@@ -171,7 +166,7 @@ public class JcrPropertyMap
      */
     public boolean containsValue(final Object value) {
         readFully();
-        return valueCache.containsValue(value);
+        return cache.getValues().containsValue(value);
     }
 
     /**
@@ -194,13 +189,7 @@ public class JcrPropertyMap
      */
     public Set<java.util.Map.Entry<String, Object>> entrySet() {
         readFully();
-        final Map<String, Object> sourceMap;
-        if (cache.size() == valueCache.size()) {
-            sourceMap = valueCache;
-        } else {
-            sourceMap = transformEntries(cache);
-        }
-        return Collections.unmodifiableSet(sourceMap.entrySet());
+        return cache.getValues().entrySet();
     }
 
     /**
@@ -216,13 +205,7 @@ public class JcrPropertyMap
      */
     public Collection<Object> values() {
         readFully();
-        final Map<String, Object> sourceMap;
-        if (cache.size() == valueCache.size()) {
-            sourceMap = valueCache;
-        } else {
-            sourceMap = transformEntries(cache);
-        }
-        return Collections.unmodifiableCollection(sourceMap.values());
+        return cache.getValues().values();
     }
 
     /**
@@ -269,11 +252,6 @@ public class JcrPropertyMap
             if ( entry == null ) {
                 entry = new JcrPropertyMapCacheEntry(prop);
                 cache.put(key, entry);
-
-                final Object defaultValue = entry.getPropertyValue();
-                if (defaultValue != null) {
-                    valueCache.put(key, entry.getPropertyValue());
-                }
             }
             return entry;
         } catch (final RepositoryException re) {
@@ -331,36 +309,9 @@ public class JcrPropertyMap
             return null;
         }
 
-        // check cache
-        JcrPropertyMapCacheEntry cachedValued = cache.get(name);
-        if ( fullyRead || cachedValued != null ) {
-            return cachedValued;
-        }
-
-        try {
-            final String key = escapeKeyName(name);
-            if (node.hasProperty(key)) {
-                final Property prop = node.getProperty(key);
-                return cacheProperty(prop);
-            }
-        } catch (final RepositoryException re) {
-            throw new IllegalArgumentException(re);
-        }
-
-        try {
-            // for compatibility with older versions we use the (wrong) ISO9075 path
-            // encoding
-            final String oldKey = ISO9075.encodePath(name);
-            if (node.hasProperty(oldKey)) {
-                final Property prop = node.getProperty(oldKey);
-                return cacheProperty(prop);
-            }
-        } catch (final RepositoryException re) {
-            // we ignore this
-        }
-
-        // property not found
-        return null;
+        // check cache, all properties are read at once on the first access
+        readFully();
+        return cache.get(name);
     }
 
     /**
@@ -453,15 +404,6 @@ public class JcrPropertyMap
         return type;
     }
 
-	private Map<String, Object> transformEntries( Map<String, JcrPropertyMapCacheEntry> map) {
-
-		Map<String, Object> transformedEntries = new LinkedHashMap<String, Object>(map.size());
-		for ( Map.Entry<String, JcrPropertyMapCacheEntry> entry : map.entrySet() )
-			transformedEntries.put(entry.getKey(), entry.getValue().getPropertyValueOrNull());
-
-		return transformedEntries;
-	}
-
 
     @Override
     public String toString() {
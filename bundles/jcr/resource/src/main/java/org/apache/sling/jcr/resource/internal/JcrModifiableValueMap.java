@@ -20,10 +20,8 @@ package org.apache.sling.jcr.resource.internal;
 
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -36,6 +34,7 @@ import javax.jcr.Value;
 import org.apache.jackrabbit.util.ISO9075;
 import org.apache.jackrabbit.util.Text;
 import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.jcr.resource.internal.helper.JcrPropertyMapCache;
 import org.apache.sling.jcr.resource.internal.helper.JcrPropertyMapCacheEntry;
 
 /**
@@ -51,10 +50,7 @@ public final class JcrModifiableValueMap
     private final Node node;
 
     /** A cache for the properties. */
-    private final Map<String, JcrPropertyMapCacheEntry> cache;
-
-    /** A cache for the values. */
-    private final Map<String, Object> valueCache;
+    private final JcrPropertyMapCache cache;
 
     /** Has the node been read completely? */
     private boolean fullyRead;
@@ -68,8 +64,7 @@ public final class JcrModifiableValueMap
      */
     public JcrModifiableValueMap(final Node node, final HelperData helper) {
         this.node = node;
-        this.cache = new LinkedHashMap<String, JcrPropertyMapCacheEntry>();
-        this.valueCache = new LinkedHashMap<String, Object>();
+        this.cache = new JcrPropertyMapCache();
         this.fullyRead = false;
         this.helper = helper;
     }
@@ -156,7 +151,7 @@ public final class JcrModifiableValueMap
      */
     public boolean containsValue(final Object value) {
         readFully();
-        return valueCache.containsValue(value);
+        return cache.getValues().containsValue(value);
     }
 
     /**
@@ -179,13 +174,7 @@ public final class JcrModifiableValueMap
      */
     public Set<java.util.Map.Entry<String, Object>> entrySet() {
         readFully();
-        final Map<String, Object> sourceMap;
-        if (cache.size() == valueCache.size()) {
-            sourceMap = valueCache;
-        } else {
-            sourceMap = transformEntries(cache);
-        }
-        return Collections.unmodifiableSet(sourceMap.entrySet());
+        return cache.getValues().entrySet();
     }
 
     /**
@@ -193,7 +182,7 @@ public final class JcrModifiableValueMap
      */
     public Set<String> keySet() {
         readFully();
-        return Collections.unmodifiableSet(cache.keySet());
+        return cache.keySet();
     }
 
     /**
@@ -201,13 +190,7 @@ public final class JcrModifiableValueMap
      */
     public Collection<Object> values() {
         readFully();
-        final Map<String, Object> sourceMap;
-        if (cache.size() == valueCache.size()) {
-            sourceMap = valueCache;
-        } else {
-            sourceMap = transformEntries(cache);
-        }
-        return Collections.unmodifiableCollection(sourceMap.values());
+        return cache.getValues().values();
     }
 
     /**
@@ -252,11 +235,6 @@ public final class JcrModifiableValueMap
             if ( entry == null ) {
                 entry = new JcrPropertyMapCacheEntry(prop);
                 cache.put(key, entry);
-
-                final Object defaultValue = entry.getPropertyValue();
-                if (defaultValue != null) {
-                    valueCache.put(key, entry.getPropertyValue());
-                }
             }
             return entry;
         } catch (final RepositoryException re) {
@@ -314,36 +292,9 @@ public final class JcrModifiableValueMap
             return null;
         }
 
-        // check cache
-        JcrPropertyMapCacheEntry cachedValued = cache.get(name);
-        if ( fullyRead || cachedValued != null ) {
-            return cachedValued;
-        }
-
-        try {
-            final String key = escapeKeyName(name);
-            if (node.hasProperty(key)) {
-                final Property prop = node.getProperty(key);
-                return cacheProperty(prop);
-            }
-        } catch (final RepositoryException re) {
-            throw new IllegalArgumentException(re);
-        }
-
-        try {
-            // for compatibility with older versions we use the (wrong) ISO9075 path
-            // encoding
-            final String oldKey = ISO9075.encodePath(name);
-            if (node.hasProperty(oldKey)) {
-                final Property prop = node.getProperty(oldKey);
-                return cacheProperty(prop);
-            }
-        } catch (final RepositoryException re) {
-            // we ignore this
-        }
-
-        // property not found
-        return null;
+        // check cache, all properties are read at once on the first access
+        readFully();
+        return cache.get(name);
     }
 
     /**
@@ -405,15 +356,6 @@ public final class JcrModifiableValueMap
         return type;
     }
 
-    private Map<String, Object> transformEntries(final Map<String, JcrPropertyMapCacheEntry> map) {
-
-        final Map<String, Object> transformedEntries = new LinkedHashMap<String, Object>(map.size());
-        for ( final Map.Entry<String, JcrPropertyMapCacheEntry> entry : map.entrySet() )
-            transformedEntries.put(entry.getKey(), entry.getValue().getPropertyValueOrNull());
-
-        return transformedEntries;
-    }
-
     // ---------- Map
 
     /**
@@ -452,7 +394,6 @@ public final class JcrModifiableValueMap
         } catch (final RepositoryException re) {
             throw new IllegalArgumentException("Value for key " + key + " can't be put into node: " + value, re);
         }
-        this.valueCache.put(key, value);
 
         return oldValue;
     }
@@ -478,7 +419,6 @@ public final class JcrModifiableValueMap
         final String key = checkKey(aKey.toString());
         readFully();
         final Object oldValue = this.cache.remove(key);
-        this.valueCache.remove(key);
         try {
             final String name = escapeKeyName(key);
             if ( node.hasProperty(name) ) {
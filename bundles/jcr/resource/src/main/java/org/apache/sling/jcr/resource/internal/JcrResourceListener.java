@@ -20,11 +20,15 @@ package org.apache.sling.jcr.resource.internal;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.jcr.Node;
@@ -32,11 +36,15 @@ import javax.jcr.RepositoryException;
 import javax.jcr.observation.Event;
 import javax.jcr.observation.EventIterator;
 import javax.jcr.observation.EventListener;
+import javax.jcr.observation.ObservationManager;
 
 import org.apache.jackrabbit.api.observation.JackrabbitEvent;
+import org.apache.jackrabbit.api.observation.JackrabbitEventFilter;
+import org.apache.jackrabbit.api.observation.JackrabbitObservationManager;
 import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
 import org.apache.sling.jcr.resource.internal.helper.jcr.JcrResourceProvider;
 import org.apache.sling.jcr.resource.internal.helper.jcr.PathMapper;
 import org.osgi.service.event.EventAdmin;
@@ -49,9 +57,25 @@ import org.slf4j.LoggerFactory;
  * The <code>JcrResourceListener</code> listens for JCR observation
  * events and creates resource events which are sent through the
  * OSGi event admin.
+ * <p>
+ * In addition the changes of each observation batch are collected into
+ * a {@link ResourceChangeSet} which is delivered to the resource change
+ * listeners by the {@link ResourceChangeDispatcher}. If the dispatching
+ * falls behind, all pending change sets are merged and delivered at once.
+ * <p>
+ * The listener is only registered for the parts of the repository the
+ * event handlers and resource change listeners are interested in, see
+ * {@link ObservationListenerSupport#getInterest()}. Events outside of this
+ * interest are dropped before anything is created for them.
  */
 public class JcrResourceListener implements EventListener, Closeable {
 
+    /** The observed event types */
+    private static final int EVENT_TYPES = Event.NODE_ADDED|Event.NODE_REMOVED|Event.PROPERTY_ADDED|Event.PROPERTY_CHANGED|Event.PROPERTY_REMOVED;
+
+    /** The event property marking external events. */
+    private static final String PROPERTY_APPLICATION = "event.application";
+
     /** Logger */
     private final Logger logger = LoggerFactory.getLogger(JcrResourceListener.class);
 
@@ -80,6 +104,30 @@ public class JcrResourceListener implements EventListener, Closeable {
      */
     private final Map<String, Object> TERMINATE_PROCESSING = new HashMap<String, Object>(1);
 
+    /**
+     * Marker event for {@link #processOsgiEventQueue()} to dispatch the
+     * {@link #pendingChanges}.
+     */
+    private final Map<String, Object> DISPATCH_CHANGES = new HashMap<String, Object>(1);
+
+    /**
+     * The change sets created by {@link #onEvent(EventIterator)} waiting
+     * to be dispatched in {@link #processOsgiEventQueue()}.
+     */
+    private final ConcurrentLinkedQueue<ResourceChangeSet> pendingChanges = new ConcurrentLinkedQueue<ResourceChangeSet>();
+
+    /**
+     * Marker event for {@link #processOsgiEventQueue()} to update the
+     * registration of this listener to the current interest.
+     */
+    private final Map<String, Object> UPDATE_REGISTRATION = new HashMap<String, Object>(1);
+
+    /** The changes of interest with JCR paths including the mount prefix. */
+    private volatile ObservationInterest interest;
+
+    /** The paths this listener is registered at, <code>null</code> if not registered. */
+    private String[] registeredPaths;
+
     public JcrResourceListener(
                     final String mountPrefix,
                     final ObservationListenerSupport support,
@@ -97,11 +145,15 @@ public class JcrResourceListener implements EventListener, Closeable {
         this.mountPrefix = (mountPrefix == null || mountPrefix.length() == 0 || mountPrefix.equals("/") ? null : mountPrefix);
 
         this.support = support;
-        this.support.getSession().getWorkspace().getObservationManager().addEventListener(this,
-                        Event.NODE_ADDED|Event.NODE_REMOVED|Event.PROPERTY_ADDED|Event.PROPERTY_CHANGED|Event.PROPERTY_REMOVED,
-                        "/", true, null, null, false);
-
         this.osgiEventQueue = new LinkedBlockingQueue<Map<String,Object>>();
+        this.updateRegistration();
+        this.support.setInterestCallback(new Runnable() {
+            public void run() {
+                // the session is only used by the queue processor from now on
+                osgiEventQueue.offer(UPDATE_REGISTRATION);
+            }
+        });
+
         final Thread oeqt = new Thread(new Runnable() {
             public void run() {
                 processOsgiEventQueue();
@@ -110,6 +162,75 @@ public class JcrResourceListener implements EventListener, Closeable {
         oeqt.start();
     }
 
+    /**
+     * Register this listener for the paths of interest if they changed.
+     */
+    private void updateRegistration() throws RepositoryException {
+        final ObservationInterest interest = this.support.getInterest().toJcrPaths(this.pathMapper);
+        this.interest = interest;
+
+        final String[] paths = this.getObservedPaths(interest);
+        if ( Arrays.equals(paths, this.registeredPaths) ) {
+            return;
+        }
+        final ObservationManager observationManager = this.support.getSession().getWorkspace().getObservationManager();
+        if ( this.registeredPaths != null ) {
+            observationManager.removeEventListener(this);
+            this.registeredPaths = null;
+        }
+        if ( paths.length == 1 ) {
+            observationManager.addEventListener(this, EVENT_TYPES, paths[0], true, null, null, false);
+        } else if ( paths.length > 1 && !this.addEventListener(observationManager, paths) ) {
+            // observe the common ancestor and drop the other events
+            observationManager.addEventListener(this, EVENT_TYPES, ObservationInterest.getCommonAncestor(paths), true, null, null, false);
+        }
+        this.registeredPaths = paths;
+        logger.debug("Observing {} for {}", Arrays.toString(paths), interest);
+    }
+
+    /**
+     * Register this listener for several paths at once, if the repository supports it.
+     */
+    private boolean addEventListener(final ObservationManager observationManager, final String[] paths)
+    throws RepositoryException {
+        if ( this.hasJackrabbitEventClass ) {
+            try {
+                if ( observationManager instanceof JackrabbitObservationManager ) {
+                    final JackrabbitEventFilter filter = new JackrabbitEventFilter()
+                        .setEventTypes(EVENT_TYPES)
+                        .setAbsPath(paths[0])
+                        .setAdditionalPaths(Arrays.copyOfRange(paths, 1, paths.length))
+                        .setIsDeep(true)
+                        .setNoLocal(false);
+                    ((JackrabbitObservationManager) observationManager).addEventListener(this, filter);
+                    return true;
+                }
+            } catch (final LinkageError le) {
+                // an older Jackrabbit API without event filters
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the observed paths relative to the mount prefix.
+     */
+    private String[] getObservedPaths(final ObservationInterest interest) {
+        final String[] observedPaths = interest.getObservedPaths();
+        if ( this.mountPrefix == null ) {
+            return observedPaths;
+        }
+        final List<String> paths = new ArrayList<String>();
+        for (final String path : observedPaths) {
+            if ( path.startsWith(this.mountPrefix.concat("/")) ) {
+                paths.add(path.substring(this.mountPrefix.length()));
+            } else if ( path.equals(this.mountPrefix) || path.equals("/") || this.mountPrefix.startsWith(path.concat("/")) ) {
+                paths.add("/");
+            }
+        }
+        return ObservationInterest.minimize(paths);
+    }
+
     /**
      * Dispose this listener.
      */
@@ -123,6 +244,7 @@ public class JcrResourceListener implements EventListener, Closeable {
 
         // drop any remaining OSGi Events not processed yet
         this.osgiEventQueue.clear();
+        this.pendingChanges.clear();
         this.osgiEventQueue.offer(TERMINATE_PROCESSING);
 
         this.support.dispose();
@@ -132,11 +254,14 @@ public class JcrResourceListener implements EventListener, Closeable {
      * @see javax.jcr.observation.EventListener#onEvent(javax.jcr.observation.EventIterator)
      */
     public void onEvent(final EventIterator events) {
-        // if the event admin is currently not available, we just skip this
+        // if the event admin is currently not available and there are no
+        // resource change listeners, we just skip this
         final EventAdmin localEA = this.support.getEventAdmin();
-        if ( localEA == null ) {
+        final boolean collectChanges = this.support.getChangeDispatcher().hasListeners();
+        if ( localEA == null && !collectChanges ) {
             return;
         }
+        final ObservationInterest interest = this.interest;
         final Map<String, Map<String, Object>> addedEvents = new HashMap<String, Map<String, Object>>();
         final Map<String, ChangedAttributes> changedEvents = new HashMap<String, ChangedAttributes>();
         final Map<String, Map<String, Object>> removedEvents = new HashMap<String, Map<String, Object>>();
@@ -155,12 +280,16 @@ public class JcrResourceListener implements EventListener, Closeable {
                     final int lastSlash = eventPath.lastIndexOf('/');
                     final String nodePath = eventPath.substring(0, lastSlash);
                     final String propName = eventPath.substring(lastSlash + 1);
-                    this.updateChangedEvent(changedEvents, nodePath, event, propName);
+                    if ( interest.includesProperty(nodePath, propName) ) {
+                        this.updateChangedEvent(changedEvents, nodePath, event, propName);
+                    }
 
                 } else if ( event.getType() == Event.NODE_ADDED ) {
-                    addedEvents.put(eventPath, createEventProperties(event));
+                    if ( interest.includes(eventPath) ) {
+                        addedEvents.put(eventPath, createEventProperties(event));
+                    }
 
-                } else if ( event.getType() == Event.NODE_REMOVED) {
+                } else if ( event.getType() == Event.NODE_REMOVED && interest.includesRemoval(eventPath) ) {
                     // remove is the strongest operation, therefore remove all removed
                     // paths from added
                     addedEvents.remove(eventPath);
@@ -171,6 +300,28 @@ public class JcrResourceListener implements EventListener, Closeable {
             }
         }
 
+        // the change set has to be created before the OSGi events as sending
+        // them merges the changed attributes into the added events
+        final ResourceChangeSet changeSet;
+        if ( collectChanges ) {
+            changeSet = createChangeSet(addedEvents, changedEvents, removedEvents);
+        } else {
+            changeSet = null;
+        }
+
+        if ( localEA != null ) {
+            sendOsgiEvents(addedEvents, changedEvents, removedEvents);
+        }
+
+        if ( changeSet != null && !changeSet.isEmpty() ) {
+            this.pendingChanges.offer(changeSet);
+            this.osgiEventQueue.offer(DISPATCH_CHANGES);
+        }
+    }
+
+    private void sendOsgiEvents(final Map<String, Map<String, Object>> addedEvents,
+            final Map<String, ChangedAttributes> changedEvents,
+            final Map<String, Map<String, Object>> removedEvents) {
         for (final Entry<String, Map<String, Object>> e : removedEvents.entrySet()) {
             // Launch an OSGi event
             sendOsgiEvent(e.getKey(), e.getValue(), SlingConstants.TOPIC_RESOURCE_REMOVED,
@@ -190,6 +341,45 @@ public class JcrResourceListener implements EventListener, Closeable {
         }
     }
 
+    /**
+     * Create the change set for the resource change listeners. As for the
+     * OSGi events the property changes of an added node are reported with
+     * the added change.
+     */
+    private ResourceChangeSet createChangeSet(final Map<String, Map<String, Object>> addedEvents,
+            final Map<String, ChangedAttributes> changedEvents,
+            final Map<String, Map<String, Object>> removedEvents) {
+        final ResourceChangeSet changeSet = new ResourceChangeSet();
+        for (final Entry<String, Map<String, Object>> e : removedEvents.entrySet()) {
+            addChange(changeSet, ChangeType.REMOVED, e.getKey(), e.getValue(), null);
+        }
+        for (final Entry<String, Map<String, Object>> e : addedEvents.entrySet()) {
+            addChange(changeSet, ChangeType.ADDED, e.getKey(), e.getValue(), changedEvents.get(e.getKey()));
+        }
+        for (final Entry<String, ChangedAttributes> e : changedEvents.entrySet()) {
+            if ( !addedEvents.containsKey(e.getKey()) ) {
+                addChange(changeSet, ChangeType.CHANGED, e.getKey(), e.getValue().properties, e.getValue());
+            }
+        }
+        return changeSet;
+    }
+
+    private void addChange(final ResourceChangeSet changeSet,
+            final ChangeType type,
+            final String path,
+            final Map<String, Object> properties,
+            final ChangedAttributes changedAttributes) {
+        final String resourcePath = pathMapper.mapJCRPathToResourcePath(path);
+        if ( resourcePath != null ) {
+            changeSet.add(type, resourcePath,
+                    (String) properties.get(SlingConstants.PROPERTY_USERID),
+                    properties.containsKey(PROPERTY_APPLICATION),
+                    changedAttributes == null ? null : changedAttributes.addedAttributes,
+                    changedAttributes == null ? null : changedAttributes.changedAttributes,
+                    changedAttributes == null ? null : changedAttributes.removedAttributes);
+        }
+    }
+
     private static final class ChangedAttributes {
 
         private final Map<String, Object> properties;
@@ -272,7 +462,7 @@ public class JcrResourceListener implements EventListener, Closeable {
         final Map<String, Object> properties = new HashMap<String, Object>();
 
         if (this.isExternal(event)) {
-            properties.put("event.application", "unknown");
+            properties.put(PROPERTY_APPLICATION, "unknown");
         } else {
             final String userID = event.getUserID();
             if (userID != null) {
@@ -331,6 +521,20 @@ public class JcrResourceListener implements EventListener, Closeable {
                 break;
             }
 
+            if (event == DISPATCH_CHANGES) {
+                dispatchChanges();
+                continue;
+            }
+
+            if (event == UPDATE_REGISTRATION) {
+                try {
+                    this.updateRegistration();
+                } catch (final RepositoryException e) {
+                    logger.warn("processOsgiEventQueue: Unable to update the observation registration", e);
+                }
+                continue;
+            }
+
             try {
                 final EventAdmin localEa = this.support.getEventAdmin();
                 final ResourceResolver resolver = this.support.getResourceResolver();
@@ -394,6 +598,26 @@ public class JcrResourceListener implements EventListener, Closeable {
         this.osgiEventQueue.clear();
     }
 
+    /**
+     * Dispatch all pending change sets at once.
+     */
+    private void dispatchChanges() {
+        final ResourceChangeSet changeSet = this.pendingChanges.poll();
+        if (changeSet == null) {
+            // already dispatched together with a previous change set
+            return;
+        }
+        try {
+            ResourceChangeSet next;
+            while ((next = this.pendingChanges.poll()) != null) {
+                changeSet.addAll(next);
+            }
+            this.support.getChangeDispatcher().dispatch(changeSet.getChanges(), this.support.getResourceResolver());
+        } catch (final Exception e) {
+            logger.warn("processOsgiEventQueue: Unexpected problem dispatching " + changeSet.size() + " resource changes", e);
+        }
+    }
+
     private boolean isExternal(final Event event) {
         if ( this.hasJackrabbitEventClass && event instanceof JackrabbitEvent) {
             final JackrabbitEvent jEvent = (JackrabbitEvent)event;
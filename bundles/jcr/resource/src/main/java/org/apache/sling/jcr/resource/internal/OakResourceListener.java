@@ -44,9 +44,11 @@ import org.apache.jackrabbit.oak.plugins.observation.NodeObserver;
 import org.apache.jackrabbit.oak.spi.commit.BackgroundObserver;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
 import org.apache.sling.jcr.resource.internal.helper.jcr.JcrResourceProvider;
 import org.apache.sling.jcr.resource.internal.helper.jcr.PathMapper;
 import org.osgi.framework.BundleContext;
@@ -60,6 +62,14 @@ import org.slf4j.LoggerFactory;
 /**
  * This {@code OakResourceListener} implementation translates and relays
  * all events to the OSGi {@code EventAdmin}.
+ * <p>
+ * The changes of each observed revision are collected into a
+ * {@link ResourceChangeSet} which is delivered to the resource change
+ * listeners once the revision has been processed.
+ * <p>
+ * Changes outside of the {@link ObservationListenerSupport#getInterest() interest}
+ * of the event handlers and resource change listeners are dropped before
+ * anything is created for them.
  */
 public class OakResourceListener extends NodeObserver implements Closeable {
 
@@ -75,6 +85,15 @@ public class OakResourceListener extends NodeObserver implements Closeable {
 
     private final PathMapper pathMapper;
 
+    /**
+     * The changes of the revision currently processed, only used by the
+     * observer thread.
+     */
+    private ResourceChangeSet changeSet;
+
+    /** The changes of interest with JCR paths including the mount prefix. */
+    private volatile ObservationInterest interest;
+
     public OakResourceListener(
             final String mountPrefix,
             final ObservationListenerSupport support,
@@ -87,6 +106,12 @@ public class OakResourceListener extends NodeObserver implements Closeable {
         this.support = support;
         this.pathMapper = pathMapper;
         this.mountPrefix = (mountPrefix == null || mountPrefix.length() == 0 || mountPrefix.equals("/") ? null : mountPrefix);
+        this.interest = support.getInterest().toJcrPaths(pathMapper);
+        support.setInterestCallback(new Runnable() {
+            public void run() {
+                interest = support.getInterest().toJcrPaths(pathMapper);
+            }
+        });
 
         final Dictionary<String, Object> props = new Hashtable<String, Object>();
         props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
@@ -112,6 +137,26 @@ public class OakResourceListener extends NodeObserver implements Closeable {
         this.support.dispose();
     }
 
+    @Override
+    public void contentChanged(final NodeState root, final CommitInfo info) {
+        if ( this.support.getChangeDispatcher().hasListeners() ) {
+            this.changeSet = new ResourceChangeSet();
+        }
+        try {
+            super.contentChanged(root, info);
+        } finally {
+            final ResourceChangeSet changes = this.changeSet;
+            this.changeSet = null;
+            if ( changes != null && !changes.isEmpty() ) {
+                try {
+                    this.support.getChangeDispatcher().dispatch(changes.getChanges(), this.support.getResourceResolver());
+                } catch (final Exception e) {
+                    logger.warn("contentChanged: Unexpected problem dispatching " + changes.size() + " resource changes", e);
+                }
+            }
+        }
+    }
+
     @Override
     protected void added(final String path,
             final Set<String> added,
@@ -119,8 +164,12 @@ public class OakResourceListener extends NodeObserver implements Closeable {
             final Set<String> changed,
             final Map<String, String> properties,
             final CommitInfo commitInfo) {
+        if ( !isOfInterest(path) ) {
+            return;
+        }
         final Map<String, Object> changes = toEventProperties(added, deleted, changed);
         addCommitInfo(changes, commitInfo);
+        addChange(ChangeType.ADDED, path, added, deleted, changed, commitInfo);
         logger.debug("added(changes={})", changes);
         sendOsgiEvent(path, TOPIC_RESOURCE_ADDED, changes, properties);
     }
@@ -132,8 +181,12 @@ public class OakResourceListener extends NodeObserver implements Closeable {
             final Set<String> changed,
             final Map<String, String> properties,
             final CommitInfo commitInfo) {
+        if ( !this.interest.includesRemoval(toChangePath(path)) ) {
+            return;
+        }
         final Map<String, Object> changes = toEventProperties(added, deleted, changed);
         addCommitInfo(changes, commitInfo);
+        addChange(ChangeType.REMOVED, path, added, deleted, changed, commitInfo);
         logger.debug("deleted(changes={})", changes);
         sendOsgiEvent(path, TOPIC_RESOURCE_REMOVED, changes, properties);
     }
@@ -145,12 +198,51 @@ public class OakResourceListener extends NodeObserver implements Closeable {
             final Set<String> changed,
             final Map<String, String> properties,
             final CommitInfo commitInfo) {
+        if ( !isOfInterest(path, added, deleted, changed) ) {
+            return;
+        }
         final Map<String, Object> changes = toEventProperties(added, deleted, changed);
         addCommitInfo(changes, commitInfo);
+        addChange(ChangeType.CHANGED, path, added, deleted, changed, commitInfo);
         logger.debug("changed (changes={})", changes);
         sendOsgiEvent(path, TOPIC_RESOURCE_CHANGED, changes, properties);
     }
 
+    private boolean isOfInterest(final String path) {
+        return this.interest.includes(toChangePath(path));
+    }
+
+    private boolean isOfInterest(final String path,
+            final Set<String> added,
+            final Set<String> deleted,
+            final Set<String> changed) {
+        final String changePath = toChangePath(path);
+        final ObservationInterest interest = this.interest;
+        return interest.includesProperties(changePath, added)
+            || interest.includesProperties(changePath, deleted)
+            || interest.includesProperties(changePath, changed);
+    }
+
+    private String toChangePath(final String path) {
+        return this.mountPrefix == null ? path : this.mountPrefix + path;
+    }
+
+    private void addChange(final ChangeType type,
+            final String path,
+            final Set<String> added,
+            final Set<String> deleted,
+            final Set<String> changed,
+            final CommitInfo commitInfo) {
+        if ( this.changeSet != null ) {
+            final String resourcePath = pathMapper.mapJCRPathToResourcePath(
+                    this.mountPrefix == null ? path : this.mountPrefix + path);
+            if ( resourcePath != null ) {
+                this.changeSet.add(type, resourcePath, commitInfo.getUserId(), commitInfo == CommitInfo.EMPTY,
+                        added, changed, deleted);
+            }
+        }
+    }
+
     private static void addCommitInfo(final Map<String, Object> changes, final CommitInfo commitInfo) {
         if ( commitInfo.getUserId() != null ) {
             changes.put(SlingConstants.PROPERTY_USERID, commitInfo.getUserId());
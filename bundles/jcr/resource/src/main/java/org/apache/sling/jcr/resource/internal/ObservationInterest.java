@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.sling.jcr.resource.internal.helper.jcr.PathMapper;
+
+/**
+ * The <code>ObservationInterest</code> describes the changes the event
+ * handlers and resource change listeners are interested in: a set of paths,
+ * each covering the resource at the path and all resources below it or,
+ * if derived from a pattern, only the resources below it, and optionally
+ * the names of the properties of interest at these paths.
+ * <p>
+ * The observation listeners use it to register for the relevant parts of the
+ * repository only and to drop events before creating anything for them.
+ * An interest is immutable, it is created with a {@link Builder}.
+ */
+public class ObservationInterest {
+
+    /** The interest in all changes. */
+    static final ObservationInterest ALL = new Builder().add("/", null).build();
+
+    /** The interest in no change at all. */
+    static final ObservationInterest NONE = new Builder().build();
+
+    private final List<Entry> entries;
+
+    private ObservationInterest(final List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Returns the paths to observe with a deep observation listener. As
+     * adding or removing a node is reported for its parent node, the parent
+     * is observed for a path which includes the resource itself.
+     *
+     * @return The minimal set of paths to observe, in alphabetical order.
+     *      If the paths contain the root, only the root is returned.
+     */
+    String[] getObservedPaths() {
+        final List<String> paths = new ArrayList<String>();
+        for (final Entry e : this.entries) {
+            paths.add(e.includesSelf ? getParent(e.path) : e.path);
+        }
+        return minimize(paths);
+    }
+
+    boolean isEmpty() {
+        return this.entries.isEmpty();
+    }
+
+    /**
+     * Returns <code>true</code> if the changes of the resource at the given
+     * path are of interest.
+     */
+    boolean includes(final String path) {
+        for (final Entry e : this.entries) {
+            if (e.includes(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if the removal of the resource at the given
+     * path is of interest. Besides the resources of interest this includes
+     * their ancestors, as the removal of a subtree might only be reported
+     * for its root.
+     */
+    boolean includesRemoval(final String path) {
+        for (final Entry e : this.entries) {
+            if (e.includes(path) || e.isWithin(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if a change to the given property of the
+     * resource at the given path is of interest.
+     */
+    boolean includesProperty(final String path, final String name) {
+        for (final Entry e : this.entries) {
+            if (e.includes(path) && (e.propertyNames == null || e.propertyNames.contains(name))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if a change to any of the given properties
+     * of the resource at the given path is of interest.
+     */
+    boolean includesProperties(final String path, final Collection<String> names) {
+        for (final Entry e : this.entries) {
+            if (e.includes(path)) {
+                if (e.propertyNames == null) {
+                    return true;
+                }
+                if (names == null) {
+                    continue;
+                }
+                for (final String name : names) {
+                    if (e.propertyNames.contains(name)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Map the resource paths of this interest to JCR paths. Paths which
+     * are not mapped to the repository are widened to the root.
+     */
+    ObservationInterest toJcrPaths(final PathMapper pathMapper) {
+        final Builder builder = new Builder();
+        for (final Entry e : this.entries) {
+            final String jcrPath = pathMapper.mapResourcePathToJCRPath(e.path);
+            builder.add(jcrPath == null ? "/" : jcrPath, e.propertyNames, e.includesSelf);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof ObservationInterest && this.entries.equals(((ObservationInterest) obj).entries);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.entries.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ObservationInterest" + this.entries;
+    }
+
+    /**
+     * Reduce the paths to the minimal set of paths covering them, that is
+     * remove all paths below another path of the set.
+     */
+    static String[] minimize(final Collection<String> paths) {
+        final TreeSet<String> sorted = new TreeSet<String>(paths);
+        if (sorted.contains("/")) {
+            return new String[] {"/"};
+        }
+        final List<String> result = new ArrayList<String>();
+        String last = null;
+        for (final String path : sorted) {
+            if (last == null || !path.startsWith(last.concat("/"))) {
+                result.add(path);
+                last = path;
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * Returns the path of the parent, the parent of the root is the root.
+     */
+    static String getParent(final String path) {
+        final int pos = path.lastIndexOf('/');
+        return (pos <= 0) ? "/" : path.substring(0, pos);
+    }
+
+    /**
+     * Returns the deepest common ancestor of the paths.
+     */
+    static String getCommonAncestor(final String[] paths) {
+        String ancestor = paths[0];
+        for (final String path : paths) {
+            while (!ancestor.equals("/") && !path.equals(ancestor) && !path.startsWith(ancestor.concat("/"))) {
+                ancestor = getParent(ancestor);
+            }
+        }
+        return ancestor;
+    }
+
+    private static final class Entry {
+
+        final String path;
+
+        /** The path with a trailing slash, <code>null</code> for the root */
+        private final String prefix;
+
+        /** The property names, <code>null</code> for all properties */
+        final Set<String> propertyNames;
+
+        /** Whether the resource at the path itself is included */
+        final boolean includesSelf;
+
+        Entry(final String path, final Set<String> propertyNames, final boolean includesSelf) {
+            this.path = path;
+            this.prefix = path.equals("/") ? null : path.concat("/");
+            this.propertyNames = propertyNames;
+            this.includesSelf = includesSelf;
+        }
+
+        boolean includes(final String path) {
+            return this.prefix == null || path.startsWith(this.prefix) || this.includesSelf && path.equals(this.path);
+        }
+
+        /** Whether the path of this entry is the given path or below it */
+        boolean isWithin(final String path) {
+            return this.path.equals(path) || this.path.startsWith(path.equals("/") ? path : path.concat("/"));
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            final Entry other = (Entry) obj;
+            return this.path.equals(other.path)
+                && this.includesSelf == other.includesSelf
+                && (this.propertyNames == null ? other.propertyNames == null : this.propertyNames.equals(other.propertyNames));
+        }
+
+        @Override
+        public int hashCode() {
+            return this.path.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            final String path = this.includesSelf ? this.path : this.path.concat("/*");
+            return this.propertyNames == null ? path : path + this.propertyNames;
+        }
+    }
+
+    /**
+     * Collects the paths of interest.
+     */
+    public static final class Builder {
+
+        private final List<Entry> entries = new ArrayList<Entry>();
+
+        /**
+         * Add an absolute path of interest, the resource at the path and
+         * all resources below it are of interest.
+         *
+         * @param path The path
+         * @param propertyNames The names of the properties of interest or
+         *      <code>null</code> for all properties.
+         * @return This builder
+         */
+        public Builder add(final String path, final Collection<String> propertyNames) {
+            return this.add(path, propertyNames, true);
+        }
+
+        private Builder add(final String path, final Collection<String> propertyNames, final boolean includesSelf) {
+            String p = path;
+            if (p.length() > 1 && p.endsWith("/")) {
+                p = p.substring(0, p.length() - 1);
+            }
+            final Entry entry = new Entry(p,
+                    propertyNames == null ? null : new HashSet<String>(propertyNames),
+                    includesSelf);
+            if (!this.entries.contains(entry)) {
+                this.entries.add(entry);
+            }
+            return this;
+        }
+
+        /**
+         * Add the path a glob pattern starts with, that is the part up to
+         * the last slash before the first wildcard. All resources below this
+         * path are of interest.
+         *
+         * @param glob The pattern
+         * @param propertyNames The names of the properties of interest or
+         *      <code>null</code> for all properties.
+         * @return This builder
+         */
+        public Builder addGlob(final String glob, final Collection<String> propertyNames) {
+            int end = glob.length();
+            for (final char wildcard : new char[] {'*', '?'}) {
+                final int pos = glob.indexOf(wildcard);
+                if (pos != -1 && pos < end) {
+                    end = pos;
+                }
+            }
+            if (end == glob.length()) {
+                return this.add(glob, propertyNames);
+            }
+            final int slash = glob.lastIndexOf('/', end);
+            return this.add(slash <= 0 ? "/" : glob.substring(0, slash), propertyNames, false);
+        }
+
+        public ObservationInterest build() {
+            return new ObservationInterest(new ArrayList<Entry>(this.entries));
+        }
+    }
+}
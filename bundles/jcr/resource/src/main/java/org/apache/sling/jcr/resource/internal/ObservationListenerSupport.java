@@ -47,6 +47,17 @@ public class ObservationListenerSupport  {
 
     private final ServiceTracker eventAdminTracker;
 
+    private final ResourceChangeDispatcher changeDispatcher;
+
+    /** Tracks the interest of the event handlers, <code>null</code> if not filtering */
+    private final ResourceEventHandlerTracker eventHandlerTracker;
+
+    /** The search path of the resource resolver once it is available. */
+    private volatile String[] searchPath;
+
+    /** Notified if the interest might have changed */
+    private volatile Runnable interestCallback;
+
     private ServiceReference resourceResolverFactoryReference;
 
     /** The admin resource resolver. */
@@ -57,12 +68,27 @@ public class ObservationListenerSupport  {
     private final Session session;
 
     public ObservationListenerSupport(final BundleContext bundleContext, final SlingRepository repository)
+    throws RepositoryException {
+        this(bundleContext, repository, false);
+    }
+
+    /**
+     * @param filterObservation Whether the observation should be restricted
+     *      to the {@link #getInterest() interest} of the event handlers and
+     *      resource change listeners.
+     */
+    public ObservationListenerSupport(final BundleContext bundleContext,
+            final SlingRepository repository,
+            final boolean filterObservation)
     throws RepositoryException {
         this.bundleContext = bundleContext;
 
         this.eventAdminTracker = new ServiceTracker(bundleContext, EventAdmin.class.getName(), null);
         this.eventAdminTracker.open();
 
+        this.changeDispatcher = new ResourceChangeDispatcher(bundleContext);
+        this.eventHandlerTracker = filterObservation ? new ResourceEventHandlerTracker(bundleContext) : null;
+
         this.session = repository.loginAdministrative(null);
     }
 
@@ -80,6 +106,10 @@ public class ObservationListenerSupport  {
             this.resourceResolverFactoryReference = null;
         }
         this.eventAdminTracker.close();
+        this.changeDispatcher.close();
+        if ( this.eventHandlerTracker != null ) {
+            this.eventHandlerTracker.close();
+        }
 
         this.session.logout();
     }
@@ -92,6 +122,37 @@ public class ObservationListenerSupport  {
         return (EventAdmin) this.eventAdminTracker.getService();
     }
 
+    public ResourceChangeDispatcher getChangeDispatcher() {
+        return this.changeDispatcher;
+    }
+
+    /**
+     * Get the changes the event handlers and resource change listeners
+     * are interested in. If the observation is not filtered, this is
+     * {@link ObservationInterest#ALL}.
+     */
+    public ObservationInterest getInterest() {
+        if ( this.eventHandlerTracker == null ) {
+            return ObservationInterest.ALL;
+        }
+        final ObservationInterest.Builder builder = new ObservationInterest.Builder();
+        this.eventHandlerTracker.addInterest(builder);
+        this.changeDispatcher.addInterest(builder, this.searchPath);
+        return builder.build();
+    }
+
+    /**
+     * Set the callback notified whenever the {@link #getInterest() interest}
+     * might have changed.
+     */
+    public void setInterestCallback(final Runnable callback) {
+        this.interestCallback = callback;
+        this.changeDispatcher.setChangeCallback(callback);
+        if ( this.eventHandlerTracker != null ) {
+            this.eventHandlerTracker.setChangeCallback(callback);
+        }
+    }
+
     /**
      * Get a resource resolver.
      * We don't need any syncing as this is called from the process OSGi thread.
@@ -109,6 +170,12 @@ public class ObservationListenerSupport  {
                     try {
                         this.resourceResolver = factory.getResourceResolver(authInfo);
                         this.resourceResolverFactoryReference = ref;
+                        this.searchPath = this.resourceResolver.getSearchPath();
+                        // relative listener paths have covered the whole repository so far
+                        final Runnable callback = this.interestCallback;
+                        if ( callback != null && this.eventHandlerTracker != null ) {
+                            callback.run();
+                        }
                     } catch (final LoginException le) {
                         logger.error("Unable to get administrative resource resolver.", le);
                         this.bundleContext.ungetService(ref);
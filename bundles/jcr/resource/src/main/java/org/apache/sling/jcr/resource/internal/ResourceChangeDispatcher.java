@@ -0,0 +1,377 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ExternalResourceListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.commons.osgi.PropertiesUtil;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
+import org.osgi.util.tracker.ServiceTrackerCustomizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>ResourceChangeDispatcher</code> tracks the
+ * {@link ResourceChangeListener} services and delivers a change set to each
+ * listener with a single call, containing only the changes the listener
+ * is interested in.
+ * <p>
+ * The {@link ResourceChangeListener#PATHS} of a listener are either paths,
+ * which match the resource itself and all resources below it, or glob
+ * patterns prefixed with <code>glob:</code>. In a glob pattern <code>*</code>
+ * matches any characters of a path segment, <code>**</code> any characters
+ * across segments and <code>?</code> a single character of a segment.
+ * Relative paths and patterns are resolved against the search paths of the
+ * resource resolver, <code>.</code> stands for all search paths.
+ * <p>
+ * The paths and the {@link ResourceChangeListener#PROPERTY_NAMES_HINT} of
+ * the listeners are added to the {@link ObservationInterest}, a callback is
+ * notified whenever the listeners change.
+ */
+public class ResourceChangeDispatcher implements ServiceTrackerCustomizer {
+
+    /** The prefix of a path which is a glob pattern. */
+    static final String GLOB_PREFIX = "glob:";
+
+    /** Logger */
+    private final Logger logger = LoggerFactory.getLogger(ResourceChangeDispatcher.class);
+
+    private final BundleContext bundleContext;
+
+    private final ServiceTracker listenerTracker;
+
+    private final List<ListenerInfo> listeners = new CopyOnWriteArrayList<ListenerInfo>();
+
+    /** Notified if the listeners change */
+    private volatile Runnable changeCallback;
+
+    public ResourceChangeDispatcher(final BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+        this.listenerTracker = new ServiceTracker(bundleContext, ResourceChangeListener.class.getName(), this);
+        this.listenerTracker.open();
+    }
+
+    /**
+     * Dispose this dispatcher.
+     */
+    public void close() {
+        this.listenerTracker.close();
+        this.listeners.clear();
+    }
+
+    /**
+     * Set the callback notified if listeners are added, removed or modified.
+     */
+    public void setChangeCallback(final Runnable callback) {
+        this.changeCallback = callback;
+    }
+
+    /**
+     * Add the paths the listeners are interested in.
+     *
+     * @param builder The builder collecting the interest
+     * @param searchPaths The search paths used for relative paths, if
+     *      <code>null</code> relative paths cover the whole repository
+     *      until the search paths are available.
+     */
+    public void addInterest(final ObservationInterest.Builder builder, final String[] searchPaths) {
+        for (final ListenerInfo info : this.listeners) {
+            for (final String configured : info.configuredPaths) {
+                final boolean isGlob = configured.startsWith(GLOB_PREFIX);
+                final List<String> absolute = resolve(configured, isGlob, searchPaths);
+                if (absolute == null) {
+                    builder.add("/", info.propertyNames);
+                    continue;
+                }
+                for (final String p : absolute) {
+                    if (isGlob) {
+                        builder.addGlob(p, info.propertyNames);
+                    } else {
+                        builder.add(p, info.propertyNames);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolve a configured path or glob pattern against the search paths.
+     *
+     * @return The absolute paths or patterns or <code>null</code> if the path
+     *      is relative and no search paths are available.
+     */
+    private static List<String> resolve(final String configured, final boolean isGlob, final String[] searchPaths) {
+        final String path = isGlob ? configured.substring(GLOB_PREFIX.length()) : configured;
+        if (path.startsWith("/")) {
+            return Collections.singletonList(path);
+        }
+        if (searchPaths == null) {
+            return null;
+        }
+        final List<String> absolute = new ArrayList<String>();
+        for (final String searchPath : searchPaths) {
+            if (".".equals(path)) {
+                absolute.add(searchPath);
+            } else {
+                absolute.add(searchPath.endsWith("/") ? searchPath.concat(path) : searchPath + '/' + path);
+            }
+        }
+        return absolute;
+    }
+
+    private void fireChange() {
+        final Runnable callback = this.changeCallback;
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if there is at least one listener. If not,
+     * the observation does not need to collect changes.
+     */
+    public boolean hasListeners() {
+        return !this.listeners.isEmpty();
+    }
+
+    /**
+     * Dispatch the changes to the listeners. Each listener is called at
+     * most once with the changes it is interested in.
+     *
+     * @param changes The changes
+     * @param resolver The resolver used to resolve relative paths, might be <code>null</code>
+     */
+    public void dispatch(final List<ResourceChange> changes, final ResourceResolver resolver) {
+        for (final ListenerInfo info : this.listeners) {
+            final List<ResourceChange> accepted = new ArrayList<ResourceChange>();
+            for (final ResourceChange change : changes) {
+                if (info.accepts(change, resolver)) {
+                    accepted.add(change);
+                }
+            }
+            if (!accepted.isEmpty()) {
+                try {
+                    info.listener.onChange(Collections.unmodifiableList(accepted));
+                } catch (final Throwable t) {
+                    logger.warn("dispatch: Resource change listener " + info.listener + " failed to process changes", t);
+                }
+            }
+        }
+    }
+
+    // ---------- ServiceTrackerCustomizer
+
+    public Object addingService(final ServiceReference reference) {
+        final Object service = this.bundleContext.getService(reference);
+        if (!(service instanceof ResourceChangeListener)) {
+            if (service != null) {
+                this.bundleContext.ungetService(reference);
+            }
+            return null;
+        }
+        final ListenerInfo info = createInfo(reference, (ResourceChangeListener) service);
+        if (info == null) {
+            this.bundleContext.ungetService(reference);
+            return null;
+        }
+        this.listeners.add(info);
+        this.fireChange();
+        return info;
+    }
+
+    public void modifiedService(final ServiceReference reference, final Object service) {
+        final ListenerInfo oldInfo = (ListenerInfo) service;
+        final ListenerInfo newInfo = createInfo(reference, oldInfo.listener);
+        if (newInfo == null) {
+            this.listeners.remove(oldInfo);
+        } else {
+            final int index = this.listeners.indexOf(oldInfo);
+            if (index == -1) {
+                this.listeners.add(newInfo);
+            } else {
+                this.listeners.set(index, newInfo);
+            }
+        }
+        this.fireChange();
+    }
+
+    public void removedService(final ServiceReference reference, final Object service) {
+        this.listeners.remove(service);
+        this.bundleContext.ungetService(reference);
+        this.fireChange();
+    }
+
+    private ListenerInfo createInfo(final ServiceReference reference, final ResourceChangeListener listener) {
+        final String[] paths = PropertiesUtil.toStringArray(reference.getProperty(ResourceChangeListener.PATHS));
+        if (paths == null || paths.length == 0) {
+            logger.warn("Ignoring resource change listener {} without {} property", listener, ResourceChangeListener.PATHS);
+            return null;
+        }
+
+        final Set<ChangeType> types;
+        final String[] typeNames = PropertiesUtil.toStringArray(reference.getProperty(ResourceChangeListener.CHANGES));
+        if (typeNames == null) {
+            types = EnumSet.allOf(ChangeType.class);
+        } else {
+            types = EnumSet.noneOf(ChangeType.class);
+            for (final String name : typeNames) {
+                try {
+                    types.add(ChangeType.valueOf(name));
+                } catch (final IllegalArgumentException iae) {
+                    logger.warn("Ignoring unknown change type {} of resource change listener {}", name, listener);
+                }
+            }
+        }
+
+        final String[] propertyNames = PropertiesUtil.toStringArray(reference.getProperty(ResourceChangeListener.PROPERTY_NAMES_HINT));
+
+        return new ListenerInfo(listener, paths, types, listener instanceof ExternalResourceListener,
+                propertyNames == null ? null : Arrays.asList(propertyNames));
+    }
+
+    /**
+     * Convert a glob pattern into a regular expression.
+     */
+    static Pattern compileGlob(final String glob) {
+        final StringBuilder sb = new StringBuilder();
+        int start = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (start < i) {
+                    sb.append(Pattern.quote(glob.substring(start, i)));
+                }
+                if (c == '?') {
+                    sb.append("[^/]");
+                } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    sb.append(".*");
+                    i++;
+                } else {
+                    sb.append("[^/]*");
+                }
+                start = i + 1;
+            }
+        }
+        if (start < glob.length()) {
+            sb.append(Pattern.quote(glob.substring(start)));
+        }
+        return Pattern.compile(sb.toString());
+    }
+
+    /**
+     * The filter of a listener. The paths are resolved when the first
+     * change is checked as resolving relative paths requires a resolver.
+     */
+    private static final class ListenerInfo {
+
+        final ResourceChangeListener listener;
+
+        final String[] configuredPaths;
+
+        /** The property names of interest, <code>null</code> for all */
+        final Collection<String> propertyNames;
+
+        private final Set<ChangeType> types;
+
+        private final boolean external;
+
+        /** The absolute paths, each ending with a slash. */
+        private List<String> paths;
+
+        private List<Pattern> globs;
+
+        /** Whether relative paths still need to be resolved. */
+        private boolean unresolved = true;
+
+        ListenerInfo(final ResourceChangeListener listener,
+                final String[] configuredPaths,
+                final Set<ChangeType> types,
+                final boolean external,
+                final Collection<String> propertyNames) {
+            this.listener = listener;
+            this.propertyNames = propertyNames;
+            this.configuredPaths = configuredPaths;
+            this.types = types;
+            this.external = external;
+        }
+
+        boolean accepts(final ResourceChange change, final ResourceResolver resolver) {
+            if (!this.types.contains(change.getType())
+                || (change.isExternal() && !this.external)) {
+                return false;
+            }
+            if (this.unresolved) {
+                this.resolvePaths(resolver);
+            }
+            final String path = change.getPath();
+            for (final String p : this.paths) {
+                if (path.startsWith(p) || path.length() + 1 == p.length() && p.startsWith(path)) {
+                    return true;
+                }
+            }
+            for (final Pattern glob : this.globs) {
+                if (glob.matcher(path).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void resolvePaths(final ResourceResolver resolver) {
+            final String[] searchPaths = (resolver == null) ? null : resolver.getSearchPath();
+            final List<String> paths = new ArrayList<String>();
+            final List<Pattern> globs = new ArrayList<Pattern>();
+            boolean unresolved = false;
+            for (final String configured : this.configuredPaths) {
+                final boolean isGlob = configured.startsWith(GLOB_PREFIX);
+                final List<String> absolute = resolve(configured, isGlob, searchPaths);
+                if (absolute == null) {
+                    // no resolver yet, try again with the next changes
+                    unresolved = true;
+                    continue;
+                }
+                for (final String p : absolute) {
+                    if (isGlob) {
+                        globs.add(compileGlob(p));
+                    } else {
+                        paths.add(p.endsWith("/") ? p : p.concat("/"));
+                    }
+                }
+            }
+            this.globs = globs;
+            this.paths = paths;
+            this.unresolved = unresolved;
+        }
+    }
+}
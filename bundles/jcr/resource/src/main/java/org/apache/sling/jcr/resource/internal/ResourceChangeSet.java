@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+
+/**
+ * The <code>ResourceChangeSet</code> collects the resource changes of one
+ * or more observation batches. Within a batch, changes of the same type to
+ * the same path are reported once and their attribute names are merged.
+ * Changes of later batches are never merged into earlier ones: an earlier
+ * added or removed change of a path is dropped if a later batch reports the
+ * opposite change, all other changes are kept in their order.
+ * <p>
+ * This class is not thread safe, a change set is filled by the observation
+ * thread and then handed over to the thread dispatching it.
+ */
+class ResourceChangeSet {
+
+    /** The changes in the order in which they have been added. */
+    private final Set<Change> changes = new LinkedHashSet<Change>();
+
+    /** The changes by type and path, the last one is the most recent. */
+    private final Map<String, List<Change>> changesByKey = new HashMap<String, List<Change>>();
+
+    /**
+     * Add a change of the batch this set is created for.
+     *
+     * @param type The change type
+     * @param path The resource path
+     * @param userId The user causing the change or <code>null</code>
+     * @param external Whether the change happened on another instance
+     * @param added The added attribute names or <code>null</code>
+     * @param changed The changed attribute names or <code>null</code>
+     * @param removed The removed attribute names or <code>null</code>
+     */
+    public void add(final ChangeType type,
+            final String path,
+            final String userId,
+            final boolean external,
+            final Collection<String> added,
+            final Collection<String> changed,
+            final Collection<String> removed) {
+        final String key = key(type, path);
+        final List<Change> existing = this.changesByKey.get(key);
+        Change change = (existing == null) ? null : existing.get(existing.size() - 1);
+        if ( change == null ) {
+            change = new Change(type, path, userId, external);
+            this.append(key, change);
+        }
+        change.addedAttributes = merge(change.addedAttributes, added);
+        change.changedAttributes = merge(change.changedAttributes, changed);
+        change.removedAttributes = merge(change.removedAttributes, removed);
+    }
+
+    /**
+     * Add all changes of the other change set, which has been created for a
+     * later batch. An added or removed change drops the opposite changes of
+     * its path from this set, the changes are appended without merging them.
+     */
+    public void addAll(final ResourceChangeSet other) {
+        for (final Change c : other.changes) {
+            final ChangeType opposite = opposite(c.getType());
+            if ( opposite != null ) {
+                final List<Change> superseded = this.changesByKey.remove(key(opposite, c.getPath()));
+                if ( superseded != null ) {
+                    this.changes.removeAll(superseded);
+                }
+            }
+            this.append(key(c.getType(), c.getPath()), c);
+        }
+    }
+
+    public boolean isEmpty() {
+        return this.changes.isEmpty();
+    }
+
+    public int size() {
+        return this.changes.size();
+    }
+
+    /**
+     * @return The changes in the order in which they have been added.
+     */
+    public List<ResourceChange> getChanges() {
+        return new ArrayList<ResourceChange>(this.changes);
+    }
+
+    private void append(final String key, final Change change) {
+        List<Change> existing = this.changesByKey.get(key);
+        if ( existing == null ) {
+            existing = new ArrayList<Change>(1);
+            this.changesByKey.put(key, existing);
+        }
+        existing.add(change);
+        this.changes.add(change);
+    }
+
+    private static String key(final ChangeType type, final String path) {
+        return type.name() + ':' + path;
+    }
+
+    private static ChangeType opposite(final ChangeType type) {
+        switch ( type ) {
+            case ADDED : return ChangeType.REMOVED;
+            case REMOVED : return ChangeType.ADDED;
+            default : return null;
+        }
+    }
+
+    private static Set<String> merge(final Set<String> names, final Collection<String> additional) {
+        if ( additional == null || additional.isEmpty() ) {
+            return names;
+        }
+        final Set<String> result = (names == null) ? new LinkedHashSet<String>() : names;
+        result.addAll(additional);
+        return result;
+    }
+
+    private static String[] toArray(final Set<String> names) {
+        return (names == null) ? null : names.toArray(new String[names.size()]);
+    }
+
+    private static final class Change extends ResourceChange {
+
+        private final String userId;
+
+        Set<String> addedAttributes, changedAttributes, removedAttributes;
+
+        Change(final ChangeType type, final String path, final String userId, final boolean external) {
+            super(type, path, external);
+            this.userId = userId;
+        }
+
+        @Override
+        public String getUserId() {
+            return this.userId;
+        }
+
+        @Override
+        public String[] getAddedAttributeNames() {
+            return toArray(this.addedAttributes);
+        }
+
+        @Override
+        public String[] getChangedAttributeNames() {
+            return toArray(this.changedAttributes);
+        }
+
+        @Override
+        public String[] getRemovedAttributeNames() {
+            return toArray(this.removedAttributes);
+        }
+
+        @Override
+        public String toString() {
+            return "ResourceChange[type=" + getType() + ", path=" + getPath() + ", external=" + isExternal() + "]";
+        }
+    }
+}
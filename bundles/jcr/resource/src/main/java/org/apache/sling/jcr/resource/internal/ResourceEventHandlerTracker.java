@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.commons.osgi.PropertiesUtil;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+import org.osgi.util.tracker.ServiceTracker;
+import org.osgi.util.tracker.ServiceTrackerCustomizer;
+
+/**
+ * The <code>ResourceEventHandlerTracker</code> tracks the event handlers
+ * subscribed to the resource events and adds the paths they are interested
+ * in to the {@link ObservationInterest}.
+ * <p>
+ * The paths are taken from the <code>path</code> conditions of the event
+ * filter of a handler, for example <code>(path=/apps/*)</code> covers
+ * the resources below <code>/apps</code>. A handler without such a filter
+ * is interested in the whole repository. Only the service properties are inspected, the
+ * handlers themselves are never retrieved.
+ */
+public class ResourceEventHandlerTracker implements ServiceTrackerCustomizer {
+
+    /** The topics of the resource events */
+    private static final String[] RESOURCE_TOPICS = {
+        SlingConstants.TOPIC_RESOURCE_ADDED,
+        SlingConstants.TOPIC_RESOURCE_CHANGED,
+        SlingConstants.TOPIC_RESOURCE_REMOVED
+    };
+
+    private final ServiceTracker handlerTracker;
+
+    /** Notified if the handlers change */
+    private volatile Runnable changeCallback;
+
+    public ResourceEventHandlerTracker(final BundleContext bundleContext) {
+        this.handlerTracker = new ServiceTracker(bundleContext, EventHandler.class.getName(), this);
+        this.handlerTracker.open();
+    }
+
+    /**
+     * Dispose this tracker.
+     */
+    public void close() {
+        this.handlerTracker.close();
+    }
+
+    /**
+     * Set the callback notified if the interest of the handlers changes.
+     */
+    public void setChangeCallback(final Runnable callback) {
+        this.changeCallback = callback;
+    }
+
+    /**
+     * Add the paths the event handlers are interested in.
+     */
+    public void addInterest(final ObservationInterest.Builder builder) {
+        final Object[] handlers = this.handlerTracker.getServices();
+        if (handlers != null) {
+            for (final Object handler : handlers) {
+                final String[] paths = ((HandlerInterest) handler).paths;
+                if (paths != null) {
+                    for (final String path : paths) {
+                        builder.addGlob(path, null);
+                    }
+                }
+            }
+        }
+    }
+
+    // ---------- ServiceTrackerCustomizer
+
+    public Object addingService(final ServiceReference reference) {
+        final HandlerInterest interest = new HandlerInterest();
+        interest.paths = getPaths(reference);
+        if (interest.paths != null) {
+            this.fireChange();
+        }
+        return interest;
+    }
+
+    public void modifiedService(final ServiceReference reference, final Object service) {
+        final HandlerInterest interest = (HandlerInterest) service;
+        final String[] oldPaths = interest.paths;
+        interest.paths = getPaths(reference);
+        if (oldPaths != null || interest.paths != null) {
+            this.fireChange();
+        }
+    }
+
+    public void removedService(final ServiceReference reference, final Object service) {
+        if (((HandlerInterest) service).paths != null) {
+            this.fireChange();
+        }
+    }
+
+    private void fireChange() {
+        final Runnable callback = this.changeCallback;
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Returns the paths a handler is interested in or <code>null</code>
+     * if it is not subscribed to resource events.
+     */
+    static String[] getPaths(final ServiceReference reference) {
+        final String[] topics = PropertiesUtil.toStringArray(reference.getProperty(EventConstants.EVENT_TOPIC));
+        if (!isSubscribed(topics)) {
+            return null;
+        }
+        final Set<String> paths = getPaths(PropertiesUtil.toString(reference.getProperty(EventConstants.EVENT_FILTER), null));
+        if (paths == null) {
+            return new String[] {"/"};
+        }
+        return paths.toArray(new String[paths.size()]);
+    }
+
+    /**
+     * Returns <code>true</code> if one of the topics matches a resource
+     * event topic. A topic may end with a <code>*</code> wildcard.
+     */
+    static boolean isSubscribed(final String[] topics) {
+        if (topics != null) {
+            for (final String topic : topics) {
+                for (final String resourceTopic : RESOURCE_TOPICS) {
+                    if (topic.equals(resourceTopic)
+                        || topic.endsWith("*") && resourceTopic.startsWith(topic.substring(0, topic.length() - 1))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Extract the paths from an event filter.
+     *
+     * @param filter The LDAP filter or <code>null</code>
+     * @return The paths, which might contain <code>*</code> wildcards, or
+     *      <code>null</code> if the filter does not restrict the paths.
+     */
+    static Set<String> getPaths(final String filter) {
+        if (filter == null) {
+            return null;
+        }
+        try {
+            final FilterParser parser = new FilterParser(filter.trim());
+            final Set<String> paths = parser.parseFilter();
+            return (parser.pos == parser.filter.length()) ? paths : null;
+        } catch (final IndexOutOfBoundsException e) {
+            // malformed filter, the event admin will reject it anyway
+            return null;
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A parser for the subset of the LDAP filter syntax needed to
+     * extract the path conditions. Conditions on other attributes,
+     * negations and other operators are treated as not restricting the
+     * paths.
+     */
+    private static final class FilterParser {
+
+        final String filter;
+
+        int pos;
+
+        FilterParser(final String filter) {
+            this.filter = filter;
+        }
+
+        Set<String> parseFilter() {
+            this.expect('(');
+            final Set<String> paths;
+            final char c = this.skipWhitespace();
+            if (c == '&') {
+                this.pos++;
+                // any restricting operand restricts the conjunction
+                Set<String> result = null;
+                while (this.skipWhitespace() == '(') {
+                    final Set<String> operand = this.parseFilter();
+                    if (result == null) {
+                        result = operand;
+                    }
+                }
+                paths = result;
+            } else if (c == '|') {
+                this.pos++;
+                // all operands need to restrict the disjunction
+                Set<String> result = new LinkedHashSet<String>();
+                while (this.skipWhitespace() == '(') {
+                    final Set<String> operand = this.parseFilter();
+                    if (operand == null || result == null) {
+                        result = null;
+                    } else {
+                        result.addAll(operand);
+                    }
+                }
+                paths = result;
+            } else if (c == '!') {
+                this.pos++;
+                this.parseFilter();
+                paths = null;
+            } else {
+                paths = this.parseItem();
+            }
+            this.expect(')');
+            return paths;
+        }
+
+        private Set<String> parseItem() {
+            final int start = this.pos;
+            while ("=<>~()".indexOf(this.filter.charAt(this.pos)) == -1) {
+                this.pos++;
+            }
+            final String attribute = this.filter.substring(start, this.pos).trim();
+            final boolean isEquals = this.filter.charAt(this.pos) == '=';
+
+            final StringBuilder value = new StringBuilder();
+            while (this.filter.charAt(this.pos) != ')') {
+                char c = this.filter.charAt(this.pos++);
+                if (c == '\\') {
+                    c = this.filter.charAt(this.pos++);
+                }
+                value.append(c);
+            }
+
+            if (!isEquals || !SlingConstants.PROPERTY_PATH.equalsIgnoreCase(attribute)) {
+                return null;
+            }
+            // value starts with the operator
+            final String path = value.substring(1);
+            if (!path.startsWith("/")) {
+                return null;
+            }
+            final Set<String> paths = new LinkedHashSet<String>();
+            paths.add(path);
+            return paths;
+        }
+
+        private char skipWhitespace() {
+            while (Character.isWhitespace(this.filter.charAt(this.pos))) {
+                this.pos++;
+            }
+            return this.filter.charAt(this.pos);
+        }
+
+        private void expect(final char c) {
+            if (this.skipWhitespace() != c) {
+                throw new IllegalArgumentException("Expected " + c + " at " + this.pos + " in " + this.filter);
+            }
+            this.pos++;
+        }
+    }
+
+    /** The tracked object of a handler */
+    private static final class HandlerInterest {
+
+        /** The paths, <code>null</code> if not subscribed to resource events */
+        volatile String[] paths;
+    }
+}
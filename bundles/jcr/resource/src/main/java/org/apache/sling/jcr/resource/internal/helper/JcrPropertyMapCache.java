@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The <code>JcrPropertyMapCache</code> holds the cache entries of a property
+ * map in insertion order. Keys and entries are kept in two parallel arrays,
+ * which are indexed by an open addressing hash table of array positions,
+ * so a lookup does not allocate and a cached node costs three arrays
+ * instead of one map entry object per property.
+ * <p>
+ * The map of the property values, as returned by the value maps, is built
+ * on demand from the entries and kept until the cache is modified.
+ * <p>
+ * This class is not thread safe, like the value maps using it.
+ */
+public final class JcrPropertyMapCache {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+
+    private JcrPropertyMapCacheEntry[] entries = new JcrPropertyMapCacheEntry[INITIAL_CAPACITY];
+
+    private int size;
+
+    /**
+     * The hash index: each slot holds the position in the arrays plus one,
+     * <code>0</code> marks a free slot. The length is a power of two and at
+     * least twice the capacity of the arrays.
+     */
+    private int[] index = new int[INITIAL_CAPACITY * 2];
+
+    /** The values by key, <code>null</code> if not built yet. */
+    private Map<String, Object> values;
+
+    private final Set<String> keySet = new KeySet();
+
+    public int size() {
+        return this.size;
+    }
+
+    public JcrPropertyMapCacheEntry get(final String key) {
+        final int pos = this.indexOf(key);
+        return (pos == -1) ? null : this.entries[pos];
+    }
+
+    public boolean containsKey(final String key) {
+        return this.indexOf(key) != -1;
+    }
+
+    /**
+     * Put an entry. If an entry for the key exists, it is replaced and keeps
+     * its position in the iteration order.
+     */
+    public void put(final String key, final JcrPropertyMapCacheEntry entry) {
+        this.values = null;
+        final int pos = this.indexOf(key);
+        if ( pos != -1 ) {
+            this.entries[pos] = entry;
+            return;
+        }
+        if ( this.size == this.keys.length ) {
+            this.keys = Arrays.copyOf(this.keys, this.size * 2);
+            this.entries = Arrays.copyOf(this.entries, this.size * 2);
+            this.index = new int[this.keys.length * 2];
+            for (int i = 0; i < this.size; i++) {
+                this.addToIndex(this.keys[i], i);
+            }
+        }
+        this.keys[this.size] = key;
+        this.entries[this.size] = entry;
+        this.addToIndex(key, this.size);
+        this.size++;
+    }
+
+    /**
+     * Remove the entry for the key.
+     * @return The removed entry or <code>null</code>
+     */
+    public JcrPropertyMapCacheEntry remove(final String key) {
+        final int pos = this.indexOf(key);
+        if ( pos == -1 ) {
+            return null;
+        }
+        this.values = null;
+        final JcrPropertyMapCacheEntry entry = this.entries[pos];
+        // removal is rare, compact the arrays and rebuild the index
+        System.arraycopy(this.keys, pos + 1, this.keys, pos, this.size - pos - 1);
+        System.arraycopy(this.entries, pos + 1, this.entries, pos, this.size - pos - 1);
+        this.size--;
+        this.keys[this.size] = null;
+        this.entries[this.size] = null;
+        Arrays.fill(this.index, 0);
+        for (int i = 0; i < this.size; i++) {
+            this.addToIndex(this.keys[i], i);
+        }
+        return entry;
+    }
+
+    public void clear() {
+        this.values = null;
+        Arrays.fill(this.keys, 0, this.size, null);
+        Arrays.fill(this.entries, 0, this.size, null);
+        Arrays.fill(this.index, 0);
+        this.size = 0;
+    }
+
+    /**
+     * Returns the keys in insertion order. The set is a read only view of
+     * this cache.
+     */
+    public Set<String> keySet() {
+        return this.keySet;
+    }
+
+    /**
+     * Returns the values by key in insertion order, entries whose value can't
+     * be read are mapped to <code>null</code>. The map is read only.
+     */
+    public Map<String, Object> getValues() {
+        if ( this.values == null ) {
+            final Map<String, Object> values = new LinkedHashMap<String, Object>(this.size * 4 / 3 + 1);
+            for (int i = 0; i < this.size; i++) {
+                values.put(this.keys[i], this.entries[i].getPropertyValueOrNull());
+            }
+            this.values = Collections.unmodifiableMap(values);
+        }
+        return this.values;
+    }
+
+    private int indexOf(final String key) {
+        final int mask = this.index.length - 1;
+        int slot = hash(key) & mask;
+        int pos;
+        while ( (pos = this.index[slot]) != 0 ) {
+            if ( this.keys[pos - 1].equals(key) ) {
+                return pos - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void addToIndex(final String key, final int pos) {
+        final int mask = this.index.length - 1;
+        int slot = hash(key) & mask;
+        while ( this.index[slot] != 0 ) {
+            slot = (slot + 1) & mask;
+        }
+        this.index[slot] = pos + 1;
+    }
+
+    private static int hash(final String key) {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private final class KeySet extends AbstractSet<String> {
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return o instanceof String && containsKey((String) o);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+
+                private int pos;
+
+                public boolean hasNext() {
+                    return this.pos < size;
+                }
+
+                public String next() {
+                    if ( !this.hasNext() ) {
+                        throw new NoSuchElementException();
+                    }
+                    return keys[this.pos++];
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
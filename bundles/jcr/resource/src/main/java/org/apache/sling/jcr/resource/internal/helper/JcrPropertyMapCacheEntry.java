@@ -45,6 +45,12 @@ import org.apache.sling.jcr.resource.JcrResourceUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * A cache entry of a property map. The value of a property is read from the
+ * repository when it is first needed, the result of the last conversion to
+ * an immutable type is kept to serve repeated typed reads without
+ * converting and boxing again.
+ */
 public class JcrPropertyMapCacheEntry {
 
     /** Global logger */
@@ -56,8 +62,17 @@ public class JcrPropertyMapCacheEntry {
     /** Whether this is an array or a single value. */
     private final boolean isArray;
 
-    /** The value of the object. */
-    private final Object propertyValue;
+    /** Whether this is a binary property, whose value is read on each access. */
+    private final boolean isBinary;
+
+    /** The value of the object, read lazily for properties. */
+    private Object propertyValue;
+
+    /** The type of the last conversion to an immutable type. */
+    private Class<?> convertedType;
+
+    /** The result of the last conversion to {@link #convertedType}. */
+    private Object convertedValue;
 
     /**
      * Create a new cache entry from a property.
@@ -69,11 +84,7 @@ public class JcrPropertyMapCacheEntry {
     throws RepositoryException {
         this.property = prop;
         this.isArray = prop.isMultiple();
-        if (property.getType() != PropertyType.BINARY) {
-            this.propertyValue = JcrResourceUtil.toJavaObject(prop);
-        } else {
-            this.propertyValue = null;
-        }
+        this.isBinary = prop.getType() == PropertyType.BINARY;
     }
 
     /**
@@ -86,6 +97,7 @@ public class JcrPropertyMapCacheEntry {
     throws RepositoryException {
         this.property = null;
         this.propertyValue = value;
+        this.isBinary = false;
         this.isArray = value.getClass().isArray();
         // check if values can be stored in JCR
         if ( isArray ) {
@@ -183,7 +195,14 @@ public class JcrPropertyMapCacheEntry {
      * @throws RepositoryException If something goes wrong
      */
     public Object getPropertyValue() throws RepositoryException {
-        return this.propertyValue != null ? this.propertyValue : JcrResourceUtil.toJavaObject(property);
+        if ( this.propertyValue == null ) {
+            if ( this.isBinary ) {
+                // a new stream for each access
+                return JcrResourceUtil.toJavaObject(property);
+            }
+            this.propertyValue = JcrResourceUtil.toJavaObject(property);
+        }
+        return this.propertyValue;
     }
 
     /**
@@ -210,6 +229,9 @@ public class JcrPropertyMapCacheEntry {
     public <T> T convertToType(final Class<T> type,
             final Node node,
             final ClassLoader dynamicClassLoader) {
+        if ( type == this.convertedType ) {
+            return (T) this.convertedValue;
+        }
         T result = null;
 
         try {
@@ -247,10 +269,32 @@ public class JcrPropertyMapCacheEntry {
             LOGGER.info("converToType: Cannot get value of " + this.getPropertyValueOrNull(), re);
         }
 
+        if ( result != null && isImmutable(type) && !this.isBinary && !(this.propertyValue instanceof InputStream) ) {
+            this.convertedType = type;
+            this.convertedValue = result;
+        }
+
         // fall back to nothing
         return result;
     }
 
+    /**
+     * Returns <code>true</code> if instances of the type can be shared
+     * between callers. Mutable results like dates, calendars and arrays
+     * are created for each call.
+     */
+    private static boolean isImmutable(final Class<?> type) {
+        return type == String.class
+            || type == Boolean.class
+            || type == Long.class
+            || type == Integer.class
+            || type == Double.class
+            || type == Float.class
+            || type == Short.class
+            || type == Byte.class
+            || type == BigDecimal.class;
+    }
+
     private <T> T[] convertToArray(final Object[] sourceArray,
             final Class<T> type,
             final Node node,
@@ -36,6 +36,15 @@ import org.slf4j.LoggerFactory;
  * which returns resources for each node of an underlying
  * <code>NodeIterator</code>. Nodes in the node iterator which cannot be
  * accessed or for which a resource cannot be created are skipped.
+ * <p>
+ * The iterator is lazy: a node is only fetched from the node iterator when
+ * {@link #hasNext()} or {@link #next()} is called and the resource type and
+ * metadata of the returned resources are only resolved when accessed.
+ * <p>
+ * Skipping or limiting the children is not supported, as the resource
+ * provider API has no way to request a range of children. Children are not
+ * prefetched in the background either: the nodes belong to the session of
+ * the request, which must not be used concurrently.
  */
 public class JcrNodeResourceIterator implements Iterator<Resource> {
 
@@ -51,6 +60,9 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
     /** The prefetched next iterator entry, null at the end of iterating */
     private Resource nextResult;
 
+    /** Whether {@link #nextResult} has been fetched */
+    private boolean seeked;
+
     private final HelperData helper;
 
     private final String parentPath;
@@ -92,10 +104,13 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
         this.parentVersion = parentVersion;
         this.nodes = nodes;
         this.helper = helper;
-        this.nextResult = seek();
     }
 
     public boolean hasNext() {
+        if (!seeked) {
+            nextResult = seek();
+            seeked = true;
+        }
         return nextResult != null;
     }
 
@@ -104,8 +119,9 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
             throw new NoSuchElementException();
         }
 
-        Resource result = nextResult;
-        nextResult = seek();
+        final Resource result = nextResult;
+        nextResult = null;
+        seeked = false;
         return result;
     }
 
@@ -145,7 +161,8 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
         if (parentPath == null) {
             path = node.getPath();
         } else {
-            path = String.format("%s/%s", "/".equals(parentPath) ? "" : parentPath, node.getName());
+            final String name = node.getName();
+            path = "/".equals(parentPath) ? "/".concat(name) : parentPath + '/' + name;
         }
         return helper.pathMapper.mapJCRPathToResourcePath(path);
     }
@@ -101,6 +101,13 @@ public class JcrResourceProviderFactory implements ResourceProviderFactory {
             description = "Maximum number of pending revisions in a observation listener queue")
     private static final String OBSERVATION_QUEUE_LENGTH = "oak.observation.queue-length";
 
+    private static final boolean DEFAULT_FILTER_OBSERVATION = true;
+    @Property(boolValue=DEFAULT_FILTER_OBSERVATION,
+              label="Filter Observation",
+              description="If this switch is enabled, only the paths the resource event handlers and resource change " +
+                          "listeners are interested in are observed. Otherwise the whole repository is observed.")
+    private static final String PROPERTY_FILTER_OBSERVATION = "observation.filter";
+
     private static final String REPOSITORY_REFERNENCE_NAME = "repository";
 
     /** The dynamic class loader */
@@ -150,7 +157,8 @@ public class JcrResourceProviderFactory implements ResourceProviderFactory {
             }
         }
         final String root = PropertiesUtil.toString(context.getProperties().get(ResourceProvider.ROOTS), "/");
-        final ObservationListenerSupport support = new ObservationListenerSupport(context.getBundleContext(), repository);
+        final boolean filterObservation = PropertiesUtil.toBoolean(context.getProperties().get(PROPERTY_FILTER_OBSERVATION), DEFAULT_FILTER_OBSERVATION);
+        final ObservationListenerSupport support = new ObservationListenerSupport(context.getBundleContext(), repository, filterObservation);
         boolean closeSupport = true;
         try {
             if ( isOak ) {
@@ -357,6 +357,36 @@ public class JcrPropertyMapTest extends RepositoryTestBase {
         search(vm.values().iterator(), VALUE);
     }
 
+    public void testConversionCache() throws Exception {
+        this.rootNode.getSession().refresh(false);
+        this.rootNode.setProperty("number", 42L);
+        this.rootNode.setProperty("date", Calendar.getInstance());
+        final ValueMap vm = this.createPropertyMap(this.rootNode);
+
+        final Integer number = vm.get("number", Integer.class);
+        assertEquals(Integer.valueOf(42), number);
+        assertSame(number, vm.get("number", Integer.class));
+        assertEquals("42", vm.get("number", String.class));
+        assertEquals(Integer.valueOf(42), vm.get("number", 0));
+
+        // mutable results are not shared
+        final Date date = vm.get("date", Date.class);
+        assertEquals(date, vm.get("date", Date.class));
+        assertNotSame(date, vm.get("date", Date.class));
+    }
+
+    public void testReadOnce() throws Exception {
+        this.rootNode.getSession().refresh(false);
+        this.rootNode.setProperty(PROP1, VALUE1);
+        final ValueMap vm = this.createPropertyMap(this.rootNode);
+        assertEquals(VALUE1, vm.get(PROP1));
+
+        // the properties are cached with the first access
+        this.rootNode.setProperty(PROP2, VALUE2);
+        assertNull(vm.get(PROP2));
+        assertFalse(vm.keySet().contains(PROP2));
+    }
+
     public void testDotSlash() throws Exception {
         this.rootNode.getSession().refresh(false);
         final String prop = "myProp";
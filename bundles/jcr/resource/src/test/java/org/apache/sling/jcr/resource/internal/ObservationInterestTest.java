@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Test of the ObservationInterest.
+ */
+public class ObservationInterestTest {
+
+    @Test
+    public void testAll() {
+        assertArrayEquals(new String[] {"/"}, ObservationInterest.ALL.getObservedPaths());
+        assertTrue(ObservationInterest.ALL.includes("/"));
+        assertTrue(ObservationInterest.ALL.includes("/a/b"));
+        assertTrue(ObservationInterest.ALL.includesProperty("/a/b", "c"));
+        assertTrue(ObservationInterest.ALL.includesProperties("/a/b", Collections.<String>emptySet()));
+    }
+
+    @Test
+    public void testNone() {
+        assertTrue(ObservationInterest.NONE.isEmpty());
+        assertEquals(0, ObservationInterest.NONE.getObservedPaths().length);
+        assertFalse(ObservationInterest.NONE.includes("/a"));
+    }
+
+    @Test
+    public void testPaths() {
+        final ObservationInterest interest = new ObservationInterest.Builder()
+            .add("/etc/map", null)
+            .add("/etc/map/http", null)
+            .add("/content/a/", null)
+            .build();
+
+        // adding and removing a path is reported for its parent
+        assertArrayEquals(new String[] {"/content", "/etc"}, interest.getObservedPaths());
+        assertTrue(interest.includes("/etc/map"));
+        assertTrue(interest.includes("/etc/map/http/localhost"));
+        assertTrue(interest.includes("/content/a"));
+        assertFalse(interest.includes("/etc"));
+        assertFalse(interest.includes("/etc/mapping"));
+        assertFalse(interest.includes("/content/ab"));
+    }
+
+    @Test
+    public void testGlobs() {
+        final ObservationInterest interest = new ObservationInterest.Builder()
+            .addGlob("/apps/**.jsp", null)
+            .addGlob("/libs/*", null)
+            .addGlob("/var/a?", null)
+            .addGlob("/etc/exact", null)
+            .build();
+
+        assertArrayEquals(new String[] {"/apps", "/etc", "/libs", "/var"}, interest.getObservedPaths());
+        assertTrue(interest.includes("/apps/a.jsp"));
+        assertTrue(interest.includes("/apps/a/b.jsp"));
+        assertFalse(interest.includes("/apps"));
+        assertFalse(interest.includes("/libs"));
+        assertTrue(interest.includes("/var/ab"));
+        assertTrue(interest.includes("/etc/exact"));
+    }
+
+    @Test
+    public void testRootGlob() {
+        final ObservationInterest interest = new ObservationInterest.Builder().addGlob("/*", null).build();
+        assertArrayEquals(new String[] {"/"}, interest.getObservedPaths());
+        assertTrue(interest.includes("/a"));
+    }
+
+    @Test
+    public void testRemoval() {
+        final ObservationInterest interest = new ObservationInterest.Builder()
+            .add("/content/site", null)
+            .addGlob("/apps/*", null)
+            .build();
+        assertTrue(interest.includesRemoval("/content/site/page"));
+        assertTrue(interest.includesRemoval("/content/site"));
+        assertTrue(interest.includesRemoval("/content"));
+        assertTrue(interest.includesRemoval("/apps"));
+        assertTrue(interest.includesRemoval("/"));
+        assertFalse(interest.includes("/content"));
+        assertFalse(interest.includesRemoval("/content/other"));
+        assertFalse(interest.includesRemoval("/content/sitemap"));
+        assertFalse(interest.includesRemoval("/libs"));
+    }
+
+    @Test
+    public void testPropertyNames() {
+        final ObservationInterest interest = new ObservationInterest.Builder()
+            .add("/content", Arrays.asList("sling:vanityPath", "sling:alias"))
+            .add("/content/a", null)
+            .build();
+
+        assertTrue(interest.includes("/content/b"));
+        assertTrue(interest.includesProperty("/content/b", "sling:alias"));
+        assertFalse(interest.includesProperty("/content/b", "jcr:title"));
+        assertTrue(interest.includesProperty("/content/a/b", "jcr:title"));
+        assertTrue(interest.includesProperties("/content/b", Arrays.asList("jcr:title", "sling:vanityPath")));
+        assertFalse(interest.includesProperties("/content/b", Arrays.asList("jcr:title")));
+        assertFalse(interest.includesProperties("/content/b", null));
+    }
+
+    @Test
+    public void testEquals() {
+        final ObservationInterest.Builder builder = new ObservationInterest.Builder()
+            .add("/a", null)
+            .add("/b", Arrays.asList("x"));
+        assertEquals(builder.build(), builder.build());
+        assertFalse(builder.build().equals(new ObservationInterest.Builder().add("/a", null).build()));
+        assertFalse(new ObservationInterest.Builder().add("/a", null).build().equals(
+                new ObservationInterest.Builder().addGlob("/a/*", null).build()));
+    }
+
+    @Test
+    public void testMinimize() {
+        assertArrayEquals(new String[] {"/a", "/ab", "/b"},
+                ObservationInterest.minimize(Arrays.asList("/b/c", "/a", "/ab", "/a/b", "/b")));
+        assertArrayEquals(new String[] {"/"}, ObservationInterest.minimize(Arrays.asList("/a", "/")));
+    }
+
+    @Test
+    public void testCommonAncestor() {
+        assertEquals("/a", ObservationInterest.getCommonAncestor(new String[] {"/a/b/c", "/a/d", "/a/b"}));
+        assertEquals("/", ObservationInterest.getCommonAncestor(new String[] {"/a", "/b"}));
+        assertEquals("/", ObservationInterest.getCommonAncestor(new String[] {"/ab", "/a"}));
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ExternalResourceListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Test of the ResourceChangeDispatcher and the ResourceChangeSet.
+ */
+public class ResourceChangeDispatcherTest {
+
+    private BundleContext bundleContext;
+
+    private ResourceChangeDispatcher dispatcher;
+
+    private ResourceResolver resolver;
+
+    @Before
+    public void setUp() {
+        bundleContext = mock(BundleContext.class);
+        dispatcher = new ResourceChangeDispatcher(bundleContext);
+        resolver = mock(ResourceResolver.class);
+        when(resolver.getSearchPath()).thenReturn(new String[] {"/apps/", "/libs/"});
+    }
+
+    private static class Listener implements ResourceChangeListener {
+
+        final List<List<ResourceChange>> calls = new ArrayList<List<ResourceChange>>();
+
+        public void onChange(final List<ResourceChange> changes) {
+            calls.add(changes);
+        }
+
+        List<String> paths(final int call) {
+            final List<String> paths = new ArrayList<String>();
+            for (final ResourceChange c : calls.get(call)) {
+                paths.add(c.getPath());
+            }
+            return paths;
+        }
+    }
+
+    private static class ExternalListener extends Listener implements ExternalResourceListener {
+    }
+
+    private Listener register(final Listener listener, final String[] paths, final String[] types) {
+        final ServiceReference ref = mock(ServiceReference.class);
+        when(ref.getProperty(ResourceChangeListener.PATHS)).thenReturn(paths);
+        when(ref.getProperty(ResourceChangeListener.CHANGES)).thenReturn(types);
+        when(bundleContext.getService(ref)).thenReturn(listener);
+        dispatcher.addingService(ref);
+        return listener;
+    }
+
+    private Listener register(final String... paths) {
+        return register(new Listener(), paths, null);
+    }
+
+    private static List<ResourceChange> changes(final String... paths) {
+        final ResourceChangeSet changeSet = new ResourceChangeSet();
+        for (final String path : paths) {
+            changeSet.add(ChangeType.CHANGED, path, "admin", false, null, null, null);
+        }
+        return changeSet.getChanges();
+    }
+
+    @Test
+    public void testNoListeners() {
+        assertFalse(dispatcher.hasListeners());
+        register();
+        assertFalse(dispatcher.hasListeners());
+        register("/");
+        assertTrue(dispatcher.hasListeners());
+    }
+
+    @Test
+    public void testPaths() {
+        final Listener root = register("/");
+        final Listener content = register("/content/a", "/content/b/");
+        final Listener none = register("/etc");
+
+        dispatcher.dispatch(changes("/content", "/content/a", "/content/a/b", "/content/ab", "/content/b/c"), resolver);
+
+        assertEquals(1, root.calls.size());
+        assertEquals(5, root.calls.get(0).size());
+        assertEquals(1, content.calls.size());
+        assertEquals(Arrays.asList("/content/a", "/content/a/b", "/content/b/c"), content.paths(0));
+        assertTrue(none.calls.isEmpty());
+    }
+
+    @Test
+    public void testGlobs() {
+        final Listener scripts = register("glob:/apps/**.jsp");
+        final Listener children = register("glob:/content/*/jcr:content");
+        final Listener single = register("glob:/var/?");
+
+        dispatcher.dispatch(changes("/apps/a.jsp", "/apps/x/y/b.jsp", "/apps/a.html",
+                "/content/a/jcr:content", "/content/a/b/jcr:content", "/var/a", "/var/ab"), resolver);
+
+        assertEquals(Arrays.asList("/apps/a.jsp", "/apps/x/y/b.jsp"), scripts.paths(0));
+        assertEquals(Arrays.asList("/content/a/jcr:content"), children.paths(0));
+        assertEquals(Arrays.asList("/var/a"), single.paths(0));
+    }
+
+    @Test
+    public void testRelativePaths() {
+        final Listener all = register(".");
+        final Listener components = register("components", "glob:*.jsp");
+
+        dispatcher.dispatch(changes("/apps/components/a", "/libs/components", "/libs/b.jsp", "/content/components"), resolver);
+
+        assertEquals(Arrays.asList("/apps/components/a", "/libs/components", "/libs/b.jsp"), all.paths(0));
+        assertEquals(Arrays.asList("/apps/components/a", "/libs/components", "/libs/b.jsp"), components.paths(0));
+    }
+
+    @Test
+    public void testRelativePathsWithoutResolver() {
+        final Listener components = register("components");
+
+        dispatcher.dispatch(changes("/apps/components/a"), null);
+        assertTrue(components.calls.isEmpty());
+
+        dispatcher.dispatch(changes("/apps/components/a"), resolver);
+        assertEquals(1, components.calls.size());
+    }
+
+    @Test
+    public void testChangeTypes() {
+        final Listener removed = register(new Listener(), new String[] {"/"}, new String[] {"REMOVED", "UNKNOWN"});
+
+        final ResourceChangeSet changeSet = new ResourceChangeSet();
+        changeSet.add(ChangeType.ADDED, "/a", null, false, null, null, null);
+        changeSet.add(ChangeType.REMOVED, "/b", null, false, null, null, null);
+        dispatcher.dispatch(changeSet.getChanges(), resolver);
+
+        assertEquals(Arrays.asList("/b"), removed.paths(0));
+    }
+
+    @Test
+    public void testExternalChanges() {
+        final Listener local = register("/");
+        final Listener external = register(new ExternalListener(), new String[] {"/"}, null);
+
+        final ResourceChangeSet changeSet = new ResourceChangeSet();
+        changeSet.add(ChangeType.ADDED, "/local", null, false, null, null, null);
+        changeSet.add(ChangeType.ADDED, "/external", null, true, null, null, null);
+        dispatcher.dispatch(changeSet.getChanges(), resolver);
+
+        assertEquals(Arrays.asList("/local"), local.paths(0));
+        assertEquals(Arrays.asList("/local", "/external"), external.paths(0));
+    }
+
+    @Test
+    public void testFailingListener() {
+        register(new Listener() {
+            @Override
+            public void onChange(final List<ResourceChange> changes) {
+                throw new IllegalStateException();
+            }
+        }, new String[] {"/"}, null);
+        final Listener listener = register("/");
+
+        dispatcher.dispatch(changes("/a"), resolver);
+        assertEquals(1, listener.calls.size());
+    }
+
+    @Test
+    public void testRemovedListener() {
+        final ServiceReference ref = mock(ServiceReference.class);
+        when(ref.getProperty(ResourceChangeListener.PATHS)).thenReturn("/");
+        final Listener listener = new Listener();
+        when(bundleContext.getService(ref)).thenReturn(listener);
+        final Object tracked = dispatcher.addingService(ref);
+
+        dispatcher.removedService(ref, tracked);
+        assertFalse(dispatcher.hasListeners());
+        dispatcher.dispatch(changes("/a"), resolver);
+        assertTrue(listener.calls.isEmpty());
+    }
+
+    @Test
+    public void testInterest() {
+        register("/content/site", "glob:/apps/**.jsp", "components");
+        final ServiceReference ref = mock(ServiceReference.class);
+        when(ref.getProperty(ResourceChangeListener.PATHS)).thenReturn("/etc/map");
+        when(ref.getProperty(ResourceChangeListener.PROPERTY_NAMES_HINT)).thenReturn(new String[] {"sling:match"});
+        when(bundleContext.getService(ref)).thenReturn(new Listener());
+        dispatcher.addingService(ref);
+
+        final ObservationInterest.Builder builder = new ObservationInterest.Builder();
+        dispatcher.addInterest(builder, new String[] {"/apps/", "/libs/"});
+        final ObservationInterest interest = builder.build();
+        assertArrayEquals(new String[] {"/apps", "/content", "/etc", "/libs"}, interest.getObservedPaths());
+        assertTrue(interest.includes("/libs/components/a"));
+        assertTrue(interest.includesProperty("/etc/map/http", "sling:match"));
+        assertFalse(interest.includesProperty("/etc/map/http", "jcr:title"));
+
+        // relative paths cover everything without search paths
+        final ObservationInterest.Builder unresolved = new ObservationInterest.Builder();
+        dispatcher.addInterest(unresolved, null);
+        assertArrayEquals(new String[] {"/"}, unresolved.build().getObservedPaths());
+    }
+
+    @Test
+    public void testChangeCallback() {
+        final int[] calls = new int[1];
+        dispatcher.setChangeCallback(new Runnable() {
+            public void run() {
+                calls[0]++;
+            }
+        });
+        register("/");
+        assertEquals(1, calls[0]);
+    }
+
+    @Test
+    public void testChangeSetCoalescing() {
+        final ResourceChangeSet first = new ResourceChangeSet();
+        first.add(ChangeType.CHANGED, "/a", "admin", false, null, Arrays.asList("x"), null);
+        first.add(ChangeType.ADDED, "/b", "admin", false, null, null, null);
+        first.add(ChangeType.CHANGED, "/a", "admin", false, Arrays.asList("y"), Arrays.asList("z"), null);
+
+        final ResourceChangeSet second = new ResourceChangeSet();
+        second.add(ChangeType.CHANGED, "/a", "other", false, null, Arrays.asList("x"), Arrays.asList("w"));
+        second.add(ChangeType.REMOVED, "/b", "other", false, null, null, null);
+        first.addAll(second);
+
+        final List<ResourceChange> changes = first.getChanges();
+        assertEquals(3, changes.size());
+
+        final ResourceChange a = changes.get(0);
+        assertEquals(ChangeType.CHANGED, a.getType());
+        assertEquals("/a", a.getPath());
+        assertEquals("admin", a.getUserId());
+        assertArrayEquals(new String[] {"y"}, a.getAddedAttributeNames());
+        assertArrayEquals(new String[] {"x", "z"}, a.getChangedAttributeNames());
+        assertArrayEquals(new String[] {"w"}, a.getRemovedAttributeNames());
+
+        assertEquals(ChangeType.ADDED, changes.get(1).getType());
+        assertNull(changes.get(1).getChangedAttributeNames());
+        assertEquals(ChangeType.REMOVED, changes.get(2).getType());
+        assertEquals("/b", changes.get(2).getPath());
+    }
+}
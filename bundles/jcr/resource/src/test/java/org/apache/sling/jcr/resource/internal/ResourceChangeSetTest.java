@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.junit.Test;
+
+/**
+ * Test of the ResourceChangeSet.
+ */
+public class ResourceChangeSetTest {
+
+    private static ResourceChangeSet batch(final ChangeType type, final String path, final String userId, final String... names) {
+        final ResourceChangeSet set = new ResourceChangeSet();
+        set.add(type, path, userId, false, null, names.length == 0 ? null : Arrays.asList(names), null);
+        return set;
+    }
+
+    @Test
+    public void testMergeWithinBatch() {
+        final ResourceChangeSet set = batch(ChangeType.CHANGED, "/a", "u1", "p");
+        set.add(ChangeType.CHANGED, "/a", "u1", false, null, Arrays.asList("q"), null);
+        set.add(ChangeType.ADDED, "/b", "u1", false, null, null, null);
+
+        final List<ResourceChange> changes = set.getChanges();
+        assertEquals(2, changes.size());
+        assertEquals(ChangeType.CHANGED, changes.get(0).getType());
+        assertArrayEquals(new String[] {"p", "q"}, changes.get(0).getChangedAttributeNames());
+        assertEquals("/b", changes.get(1).getPath());
+    }
+
+    @Test
+    public void testAddRemoveAddAcrossBatches() {
+        final ResourceChangeSet set = batch(ChangeType.ADDED, "/a", "u1");
+        set.addAll(batch(ChangeType.REMOVED, "/a", "u2"));
+        set.addAll(batch(ChangeType.ADDED, "/a", "u3"));
+
+        final List<ResourceChange> changes = set.getChanges();
+        assertEquals(1, changes.size());
+        assertEquals(ChangeType.ADDED, changes.get(0).getType());
+        assertEquals("/a", changes.get(0).getPath());
+        assertEquals("u3", changes.get(0).getUserId());
+    }
+
+    @Test
+    public void testLaterChangeMovesToEnd() {
+        final ResourceChangeSet set = batch(ChangeType.ADDED, "/a", "u1");
+        set.addAll(batch(ChangeType.ADDED, "/b", "u1"));
+        set.addAll(batch(ChangeType.REMOVED, "/a", "u2"));
+
+        final List<ResourceChange> changes = set.getChanges();
+        assertEquals(2, changes.size());
+        assertEquals("/b", changes.get(0).getPath());
+        assertEquals(ChangeType.REMOVED, changes.get(1).getType());
+        assertEquals("/a", changes.get(1).getPath());
+        assertEquals("u2", changes.get(1).getUserId());
+    }
+
+    @Test
+    public void testNoMergeAcrossBatches() {
+        final ResourceChangeSet set = batch(ChangeType.CHANGED, "/a", "u1", "p");
+        set.addAll(batch(ChangeType.CHANGED, "/a", "u2", "q"));
+
+        final List<ResourceChange> changes = set.getChanges();
+        assertEquals(2, changes.size());
+        assertEquals("u1", changes.get(0).getUserId());
+        assertArrayEquals(new String[] {"p"}, changes.get(0).getChangedAttributeNames());
+        assertEquals("u2", changes.get(1).getUserId());
+        assertArrayEquals(new String[] {"q"}, changes.get(1).getChangedAttributeNames());
+        assertEquals(2, set.size());
+    }
+}
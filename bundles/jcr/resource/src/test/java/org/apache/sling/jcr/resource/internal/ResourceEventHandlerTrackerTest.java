@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.SlingConstants;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.event.EventConstants;
+
+/**
+ * Test of the ResourceEventHandlerTracker.
+ */
+public class ResourceEventHandlerTrackerTest {
+
+    private static LinkedHashSet<String> paths(final String... paths) {
+        return new LinkedHashSet<String>(Arrays.asList(paths));
+    }
+
+    @Test
+    public void testSubscribed() {
+        assertTrue(ResourceEventHandlerTracker.isSubscribed(new String[] {SlingConstants.TOPIC_RESOURCE_CHANGED}));
+        assertTrue(ResourceEventHandlerTracker.isSubscribed(new String[] {"org/apache/sling/api/resource/Resource/*"}));
+        assertTrue(ResourceEventHandlerTracker.isSubscribed(new String[] {"org/apache/sling/*"}));
+        assertTrue(ResourceEventHandlerTracker.isSubscribed(new String[] {"*"}));
+        assertFalse(ResourceEventHandlerTracker.isSubscribed(new String[] {"org/apache/sling/event/*"}));
+        assertFalse(ResourceEventHandlerTracker.isSubscribed(new String[] {"org/apache/sling/api/resource/ResourceProvider/ADDED"}));
+        assertFalse(ResourceEventHandlerTracker.isSubscribed(null));
+    }
+
+    @Test
+    public void testFilterPaths() {
+        assertNull(ResourceEventHandlerTracker.getPaths(null));
+        assertEquals(paths("/apps/*"), ResourceEventHandlerTracker.getPaths("(path=/apps/*)"));
+        assertEquals(paths("/etc/map"), ResourceEventHandlerTracker.getPaths("(path=/etc/map)"));
+        assertEquals(paths("/apps/*", "/libs/*"), ResourceEventHandlerTracker.getPaths("(|(path=/apps/*)(path=/libs/*))"));
+        assertEquals(paths("/apps/*", "/libs/*"), ResourceEventHandlerTracker.getPaths(" (| (path=/apps/*) (path=/libs/*) ) "));
+        assertEquals(paths("/apps/*"), ResourceEventHandlerTracker.getPaths("(&(resourceType=a)(path=/apps/*))"));
+        assertEquals(paths("/a(b)"), ResourceEventHandlerTracker.getPaths("(path=/a\\(b\\))"));
+    }
+
+    @Test
+    public void testUnrestrictedFilters() {
+        assertNull(ResourceEventHandlerTracker.getPaths("(resourceType=a)"));
+        assertNull(ResourceEventHandlerTracker.getPaths("(path=*)"));
+        assertNull(ResourceEventHandlerTracker.getPaths("(!(path=/apps/*))"));
+        assertNull(ResourceEventHandlerTracker.getPaths("(|(path=/apps/*)(resourceType=a))"));
+        assertNull(ResourceEventHandlerTracker.getPaths("(path>=/apps)"));
+        assertNull(ResourceEventHandlerTracker.getPaths("(path=/apps/*"));
+        assertNull(ResourceEventHandlerTracker.getPaths("path=/apps"));
+    }
+
+    private ServiceReference handler(final Object topics, final String filter) {
+        final ServiceReference ref = mock(ServiceReference.class);
+        when(ref.getProperty(EventConstants.EVENT_TOPIC)).thenReturn(topics);
+        when(ref.getProperty(EventConstants.EVENT_FILTER)).thenReturn(filter);
+        return ref;
+    }
+
+    @Test
+    public void testInterest() {
+        final ResourceEventHandlerTracker tracker = new ResourceEventHandlerTracker(mock(BundleContext.class));
+        final AtomicInteger changes = new AtomicInteger();
+        tracker.setChangeCallback(new Runnable() {
+            public void run() {
+                changes.incrementAndGet();
+            }
+        });
+
+        final Object other = tracker.addingService(handler("org/apache/sling/event/*", null));
+        assertEquals(0, changes.get());
+        final Object apps = tracker.addingService(handler(SlingConstants.TOPIC_RESOURCE_ADDED, "(path=/apps/*)"));
+        assertEquals(1, changes.get());
+
+        final ServiceReference ref = handler("org/apache/sling/api/resource/Resource/*", null);
+        tracker.modifiedService(ref, other);
+        assertEquals(2, changes.get());
+        tracker.removedService(ref, other);
+        assertEquals(3, changes.get());
+        tracker.removedService(ref, apps);
+        assertEquals(4, changes.get());
+    }
+}
@@ -121,4 +121,32 @@ public class JcrNodeResourceIteratorTest extends TestCase {
             // expected
         }
     }
+
+    public void testLazy() throws RepositoryException {
+        final Node[] nodes = createNodes(3);
+        final int[] fetched = new int[1];
+        NodeIterator ni = new MockNodeIterator(nodes) {
+            @Override
+            public Node nextNode() {
+                fetched[0]++;
+                return super.nextNode();
+            }
+        };
+        JcrNodeResourceIterator ri = new JcrNodeResourceIterator(null, "/parent", null, ni, getHelperData());
+        assertEquals(0, fetched[0]);
+
+        assertTrue(ri.hasNext());
+        assertTrue(ri.hasNext());
+        assertEquals(1, fetched[0]);
+        assertEquals("/parent/node0", ri.next().getPath());
+        assertEquals(1, fetched[0]);
+    }
+
+    private Node[] createNodes(final int numNodes) {
+        Node[] nodes = new Node[numNodes];
+        for (int i=0; i < nodes.length; i++) {
+            nodes[i] = new MockNode("/parent/node" + i);
+        }
+        return nodes;
+    }
 }
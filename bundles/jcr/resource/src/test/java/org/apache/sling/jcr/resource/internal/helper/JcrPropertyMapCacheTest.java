@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.jcr.Node;
+
+import org.junit.Test;
+
+/**
+ * Testcase for {@link JcrPropertyMapCache}
+ */
+public class JcrPropertyMapCacheTest {
+
+    private final Node node = mock(Node.class, RETURNS_DEEP_STUBS);
+
+    private JcrPropertyMapCacheEntry entry(final Object value) throws Exception {
+        return new JcrPropertyMapCacheEntry(value, node);
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        final JcrPropertyMapCache cache = new JcrPropertyMapCache();
+        final List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            keys.add("prop" + (100 - i));
+            cache.put("prop" + (100 - i), entry("value" + i));
+        }
+        assertEquals(100, cache.size());
+        assertEquals(keys, new ArrayList<String>(cache.keySet()));
+        assertEquals("value10", cache.getValues().get("prop90"));
+        assertTrue(cache.containsKey("prop1"));
+        assertFalse(cache.containsKey("prop0"));
+        assertNull(cache.get("prop0"));
+    }
+
+    @Test
+    public void testReplace() throws Exception {
+        final JcrPropertyMapCache cache = new JcrPropertyMapCache();
+        cache.put("a", entry("1"));
+        cache.put("b", entry("2"));
+        final Map<String, Object> values = cache.getValues();
+        assertSame(values, cache.getValues());
+
+        final JcrPropertyMapCacheEntry replaced = entry("3");
+        cache.put("a", replaced);
+        assertSame(replaced, cache.get("a"));
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(cache.keySet()));
+        assertEquals(Arrays.<Object>asList("3", "2"), new ArrayList<Object>(cache.getValues().values()));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        final JcrPropertyMapCache cache = new JcrPropertyMapCache();
+        cache.put("a", entry("1"));
+        final JcrPropertyMapCacheEntry b = entry("2");
+        cache.put("b", b);
+        cache.put("c", entry("3"));
+
+        assertSame(b, cache.remove("b"));
+        assertNull(cache.remove("b"));
+        assertEquals(Arrays.asList("a", "c"), new ArrayList<String>(cache.keySet()));
+        assertFalse(cache.getValues().containsKey("b"));
+        assertEquals("3", cache.getValues().get("c"));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertFalse(cache.containsKey("a"));
+        assertTrue(cache.getValues().isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnlyKeys() throws Exception {
+        final JcrPropertyMapCache cache = new JcrPropertyMapCache();
+        cache.put("a", entry("1"));
+        cache.keySet().remove("a");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnlyValues() throws Exception {
+        final JcrPropertyMapCache cache = new JcrPropertyMapCache();
+        cache.put("a", entry("1"));
+        cache.getValues().put("b", "2");
+    }
+}
@@ -22,13 +22,16 @@ import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections.BidiMap;
 import org.apache.sling.api.resource.LoginException;
@@ -43,6 +46,7 @@ import org.apache.sling.resourceresolver.impl.mapping.MapEntries;
 import org.apache.sling.resourceresolver.impl.mapping.Mapping;
 import org.apache.sling.resourceresolver.impl.tree.RootResourceProviderEntry;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +66,12 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
     /** The activator */
     private final ResourceResolverFactoryActivator activator;
 
+    /** The pool for service resource resolvers, if enabled. */
+    private volatile ServiceResourceResolverPool servicePool;
+
+    /** The registration of the service pool mbean. */
+    private ServiceRegistration servicePoolMBeanRegistration;
+
     /**
      * Thread local holding the resource resolver stack
      */
@@ -79,6 +89,12 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
     /** Background thread handling disposing of resource resolver instances. */
     private final Thread refQueueThread;
 
+    /** Lookups answered by the lookup caches of closed resource resolvers. */
+    private final AtomicLong lookupCacheHits = new AtomicLong();
+
+    /** Lookups not answered by the lookup caches of closed resource resolvers. */
+    private final AtomicLong lookupCacheMisses = new AtomicLong();
+
     /**
      * Create a new common resource resolver factory.
      */
@@ -263,6 +279,14 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
         return mapEntries;
     }
 
+    /**
+     * Returns the pool for service resource resolvers.
+     * @return The pool or <code>null</code> if pooling is disabled.
+     */
+    public ServiceResourceResolverPool getServiceResourceResolverPool() {
+        return this.servicePool;
+    }
+
     /** Activates this component */
     protected void activate(final BundleContext bundleContext) {
         final Logger logger = LoggerFactory.getLogger(getClass());
@@ -279,6 +303,20 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
         } catch (final Exception e) {
             logger.error("activate: Cannot access repository, failed setting up Mapping Support", e);
         }
+        // set up the service resource resolver pool
+        if (this.activator.isServicePoolEnabled()) {
+            final ServiceResourceResolverPool pool = new ServiceResourceResolverPool(this,
+                    this.activator.getServicePoolMaxIdle(), this.activator.getServicePoolIdleTimeout());
+            try {
+                final Dictionary<String, String> mbeanProps = new Hashtable<String, String>();
+                mbeanProps.put("jmx.objectname", "org.apache.sling:type=resourceResolver,service=ServiceResourceResolverPool");
+                this.servicePoolMBeanRegistration = bundleContext.registerService(ServiceResourceResolverPoolMBean.class.getName(),
+                        pool.new ServiceResourceResolverPoolMBeanImpl(), mbeanProps);
+            } catch (final Throwable t) {
+                logger.debug("Unable to register mbean", t);
+            }
+            this.servicePool = pool;
+        }
     }
 
     /**
@@ -287,6 +325,14 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
     protected void deactivate() {
         isActive.set(false);
         this.refQueueThread.interrupt();
+        if (servicePoolMBeanRegistration != null) {
+            servicePoolMBeanRegistration.unregister();
+            servicePoolMBeanRegistration = null;
+        }
+        if (servicePool != null) {
+            servicePool.close();
+            servicePool = null;
+        }
         if (plugin != null) {
             plugin.dispose();
             plugin = null;
@@ -326,6 +372,27 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
         return this.activator.getVirtualURLMap();
     }
 
+    public int getLookupCacheSize() {
+        return this.activator.getLookupCacheSize();
+    }
+
+    /**
+     * Adds the statistics of the lookup cache of a closed resource resolver
+     * to the totals of this factory.
+     */
+    public void addLookupCacheStatistics(final long hits, final long misses) {
+        this.lookupCacheHits.addAndGet(hits);
+        this.lookupCacheMisses.addAndGet(misses);
+    }
+
+    public long getLookupCacheHitCount() {
+        return this.lookupCacheHits.get();
+    }
+
+    public long getLookupCacheMissCount() {
+        return this.lookupCacheMisses.get();
+    }
+
     public RootResourceProviderEntry getRootProviderEntry() {
         return this.activator.getRootProviderEntry();
     }
@@ -363,6 +430,21 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
         return this.activator.getVanityBloomFilterMaxBytes();
     }
 
+    @Override
+    public boolean isVanityPathStoreEnabled() {
+        return this.activator.isVanityPathStoreEnabled();
+    }
+
+    @Override
+    public boolean isBackgroundMappingLoadEnabled() {
+        return this.activator.isBackgroundMappingLoadEnabled();
+    }
+
+    @Override
+    public int getBackgroundMappingLoadRetries() {
+        return this.activator.getBackgroundMappingLoadRetries();
+    }
+
     @Override
     public boolean isOptimizeAliasResolutionEnabled() {
         return this.activator.isOptimizeAliasResolutionEnabled();
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl;
+
+import java.util.Iterator;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceWrapper;
+import org.apache.sling.api.resource.ValueMap;
+
+/**
+ * The <code>PooledResource</code> is a resource handed out by a
+ * {@link PooledResourceResolver}. It returns the pooled resource resolver
+ * instead of the resource resolver it has been created by, navigates through
+ * it and can't be used anymore once it has been closed.
+ */
+class PooledResource extends ResourceWrapper {
+
+    private final PooledResourceResolver resolver;
+
+    PooledResource(final PooledResourceResolver resolver, final Resource resource) {
+        super(resource);
+        this.resolver = resolver;
+    }
+
+    @Override
+    public ResourceResolver getResourceResolver() {
+        return this.resolver;
+    }
+
+    @Override
+    public Resource getParent() {
+        return this.resolver.getParent(this);
+    }
+
+    @Override
+    public Resource getChild(final String relPath) {
+        return this.resolver.getResource(this, relPath);
+    }
+
+    @Override
+    public Iterator<Resource> listChildren() {
+        return this.resolver.listChildren(this);
+    }
+
+    @Override
+    public Iterable<Resource> getChildren() {
+        return this.resolver.getChildren(this);
+    }
+
+    @Override
+    public boolean hasChildren() {
+        return this.resolver.hasChildren(this);
+    }
+
+    @Override
+    public boolean isResourceType(final String resourceType) {
+        return this.resolver.isResourceType(this, resourceType);
+    }
+
+    @Override
+    public <AdapterType> AdapterType adaptTo(final Class<AdapterType> type) {
+        return this.resolver.adaptResource(getResource(), type);
+    }
+
+    @Override
+    public ValueMap getValueMap() {
+        this.resolver.checkOpen();
+        return getResource().getValueMap();
+    }
+}
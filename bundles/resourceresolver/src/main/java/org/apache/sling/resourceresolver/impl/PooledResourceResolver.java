@@ -0,0 +1,330 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+
+/**
+ * The <code>PooledResourceResolver</code> is handed out by the
+ * {@link ServiceResourceResolverPool}. It delegates to the pooled resource
+ * resolver until it is closed, closing it returns the resource resolver to
+ * the pool.
+ * <p>
+ * Resources are handed out as {@link PooledResource}s, which use this
+ * resource resolver and can't be used once it has been closed. Adapters
+ * other than a value map, like a session or a node, can't be fenced off:
+ * once one has been handed out, the resource resolver is closed instead of
+ * being returned to the pool.
+ */
+class PooledResourceResolver implements ResourceResolver {
+
+    private final ServiceResourceResolverPool pool;
+
+    private volatile ResourceResolverImpl delegate;
+
+    private ServiceResourceResolverPool.BorrowedReference reference;
+
+    /** Whether an adapter has been handed out which outlives closing. */
+    private volatile boolean escaped;
+
+    PooledResourceResolver(final ServiceResourceResolverPool pool, final ResourceResolverImpl delegate) {
+        this.pool = pool;
+        this.delegate = delegate;
+    }
+
+    void setReference(final ServiceResourceResolverPool.BorrowedReference reference) {
+        this.reference = reference;
+    }
+
+    /**
+     * Returns the pooled resource resolver.
+     * @return The resource resolver or <code>null</code> if closed.
+     */
+    ResourceResolverImpl getDelegate() {
+        return this.delegate;
+    }
+
+    private ResourceResolverImpl delegate() {
+        final ResourceResolverImpl rr = this.delegate;
+        if (rr == null) {
+            throw new IllegalStateException("Resource resolver is already closed.");
+        }
+        return rr;
+    }
+
+    void checkOpen() {
+        delegate();
+    }
+
+    /**
+     * Returns <code>true</code> if an adapter has been handed out, so the
+     * resource resolver must not be reused.
+     */
+    boolean isEscaped() {
+        return this.escaped;
+    }
+
+    /**
+     * Adapts a resource of the pooled resource resolver.
+     */
+    <AdapterType> AdapterType adaptResource(final Resource resource, final Class<AdapterType> type) {
+        checkOpen();
+        return escape(resource.adaptTo(type), type);
+    }
+
+    private <AdapterType> AdapterType escape(final AdapterType adapter, final Class<AdapterType> type) {
+        if (adapter != null && type != ValueMap.class) {
+            this.escaped = true;
+        }
+        return adapter;
+    }
+
+    private Resource wrap(final Resource resource) {
+        if (resource == null || resource instanceof PooledResource) {
+            return resource;
+        }
+        return new PooledResource(this, resource);
+    }
+
+    private Iterator<Resource> wrap(final Iterator<Resource> iterator) {
+        if (iterator == null) {
+            return null;
+        }
+        return new Iterator<Resource>() {
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Resource next() {
+                return wrap(iterator.next());
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+            }
+        };
+    }
+
+    private static Resource unwrap(final Resource resource) {
+        if (resource instanceof PooledResource) {
+            return ((PooledResource) resource).getResource();
+        }
+        return resource;
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.ResourceResolver#close()
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.delegate == null) {
+                return;
+            }
+            this.delegate = null;
+        }
+        this.pool.release(this.reference, !this.escaped);
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.ResourceResolver#isLive()
+     */
+    @Override
+    public boolean isLive() {
+        final ResourceResolverImpl rr = this.delegate;
+        return rr != null && rr.isLive();
+    }
+
+    @Override
+    public Resource resolve(final HttpServletRequest request, final String absPath) {
+        return wrap(delegate().resolve(request, absPath));
+    }
+
+    @Override
+    public Resource resolve(final String absPath) {
+        return wrap(delegate().resolve(absPath));
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public Resource resolve(final HttpServletRequest request) {
+        return wrap(delegate().resolve(request));
+    }
+
+    @Override
+    public String map(final String resourcePath) {
+        return delegate().map(resourcePath);
+    }
+
+    @Override
+    public String map(final HttpServletRequest request, final String resourcePath) {
+        return delegate().map(request, resourcePath);
+    }
+
+    @Override
+    public Resource getResource(final String path) {
+        return wrap(delegate().getResource(path));
+    }
+
+    @Override
+    public Resource getResource(final Resource base, final String path) {
+        return wrap(delegate().getResource(unwrap(base), path));
+    }
+
+    @Override
+    public String[] getSearchPath() {
+        return delegate().getSearchPath();
+    }
+
+    @Override
+    public Iterator<Resource> listChildren(final Resource parent) {
+        return wrap(delegate().listChildren(unwrap(parent)));
+    }
+
+    @Override
+    public Resource getParent(final Resource child) {
+        return wrap(delegate().getParent(unwrap(child)));
+    }
+
+    @Override
+    public Iterable<Resource> getChildren(final Resource parent) {
+        final Iterable<Resource> children = delegate().getChildren(unwrap(parent));
+        return new Iterable<Resource>() {
+
+            @Override
+            public Iterator<Resource> iterator() {
+                return wrap(children.iterator());
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Resource> findResources(final String query, final String language) {
+        return wrap(delegate().findResources(query, language));
+    }
+
+    @Override
+    public Iterator<Map<String, Object>> queryResources(final String query, final String language) {
+        return delegate().queryResources(query, language);
+    }
+
+    @Override
+    public boolean hasChildren(final Resource resource) {
+        return delegate().hasChildren(unwrap(resource));
+    }
+
+    @Override
+    public ResourceResolver clone(final Map<String, Object> authenticationInfo) throws LoginException {
+        return delegate().clone(authenticationInfo);
+    }
+
+    @Override
+    public String getUserID() {
+        return delegate().getUserID();
+    }
+
+    @Override
+    public Iterator<String> getAttributeNames() {
+        return delegate().getAttributeNames();
+    }
+
+    @Override
+    public Object getAttribute(final String name) {
+        return delegate().getAttribute(name);
+    }
+
+    @Override
+    public void delete(final Resource resource) throws PersistenceException {
+        delegate().delete(unwrap(resource));
+    }
+
+    @Override
+    public Resource create(final Resource parent, final String name, final Map<String, Object> properties)
+    throws PersistenceException {
+        return wrap(delegate().create(unwrap(parent), name, properties));
+    }
+
+    @Override
+    public void revert() {
+        delegate().revert();
+    }
+
+    @Override
+    public void commit() throws PersistenceException {
+        delegate().commit();
+    }
+
+    @Override
+    public boolean hasChanges() {
+        return delegate().hasChanges();
+    }
+
+    @Override
+    public String getParentResourceType(final Resource resource) {
+        return delegate().getParentResourceType(unwrap(resource));
+    }
+
+    @Override
+    public String getParentResourceType(final String resourceType) {
+        return delegate().getParentResourceType(resourceType);
+    }
+
+    @Override
+    public boolean isResourceType(final Resource resource, final String resourceType) {
+        return delegate().isResourceType(unwrap(resource), resourceType);
+    }
+
+    @Override
+    public void refresh() {
+        delegate().refresh();
+    }
+
+    @Override
+    public void copy(final String srcAbsPath, final String destAbsPath) throws PersistenceException {
+        delegate().copy(srcAbsPath, destAbsPath);
+    }
+
+    @Override
+    public void move(final String srcAbsPath, final String destAbsPath) throws PersistenceException {
+        delegate().move(srcAbsPath, destAbsPath);
+    }
+
+    @Override
+    public <AdapterType> AdapterType adaptTo(final Class<AdapterType> type) {
+        return escape(delegate().adaptTo(type), type);
+    }
+
+    @Override
+    public String toString() {
+        return "PooledResourceResolver{" + this.delegate + "}";
+    }
+}
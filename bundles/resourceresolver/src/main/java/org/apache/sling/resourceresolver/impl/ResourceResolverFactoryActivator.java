@@ -199,6 +199,60 @@ public class ResourceResolverFactoryActivator implements Runnable {
                             "Changing this value is subject to vanity bloom filter rebuild")
     private static final String PROP_VANITY_BLOOM_FILTER_MAX_BYTES = " resource.resolver.vanitypath.bloomfilter.maxBytes";
 
+    private static final boolean DEFAULT_VANITY_PATH_STORE = false;
+    @Property(boolValue = DEFAULT_VANITY_PATH_STORE,
+              label = "Off-heap vanity path store",
+              description = "This flag controls whether vanity paths are kept in a memory mapped file in the " +
+                            "bundle data area instead of on the heap. The file is reused on restart, skipping the " +
+                            "initial vanity path query; delete it to force a full reload. " +
+                            "If enabled, the cache size and bloom filter settings are not used.")
+    private static final String PROP_VANITY_PATH_STORE = "resource.resolver.vanitypath.store";
+
+    private static final boolean DEFAULT_BACKGROUND_MAPPING_LOAD = false;
+    @Property(boolValue = DEFAULT_BACKGROUND_MAPPING_LOAD,
+              label = "Background loading of aliases and vanity paths",
+              description = "This flag controls whether aliases and vanity paths are loaded in a background thread. " +
+                            "The resource resolver factory is available right away; until loading has finished, " +
+                            "aliases and vanity paths are looked up directly in the repository.")
+    private static final String PROP_BACKGROUND_MAPPING_LOAD = "resource.resolver.mapping.background.load";
+
+    private static final int DEFAULT_BACKGROUND_MAPPING_LOAD_RETRIES = 3;
+    @Property(intValue = DEFAULT_BACKGROUND_MAPPING_LOAD_RETRIES,
+              label = "Background loading retries",
+              description = "If too many changes happen while aliases and vanity paths are loaded in the background, " +
+                            "the changes are dropped and loading is restarted at most this number of times. " +
+                            "The last attempt keeps all changes and applies them once loading has finished.")
+    private static final String PROP_BACKGROUND_MAPPING_LOAD_RETRIES = "resource.resolver.mapping.background.load.retries";
+
+    private static final int DEFAULT_LOOKUP_CACHE_SIZE = 0;
+    @Property(intValue = DEFAULT_LOOKUP_CACHE_SIZE,
+              label = "Lookup cache size",
+              description = "The maximum number of paths per resource resolver for which a failed lookup is remembered. " +
+                            "The cache is cleared whenever the resource resolver changes, commits, reverts or is refreshed. " +
+                            "Resources created without the resource resolver, e.g. through an adapted session, are not " +
+                            "found until then. A value of 0 disables the cache.")
+    private static final String PROP_LOOKUP_CACHE_SIZE = "resource.resolver.lookup.cache.size";
+
+    private static final boolean DEFAULT_SERVICE_POOL_ENABLED = false;
+    @Property(boolValue = DEFAULT_SERVICE_POOL_ENABLED,
+              label = "Pool service resolvers",
+              description = "If enabled, the resource resolvers returned by getServiceResourceResolver are kept in a pool " +
+                            "per bundle and sub service when they are closed and are reused after a refresh. " +
+                            "Resolvers requested with additional authentication information are never pooled.")
+    private static final String PROP_SERVICE_POOL_ENABLED = "resource.resolver.service.pool.enabled";
+
+    private static final int DEFAULT_SERVICE_POOL_MAX_IDLE = 8;
+    @Property(intValue = DEFAULT_SERVICE_POOL_MAX_IDLE,
+              label = "Service resolver pool size",
+              description = "The maximum number of idle resource resolvers kept per bundle and sub service.")
+    private static final String PROP_SERVICE_POOL_MAX_IDLE = "resource.resolver.service.pool.max.idle";
+
+    private static final long DEFAULT_SERVICE_POOL_IDLE_TIMEOUT = 60000;
+    @Property(longValue = DEFAULT_SERVICE_POOL_IDLE_TIMEOUT,
+              label = "Service resolver idle timeout",
+              description = "The time in milliseconds after which an unused resource resolver is removed from the pool and closed.")
+    private static final String PROP_SERVICE_POOL_IDLE_TIMEOUT = "resource.resolver.service.pool.idle.timeout";
+
     private static final boolean DEFAULT_ENABLE_OPTIMIZE_ALIAS_RESOLUTION = true;
     @Property(boolValue = DEFAULT_ENABLE_OPTIMIZE_ALIAS_RESOLUTION ,
               label = "Optimize alias resolution",
@@ -288,6 +342,27 @@ public class ResourceResolverFactoryActivator implements Runnable {
     /** Maximum number of vanity bloom filter bytes */
     private int vanityBloomFilterMaxBytes = DEFAULT_VANITY_BLOOM_FILTER_MAX_BYTES;
 
+    /** aliases and vanity paths loaded in the background? */
+    private boolean backgroundMappingLoad = DEFAULT_BACKGROUND_MAPPING_LOAD;
+
+    /** max number of restarts of the background loading */
+    private int backgroundMappingLoadRetries = DEFAULT_BACKGROUND_MAPPING_LOAD_RETRIES;
+
+    /** max number of cached failed lookups per resource resolver */
+    private int lookupCacheSize = DEFAULT_LOOKUP_CACHE_SIZE;
+
+    /** pool service resource resolvers? */
+    private boolean servicePoolEnabled = DEFAULT_SERVICE_POOL_ENABLED;
+
+    /** max number of idle resolvers per service */
+    private int servicePoolMaxIdle = DEFAULT_SERVICE_POOL_MAX_IDLE;
+
+    /** time in ms after which idle resolvers are closed */
+    private long servicePoolIdleTimeout = DEFAULT_SERVICE_POOL_IDLE_TIMEOUT;
+
+    /** vanity paths kept in the off-heap store? */
+    private boolean vanityPathStore = DEFAULT_VANITY_PATH_STORE;
+
     /** vanity paths will have precedence over existing /etc/map mapping? */
     private boolean vanityPathPrecedence = DEFAULT_VANITY_PATH_PRECEDENCE;
 
@@ -399,6 +474,34 @@ public class ResourceResolverFactoryActivator implements Runnable {
         return this.vanityBloomFilterMaxBytes;
     }
 
+    public boolean isVanityPathStoreEnabled() {
+        return this.vanityPathStore;
+    }
+
+    public boolean isBackgroundMappingLoadEnabled() {
+        return this.backgroundMappingLoad;
+    }
+
+    public int getBackgroundMappingLoadRetries() {
+        return this.backgroundMappingLoadRetries;
+    }
+
+    public int getLookupCacheSize() {
+        return this.lookupCacheSize;
+    }
+
+    public boolean isServicePoolEnabled() {
+        return this.servicePoolEnabled;
+    }
+
+    public int getServicePoolMaxIdle() {
+        return this.servicePoolMaxIdle;
+    }
+
+    public long getServicePoolIdleTimeout() {
+        return this.servicePoolIdleTimeout;
+    }
+
     // ---------- SCR Integration ---------------------------------------------
 
     /**
@@ -504,6 +607,13 @@ public class ResourceResolverFactoryActivator implements Runnable {
         this.enableOptimizeAliasResolution = PropertiesUtil.toBoolean(properties.get(PROP_ENABLE_OPTIMIZE_ALIAS_RESOLUTION), DEFAULT_ENABLE_OPTIMIZE_ALIAS_RESOLUTION);
         this.maxCachedVanityPathEntries = PropertiesUtil.toLong(properties.get(PROP_MAX_CACHED_VANITY_PATHS), DEFAULT_MAX_CACHED_VANITY_PATHS);
         this.vanityBloomFilterMaxBytes = PropertiesUtil.toInteger(properties.get(PROP_VANITY_BLOOM_FILTER_MAX_BYTES), DEFAULT_VANITY_BLOOM_FILTER_MAX_BYTES);
+        this.vanityPathStore = PropertiesUtil.toBoolean(properties.get(PROP_VANITY_PATH_STORE), DEFAULT_VANITY_PATH_STORE);
+        this.backgroundMappingLoad = PropertiesUtil.toBoolean(properties.get(PROP_BACKGROUND_MAPPING_LOAD), DEFAULT_BACKGROUND_MAPPING_LOAD);
+        this.backgroundMappingLoadRetries = PropertiesUtil.toInteger(properties.get(PROP_BACKGROUND_MAPPING_LOAD_RETRIES), DEFAULT_BACKGROUND_MAPPING_LOAD_RETRIES);
+        this.lookupCacheSize = PropertiesUtil.toInteger(properties.get(PROP_LOOKUP_CACHE_SIZE), DEFAULT_LOOKUP_CACHE_SIZE);
+        this.servicePoolEnabled = PropertiesUtil.toBoolean(properties.get(PROP_SERVICE_POOL_ENABLED), DEFAULT_SERVICE_POOL_ENABLED);
+        this.servicePoolMaxIdle = PropertiesUtil.toInteger(properties.get(PROP_SERVICE_POOL_MAX_IDLE), DEFAULT_SERVICE_POOL_MAX_IDLE);
+        this.servicePoolIdleTimeout = PropertiesUtil.toLong(properties.get(PROP_SERVICE_POOL_IDLE_TIMEOUT), DEFAULT_SERVICE_POOL_IDLE_TIMEOUT);
 
         this.vanityPathPrecedence = PropertiesUtil.toBoolean(properties.get(PROP_VANITY_PATH_PRECEDENCE), DEFAULT_VANITY_PATH_PRECEDENCE);
 
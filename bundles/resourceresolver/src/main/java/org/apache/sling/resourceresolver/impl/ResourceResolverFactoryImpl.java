@@ -88,9 +88,31 @@ public class ResourceResolverFactoryImpl implements ResourceResolverFactory {
         authenticationInfo.put(ResourceResolverFactory.USER, userName);
         authenticationInfo.put(ResourceProviderFactory.SERVICE_BUNDLE, this.usingBundle);
 
+        // resolvers can only be pooled if they only depend on the service
+        final ServiceResourceResolverPool pool = commonFactory.getServiceResourceResolverPool();
+        if ( pool != null && isPoolable(passedAuthenticationInfo) ) {
+            final String key = this.usingBundle.getBundleId() + "/" + subServiceName + "/" + userName;
+            return pool.borrow(key, authenticationInfo);
+        }
+
         return commonFactory.getResourceResolverInternal(authenticationInfo, false);
     }
 
+    /**
+     * Checks whether the passed authentication info only contains the sub
+     * service name (and the ignored password).
+     */
+    private boolean isPoolable(final Map<String, Object> passedAuthenticationInfo) {
+        if ( passedAuthenticationInfo != null ) {
+            for(final String key : passedAuthenticationInfo.keySet()) {
+                if ( !SUBSERVICE.equals(key) && !PASSWORD.equals(key) ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * @see org.apache.sling.api.resource.ResourceResolverFactory#getResourceResolver(java.util.Map)
      */
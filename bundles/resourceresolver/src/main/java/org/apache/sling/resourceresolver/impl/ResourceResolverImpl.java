@@ -19,9 +19,11 @@
 package org.apache.sling.resourceresolver.impl;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.StringTokenizer;
@@ -47,20 +49,23 @@ import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.ResourceWrapper;
+import org.apache.sling.api.resource.mapping.MappingSession;
+import org.apache.sling.api.resource.mapping.ResourceMapper;
+import org.apache.sling.resourceresolver.impl.helper.ParsedURI;
 import org.apache.sling.resourceresolver.impl.helper.RedirectResource;
 import org.apache.sling.resourceresolver.impl.helper.ResourceIterator;
 import org.apache.sling.resourceresolver.impl.helper.ResourceIteratorDecorator;
+import org.apache.sling.resourceresolver.impl.helper.ResourceLookupCache;
 import org.apache.sling.resourceresolver.impl.helper.ResourcePathIterator;
 import org.apache.sling.resourceresolver.impl.helper.ResourceResolverContext;
 import org.apache.sling.resourceresolver.impl.helper.StarResource;
-import org.apache.sling.resourceresolver.impl.helper.URI;
 import org.apache.sling.resourceresolver.impl.helper.URIException;
 import org.apache.sling.resourceresolver.impl.mapping.MapEntry;
 import org.apache.sling.resourceresolver.impl.tree.params.ParsedParameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-@Adaptable(adaptableClass = ResourceResolver.class, adapters = { @Adapter(Session.class) })
+@Adaptable(adaptableClass = ResourceResolver.class, adapters = { @Adapter(Session.class), @Adapter(ResourceMapper.class) })
 public class ResourceResolverImpl extends SlingAdaptable implements ResourceResolver {
 
     /** Default logger */
@@ -99,6 +104,9 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
     /** Resource resolver context. */
     private final ResourceResolverContext context;
 
+    /** Cache for failed lookups, <code>null</code> if disabled. */
+    private final ResourceLookupCache lookupCache;
+
     /**
      * The resource resolver context.
      */
@@ -106,6 +114,8 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             final ResourceResolverContext ctx) {
         this.factory = factory;
         this.context = ctx;
+        final int lookupCacheSize = factory.getLookupCacheSize();
+        this.lookupCache = lookupCacheSize > 0 ? new ResourceLookupCache(lookupCacheSize) : null;
         this.factory.register(this, ctx);
     }
 
@@ -150,6 +160,10 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
     @Override
     public void close() {
         if ( this.isClosed.compareAndSet(false, true)) {
+            if ( this.lookupCache != null ) {
+                logger.debug("Lookup cache: {} hits, {} misses", this.lookupCache.getHitCount(), this.lookupCache.getMissCount());
+                this.factory.addLookupCacheStatistics(this.lookupCache.getHitCount(), this.lookupCache.getMissCount());
+            }
             this.factory.unregister(this, this.context);
         }
     }
@@ -258,7 +272,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
 
             String[] mappedPath = null;
 
-            final Iterator<MapEntry> mapEntriesIterator = this.factory.getMapEntries().getResolveMapsIterator(requestPath);
+            final Iterator<MapEntry> mapEntriesIterator = this.factory.getMapEntries().getResolveMapsIterator(requestPath, this);
             while (mapEntriesIterator.hasNext()) {
                 final MapEntry mapEntry = mapEntriesIterator.next();
                 mappedPath = mapEntry.replace(requestPath);
@@ -296,7 +310,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             // otherwise the mapped path is an URI and we have to try to
             // resolve that URI now, using the URI's path as the real path
             try {
-                final URI uri = new URI(mappedPath[0], false);
+                final ParsedURI uri = ParsedURI.parse(mappedPath[0]);
                 requestPath = getMapPath(uri.getScheme(), uri.getHost(), uri.getPort(), uri.getPath());
                 realPathList = new String[] { uri.getPath() };
 
@@ -388,6 +402,14 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
     @Override
     public String map(final HttpServletRequest request, final String resourcePath) {
         checkClosed();
+        return mapInternal(new MappingContext(request), resourcePath);
+    }
+
+    /**
+     * Maps the resource path using the request dependent state of the
+     * mapping context.
+     */
+    private String mapInternal(final MappingContext mappingContext, final String resourcePath) {
 
         // find a fragment or query
         int fragmentQueryMark = resourcePath.indexOf('#');
@@ -409,20 +431,13 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         }
 
         // cut off scheme and host, if the same as requested
-        final String schemehostport;
-        final String schemePrefix;
-        if (request != null) {
-            schemehostport = MapEntry.getURI(request.getScheme(), request.getServerName(), request.getServerPort(), "/");
-            schemePrefix = request.getScheme().concat("://");
+        final String schemehostport = mappingContext.schemehostport;
+        final String schemePrefix = mappingContext.schemePrefix;
+        if (schemehostport != null) {
             logger.debug("map: Mapping path {} for {} (at least with scheme prefix {})", new Object[] { resourcePath,
                     schemehostport, schemePrefix });
-
         } else {
-
-            schemehostport = null;
-            schemePrefix = null;
             logger.debug("map: Mapping path {} for default", resourcePath);
-
         }
 
         ParsedParameters parsed = new ParsedParameters(mappedPath);
@@ -502,7 +517,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         }
 
         boolean mappedPathIsUrl = false;
-        for (final MapEntry mapEntry : this.factory.getMapEntries().getMapMaps()) {
+        for (final MapEntry mapEntry : mappingContext.mapMaps) {
             final String[] mappedPaths = mapEntry.replace(mappedPath);
             if (mappedPaths != null) {
 
@@ -549,23 +564,21 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
 
         // [scheme:][//authority][path][?query][#fragment]
         try {
-            // use commons-httpclient's URI instead of java.net.URI, as it can
+            // use ParsedURI instead of java.net.URI, as it can
             // actually accept *unescaped* URIs, such as the "mappedPath" and
             // return them in proper escaped form, including the path, via
-            // toString()
-            final URI uri = new URI(mappedPath, false);
+            // toString(String)
+            final ParsedURI uri = ParsedURI.parse(mappedPath);
 
             // 1. mangle the namespaces in the path
             String path = mangleNamespaces(uri.getPath());
 
             // 2. prepend servlet context path if we have a request
-            if (request != null && request.getContextPath() != null && request.getContextPath().length() > 0) {
-                path = request.getContextPath().concat(path);
+            if (mappingContext.contextPath != null) {
+                path = mappingContext.contextPath.concat(path);
             }
             // update the path part of the URI
-            uri.setPath(path);
-
-            mappedPath = uri.toString();
+            mappedPath = uri.toString(path);
         } catch (final URIException e) {
             logger.warn("map: Unable to mangle namespaces for " + mappedPath + " returning unmangled", e);
         }
@@ -791,6 +804,9 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         if (type == Session.class) {
             return (AdapterType) getSession();
         }
+        if (type == ResourceMapper.class) {
+            return (AdapterType) new ResourceMapperImpl();
+        }
         final AdapterType result = this.factory.getRootProviderEntry().adaptTo(this.context, type);
         if ( result != null ) {
             return result;
@@ -800,6 +816,75 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         return super.adaptTo(type);
     }
 
+    /**
+     * The request dependent state used for mapping paths. It is determined
+     * once per call to {@link #map(HttpServletRequest, String)}, or once for
+     * all paths mapped through the {@link ResourceMapper}.
+     */
+    private final class MappingContext {
+
+        final String schemehostport;
+
+        final String schemePrefix;
+
+        /** the servlet context path or <code>null</code> if empty */
+        final String contextPath;
+
+        final Collection<MapEntry> mapMaps;
+
+        MappingContext(final HttpServletRequest request) {
+            if (request != null) {
+                this.schemehostport = MapEntry.getURI(request.getScheme(), request.getServerName(), request.getServerPort(), "/");
+                this.schemePrefix = request.getScheme().concat("://");
+                final String path = request.getContextPath();
+                this.contextPath = (path != null && path.length() > 0) ? path : null;
+            } else {
+                this.schemehostport = null;
+                this.schemePrefix = null;
+                this.contextPath = null;
+            }
+            this.mapMaps = factory.getMapEntries().getMapMaps();
+        }
+    }
+
+    /**
+     * The {@link ResourceMapper} maps paths with a single
+     * {@link MappingContext} and remembers the mapped paths per session.
+     */
+    private final class ResourceMapperImpl implements ResourceMapper {
+
+        @Override
+        public Map<String, String> map(final HttpServletRequest request, final Collection<String> resourcePaths) {
+            final MappingSession session = createSession(request);
+            final Map<String, String> result = new LinkedHashMap<String, String>(resourcePaths.size() * 4 / 3 + 1);
+            for (final String resourcePath : resourcePaths) {
+                result.put(resourcePath, session.map(resourcePath));
+            }
+            return result;
+        }
+
+        @Override
+        public MappingSession createSession(final HttpServletRequest request) {
+            checkClosed();
+            final MappingContext mappingContext = new MappingContext(request);
+            return new MappingSession() {
+
+                private final Map<String, String> mappedPaths = new HashMap<String, String>();
+
+                @Override
+                public String map(final String resourcePath) {
+                    checkClosed();
+                    String mappedPath = this.mappedPaths.get(resourcePath);
+                    if (mappedPath == null) {
+                        mappedPath = mapInternal(mappingContext, resourcePath);
+                        this.mappedPaths.put(resourcePath, mappedPath);
+                    }
+                    return mappedPath;
+                }
+            };
+        }
+    }
+
     // ---------- internal
 
     /**
@@ -1004,6 +1089,13 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     private Resource getAbsoluteResourceInternal(final String path, final Map<String, String> parameters, final boolean isResolve) {
 
+        // parameters (like a version) select a different resource, don't cache these lookups
+        final boolean cacheable = this.lookupCache != null && parameters.isEmpty();
+        if (cacheable && this.lookupCache.isMissing(path, isResolve)) {
+            logger.debug("getResourceInternal: Cached missing resource at path '{}'", path);
+            return null;
+        }
+
         final Resource resource = this.factory.getRootProviderEntry().getResource(this.context, this, path, parameters, isResolve);
         if (resource != null) {
             resource.getResourceMetadata().setResolutionPath(path);
@@ -1011,10 +1103,39 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             return resource;
         }
 
+        if (cacheable) {
+            this.lookupCache.setMissing(path, isResolve);
+        }
         logger.debug("getResourceInternal: Cannot resolve path '{}' to a resource", path);
         return null;
     }
 
+    /**
+     * Returns the number of lookups answered by the lookup cache of this
+     * resource resolver, or 0 if the cache is disabled.
+     */
+    public long getLookupCacheHitCount() {
+        return this.lookupCache != null ? this.lookupCache.getHitCount() : 0;
+    }
+
+    /**
+     * Returns the number of lookups which had to ask the resource providers
+     * as they were not answered by the lookup cache, or 0 if the cache is
+     * disabled.
+     */
+    public long getLookupCacheMissCount() {
+        return this.lookupCache != null ? this.lookupCache.getMissCount() : 0;
+    }
+
+    /**
+     * Clears the lookup cache as changes might have created resources.
+     */
+    private void clearLookupCache() {
+        if (this.lookupCache != null) {
+            this.lookupCache.clear();
+        }
+    }
+
     /**
      * Returns the <code>path</code> as an absolute path. If the path is already
      * absolute it is returned unmodified (the same instance actually). If the
@@ -1124,6 +1245,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         }
         // if resource is null, we get an NPE as stated in the API
         this.factory.getRootProviderEntry().delete(this.context, this, resource);
+        this.clearLookupCache();
     }
 
     /**
@@ -1151,6 +1273,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             this.create(parent.getParent(), parent.getName(), null);
         }
         final Resource rsrc = this.factory.getRootProviderEntry().create(this.context, this, path, properties);
+        this.clearLookupCache();
         return this.factory.getResourceDecoratorTracker().decorate(rsrc);
     }
 
@@ -1159,6 +1282,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     @Override
     public void revert() {
+        this.clearLookupCache();
         this.context.revert(this);
     }
 
@@ -1167,6 +1291,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     @Override
     public void commit() throws PersistenceException {
+        this.clearLookupCache();
         this.context.commit(this);
     }
 
@@ -1241,6 +1366,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     @Override
     public void refresh() {
+        this.clearLookupCache();
         this.context.refresh();
     }
 
@@ -0,0 +1,389 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>ServiceResourceResolverPool</code> keeps service resource
+ * resolvers after they have been closed by their user, so a later request
+ * for the same service does not need to log in again.
+ * <p>
+ * The pool hands out {@link PooledResourceResolver} instances wrapping the
+ * real resource resolver. Closing the wrapper returns the resource resolver
+ * to the pool, unless the wrapper handed out an adapter like a session,
+ * which would still reach the resource resolver after it is reused. Before it
+ * is handed out again, it is reverted and refreshed.
+ * Resource resolvers not used within the idle timeout are closed.
+ * <p>
+ * If a wrapper is garbage collected without being closed, the resource
+ * resolver is closed and counted as a leak.
+ */
+public class ServiceResourceResolverPool {
+
+    private final Logger logger = LoggerFactory.getLogger(ServiceResourceResolverPool.class);
+
+    private final CommonResourceResolverFactoryImpl factory;
+
+    private final int maxIdle;
+
+    private final long idleTimeout;
+
+    /** Idle resolvers per key, the most recently used first. */
+    private final ConcurrentMap<String, BlockingDeque<IdleResolver>> idle = new ConcurrentHashMap<String, BlockingDeque<IdleResolver>>();
+
+    /** References to the borrowed wrappers. */
+    private final Set<BorrowedReference> borrowed = Collections.newSetFromMap(new ConcurrentHashMap<BorrowedReference, Boolean>());
+
+    private final ReferenceQueue<PooledResourceResolver> leakQueue = new ReferenceQueue<PooledResourceResolver>();
+
+    private final Timer timer;
+
+    private volatile boolean closed;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+
+    private final AtomicLong reuseCount = new AtomicLong();
+
+    private final AtomicLong createCount = new AtomicLong();
+
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private final AtomicLong leakCount = new AtomicLong();
+
+    public ServiceResourceResolverPool(final CommonResourceResolverFactoryImpl factory,
+            final int maxIdle,
+            final long idleTimeout) {
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+        this.idleTimeout = idleTimeout;
+        this.timer = new Timer("Apache Sling Service Resource Resolver Pool", true);
+        final long period = Math.max(1000, idleTimeout / 2);
+        this.timer.schedule(new TimerTask() {
+
+            @Override
+            public void run() {
+                try {
+                    evict();
+                } catch (final Throwable t) {
+                    // keep the timer running
+                    logger.warn("Unable to evict idle resource resolvers", t);
+                }
+            }
+        }, period, period);
+    }
+
+    /**
+     * Borrows a resource resolver for the service.
+     *
+     * @param key The key identifying the service, the resolvers for the same
+     *            key must be interchangeable.
+     * @param authenticationInfo The authentication info used to create a new
+     *            resolver
+     * @return The resource resolver, which must be closed by the caller.
+     * @throws LoginException If a new resolver can't be created
+     */
+    public ResourceResolver borrow(final String key, final Map<String, Object> authenticationInfo)
+    throws LoginException {
+        final long start = System.nanoTime();
+        this.borrowCount.incrementAndGet();
+        this.checkLeaks();
+
+        ResourceResolverImpl resolver = null;
+        final BlockingDeque<IdleResolver> queue = this.idle.get(key);
+        if (queue != null) {
+            IdleResolver candidate;
+            while (resolver == null && (candidate = queue.pollFirst()) != null) {
+                resolver = this.reset(candidate.resolver);
+            }
+        }
+        if (resolver != null) {
+            this.reuseCount.incrementAndGet();
+        } else {
+            resolver = (ResourceResolverImpl) this.factory.getResourceResolverInternal(authenticationInfo, false);
+            this.createCount.incrementAndGet();
+        }
+
+        final long wait = System.nanoTime() - start;
+        this.totalWaitNanos.addAndGet(wait);
+        long max;
+        while (wait > (max = this.maxWaitNanos.get()) && !this.maxWaitNanos.compareAndSet(max, wait)) {
+            // retry
+        }
+
+        final PooledResourceResolver pooled = new PooledResourceResolver(this, resolver);
+        final BorrowedReference ref = new BorrowedReference(pooled, this.leakQueue, key, resolver);
+        pooled.setReference(ref);
+        this.borrowed.add(ref);
+        return pooled;
+    }
+
+    /**
+     * Called by {@link PooledResourceResolver#close()} to return the
+     * resolver to the pool. If it is not reusable, it is closed instead.
+     */
+    void release(final BorrowedReference ref, final boolean reusable) {
+        if (!this.borrowed.remove(ref)) {
+            return;
+        }
+        ref.clear();
+        final ResourceResolverImpl resolver = ref.resolver;
+        if (this.closed || !reusable || !resolver.isLive()) {
+            resolver.close();
+            return;
+        }
+        BlockingDeque<IdleResolver> queue = this.idle.get(ref.key);
+        if (queue == null) {
+            queue = new LinkedBlockingDeque<IdleResolver>();
+            final BlockingDeque<IdleResolver> existing = this.idle.putIfAbsent(ref.key, queue);
+            if (existing != null) {
+                queue = existing;
+            }
+        }
+        if (queue.size() < this.maxIdle) {
+            queue.offerFirst(new IdleResolver(resolver));
+        } else {
+            this.evictionCount.incrementAndGet();
+            resolver.close();
+        }
+        // the pool might have been closed concurrently
+        if (this.closed) {
+            this.closeIdle();
+        }
+    }
+
+    /**
+     * Reverts and refreshes an idle resolver.
+     * @return The resolver or <code>null</code> if it can't be used anymore.
+     */
+    private ResourceResolverImpl reset(final ResourceResolverImpl resolver) {
+        if (resolver.isLive()) {
+            try {
+                resolver.revert();
+                resolver.refresh();
+                return resolver;
+            } catch (final RuntimeException e) {
+                logger.debug("Unable to reset pooled resource resolver, closing it", e);
+            }
+        }
+        resolver.close();
+        return null;
+    }
+
+    /**
+     * Closes the resolvers which have not been used within the idle timeout
+     * and the resolvers of leaked wrappers.
+     */
+    void evict() {
+        this.checkLeaks();
+        final long oldest = System.currentTimeMillis() - this.idleTimeout;
+        for (final BlockingDeque<IdleResolver> queue : this.idle.values()) {
+            for (final IdleResolver entry : queue) {
+                // only close it if it has not been borrowed concurrently
+                if (entry.lastUsed < oldest && queue.removeLastOccurrence(entry)) {
+                    this.evictionCount.incrementAndGet();
+                    entry.resolver.close();
+                }
+            }
+        }
+    }
+
+    private void checkLeaks() {
+        Reference<? extends PooledResourceResolver> ref;
+        while ((ref = this.leakQueue.poll()) != null) {
+            final BorrowedReference borrowedRef = (BorrowedReference) ref;
+            if (this.borrowed.remove(borrowedRef)) {
+                this.leakCount.incrementAndGet();
+                logger.warn("Service resource resolver for {} has not been closed.", borrowedRef.key);
+                borrowedRef.resolver.close();
+            }
+        }
+    }
+
+    private void closeIdle() {
+        for (final BlockingDeque<IdleResolver> queue : this.idle.values()) {
+            IdleResolver entry;
+            while ((entry = queue.pollFirst()) != null) {
+                entry.resolver.close();
+            }
+        }
+    }
+
+    /**
+     * Closes the pool and all idle resolvers. Borrowed resolvers are closed
+     * when they are returned.
+     */
+    public void close() {
+        this.closed = true;
+        this.timer.cancel();
+        this.closeIdle();
+    }
+
+    public long getBorrowCount() {
+        return this.borrowCount.get();
+    }
+
+    public long getReuseCount() {
+        return this.reuseCount.get();
+    }
+
+    public long getCreateCount() {
+        return this.createCount.get();
+    }
+
+    public long getTotalWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(this.totalWaitNanos.get());
+    }
+
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(this.maxWaitNanos.get());
+    }
+
+    public int getActiveCount() {
+        return this.borrowed.size();
+    }
+
+    public int getIdleCount() {
+        int count = 0;
+        for (final BlockingDeque<IdleResolver> queue : this.idle.values()) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    public long getLeakCount() {
+        return this.leakCount.get();
+    }
+
+    /**
+     * An idle resolver and the time it has been returned to the pool.
+     */
+    private static final class IdleResolver {
+
+        final ResourceResolverImpl resolver;
+
+        final long lastUsed;
+
+        IdleResolver(final ResourceResolverImpl resolver) {
+            this.resolver = resolver;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * A weak reference to a borrowed wrapper holding the wrapped resolver, so
+     * the resolver can be closed if the wrapper is never closed.
+     */
+    static final class BorrowedReference extends WeakReference<PooledResourceResolver> {
+
+        final String key;
+
+        final ResourceResolverImpl resolver;
+
+        BorrowedReference(final PooledResourceResolver referent,
+                final ReferenceQueue<? super PooledResourceResolver> q,
+                final String key,
+                final ResourceResolverImpl resolver) {
+            super(referent, q);
+            this.key = key;
+            this.resolver = resolver;
+        }
+    }
+
+    final class ServiceResourceResolverPoolMBeanImpl extends StandardMBean implements ServiceResourceResolverPoolMBean {
+
+        ServiceResourceResolverPoolMBeanImpl() throws NotCompliantMBeanException {
+            super(ServiceResourceResolverPoolMBean.class);
+        }
+
+        @Override
+        public long getBorrowCount() {
+            return ServiceResourceResolverPool.this.getBorrowCount();
+        }
+
+        @Override
+        public long getReuseCount() {
+            return ServiceResourceResolverPool.this.getReuseCount();
+        }
+
+        @Override
+        public long getCreateCount() {
+            return ServiceResourceResolverPool.this.getCreateCount();
+        }
+
+        @Override
+        public long getTotalWaitTime() {
+            return ServiceResourceResolverPool.this.getTotalWaitTime();
+        }
+
+        @Override
+        public long getMaxWaitTime() {
+            return ServiceResourceResolverPool.this.getMaxWaitTime();
+        }
+
+        @Override
+        public int getActiveCount() {
+            return ServiceResourceResolverPool.this.getActiveCount();
+        }
+
+        @Override
+        public int getIdleCount() {
+            return ServiceResourceResolverPool.this.getIdleCount();
+        }
+
+        @Override
+        public long getEvictionCount() {
+            return ServiceResourceResolverPool.this.getEvictionCount();
+        }
+
+        @Override
+        public long getLeakCount() {
+            return ServiceResourceResolverPool.this.getLeakCount();
+        }
+    }
+}
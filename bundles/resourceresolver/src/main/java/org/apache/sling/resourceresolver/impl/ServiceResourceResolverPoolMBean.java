@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl;
+
+/**
+ * This is the management interface for the
+ * {@link ServiceResourceResolverPool}.
+ */
+public interface ServiceResourceResolverPoolMBean {
+
+    /**
+     * Get the number of service resource resolvers borrowed from the pool
+     *
+     * @return the number of borrowed resolvers
+     */
+    long getBorrowCount();
+
+    /**
+     * Get the number of borrowed resolvers which have been reused from the pool
+     *
+     * @return the number of reused resolvers
+     */
+    long getReuseCount();
+
+    /**
+     * Get the number of resolvers which had to be created as no idle resolver
+     * has been available
+     *
+     * @return the number of created resolvers
+     */
+    long getCreateCount();
+
+    /**
+     * Get the total time spent waiting for a resolver in milliseconds,
+     * including the time for logging in new resolvers
+     *
+     * @return the total wait time
+     */
+    long getTotalWaitTime();
+
+    /**
+     * Get the longest time spent waiting for a resolver in milliseconds
+     *
+     * @return the maximum wait time
+     */
+    long getMaxWaitTime();
+
+    /**
+     * Get the number of resolvers currently borrowed and not yet closed
+     *
+     * @return the number of active resolvers
+     */
+    int getActiveCount();
+
+    /**
+     * Get the number of idle resolvers currently held by the pool
+     *
+     * @return the number of idle resolvers
+     */
+    int getIdleCount();
+
+    /**
+     * Get the number of idle resolvers closed because they were not used
+     * within the idle timeout or the pool was full
+     *
+     * @return the number of evicted resolvers
+     */
+    long getEvictionCount();
+
+    /**
+     * Get the number of borrowed resolvers which have been garbage collected
+     * without being closed
+     *
+     * @return the number of leaked resolvers
+     */
+    long getLeakCount();
+}
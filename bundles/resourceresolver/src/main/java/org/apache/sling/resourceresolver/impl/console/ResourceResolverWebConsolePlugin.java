@@ -127,6 +127,32 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
         pw.print(resolverFactory.getMapRoot());
         pw.print("</td>");
         pw.println("</tr>");
+        pw.println("<tr class='content'>");
+        pw.println("<td class='content'>Aliases</td>");
+        pw.print("<td class='content' colspan='2'>");
+        pw.print(mapEntries.isAliasesLoaded() ? "Loaded" : "Loading");
+        pw.print(" (" + mapEntries.getAliasResourceCount() + " resources)");
+        pw.print("</td>");
+        pw.println("</tr>");
+        pw.println("<tr class='content'>");
+        pw.println("<td class='content'>Vanity Paths</td>");
+        pw.print("<td class='content' colspan='2'>");
+        pw.print(mapEntries.isVanityPathsLoaded() ? "Loaded" : "Loading");
+        pw.print(" (" + mapEntries.getVanityPathResourceCount() + " resources)");
+        pw.print("</td>");
+        pw.println("</tr>");
+        pw.println("<tr class='content'>");
+        pw.println("<td class='content'>Lookup Cache</td>");
+        pw.print("<td class='content' colspan='2'>");
+        if (resolverFactory.getLookupCacheSize() > 0) {
+            pw.print("Size " + resolverFactory.getLookupCacheSize());
+            pw.print(", " + resolverFactory.getLookupCacheHitCount() + " hits");
+            pw.print(", " + resolverFactory.getLookupCacheMissCount() + " misses");
+        } else {
+            pw.print("Disabled");
+        }
+        pw.print("</td>");
+        pw.println("</tr>");
 
         separatorHtml(pw);
 
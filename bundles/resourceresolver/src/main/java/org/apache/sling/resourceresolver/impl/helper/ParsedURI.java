@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import java.util.BitSet;
+
+/**
+ * The <code>ParsedURI</code> parses the unescaped URIs created by the
+ * resource resolver mappings, that is absolute paths like
+ * <code>/content/a page.html</code> and absolute URLs like
+ * <code>http://host:8080/content/a page.html</code>.
+ * <p>
+ * These URIs are parsed in a single pass over the string and the path is
+ * escaped directly into the resulting string. The escaping is the same as done
+ * by {@link URI#setPath(String)} for absolute paths. Any other URI, for
+ * example one with user info, a query or a fragment, is handed over to
+ * {@link URI}, so the result is the same as if {@link URI} would have been
+ * used in the first place.
+ */
+public final class ParsedURI {
+
+    private static final String CHARSET = "UTF-8";
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /** Characters not escaped in the path, see {@link URI#allowed_abs_path}. */
+    private static final boolean[] ALLOWED_PATH = toTable(URI.allowed_abs_path);
+
+    /** Characters allowed in a host name or IPv4 address. */
+    private static final boolean[] HOST = toTable(URI.hostname);
+
+    /** Characters allowed in a scheme. */
+    private static final boolean[] SCHEME = toTable(URI.scheme);
+
+    private final String scheme;
+
+    private final String authority;
+
+    private final String host;
+
+    private final int port;
+
+    private final String path;
+
+    /** The general URI used if the URI can not be handled here. */
+    private final URI uri;
+
+    private ParsedURI(final String scheme, final String authority, final String host, final int port,
+            final String path) {
+        this.scheme = scheme;
+        this.authority = authority;
+        this.host = host;
+        this.port = port;
+        this.path = path;
+        this.uri = null;
+    }
+
+    private ParsedURI(final URI uri) {
+        this.scheme = null;
+        this.authority = null;
+        this.host = null;
+        this.port = -1;
+        this.path = null;
+        this.uri = uri;
+    }
+
+    /**
+     * Parses the unescaped URI.
+     *
+     * @param original The unescaped URI
+     * @return The parsed URI
+     * @throws URIException If the URI cannot be parsed
+     */
+    public static ParsedURI parse(final String original) {
+        ParsedURI result = null;
+        if (CHARSET.equals(URI.getDefaultProtocolCharset())) {
+            result = parseSimple(original);
+        }
+        if (result == null) {
+            result = new ParsedURI(new URI(original, false));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the lower case scheme or <code>null</code> for a path.
+     */
+    public String getScheme() {
+        return this.uri != null ? this.uri.getScheme() : this.scheme;
+    }
+
+    /**
+     * Returns the host or <code>null</code> for a path.
+     */
+    public String getHost() {
+        return this.uri != null ? this.uri.getHost() : this.host;
+    }
+
+    /**
+     * Returns the port or -1 if the URI has no port.
+     */
+    public int getPort() {
+        return this.uri != null ? this.uri.getPort() : this.port;
+    }
+
+    /**
+     * Returns the unescaped path.
+     */
+    public String getPath() {
+        return this.uri != null ? this.uri.getPath() : this.path;
+    }
+
+    /**
+     * Returns the escaped URI, with the path replaced by the given unescaped
+     * path.
+     *
+     * @param newPath The unescaped path
+     * @return The escaped URI
+     * @throws URIException If the path cannot be set
+     */
+    public String toString(final String newPath) {
+        if (this.uri != null) {
+            this.uri.setPath(newPath);
+            return this.uri.toString();
+        }
+        final StringBuilder buf = new StringBuilder(newPath.length() + 16
+            + (this.authority == null ? 0 : this.scheme.length() + this.authority.length() + 3));
+        if (this.scheme != null) {
+            buf.append(this.scheme).append("://").append(this.authority);
+        }
+        appendEscapedPath(buf, newPath);
+        return buf.toString();
+    }
+
+    /**
+     * Returns the escaped URI.
+     */
+    @Override
+    public String toString() {
+        return this.uri != null ? this.uri.toString() : this.toString(this.path);
+    }
+
+    /**
+     * Parses absolute paths and absolute URLs consisting of scheme, host,
+     * optional port and path only.
+     *
+     * @return The parsed URI or <code>null</code> if the URI has to be parsed
+     *         by {@link URI}.
+     */
+    private static ParsedURI parseSimple(final String original) {
+        final int length = original.length();
+        // leading or trailing white space and delimiters are handled by URI
+        if (length == 0 || original.charAt(0) <= ' ' || original.charAt(length - 1) <= ' '
+            || URI.delims.get(original.charAt(0))) {
+            return null;
+        }
+
+        int schemeEnd = -1;
+        int pathStart = 0;
+        if (original.charAt(0) != '/') {
+            // scheme "://"
+            for (int i = 0; i < length; i++) {
+                final char c = original.charAt(i);
+                if (c == ':') {
+                    schemeEnd = i;
+                    break;
+                }
+                if (c >= SCHEME.length || !SCHEME[c]) {
+                    return null;
+                }
+            }
+            if (schemeEnd <= 0 || !original.startsWith("//", schemeEnd + 1)) {
+                return null;
+            }
+            pathStart = original.indexOf('/', schemeEnd + 3);
+            if (pathStart < 0) {
+                // no path
+                return null;
+            }
+        } else if (length > 1 && original.charAt(1) == '/') {
+            // network path without scheme
+            return null;
+        }
+
+        // the path must not contain a query, a fragment or characters
+        // which do not survive escaping and unescaping unchanged
+        for (int i = pathStart; i < length; i++) {
+            final char c = original.charAt(i);
+            if (c == '?' || c == '#' || isSurrogate(c)) {
+                return null;
+            }
+        }
+        final String path = pathStart == 0 ? original : original.substring(pathStart);
+        if (schemeEnd < 0) {
+            return new ParsedURI(null, null, null, -1, path);
+        }
+
+        // server based authority: host [ ":" port ]
+        final int authorityStart = schemeEnd + 3;
+        int hostEnd = authorityStart;
+        while (hostEnd < pathStart && original.charAt(hostEnd) != ':') {
+            final char c = original.charAt(hostEnd);
+            if (c >= HOST.length || !HOST[c]) {
+                return null;
+            }
+            hostEnd++;
+        }
+        if (hostEnd == authorityStart) {
+            return null;
+        }
+        int port = -1;
+        if (hostEnd + 1 < pathStart) {
+            final int portLength = pathStart - hostEnd - 1;
+            if (portLength > 9) {
+                return null;
+            }
+            port = 0;
+            for (int i = hostEnd + 1; i < pathStart; i++) {
+                final char c = original.charAt(i);
+                if (c < '0' || c > '9') {
+                    return null;
+                }
+                port = port * 10 + (c - '0');
+            }
+        }
+
+        final String host = original.substring(authorityStart, hostEnd);
+        final String authority;
+        if (port == -1) {
+            authority = host;
+        } else if (original.charAt(hostEnd + 1) != '0') {
+            authority = original.substring(authorityStart, pathStart);
+        } else {
+            // drop leading zeros of the port
+            authority = host + ':' + port;
+        }
+
+        String scheme = original.substring(0, schemeEnd).toLowerCase();
+        for (int i = 0; i < scheme.length(); i++) {
+            final char c = scheme.charAt(i);
+            if (c >= SCHEME.length || !SCHEME[c]) {
+                return null;
+            }
+        }
+        return new ParsedURI(scheme, authority, host, port, path);
+    }
+
+    /**
+     * Appends the path escaping all characters not allowed in an absolute
+     * path. Characters outside of US-ASCII are escaped as UTF-8 bytes.
+     */
+    private static void appendEscapedPath(final StringBuilder buf, final String path) {
+        final int length = path.length();
+        for (int i = 0; i < length; i++) {
+            final char c = path.charAt(i);
+            if (c < ALLOWED_PATH.length && ALLOWED_PATH[c]) {
+                buf.append(c);
+            } else if (c < 0x80) {
+                appendEscaped(buf, c);
+            } else if (c < 0x800) {
+                appendEscaped(buf, 0xC0 | (c >> 6));
+                appendEscaped(buf, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                && Character.isLowSurrogate(path.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(c, path.charAt(++i));
+                appendEscaped(buf, 0xF0 | (cp >> 18));
+                appendEscaped(buf, 0x80 | ((cp >> 12) & 0x3F));
+                appendEscaped(buf, 0x80 | ((cp >> 6) & 0x3F));
+                appendEscaped(buf, 0x80 | (cp & 0x3F));
+            } else if (isSurrogate(c)) {
+                // unpaired surrogates are encoded as '?', as String.getBytes does
+                appendEscaped(buf, '?');
+            } else {
+                appendEscaped(buf, 0xE0 | (c >> 12));
+                appendEscaped(buf, 0x80 | ((c >> 6) & 0x3F));
+                appendEscaped(buf, 0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static void appendEscaped(final StringBuilder buf, final int b) {
+        buf.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+
+    private static boolean isSurrogate(final char c) {
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+
+    private static boolean[] toTable(final BitSet set) {
+        final boolean[] table = new boolean[128];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = set.get(i);
+        }
+        return table;
+    }
+}
@@ -32,6 +32,7 @@ import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceProvider;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.SyntheticResource;
+import org.apache.sling.resourceresolver.impl.tree.CompiledProviderTree;
 import org.apache.sling.resourceresolver.impl.tree.ProviderHandler;
 import org.apache.sling.resourceresolver.impl.tree.ResourceProviderEntry;
 import org.apache.sling.resourceresolver.impl.tree.RootResourceProviderEntry;
@@ -283,24 +284,20 @@ public class ResourceIterator implements Iterator<Resource> {
             final Set<ProviderHandler> providers) {
 
         // collect providers along the ancestor path segements
-        final String[] elements = ResourceProviderEntry.split(path);
-        ResourceProviderEntry base = rootProviderEntry;
-        for (final String element : elements) {
-            if (base.containsKey(element)) {
-                base = base.get(element);
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Loading from {}  {} ", element,
-                            base.getResourceProviders().length);
-                }
-                for (final ProviderHandler rp : base.getResourceProviders()) {
-                    LOGGER.debug("Adding {} for {} ", rp, path);
-                    providers.add(rp);
-                }
-            } else {
-                LOGGER.debug("No container for {} ", element);
-                base = null;
-                break;
-            }
+        final CompiledProviderTree.Node node = rootProviderEntry.getCompiledTree().find(path);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Loading from {}  {} ", node, node.getTopDownProviders().length);
+        }
+        for (final ProviderHandler rp : node.getTopDownProviders()) {
+            LOGGER.debug("Adding {} for {} ", rp, path);
+            providers.add(rp);
+        }
+        final ResourceProviderEntry base;
+        if (node.getDepth() == CompiledProviderTree.countSegments(path)) {
+            base = node.getEntry();
+        } else {
+            LOGGER.debug("No container for {} ", path);
+            base = null;
         }
 
         // add in providers at this node in the tree, ie the root provider
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The <code>ResourceLookupCache</code> remembers the paths for which a
+ * resource resolver could not find a resource, so that repeated lookups of
+ * the same missing path do not need to ask the resource providers again.
+ * <p>
+ * Only failed lookups are cached: a resource instance carries request specific
+ * metadata and can therefore not be handed out more than once. The cache is
+ * bounded and evicts the least recently used path once it is full. It is
+ * cleared by the resource resolver's own changes and refreshes only, changes
+ * made without the resource resolver are not seen until then.
+ * <p>
+ * Like a resource resolver itself, this class is not thread safe.
+ */
+public class ResourceLookupCache {
+
+    /** Marker for lookups done through resolve, which may differ from getResource. */
+    private static final char RESOLVE_PREFIX = 'r';
+
+    private static final char GET_PREFIX = 'g';
+
+    private final Map<String, Boolean> missing;
+
+    private long hits;
+
+    private long misses;
+
+    public ResourceLookupCache(final int maxSize) {
+        this.missing = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Checks whether a lookup of the path is known to fail and updates the
+     * hit and miss counters accordingly.
+     * @param path The absolute path
+     * @param isResolve Whether the lookup is done for resolving
+     * @return <code>true</code> if there is no resource at the path
+     */
+    public boolean isMissing(final String path, final boolean isResolve) {
+        if (this.missing.get(key(path, isResolve)) != null) {
+            this.hits++;
+            return true;
+        }
+        this.misses++;
+        return false;
+    }
+
+    /**
+     * Remembers that there is no resource at the path.
+     * @param path The absolute path
+     * @param isResolve Whether the lookup has been done for resolving
+     */
+    public void setMissing(final String path, final boolean isResolve) {
+        this.missing.put(key(path, isResolve), Boolean.TRUE);
+    }
+
+    /**
+     * Forgets all failed lookups, e.g. after the resource resolver has
+     * been changed or refreshed.
+     */
+    public void clear() {
+        this.missing.clear();
+    }
+
+    public int size() {
+        return this.missing.size();
+    }
+
+    /**
+     * Returns the number of lookups answered by this cache.
+     */
+    public long getHitCount() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of lookups which had to ask the resource providers.
+     */
+    public long getMissCount() {
+        return this.misses;
+    }
+
+    private static String key(final String path, final boolean isResolve) {
+        return (isResolve ? RESOLVE_PREFIX : GET_PREFIX) + path;
+    }
+}
@@ -44,6 +44,12 @@ public interface MapConfigurationProvider extends ResourceResolverFactory {
     
     int getVanityBloomFilterMaxBytes();
 
+    boolean isVanityPathStoreEnabled();
+
+    boolean isBackgroundMappingLoadEnabled();
+
+    int getBackgroundMappingLoadRetries();
+
     boolean isOptimizeAliasResolutionEnabled();
     
     boolean hasVanityPathPrecedence();
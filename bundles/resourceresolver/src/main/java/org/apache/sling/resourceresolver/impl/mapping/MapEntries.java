@@ -46,6 +46,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
 import javax.servlet.http.HttpServletResponse;
 import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.LoginException;
@@ -86,6 +88,13 @@ public class MapEntries implements EventHandler {
     
     private static final int VANITY_BLOOM_FILTER_MAX_ENTRIES = 10000000;
 
+    private static final String VANITY_PATH_STORE_NAME = "vanityPaths";
+
+    private static final int VANITY_PATH_STORE_COMPACTION_THRESHOLD = 10000;
+
+    /** Maximum number of events queued while loading in the background */
+    static final int MAX_PENDING_EVENTS = 10000;
+
     /** Key for the global list. */
     private static final String GLOBAL_LIST_KEY = "*";
 
@@ -108,6 +117,9 @@ public class MapEntries implements EventHandler {
 
     private Map<String, List<MapEntry>> resolveMapsMap;
 
+    /** prefix index over the global resolve map list */
+    private volatile ResolveMapIndex resolveMapIndex;
+
     private Collection<MapEntry> mapMaps;
 
     private Map <String,List <String>> vanityTargets;
@@ -121,6 +133,37 @@ public class MapEntries implements EventHandler {
     private final ReentrantLock initializing = new ReentrantLock();
 
     private final boolean enabledVanityPaths;
+
+    private final boolean enabledVanityPathStore;
+
+    private final boolean backgroundLoad;
+
+    /** how often loading in the background is restarted on too many events */
+    private final int backgroundLoadRetries;
+
+    /** whether aliases and vanity paths are still loaded in the background */
+    private volatile boolean loading;
+
+    private volatile boolean aliasesLoaded;
+
+    private volatile boolean vanityPathsLoaded;
+
+    private final AtomicLong aliasResourceCount = new AtomicLong(0);
+
+    private final AtomicLong vanityPathResourceCount = new AtomicLong(0);
+
+    /** events received while loading in the background */
+    private final List<Event> pendingEvents = new ArrayList<Event>();
+
+    /** whether more than the maximum number of events has been received while loading */
+    private boolean pendingEventsOverflow;
+
+    /** the maximum number of events queued while loading, no limit for the last attempt */
+    private int maxPendingEvents = MAX_PENDING_EVENTS;
+
+    private Thread loaderThread;
+
+    private ServiceRegistration mbeanRegistration;
     
     private final long maxCachedVanityPathEntries;
     
@@ -142,6 +185,10 @@ public class MapEntries implements EventHandler {
 
     private boolean updateBloomFilterFile = false;
 
+    private final File vanityPathStoreDirectory;
+
+    private VanityPathStore vanityPathStore;
+
     @SuppressWarnings("unchecked")
     private MapEntries() {
         this.factory = null;
@@ -155,6 +202,11 @@ public class MapEntries implements EventHandler {
         this.registration = null;
         this.eventAdmin = null;
         this.enabledVanityPaths = true;
+        this.enabledVanityPathStore = false;
+        this.backgroundLoad = false;
+        this.backgroundLoadRetries = 0;
+        this.aliasesLoaded = true;
+        this.vanityPathsLoaded = true;
         this.maxCachedVanityPathEntries = -1;
         this.vanityBloomFilterMaxBytes = 0;
         this.enableOptimizeAliasResolution = true;
@@ -162,6 +214,7 @@ public class MapEntries implements EventHandler {
         this.vanityPathPrecedence = false;
         this.vanityCounter = new AtomicLong(0);
         this.vanityBloomFilterFile = null;
+        this.vanityPathStoreDirectory = null;
     }
 
     @SuppressWarnings("unchecked")
@@ -171,10 +224,15 @@ public class MapEntries implements EventHandler {
         this.factory = factory;
         this.mapRoot = factory.getMapRoot();
         this.enabledVanityPaths = factory.isVanityPathEnabled();
+        this.enabledVanityPathStore = factory.isVanityPathStoreEnabled();
+        this.backgroundLoad = factory.isBackgroundMappingLoadEnabled();
+        this.backgroundLoadRetries = factory.getBackgroundMappingLoadRetries();
+        this.loading = this.backgroundLoad;
         this.maxCachedVanityPathEntries = factory.getMaxCachedVanityPathEntries();
         this.vanityBloomFilterMaxBytes = factory.getVanityBloomFilterMaxBytes();
         this.vanityPathConfig = factory.getVanityPathConfig();
         this.enableOptimizeAliasResolution = factory.isOptimizeAliasResolutionEnabled();
+        this.aliasesLoaded = !this.enableOptimizeAliasResolution;
         this.vanityPathPrecedence = factory.hasVanityPathPrecedence();
         this.eventAdmin = eventAdmin;
 
@@ -194,7 +252,140 @@ public class MapEntries implements EventHandler {
         
         this.vanityCounter = new AtomicLong(0);
         this.vanityBloomFilterFile = bundleContext.getDataFile(VANITY_BLOOM_FILTER_NAME);
-        initializeVanityPaths();
+        this.vanityPathStoreDirectory = this.enabledVanityPathStore ? bundleContext.getDataFile(VANITY_PATH_STORE_NAME) : null;
+
+        try {
+            final Dictionary<String, String> mbeanProps = new Hashtable<String, String>();
+            mbeanProps.put("jmx.objectname", "org.apache.sling:type=resourceResolver,service=MapEntries");
+            this.mbeanRegistration = bundleContext.registerService(MapEntriesMBean.class.getName(),
+                    new MapEntriesMBeanImpl(), mbeanProps);
+        } catch (final Throwable t) {
+            log.debug("Unable to register mbean", t);
+        }
+
+        if (this.backgroundLoad) {
+            this.loaderThread = new Thread(new Runnable() {
+                public void run() {
+                    loadInBackground();
+                }
+            }, "Apache Sling Resource Resolver Mapping Loader");
+            this.loaderThread.setDaemon(true);
+            this.loaderThread.start();
+        } else {
+            initializeVanityPaths();
+        }
+    }
+
+    /**
+     * Loads the aliases and the vanity paths in the background. Until loading
+     * has finished, lookups fall back to repository queries and received
+     * events are queued. Once everything is loaded, the queued events are
+     * applied and the loaded maps are used for lookups. If more than
+     * {@link #MAX_PENDING_EVENTS} events are received while loading, the
+     * queued events are dropped and everything is loaded again. This is
+     * retried at most the configured number of times; during the last
+     * attempt all received events are queued and applied afterwards, so
+     * that loading finishes even under a steady stream of changes.
+     */
+    private void loadInBackground() {
+        int retries = 0;
+        if (this.backgroundLoadRetries <= 0) {
+            synchronized (this.pendingEvents) {
+                this.maxPendingEvents = Integer.MAX_VALUE;
+            }
+        }
+        while (true) {
+            final long start = System.currentTimeMillis();
+            boolean failed = false;
+            try {
+                if (this.enableOptimizeAliasResolution) {
+                    this.initializing.lock();
+                    try {
+                        final ResourceResolver resolver = this.resolver;
+                        if (resolver != null) {
+                            final Map<String, Map<String, String>> aliasMap = this.loadAliases(resolver);
+                            if (!Thread.currentThread().isInterrupted()) {
+                                this.aliasMap = aliasMap;
+                                this.aliasesLoaded = true;
+                            }
+                        }
+                    } finally {
+                        this.initializing.unlock();
+                    }
+                }
+
+                if (!Thread.currentThread().isInterrupted()) {
+                    initializeVanityPaths();
+                }
+            } catch (final Exception e) {
+                log.error("Unexpected problem while loading aliases and vanity paths; falling back to repository lookups", e);
+                failed = true;
+            }
+
+            if (Thread.currentThread().isInterrupted()) {
+                log.debug("Loading aliases and vanity paths has been stopped");
+                return;
+            }
+            if (!failed) {
+                log.info("Loaded {} aliases and {} vanity path resources in {}ms", new Object[] {
+                        this.aliasResourceCount.get(), this.vanityPathResourceCount.get(),
+                        System.currentTimeMillis() - start });
+            }
+
+            synchronized (this.pendingEvents) {
+                if (failed || !this.pendingEventsOverflow) {
+                    if (this.resolver != null) {
+                        for (final Event event : this.pendingEvents) {
+                            this.processEvent(event);
+                        }
+                    }
+                    this.pendingEvents.clear();
+                    this.pendingEventsOverflow = false;
+                    this.loading = false;
+                    break;
+                }
+                this.pendingEventsOverflow = false;
+                retries++;
+                if (retries >= this.backgroundLoadRetries) {
+                    log.info("Received more than {} events while loading aliases and vanity paths, loading them a last time " +
+                            "and applying all events received meanwhile", MAX_PENDING_EVENTS);
+                    this.maxPendingEvents = Integer.MAX_VALUE;
+                } else {
+                    log.info("Received more than {} events while loading aliases and vanity paths, loading them again",
+                            MAX_PENDING_EVENTS);
+                }
+            }
+            this.resetLoadedMaps();
+        }
+        sendChangeEvent();
+    }
+
+    /**
+     * Discards the loaded aliases and vanity paths before loading them again.
+     * Until they are loaded, lookups fall back to repository queries.
+     */
+    private void resetLoadedMaps() {
+        this.initializing.lock();
+        try {
+            this.aliasesLoaded = !this.enableOptimizeAliasResolution;
+            this.vanityPathsLoaded = false;
+            this.aliasResourceCount.set(0);
+            this.vanityPathResourceCount.set(0);
+            this.vanityCounter.set(0);
+            if (this.vanityPathStore != null) {
+                final VanityPathStore store = this.vanityPathStore;
+                this.vanityPathStore = null;
+                store.close();
+            }
+            // the bloom filter misses the vanity paths of the dropped events
+            this.vanityBloomFilter = null;
+            if (this.vanityBloomFilterFile != null) {
+                this.vanityBloomFilterFile.delete();
+            }
+        } finally {
+            this.initializing.unlock();
+        }
+        doInit();
     }
 
     /**
@@ -215,9 +406,10 @@ public class MapEntries implements EventHandler {
             final Map<String, List<MapEntry>> newResolveMapsMap = new ConcurrentHashMap<String, List<MapEntry>>();  
             
             //optimization made in SLING-2521
-            if (enableOptimizeAliasResolution){
+            if (enableOptimizeAliasResolution && !backgroundLoad){
                 final Map<String, Map<String, String>> aliasMap = this.loadAliases(resolver);
                 this.aliasMap = aliasMap;
+                this.aliasesLoaded = true;
             }
 
             this.resolveMapsMap = newResolveMapsMap; 
@@ -246,7 +438,29 @@ public class MapEntries implements EventHandler {
     protected void initializeVanityPaths() throws IOException {
         this.initializing.lock();
         try {
-            if (this.enabledVanityPaths) {
+            if (this.enabledVanityPaths && this.enabledVanityPathStore) {
+
+                if (vanityPathStoreDirectory == null) {
+                    throw new RuntimeException(
+                            "This platform does not have file system support");
+                }
+                vanityPathStoreDirectory.mkdirs();
+                vanityPathStore = new VanityPathStore(vanityPathStoreDirectory, VANITY_PATH_STORE_COMPACTION_THRESHOLD);
+                if (vanityPathStore.isValid(this.getVanityPathStoreConfiguration())) {
+                    log.info("Reusing vanity path store in {}", vanityPathStoreDirectory.getAbsolutePath());
+                } else {
+                    if (vanityPathStore.isExisting()) {
+                        // the store has not been closed cleanly or for another
+                        // configuration: lookups use it while it is revalidated
+                        log.info("Revalidating vanity path store in {}", vanityPathStoreDirectory.getAbsolutePath());
+                        this.vanityPathsLoaded = true;
+                    } else {
+                        log.debug("creating vanity path store in {}", vanityPathStoreDirectory.getAbsolutePath());
+                    }
+                    vanityPathStore.reset(this.loadVanityPathEntries(resolver));
+                }
+
+            } else if (this.enabledVanityPaths) {
 
                 if (vanityBloomFilterFile == null) {
                     throw new RuntimeException(
@@ -274,20 +488,38 @@ public class MapEntries implements EventHandler {
 
                 // task for persisting the bloom filter every minute (if changes
                 // exist)
-                timer = new Timer();
-                timer.schedule(new BloomFilterTask(), 60 * 1000);
+                if (timer == null) {
+                    timer = new Timer();
+                    timer.schedule(new BloomFilterTask(), 60 * 1000);
+                }
 
                 final Map<String, List<String>> vanityTargets = this
                         .loadVanityPaths(resolver, resolveMapsMap,
                                 createVanityBloomFilter);
                 this.vanityTargets = vanityTargets;
             }
+            this.vanityPathsLoaded = true;
         } finally {
             this.initializing.unlock();
         }
 
     }
 
+    /**
+     * Returns the configuration the content of the vanity path store
+     * depends on, a store filled for another configuration is not reused.
+     */
+    private String getVanityPathStoreConfiguration() {
+        if (this.vanityPathConfig == null) {
+            return "*";
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (final VanityPathConfig config : this.vanityPathConfig) {
+            sb.append(config.isExclude ? '-' : '+').append(config.prefix).append('\n');
+        }
+        return sb.toString();
+    }
+
     private boolean doNodeAdded(String path, boolean refreshed) {
         this.initializing.lock();
         boolean newRefreshed = refreshed;
@@ -444,11 +676,26 @@ public class MapEntries implements EventHandler {
         // sort global list and add to map
         Collections.sort(globalResolveMap);
         resolveMapsMap.put(GLOBAL_LIST_KEY, globalResolveMap);
+        this.resolveMapIndex = new ResolveMapIndex(globalResolveMap);
         this.mapMaps = Collections.unmodifiableSet(new TreeSet<MapEntry>(newMapMaps.values()));
     }
 
     private void doAddVanity(String path) {
         Resource resource = resolver.getResource(path);
+        if (vanityPathStore != null) {
+            if (resource != null) {
+                final List<String[]> entries = new ArrayList<String[]>();
+                collectVanityPathEntries(resource, entries);
+                try {
+                    for (final String[] entry : entries) {
+                        vanityPathStore.add(entry[0], entry[1]);
+                    }
+                } catch (final IOException ioe) {
+                    log.error("Error while adding vanity path of " + path + " to the vanity path store", ioe);
+                }
+            }
+            return;
+        }
         if (maxCachedVanityPathEntries < vanityCounter.longValue()) {
             // fill up the cache and the bloom filter
             loadVanityPath(resource, resolveMapsMap, vanityTargets, true, true);
@@ -467,6 +714,14 @@ public class MapEntries implements EventHandler {
 
     private void doRemoveVanity(String path) {
         String actualContentPath = getActualContentPath(path);
+        if (vanityPathStore != null) {
+            try {
+                vanityPathStore.removeTarget(actualContentPath);
+            } catch (final IOException ioe) {
+                log.error("Error while removing vanity path of " + path + " from the vanity path store", ioe);
+            }
+            return;
+        }
         List <String> l = vanityTargets.get(actualContentPath);
         if (l != null){
             for (String s : l){
@@ -607,24 +862,68 @@ public class MapEntries implements EventHandler {
         }
     }
 
+    /**
+     * Returns <code>true</code> if the alias map is used for alias lookups.
+     * While the aliases are loaded in the background, this returns
+     * <code>false</code> so that aliases are read from the resources.
+     */
     public boolean isOptimizeAliasResolutionEnabled() {
-        return this.enableOptimizeAliasResolution;
+        return this.enableOptimizeAliasResolution && this.aliasesLoaded;
+    }
+
+    public boolean isAliasesLoaded() {
+        return this.aliasesLoaded;
+    }
+
+    public boolean isVanityPathsLoaded() {
+        return this.vanityPathsLoaded;
+    }
+
+    public boolean isLoading() {
+        return this.loading;
+    }
+
+    public long getAliasResourceCount() {
+        return this.aliasResourceCount.get();
+    }
+
+    public long getVanityPathResourceCount() {
+        return this.vanityPathResourceCount.get();
     }
 
     /**
      * Cleans up this class.
      */
     public void dispose() {
+        if (this.registration != null) {
+            this.registration.unregister();
+            this.registration = null;
+        }
+
+        if (this.mbeanRegistration != null) {
+            this.mbeanRegistration.unregister();
+            this.mbeanRegistration = null;
+        }
+
+        // stop the loader before closing the store it fills
+        if (this.loaderThread != null) {
+            this.loaderThread.interrupt();
+            try {
+                this.loaderThread.join(10000);
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            if (this.loaderThread.isAlive()) {
+                log.warn("dispose: Loading aliases and vanity paths did not stop within 10 seconds");
+            }
+            this.loaderThread = null;
+        }
+
         try {
             persistBloomFilter();
         } catch (IOException e) {
            log.error("Error while saving bloom filter to disk", e);
         }
-        
-        if (this.registration != null) {
-            this.registration.unregister();
-            this.registration = null;
-        }
 
         /*
          * Cooperation with doInit: The same lock as used by doInit is acquired
@@ -648,6 +947,18 @@ public class MapEntries implements EventHandler {
                 log.warn("dispose: Could not acquire initialization lock within 10 seconds; ongoing intialization may fail");
             }
 
+            if (this.vanityPathStore != null) {
+                // a completely loaded store is reused on the next start
+                if (this.vanityPathsLoaded && !this.loading) {
+                    try {
+                        this.vanityPathStore.markValid(this.getVanityPathStoreConfiguration());
+                    } catch (final IOException ioe) {
+                        log.warn("dispose: Unable to mark the vanity path store as valid", ioe);
+                    }
+                }
+                this.vanityPathStore.close();
+            }
+
             // immediately set the resolver field to null to indicate
             // that we have been disposed (this also signals to the
             // event handler to stop working
@@ -687,6 +998,18 @@ public class MapEntries implements EventHandler {
      * length, we have to create a new list containing all relevant entries.
      */
     public Iterator<MapEntry> getResolveMapsIterator(final String requestPath) {
+        return this.getResolveMapsIterator(requestPath, null);
+    }
+
+    /**
+     * Calculate the resolve maps, looking up the resources listed in the
+     * vanity path store with the given resource resolver.
+     *
+     * @param requestPath The request path
+     * @param lookupResolver The resolver of the request or <code>null</code>
+     *      to use an administrative resolver per lookup
+     */
+    public Iterator<MapEntry> getResolveMapsIterator(final String requestPath, final ResourceResolver lookupResolver) {
         String key = null;
         final int firstIndex = requestPath.indexOf('/');
         final int secondIndex = requestPath.indexOf('/', firstIndex + 1);
@@ -694,7 +1017,15 @@ public class MapEntries implements EventHandler {
             key = requestPath.substring(secondIndex);
         }
 
-        return new MapEntryIterator(key, resolveMapsMap, vanityPathPrecedence);
+        // only the global entries whose literal prefix matches are candidates
+        final List<MapEntry> globalList = this.resolveMapsMap.get(GLOBAL_LIST_KEY);
+        ResolveMapIndex index = this.resolveMapIndex;
+        if (index == null || index.getEntries() != globalList) {
+            index = new ResolveMapIndex(globalList);
+            this.resolveMapIndex = index;
+        }
+
+        return new MapEntryIterator(key, resolveMapsMap, index.getCandidates(requestPath), vanityPathPrecedence, lookupResolver);
     }
 
     public Collection<MapEntry> getMapMaps() {
@@ -708,10 +1039,15 @@ public class MapEntries implements EventHandler {
     /**
      * get the MapEnty containing all the nodes having a specific vanityPath
      */
-    private List<MapEntry> getMapEntryList(String vanityPath){
+    private List<MapEntry> getMapEntryList(String vanityPath, final ResourceResolver lookupResolver){
         List<MapEntry> mapEntries = null;  
         
-        if (BloomFilterUtils.probablyContains(vanityBloomFilter, vanityPath)) {
+        if (vanityPathStore != null) {
+            final List<String> targets = vanityPathStore.getTargets(vanityPath);
+            if (!targets.isEmpty()) {
+                mapEntries = getVanityPaths(vanityPath, targets, lookupResolver).get(vanityPath);
+            }
+        } else if (BloomFilterUtils.probablyContains(vanityBloomFilter, vanityPath)) {
             mapEntries = this.resolveMapsMap.get(vanityPath);
             if (mapEntries == null) {
                 Map<String, List<MapEntry>>  mapEntry = getVanityPaths(vanityPath);
@@ -731,6 +1067,25 @@ public class MapEntries implements EventHandler {
      * appropriate events.
      */
     public void handleEvent(final Event event) {
+        if (this.loading) {
+            synchronized (this.pendingEvents) {
+                if (this.loading) {
+                    // on overflow, the events are dropped and everything
+                    // is loaded again once loading has finished
+                    if (this.pendingEvents.size() < this.maxPendingEvents && !this.pendingEventsOverflow) {
+                        this.pendingEvents.add(event);
+                    } else {
+                        this.pendingEvents.clear();
+                        this.pendingEventsOverflow = true;
+                    }
+                    return;
+                }
+            }
+        }
+        this.processEvent(event);
+    }
+
+    private void processEvent(final Event event) {
 
         // check for path (used for some tests below
         final Object p = event.getProperty(SlingConstants.PROPERTY_PATH);
@@ -753,6 +1108,11 @@ public class MapEntries implements EventHandler {
         //removal of a node is handled differently
         if (SlingConstants.TOPIC_RESOURCE_REMOVED.equals(event.getTopic())) {
             final String actualContentPath = getActualContentPath(path);
+            if (this.vanityPathStore != null) {
+                for (final String target : this.vanityPathStore.getTargetsBelow(actualContentPath)) {
+                    wasResolverRefreshed = doRemoveAttributes(target, new String [] {PROP_VANITY_PATH}, true, wasResolverRefreshed);
+                }
+            }
             for (final String target : this.vanityTargets.keySet()) {
                 if (target.startsWith(actualContentPath)) {
                     wasResolverRefreshed = doRemoveAttributes(path, new String [] {PROP_VANITY_PATH}, true, wasResolverRefreshed);
@@ -819,7 +1179,7 @@ public class MapEntries implements EventHandler {
     }
 
     private boolean isAllVanityPathEntriesCached() {
-        return maxCachedVanityPathEntries == -1;
+        return maxCachedVanityPathEntries == -1 && vanityPathStore == null;
     }
 
     /**
@@ -880,6 +1240,42 @@ public class MapEntries implements EventHandler {
         return entryMap;        
     }
     
+    /**
+     * get the vanity paths from the resources listed in the vanity path store,
+     * using the given resolver or an administrative one if it is <code>null</code>
+     */
+    private Map<String, List<MapEntry>> getVanityPaths(final String vanityPath, final List<String> targets,
+            final ResourceResolver resolver) {
+
+        final Map<String, List<MapEntry>> entryMap = new HashMap<String, List<MapEntry>>();
+        final Map <String, List<String>> targetPaths = new HashMap <String, List<String>>();
+
+        ResourceResolver lookupResolver = resolver;
+
+        try {
+            if (lookupResolver == null) {
+                lookupResolver = factory.getAdministrativeResourceResolver(null);
+            }
+            for (final String target : targets) {
+                // the vanity path is either on the target or its jcr:content;
+                // stale entries of removed resources are simply not found
+                for (final String path : new String[] { target, target + "/jcr:content" }) {
+                    final Resource resource = lookupResolver.getResource(path);
+                    if (resource != null && ResourceUtil.getValueMap(resource).containsKey(PROP_VANITY_PATH)) {
+                        loadVanityPath(resource, entryMap, targetPaths, true, false);
+                    }
+                }
+            }
+        } catch (LoginException e) {
+            log.error("Exception while obtaining lookupResolver", e);
+        } finally {
+            if (lookupResolver != null && lookupResolver != resolver) {
+                lookupResolver.close();
+            }
+        }
+        return entryMap;
+    }
+
     private boolean isValidVanityPath(Resource resource){
         // ignore system tree
         if (resource.getPath().startsWith(JCR_SYSTEM_PREFIX)) {
@@ -1035,9 +1431,10 @@ public class MapEntries implements EventHandler {
         final Map<String, Map<String, String>> map = new ConcurrentHashMap<String, Map<String, String>>();
         final String queryString = "SELECT sling:alias FROM nt:base WHERE sling:alias IS NOT NULL";
         final Iterator<Resource> i = resolver.findResources(queryString, "sql");
-        while (i.hasNext()) {
+        while (i.hasNext() && !Thread.currentThread().isInterrupted()) {
             final Resource resource = i.next();         
             loadAlias(resource, map);
+            aliasResourceCount.incrementAndGet();
         }
         return map;
     }
@@ -1115,8 +1512,10 @@ public class MapEntries implements EventHandler {
         final String queryString = "SELECT sling:vanityPath, sling:redirect, sling:redirectStatus FROM sling:VanityPath WHERE sling:vanityPath IS NOT NULL";
         final Iterator<Resource> i = resolver.findResources(queryString, "sql");
 
-        while (i.hasNext() && (createVanityBloomFilter || maxCachedVanityPathEntries < vanityCounter.longValue())) {
+        while (i.hasNext() && (createVanityBloomFilter || maxCachedVanityPathEntries < vanityCounter.longValue())
+                && !Thread.currentThread().isInterrupted()) {
             final Resource resource = i.next();
+            vanityPathResourceCount.incrementAndGet();
             if (maxCachedVanityPathEntries < vanityCounter.longValue()) {
                 // fill up the cache and the bloom filter
                 loadVanityPath(resource, entryMap, targetPaths, true,
@@ -1134,6 +1533,44 @@ public class MapEntries implements EventHandler {
         return targetPaths;
     }
 
+    /**
+     * Load the vanity path and resource path pairs of all nodes inheriting the
+     * sling:VanityPath mixin for the vanity path store
+     */
+    private List<String[]> loadVanityPathEntries(final ResourceResolver resolver) {
+        final List<String[]> entries = new ArrayList<String[]>();
+        final String queryString = "SELECT sling:vanityPath, sling:redirect, sling:redirectStatus FROM sling:VanityPath WHERE sling:vanityPath IS NOT NULL";
+        final Iterator<Resource> i = resolver.findResources(queryString, "sql");
+        while (i.hasNext() && !Thread.currentThread().isInterrupted()) {
+            collectVanityPathEntries(i.next(), entries);
+            vanityPathResourceCount.incrementAndGet();
+        }
+        return entries;
+    }
+
+    /**
+     * Collect the vanity path and resource path pairs of a resource
+     */
+    private void collectVanityPathEntries(final Resource resource, final List<String[]> entries) {
+        if (!isValidVanityPath(resource)) {
+            return;
+        }
+
+        final ValueMap props = resource.adaptTo(ValueMap.class);
+        final String redirect;
+        if (resource.getName().equals("jcr:content")) {
+            redirect = resource.getParent().getPath();
+        } else {
+            redirect = resource.getPath();
+        }
+        for (final String pVanityPath : props.get(PROP_VANITY_PATH, new String[0])) {
+            final String[] result = this.getVanityPathDefinition(pVanityPath);
+            if (result != null) {
+                entries.add(new String[] { result[1], redirect });
+            }
+        }
+    }
+
     /**
      * Load vanity path given a resource
      */
@@ -1413,10 +1850,16 @@ public class MapEntries implements EventHandler {
         
         private boolean vanityPathPrecedence;
 
-        public MapEntryIterator(final String startKey, final Map<String, List<MapEntry>> resolveMapsMap, final boolean vanityPathPrecedence) {
+        /** resolver for the lookups of the vanity path store, might be <code>null</code> */
+        private final ResourceResolver lookupResolver;
+
+        public MapEntryIterator(final String startKey, final Map<String, List<MapEntry>> resolveMapsMap,
+                final Iterator<MapEntry> globalListIterator, final boolean vanityPathPrecedence,
+                final ResourceResolver lookupResolver) {
             this.key = startKey;
+            this.lookupResolver = lookupResolver;
             this.resolveMapsMap = resolveMapsMap;
-            this.globalListIterator = this.resolveMapsMap.get(GLOBAL_LIST_KEY).iterator();
+            this.globalListIterator = globalListIterator;
             this.vanityPathPrecedence = vanityPathPrecedence;
             this.seek();
         }
@@ -1464,10 +1907,13 @@ public class MapEntries implements EventHandler {
                     }
                     
                     final List<MapEntry> special;
-                    if (MapEntries.this.isAllVanityPathEntriesCached()) {
+                    if (MapEntries.this.enabledVanityPaths && !MapEntries.this.vanityPathsLoaded) {
+                        // still loading, query the repository
+                        special = MapEntries.this.getVanityPaths(key).get(key);
+                    } else if (MapEntries.this.isAllVanityPathEntriesCached()) {
                         special = this.resolveMapsMap.get(key);
                     } else {
-                        special = MapEntries.this.getMapEntryList(key)
+                        special = MapEntries.this.getMapEntryList(key, this.lookupResolver)
 ;                    }
                     if (special != null) {
                         specialIterator = special.iterator();
@@ -1536,6 +1982,39 @@ public class MapEntries implements EventHandler {
         return mapEntry;
     }
     
+    final class MapEntriesMBeanImpl extends StandardMBean implements MapEntriesMBean {
+
+        MapEntriesMBeanImpl() throws NotCompliantMBeanException {
+            super(MapEntriesMBean.class);
+        }
+
+        public boolean isLoading() {
+            return MapEntries.this.isLoading();
+        }
+
+        public boolean isAliasesLoaded() {
+            return MapEntries.this.isAliasesLoaded();
+        }
+
+        public boolean isVanityPathsLoaded() {
+            return MapEntries.this.isVanityPathsLoaded();
+        }
+
+        public long getAliasResourceCount() {
+            return MapEntries.this.getAliasResourceCount();
+        }
+
+        public long getVanityPathResourceCount() {
+            return MapEntries.this.getVanityPathResourceCount();
+        }
+
+        public int getPendingEventCount() {
+            synchronized (MapEntries.this.pendingEvents) {
+                return MapEntries.this.pendingEvents.size();
+            }
+        }
+    }
+
     final class BloomFilterTask extends TimerTask {
         @Override
         public void run() {
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+/**
+ * This is the management interface for the loading state of the aliases
+ * and vanity paths held by the {@link MapEntries}.
+ */
+public interface MapEntriesMBean {
+
+    /**
+     * Whether the aliases and vanity paths are still loaded in the background
+     *
+     * @return <code>true</code> while loading
+     */
+    boolean isLoading();
+
+    /**
+     * Whether the aliases have been loaded and the alias map is used
+     *
+     * @return <code>true</code> if the aliases are loaded
+     */
+    boolean isAliasesLoaded();
+
+    /**
+     * Whether the vanity paths have been loaded
+     *
+     * @return <code>true</code> if the vanity paths are loaded
+     */
+    boolean isVanityPathsLoaded();
+
+    /**
+     * Get the number of resources with an alias read so far
+     *
+     * @return the number of alias resources
+     */
+    long getAliasResourceCount();
+
+    /**
+     * Get the number of resources with a vanity path read so far
+     *
+     * @return the number of vanity path resources
+     */
+    long getVanityPathResourceCount();
+
+    /**
+     * Get the number of resource change events queued while loading
+     *
+     * @return the number of pending events
+     */
+    int getPendingEventCount();
+}
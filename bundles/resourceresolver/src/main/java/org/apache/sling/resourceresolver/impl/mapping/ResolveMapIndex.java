@@ -0,0 +1,330 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The <code>ResolveMapIndex</code> is an immutable prefix trie over the
+ * literal start of the regular expressions of a sorted list of
+ * {@link MapEntry} instances.
+ * <p>
+ * Instead of testing every regular expression against a request path, the
+ * index only returns those entries whose literal prefix is a prefix of the
+ * request path. Entries without a usable literal prefix are always returned.
+ * The entries are returned in the order of the list the index has been built
+ * from, so the candidates can be used as a drop-in replacement for iterating
+ * over the complete list.
+ * <p>
+ * An unescaped <code>.</code> in the prefix is indexed as a wildcard matching
+ * any single character. Entries starting with {@link MapEntries#ANY_SCHEME_HOST}
+ * are indexed by the literal path following the scheme and host part and
+ * matched against the path part of the request path.
+ */
+final class ResolveMapIndex {
+
+    /** Token used for an unescaped <code>.</code> in a prefix. */
+    private static final int ANY_CHAR = -1;
+
+    private static final String ANY_SCHEME_HOST_PREFIX = "^" + MapEntries.ANY_SCHEME_HOST;
+
+    private final List<MapEntry> entries;
+
+    private final MapEntry[] entryArray;
+
+    /** entries which must be tested for any request path */
+    private final BitSet unindexed;
+
+    /** entries indexed by the prefix of the complete request path */
+    private final Node uriRoot;
+
+    /** entries indexed by the prefix of the path after scheme and host */
+    private final Node pathRoot;
+
+    ResolveMapIndex(final List<MapEntry> entries) {
+        this.entries = entries;
+        this.entryArray = entries.toArray(new MapEntry[entries.size()]);
+        this.unindexed = new BitSet(this.entryArray.length);
+        this.uriRoot = new Node();
+        this.pathRoot = new Node();
+
+        for (int i = 0; i < this.entryArray.length; i++) {
+            final String pattern = this.entryArray[i].getPattern();
+            if (pattern.startsWith(ANY_SCHEME_HOST_PREFIX)) {
+                final int[] tokens = getPrefixTokens(pattern, ANY_SCHEME_HOST_PREFIX.length());
+                // only a prefix starting with a slash is hooked to the path part
+                if (tokens.length > 0 && tokens[0] == '/') {
+                    this.pathRoot.add(tokens, 0, i);
+                } else {
+                    this.unindexed.set(i);
+                }
+            } else {
+                final int start = pattern.startsWith("^") ? 1 : 0;
+                final int[] tokens = getPrefixTokens(pattern, start);
+                if (tokens.length > 0) {
+                    this.uriRoot.add(tokens, 0, i);
+                } else {
+                    this.unindexed.set(i);
+                }
+            }
+        }
+        this.uriRoot.seal();
+        this.pathRoot.seal();
+    }
+
+    /**
+     * Returns the list of entries this index has been built from.
+     */
+    List<MapEntry> getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * Returns an iterator over all entries which may match the given request
+     * path of the form <code>{scheme}/{host}.{port}{path}</code>, in the order
+     * of the indexed list.
+     */
+    Iterator<MapEntry> getCandidates(final String requestPath) {
+        final BitSet candidates = (BitSet) this.unindexed.clone();
+        this.uriRoot.collect(requestPath, 0, candidates);
+
+        final int firstIndex = requestPath.indexOf('/');
+        final int secondIndex = requestPath.indexOf('/', firstIndex + 1);
+        if (firstIndex > 0 && secondIndex > firstIndex + 1) {
+            this.pathRoot.collect(requestPath, secondIndex, candidates);
+        }
+
+        return new CandidateIterator(this.entryArray, candidates);
+    }
+
+    /**
+     * Returns the literal prefix of the regular expression starting at the
+     * given index as an array of characters, where {@link #ANY_CHAR} stands for
+     * an unescaped <code>.</code>. If no literal prefix can safely be
+     * determined, an empty array is returned.
+     */
+    static int[] getPrefixTokens(final String pattern, final int start) {
+        if (hasTopLevelAlternation(pattern)) {
+            return new int[0];
+        }
+
+        final int[] tokens = new int[pattern.length() - start];
+        int count = 0;
+        int i = start;
+        parse: while (i < pattern.length()) {
+            final char c = pattern.charAt(i);
+            switch (c) {
+                case '\\':
+                    if (i + 1 >= pattern.length()) {
+                        break parse;
+                    }
+                    final char escaped = pattern.charAt(i + 1);
+                    if (Character.isLetterOrDigit(escaped)) {
+                        // character class, back reference, quotation, ...
+                        break parse;
+                    }
+                    tokens[count++] = escaped;
+                    i += 2;
+                    break;
+
+                case '.':
+                    tokens[count++] = ANY_CHAR;
+                    i++;
+                    break;
+
+                case '*':
+                case '?':
+                case '{':
+                    // the previous token is optional or repeated
+                    if (count > 0) {
+                        count--;
+                    }
+                    break parse;
+
+                case '+':
+                case '[':
+                case '(':
+                case '^':
+                case '$':
+                case '|':
+                case ')':
+                case ']':
+                case '}':
+                    break parse;
+
+                default:
+                    tokens[count++] = c;
+                    i++;
+            }
+        }
+
+        return Arrays.copyOf(tokens, count);
+    }
+
+    /**
+     * Returns <code>true</code> if the pattern contains an alternation which
+     * is not enclosed in a group, in which case the prefix does not apply to
+     * the whole expression.
+     */
+    private static boolean hasTopLevelAlternation(final String pattern) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                }
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A node of the prefix trie. While building, children are kept in a list,
+     * {@link #seal()} converts them into sorted arrays for the lookup.
+     */
+    private static final class Node {
+
+        private List<Node> childList = new ArrayList<Node>();
+
+        private char[] keys;
+
+        private Node[] children;
+
+        private char key;
+
+        private Node anyChild;
+
+        private int[] entries = new int[0];
+
+        void add(final int[] tokens, final int pos, final int entry) {
+            if (pos == tokens.length) {
+                this.entries = Arrays.copyOf(this.entries, this.entries.length + 1);
+                this.entries[this.entries.length - 1] = entry;
+                return;
+            }
+
+            final int token = tokens[pos];
+            Node child;
+            if (token == ANY_CHAR) {
+                if (this.anyChild == null) {
+                    this.anyChild = new Node();
+                }
+                child = this.anyChild;
+            } else {
+                child = null;
+                for (final Node candidate : this.childList) {
+                    if (candidate.key == token) {
+                        child = candidate;
+                        break;
+                    }
+                }
+                if (child == null) {
+                    child = new Node();
+                    child.key = (char) token;
+                    this.childList.add(child);
+                }
+            }
+            child.add(tokens, pos + 1, entry);
+        }
+
+        void seal() {
+            final Node[] sorted = this.childList.toArray(new Node[this.childList.size()]);
+            Arrays.sort(sorted, new Comparator<Node>() {
+                public int compare(final Node o1, final Node o2) {
+                    return o1.key - o2.key;
+                }
+            });
+            this.children = sorted;
+            this.keys = new char[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                this.keys[i] = sorted[i].key;
+                sorted[i].seal();
+            }
+            this.childList = null;
+            if (this.anyChild != null) {
+                this.anyChild.seal();
+            }
+        }
+
+        void collect(final String path, final int pos, final BitSet candidates) {
+            for (final int entry : this.entries) {
+                candidates.set(entry);
+            }
+            if (pos < path.length()) {
+                final int idx = Arrays.binarySearch(this.keys, path.charAt(pos));
+                if (idx >= 0) {
+                    this.children[idx].collect(path, pos + 1, candidates);
+                }
+                if (this.anyChild != null) {
+                    this.anyChild.collect(path, pos + 1, candidates);
+                }
+            }
+        }
+    }
+
+    private static final class CandidateIterator implements Iterator<MapEntry> {
+
+        private final MapEntry[] entries;
+
+        private final BitSet candidates;
+
+        private int next;
+
+        CandidateIterator(final MapEntry[] entries, final BitSet candidates) {
+            this.entries = entries;
+            this.candidates = candidates;
+            this.next = candidates.nextSetBit(0);
+        }
+
+        public boolean hasNext() {
+            return this.next >= 0;
+        }
+
+        public MapEntry next() {
+            if (this.next < 0) {
+                throw new NoSuchElementException();
+            }
+            final MapEntry result = this.entries[this.next];
+            this.next = this.candidates.nextSetBit(this.next + 1);
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
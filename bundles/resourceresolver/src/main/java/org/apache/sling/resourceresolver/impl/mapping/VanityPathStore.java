@@ -0,0 +1,808 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.FilenameFilter;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>VanityPathStore</code> keeps the vanity path to resource path
+ * relation off heap in a memory mapped file in the bundle data area.
+ * <p>
+ * The store consists of a sorted, immutable segment file which is mapped into
+ * memory and searched with a binary search, plus an append-only journal of
+ * additions and removals since the segment has been written. The journal is
+ * kept in memory as a small delta and merged into a new segment once it
+ * exceeds the compaction threshold. For each vanity path, a reverse entry from
+ * the resource path to the vanity path is stored as well, so that all vanity
+ * paths of a resource can be removed without scanning the store.
+ * <p>
+ * Each compaction writes a segment file with the next generation number. A
+ * replaced segment may still be read by concurrent lookups and stays mapped
+ * until its buffer is garbage collected, so its file is only deleted once the
+ * buffer is gone.
+ * <p>
+ * A store which has been closed with {@link #markValid(String)} is valid on
+ * the next start for the same configuration and does not need to be filled
+ * again. The marker is removed when the store is opened, so a store which
+ * has not been closed cleanly is never valid.
+ * <p>
+ * Lookups are not synchronized; all modifications must be done by a single
+ * thread at a time, which is ensured by the {@link MapEntries} update lock.
+ */
+class VanityPathStore {
+
+    private static final String SEGMENT_PREFIX = "vanityPaths.";
+
+    private static final String SEGMENT_SUFFIX = ".idx";
+
+    private static final String JOURNAL_NAME = "vanityPaths.log";
+
+    private static final String VALID_NAME = "vanityPaths.valid";
+
+    private static final int MAGIC = 0x53565031; // SVP1
+
+    private static final byte OP_ADD = 1;
+
+    private static final byte OP_REMOVE = 2;
+
+    /** Prefix of the reverse entries, sorts before any absolute path */
+    private static final char REVERSE_PREFIX = '\u0001';
+
+    /** default log */
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final File directory;
+
+    private final File journalFile;
+
+    private final int compactionThreshold;
+
+    private final boolean existing;
+
+    private final File validFile;
+
+    /** the configuration the store has been marked valid for, <code>null</code> if not valid */
+    private final String validConfiguration;
+
+    private volatile Segment segment;
+
+    private long generation;
+
+    /** replaced segments whose files are deleted once they are unmapped */
+    private final List<RetiredSegment> retiredSegments = new ArrayList<RetiredSegment>();
+
+    /** key to (value to added flag) of the changes since the segment has been written */
+    private volatile ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, Boolean>> delta = newDelta();
+
+    private int journalSize;
+
+    private DataOutputStream journal;
+
+    /**
+     * Opens the store in the given directory. If a segment file exists, the
+     * latest one is mapped and the journal is replayed, otherwise an empty
+     * store is created. Segment files of older generations are deleted.
+     */
+    VanityPathStore(final File directory, final int compactionThreshold) throws IOException {
+        this.directory = directory;
+        this.journalFile = new File(directory, JOURNAL_NAME);
+        this.validFile = new File(directory, VALID_NAME);
+        this.compactionThreshold = compactionThreshold;
+        final String marker = readMarker(this.validFile);
+        this.validFile.delete();
+
+        final File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(final File dir, final String name) {
+                return name.startsWith(SEGMENT_PREFIX)
+                        && (name.endsWith(SEGMENT_SUFFIX) || name.endsWith(SEGMENT_SUFFIX + ".tmp"));
+            }
+        });
+        File segmentFile = null;
+        if (files != null) {
+            for (final File file : files) {
+                final long fileGeneration = getGeneration(file);
+                if (fileGeneration > this.generation) {
+                    if (segmentFile != null) {
+                        segmentFile.delete();
+                    }
+                    segmentFile = file;
+                    this.generation = fileGeneration;
+                } else {
+                    file.delete();
+                }
+            }
+        }
+
+        Segment loaded = null;
+        if (segmentFile != null) {
+            try {
+                loaded = Segment.open(segmentFile);
+                this.replayJournal();
+            } catch (final IOException ioe) {
+                log.warn("Unable to read vanity path store in " + directory + ", recreating it", ioe);
+                if (loaded != null) {
+                    loaded.close();
+                    loaded = null;
+                }
+                this.delta = newDelta();
+                this.journalSize = 0;
+            }
+        }
+        this.existing = loaded != null;
+        this.validConfiguration = this.existing ? marker : null;
+        if (loaded == null) {
+            this.journalFile.delete();
+            if (segmentFile != null) {
+                segmentFile.delete();
+            }
+            this.generation++;
+            segmentFile = this.getSegmentFile(this.generation);
+            Segment.write(segmentFile, Collections.<String[]> emptyList().iterator());
+            loaded = Segment.open(segmentFile);
+        }
+        this.segment = loaded;
+        this.journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.journalFile, true)));
+    }
+
+    /**
+     * Returns <code>true</code> if the store has been reopened from an
+     * existing segment file. Unless it is {@link #isValid(String) valid},
+     * it might miss changes and needs to be filled again.
+     */
+    boolean isExisting() {
+        return this.existing;
+    }
+
+    /**
+     * Returns <code>true</code> if the store has been closed cleanly after
+     * being marked valid for the given configuration, in which case it
+     * does not need to be filled again.
+     */
+    boolean isValid(final String configuration) {
+        return configuration.equals(this.validConfiguration);
+    }
+
+    /**
+     * Marks the store as complete for the given configuration. This is
+     * called right before closing the store.
+     */
+    void markValid(final String configuration) throws IOException {
+        this.journal.flush();
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(this.validFile));
+        try {
+            out.writeUTF(configuration);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the resource paths providing the given vanity path.
+     */
+    List<String> getTargets(final String vanityPath) {
+        return this.get(vanityPath);
+    }
+
+    /**
+     * Returns the vanity paths provided by the given resource path.
+     */
+    List<String> getVanityPaths(final String targetPath) {
+        return this.get(REVERSE_PREFIX + targetPath);
+    }
+
+    /**
+     * Returns the resource paths at or below the given path which provide
+     * vanity paths.
+     */
+    List<String> getTargetsBelow(final String path) {
+        final String key = REVERSE_PREFIX + path;
+        final String childPrefix = key.endsWith("/") ? key : key + "/";
+        final Set<String> targets = new LinkedHashSet<String>();
+        for (final String candidate : this.getKeys(key)) {
+            if (candidate.equals(key) || candidate.startsWith(childPrefix)) {
+                final String target = candidate.substring(1);
+                if (!this.getVanityPaths(target).isEmpty()) {
+                    targets.add(target);
+                }
+            }
+        }
+        return new ArrayList<String>(targets);
+    }
+
+    /**
+     * Adds the vanity path provided by the resource path.
+     */
+    void add(final String vanityPath, final String targetPath) throws IOException {
+        this.update(OP_ADD, vanityPath, targetPath);
+        this.update(OP_ADD, REVERSE_PREFIX + targetPath, vanityPath);
+        this.journal.flush();
+        this.compactIfNeeded();
+    }
+
+    /**
+     * Removes all vanity paths of the resource path and returns them.
+     */
+    List<String> removeTarget(final String targetPath) throws IOException {
+        final List<String> vanityPaths = this.getVanityPaths(targetPath);
+        for (final String vanityPath : vanityPaths) {
+            this.update(OP_REMOVE, vanityPath, targetPath);
+            this.update(OP_REMOVE, REVERSE_PREFIX + targetPath, vanityPath);
+        }
+        this.journal.flush();
+        this.compactIfNeeded();
+        return vanityPaths;
+    }
+
+    /**
+     * Replaces the content of the store with the given vanity path and
+     * resource path pairs. This is used to fill the store in one go instead
+     * of writing each pair to the journal.
+     */
+    void reset(final List<String[]> vanityPaths) throws IOException {
+        final SortedMap<String, Map<String, Boolean>> entries = new TreeMap<String, Map<String, Boolean>>();
+        for (final String[] vanityPath : vanityPaths) {
+            addEntry(entries, vanityPath[0], vanityPath[1]);
+            addEntry(entries, REVERSE_PREFIX + vanityPath[1], vanityPath[0]);
+        }
+        this.delta = newDelta();
+        this.writeSegment(new MergeIterator(Segment.EMPTY, entries));
+    }
+
+    /**
+     * Merges the journal into a new segment file and truncates the journal.
+     */
+    void compact() throws IOException {
+        this.writeSegment(new MergeIterator(this.segment, this.delta));
+    }
+
+    private void writeSegment(final Iterator<String[]> entries) throws IOException {
+        final File segmentFile = this.getSegmentFile(this.generation + 1);
+        final File tmpFile = new File(segmentFile.getPath() + ".tmp");
+        Segment.write(tmpFile, entries);
+        if (!tmpFile.renameTo(segmentFile)) {
+            tmpFile.delete();
+            throw new IOException("Unable to create " + segmentFile);
+        }
+
+        final Segment oldSegment = this.segment;
+        this.segment = Segment.open(segmentFile);
+        this.generation++;
+        this.delta = newDelta();
+
+        this.journal.close();
+        this.journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.journalFile, false)));
+        this.journalSize = 0;
+
+        oldSegment.close();
+        this.retiredSegments.add(new RetiredSegment(oldSegment));
+        this.deleteRetiredSegments();
+    }
+
+    /**
+     * Deletes the files of replaced segments which are no longer mapped.
+     */
+    private void deleteRetiredSegments() {
+        for (final Iterator<RetiredSegment> i = this.retiredSegments.iterator(); i.hasNext();) {
+            final RetiredSegment retired = i.next();
+            if (retired.buffer.get() == null && (retired.file.delete() || !retired.file.exists())) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Closes the store. The journal is kept, so the store can be reopened.
+     */
+    void close() {
+        try {
+            this.journal.close();
+        } catch (final IOException ioe) {
+            log.warn("Error while closing vanity path journal", ioe);
+        }
+        this.segment.close();
+    }
+
+    // ---------- internal
+
+    private File getSegmentFile(final long generation) {
+        return new File(this.directory, SEGMENT_PREFIX + generation + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Returns the generation of a segment file or <code>-1</code> for other
+     * files, like left over temporary files.
+     */
+    private static long getGeneration(final File file) {
+        final String name = file.getName();
+        if (name.endsWith(SEGMENT_SUFFIX)) {
+            try {
+                return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            } catch (final NumberFormatException nfe) {
+                // not a segment file
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the keys starting with the given prefix.
+     */
+    private Set<String> getKeys(final String prefix) {
+        final Map<String, ? extends Map<String, Boolean>> changes = this.delta.tailMap(prefix);
+        final Set<String> keys = new TreeSet<String>();
+        this.segment.getKeys(prefix, keys);
+        for (final String key : changes.keySet()) {
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    private List<String> get(final String key) {
+        // read the delta before the segment: a compaction replaces the
+        // segment before it clears the delta
+        final Map<String, Boolean> changes = this.delta.get(key);
+        final Set<String> values = new LinkedHashSet<String>();
+        this.segment.get(key, values);
+        if (changes != null) {
+            for (final Map.Entry<String, Boolean> change : changes.entrySet()) {
+                if (change.getValue()) {
+                    values.add(change.getKey());
+                } else {
+                    values.remove(change.getKey());
+                }
+            }
+        }
+        return new ArrayList<String>(values);
+    }
+
+    private void update(final byte op, final String key, final String value) throws IOException {
+        this.journal.writeByte(op);
+        this.journal.writeUTF(key);
+        this.journal.writeUTF(value);
+        this.journalSize++;
+        this.applyToDelta(op, key, value);
+    }
+
+    private void applyToDelta(final byte op, final String key, final String value) {
+        ConcurrentSkipListMap<String, Boolean> changes = this.delta.get(key);
+        if (changes == null) {
+            changes = new ConcurrentSkipListMap<String, Boolean>();
+            final ConcurrentSkipListMap<String, Boolean> existingChanges = this.delta.putIfAbsent(key, changes);
+            if (existingChanges != null) {
+                changes = existingChanges;
+            }
+        }
+        changes.put(value, op == OP_ADD);
+    }
+
+    private static void addEntry(final SortedMap<String, Map<String, Boolean>> entries, final String key, final String value) {
+        Map<String, Boolean> values = entries.get(key);
+        if (values == null) {
+            values = new TreeMap<String, Boolean>();
+            entries.put(key, values);
+        }
+        values.put(value, Boolean.TRUE);
+    }
+
+    private static ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, Boolean>> newDelta() {
+        return new ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, Boolean>>();
+    }
+
+    private static String readMarker(final File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            final DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                return in.readUTF();
+            } finally {
+                in.close();
+            }
+        } catch (final IOException ioe) {
+            return null;
+        }
+    }
+
+    private void replayJournal() throws IOException {
+        if (!this.journalFile.exists()) {
+            return;
+        }
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.journalFile)));
+        try {
+            while (true) {
+                final byte op;
+                try {
+                    op = in.readByte();
+                } catch (final EOFException eof) {
+                    break;
+                }
+                final String key = in.readUTF();
+                final String value = in.readUTF();
+                this.applyToDelta(op, key, value);
+                this.journalSize++;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (this.journalSize >= this.compactionThreshold) {
+            log.debug("Compacting vanity path store with {} journal entries", this.journalSize);
+            this.compact();
+        }
+    }
+
+    /**
+     * An immutable, memory mapped segment. The file consists of the records
+     * sorted by key and value, followed by the table of record offsets, the
+     * number of records and a magic number. A record is written as the length
+     * of the key, the UTF-8 key, the length of the value and the UTF-8 value.
+     */
+    private static final class Segment {
+
+        /** segment without records, used as merge base */
+        static final Segment EMPTY = new Segment();
+
+        final File segmentFile;
+
+        private final RandomAccessFile file;
+
+        private final MappedByteBuffer buffer;
+
+        private final int count;
+
+        private final int offsetTable;
+
+        private Segment() {
+            this.segmentFile = null;
+            this.file = null;
+            this.buffer = null;
+            this.count = 0;
+            this.offsetTable = 0;
+        }
+
+        private Segment(final File segmentFile, final RandomAccessFile file, final MappedByteBuffer buffer) throws IOException {
+            this.segmentFile = segmentFile;
+            this.file = file;
+            this.buffer = buffer;
+            final int size = buffer.capacity();
+            if (size < 8 || buffer.getInt(size - 4) != MAGIC) {
+                throw new IOException("Invalid vanity path segment");
+            }
+            this.count = buffer.getInt(size - 8);
+            this.offsetTable = size - 8 - 4 * this.count;
+            if (this.offsetTable < 0) {
+                throw new IOException("Invalid vanity path segment");
+            }
+        }
+
+        static Segment open(final File segmentFile) throws IOException {
+            final RandomAccessFile file = new RandomAccessFile(segmentFile, "r");
+            try {
+                final FileChannel channel = file.getChannel();
+                return new Segment(segmentFile, file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } catch (final IOException ioe) {
+                file.close();
+                throw ioe;
+            }
+        }
+
+        /**
+         * Writes the sorted key value pairs into a new segment file.
+         */
+        static void write(final File segmentFile, final Iterator<String[]> entries) throws IOException {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segmentFile)));
+            try {
+                int[] offsets = new int[1024];
+                int count = 0;
+                while (entries.hasNext()) {
+                    final String[] entry = entries.next();
+                    if (count == offsets.length) {
+                        final int[] newOffsets = new int[offsets.length * 2];
+                        System.arraycopy(offsets, 0, newOffsets, 0, count);
+                        offsets = newOffsets;
+                    }
+                    offsets[count++] = out.size();
+                    writeString(out, entry[0]);
+                    writeString(out, entry[1]);
+                }
+                for (int i = 0; i < count; i++) {
+                    out.writeInt(offsets[i]);
+                }
+                out.writeInt(count);
+                out.writeInt(MAGIC);
+            } finally {
+                out.close();
+            }
+        }
+
+        private static void writeString(final DataOutputStream out, final String value) throws IOException {
+            final byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        int size() {
+            return this.count;
+        }
+
+        void get(final String key, final Set<String> values) {
+            for (int i = this.find(key); i < this.count; i++) {
+                final int offset = this.offset(i);
+                if (compare(offset, key) != 0) {
+                    break;
+                }
+                final int keyLength = this.buffer.getInt(offset);
+                values.add(this.readString(offset + 4 + keyLength));
+            }
+        }
+
+        void getKeys(final String prefix, final Set<String> keys) {
+            for (int i = this.find(prefix); i < this.count; i++) {
+                final String key = this.readString(this.offset(i));
+                if (!key.startsWith(prefix)) {
+                    break;
+                }
+                keys.add(key);
+            }
+        }
+
+        /**
+         * Returns the index of the first record with a key not less than the
+         * given key.
+         */
+        private int find(final String key) {
+            int low = 0;
+            int high = this.count;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (compare(this.offset(mid), key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        String[] read(final int index) {
+            final int offset = this.offset(index);
+            final int keyLength = this.buffer.getInt(offset);
+            return new String[] { this.readString(offset), this.readString(offset + 4 + keyLength) };
+        }
+
+        void close() {
+            if (this.file == null) {
+                return;
+            }
+            try {
+                this.file.close();
+            } catch (final IOException ioe) {
+                // ignore
+            }
+        }
+
+        private int offset(final int index) {
+            return this.buffer.getInt(this.offsetTable + 4 * index);
+        }
+
+        private String readString(final int offset) {
+            final int length = this.buffer.getInt(offset);
+            final ByteBuffer slice = this.buffer.duplicate();
+            slice.position(offset + 4);
+            final byte[] bytes = new byte[length];
+            slice.get(bytes);
+            try {
+                return new String(bytes, "UTF-8");
+            } catch (final java.io.UnsupportedEncodingException uee) {
+                throw new IllegalStateException(uee);
+            }
+        }
+
+        /**
+         * Compares the key of the record at the offset with the given key by
+         * decoding the UTF-8 bytes in place, using the order of
+         * {@link String#compareTo(String)}.
+         */
+        private int compare(final int offset, final String key) {
+            final int length = this.buffer.getInt(offset);
+            int pos = offset + 4;
+            final int end = pos + length;
+            int k = 0;
+            char pendingLow = 0;
+            while ((pos < end || pendingLow != 0) && k < key.length()) {
+                final char c;
+                if (pendingLow != 0) {
+                    c = pendingLow;
+                    pendingLow = 0;
+                } else {
+                    final int b = this.buffer.get(pos) & 0xff;
+                    if (b < 0x80) {
+                        c = (char) b;
+                        pos += 1;
+                    } else if (b < 0xe0) {
+                        c = (char) (((b & 0x1f) << 6) | (this.buffer.get(pos + 1) & 0x3f));
+                        pos += 2;
+                    } else if (b < 0xf0) {
+                        c = (char) (((b & 0x0f) << 12) | ((this.buffer.get(pos + 1) & 0x3f) << 6)
+                                | (this.buffer.get(pos + 2) & 0x3f));
+                        pos += 3;
+                    } else {
+                        final int cp = ((b & 0x07) << 18) | ((this.buffer.get(pos + 1) & 0x3f) << 12)
+                                | ((this.buffer.get(pos + 2) & 0x3f) << 6) | (this.buffer.get(pos + 3) & 0x3f);
+                        c = (char) (0xd800 + ((cp - 0x10000) >>> 10));
+                        pendingLow = (char) (0xdc00 + (cp & 0x3ff));
+                        pos += 4;
+                    }
+                }
+                final char o = key.charAt(k++);
+                if (c != o) {
+                    return c - o;
+                }
+            }
+            if (pos < end || pendingLow != 0) {
+                return 1;
+            }
+            return k < key.length() ? -1 : 0;
+        }
+    }
+
+    /**
+     * The file of a replaced segment and a weak reference to its buffer, which
+     * is cleared once the buffer is no longer mapped.
+     */
+    private static final class RetiredSegment {
+
+        final File file;
+
+        final WeakReference<MappedByteBuffer> buffer;
+
+        RetiredSegment(final Segment segment) {
+            this.file = segment.segmentFile;
+            this.buffer = new WeakReference<MappedByteBuffer>(segment.buffer);
+        }
+    }
+
+    /**
+     * Merges the sorted records of a segment with the sorted delta, dropping
+     * removed pairs.
+     */
+    private static final class MergeIterator implements Iterator<String[]> {
+
+        private final Segment segment;
+
+        private final Iterator<String[]> deltaIterator;
+
+        private int segmentIndex;
+
+        private String[] nextSegment;
+
+        private String[] nextDelta;
+
+        private boolean nextDeltaAdded;
+
+        private String[] next;
+
+        MergeIterator(final Segment segment, final SortedMap<String, ? extends Map<String, Boolean>> delta) {
+            this.segment = segment;
+            final List<String[]> changes = new ArrayList<String[]>();
+            for (final Map.Entry<String, ? extends Map<String, Boolean>> entry : delta.entrySet()) {
+                for (final Map.Entry<String, Boolean> change : entry.getValue().entrySet()) {
+                    changes.add(new String[] { entry.getKey(), change.getKey(), change.getValue().toString() });
+                }
+            }
+            this.deltaIterator = changes.iterator();
+            this.advanceSegment();
+            this.advanceDelta();
+            this.seek();
+        }
+
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        public String[] next() {
+            final String[] result = this.next;
+            this.seek();
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void advanceSegment() {
+            if (this.segmentIndex < this.segment.size()) {
+                this.nextSegment = this.segment.read(this.segmentIndex++);
+            } else {
+                this.nextSegment = null;
+            }
+        }
+
+        private void advanceDelta() {
+            if (this.deltaIterator.hasNext()) {
+                final String[] change = this.deltaIterator.next();
+                this.nextDelta = new String[] { change[0], change[1] };
+                this.nextDeltaAdded = Boolean.valueOf(change[2]);
+            } else {
+                this.nextDelta = null;
+            }
+        }
+
+        private void seek() {
+            this.next = null;
+            while (this.next == null && (this.nextSegment != null || this.nextDelta != null)) {
+                final int cmp;
+                if (this.nextSegment == null) {
+                    cmp = 1;
+                } else if (this.nextDelta == null) {
+                    cmp = -1;
+                } else {
+                    final int keyCmp = this.nextSegment[0].compareTo(this.nextDelta[0]);
+                    cmp = keyCmp != 0 ? keyCmp : this.nextSegment[1].compareTo(this.nextDelta[1]);
+                }
+                if (cmp < 0) {
+                    this.next = this.nextSegment;
+                    this.advanceSegment();
+                } else {
+                    if (cmp == 0) {
+                        this.advanceSegment();
+                    }
+                    if (this.nextDeltaAdded) {
+                        this.next = this.nextDelta;
+                    }
+                    this.advanceDelta();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The <code>CompiledProviderTree</code> is an immutable snapshot of a tree of
+ * {@link ResourceProviderEntry} instances, optimized for looking up the
+ * providers responsible for a path.
+ * <p>
+ * Each node holds the ordered providers of its own entry and of all its
+ * ancestors (excluding the root), so a lookup only has to find the deepest
+ * node matching the path. The lookup compares path segments in place and
+ * does not allocate any objects.
+ * <p>
+ * The snapshot is created whenever a provider is added to or removed from the
+ * tree; lookups running concurrently keep using the previous snapshot.
+ */
+public final class CompiledProviderTree {
+
+    private static final char SEPARATOR = '/';
+
+    private static final ProviderHandler[] EMPTY = new ProviderHandler[0];
+
+    private final Node root;
+
+    CompiledProviderTree(final ResourceProviderEntry rootEntry) {
+        this.root = new Node(rootEntry, 0, EMPTY, EMPTY);
+    }
+
+    /**
+     * Returns the node for the deepest entry matching the leading segments of
+     * the path. If not even the first segment matches, the root node is
+     * returned.
+     */
+    public Node find(final String path) {
+        Node node = this.root;
+        if (path == null) {
+            return node;
+        }
+        int end = trimmedEnd(path);
+        int start = trimmedStart(path, end);
+        while (start < end) {
+            int segmentEnd = path.indexOf(SEPARATOR, start);
+            if (segmentEnd == -1 || segmentEnd > end) {
+                segmentEnd = end;
+            }
+            final Node child = node.getChild(path, start, segmentEnd);
+            if (child == null) {
+                break;
+            }
+            node = child;
+            start = segmentEnd + 1;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the number of segments of the path in the same way as
+     * {@link ResourceProviderEntry#split(String)} splits the path.
+     */
+    public static int countSegments(final String path) {
+        if (path == null) {
+            return 0;
+        }
+        final int end = trimmedEnd(path);
+        final int start = trimmedStart(path, end);
+        if (start >= end) {
+            return 0;
+        }
+        int count = 1;
+        for (int i = start; i < end; i++) {
+            if (path.charAt(i) == SEPARATOR) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int trimmedEnd(final String path) {
+        int end = path.length();
+        while (end > 0 && path.charAt(end - 1) == SEPARATOR) {
+            end--;
+        }
+        return end;
+    }
+
+    private static int trimmedStart(final String path, final int end) {
+        int start = 0;
+        while (start < end && path.charAt(start) == SEPARATOR) {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * A node of the compiled tree.
+     */
+    public static final class Node {
+
+        private static final Comparator<Node> NAME_COMPARATOR = new Comparator<Node>() {
+            public int compare(final Node o1, final Node o2) {
+                return o1.name.compareTo(o2.name);
+            }
+        };
+
+        private final String name;
+
+        private final ResourceProviderEntry entry;
+
+        private final int depth;
+
+        /** providers of this entry followed by those of the ancestors */
+        private final ProviderHandler[] bottomUpProviders;
+
+        /** providers of the ancestors followed by those of this entry */
+        private final ProviderHandler[] topDownProviders;
+
+        /** children sorted by name */
+        private final Node[] children;
+
+        private Node(final ResourceProviderEntry entry,
+                final int depth,
+                final ProviderHandler[] parentBottomUp,
+                final ProviderHandler[] parentTopDown) {
+            this.name = entry.getPath();
+            this.entry = entry;
+            this.depth = depth;
+            if (depth == 0) {
+                // the providers of the root entry are handled separately
+                this.bottomUpProviders = EMPTY;
+                this.topDownProviders = EMPTY;
+            } else {
+                final ProviderHandler[] own = entry.getResourceProviders();
+                this.bottomUpProviders = concat(own, parentBottomUp);
+                this.topDownProviders = concat(parentTopDown, own);
+            }
+
+            final Collection<ResourceProviderEntry> childEntries = entry.values();
+            final List<Node> childList = new ArrayList<Node>(childEntries.size());
+            for (final ResourceProviderEntry childEntry : childEntries) {
+                childList.add(new Node(childEntry, depth + 1, this.bottomUpProviders, this.topDownProviders));
+            }
+            this.children = childList.toArray(new Node[childList.size()]);
+            Arrays.sort(this.children, NAME_COMPARATOR);
+        }
+
+        /**
+         * Returns the entry this node has been compiled from.
+         */
+        public ResourceProviderEntry getEntry() {
+            return this.entry;
+        }
+
+        /**
+         * Returns the number of path segments leading to this node.
+         */
+        public int getDepth() {
+            return this.depth;
+        }
+
+        /**
+         * Returns the providers of this node followed by the providers of all
+         * ancestors up to, but excluding, the root. This is the order in which
+         * the providers are asked for a resource.
+         */
+        public ProviderHandler[] getBottomUpProviders() {
+            return this.bottomUpProviders;
+        }
+
+        /**
+         * Returns the providers of all ancestors, excluding the root, followed
+         * by the providers of this node.
+         */
+        public ProviderHandler[] getTopDownProviders() {
+            return this.topDownProviders;
+        }
+
+        private Node getChild(final String path, final int start, final int end) {
+            int low = 0;
+            int high = this.children.length - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final int cmp = compare(this.children[mid].name, path, start, end);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return this.children[mid];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Compares the name with the region of the path in the same way as
+         * {@link String#compareTo(String)}.
+         */
+        private static int compare(final String name, final String path, final int start, final int end) {
+            final int len = end - start;
+            final int min = Math.min(name.length(), len);
+            for (int i = 0; i < min; i++) {
+                final char c1 = name.charAt(i);
+                final char c2 = path.charAt(start + i);
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+            }
+            return name.length() - len;
+        }
+
+        private static ProviderHandler[] concat(final ProviderHandler[] first, final ProviderHandler[] second) {
+            if (first.length == 0) {
+                return second;
+            }
+            if (second.length == 0) {
+                return first;
+            }
+            final ProviderHandler[] result = new ProviderHandler[first.length + second.length];
+            System.arraycopy(first, 0, result, 0, first.length);
+            System.arraycopy(second, 0, result, first.length, second.length);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return this.entry.toString();
+        }
+    }
+}
@@ -76,6 +76,10 @@ public class ResourceProviderEntry implements Comparable<ResourceProviderEntry>
 
     private Collection<ResourceProviderEntry> storageMapValues = new ArrayList<ResourceProviderEntry>();
 
+    // immutable snapshot of the tree below this entry used for lookups,
+    // recreated whenever a provider is added or removed
+    private volatile CompiledProviderTree compiledTree;
+
     /**
      * Creates an instance of this class with the given path relative to the
      * parent resource provider entry, encapsulating the given ResourceProvider,
@@ -160,6 +164,23 @@ public class ResourceProviderEntry implements Comparable<ResourceProviderEntry>
         return storageMapValues;
     }
 
+    /**
+     * Returns the compiled snapshot of the tree below this entry.
+     */
+    public CompiledProviderTree getCompiledTree() {
+        CompiledProviderTree tree = this.compiledTree;
+        if (tree == null) {
+            synchronized (this) {
+                tree = this.compiledTree;
+                if (tree == null) {
+                    tree = new CompiledProviderTree(this);
+                    this.compiledTree = tree;
+                }
+            }
+        }
+        return tree;
+    }
+
     /**
      * @see java.lang.Comparable#compareTo(java.lang.Object)
      */
@@ -229,7 +250,9 @@ public class ResourceProviderEntry implements Comparable<ResourceProviderEntry>
             entries.add(rpe2);
         }
         // finally add this provider to the last in the list. This might be a new entry, or an existing entry.
-        return entries.get(elements.length).addInternalProvider(provider);
+        final boolean result = entries.get(elements.length).addInternalProvider(provider);
+        this.compiledTree = new CompiledProviderTree(this);
+        return result;
     }
 
     /**
@@ -254,6 +277,7 @@ public class ResourceProviderEntry implements Comparable<ResourceProviderEntry>
             // so this should be taken care of.
             logger.warn("Unable to remove {} for prefix {}, no matching entry found", resourceProvider, prefix);
         }
+        this.compiledTree = new CompiledProviderTree(this);
         return result;
     }
 
@@ -317,38 +341,34 @@ public class ResourceProviderEntry implements Comparable<ResourceProviderEntry>
                 logger.debug("Not absolute {}", fullPath);
                 return null; // fullpath must be absolute
             }
-            final String[] elements = split(fullPath);
-            final List<ResourceProviderEntry> entries = new ArrayList<ResourceProviderEntry>();
-            this.populateProviderPath(entries, elements);
+            final CompiledProviderTree.Node node = this.getCompiledTree().find(fullPath);
 
             Resource fallbackResource = null;
 
-            // the path is in reverse order end first
-            for (int i = entries.size() - 1; i >= 0; i--) {
-                final ProviderHandler[] rps = entries.get(i).getResourceProviders();
-                for (final ProviderHandler rp : rps) {
-
-                    boolean foundFallback = false;
-                    final Resource resource = rp.getResource(ctx, resourceResolver, fullPath, parameters);
-                    if (resource != null) {
-                        if ( resource.getResourceMetadata() != null && resource.getResourceMetadata().get(ResourceMetadata.INTERNAL_CONTINUE_RESOLVING) != null ) {
-                            if ( logger.isDebugEnabled() ) {
-                                logger.debug("Resolved Full {} using {} from {} - continue resolving flag is set!", new Object[] { fullPath, rp, Arrays.toString(rps) });
-                            }
-                            fallbackResource = resource;
-                            fallbackResource.getResourceMetadata().remove(ResourceMetadata.INTERNAL_CONTINUE_RESOLVING);
-                            foundFallback = true;
-                        } else {
-                            if ( logger.isDebugEnabled() ) {
-                                logger.debug("Resolved Full {} using {} from {} ", new Object[] { fullPath, rp, Arrays.toString(rps) });
-                            }
-                            return resource;
+            // the providers are ordered from the most specific entry up to the root
+            final ProviderHandler[] rps = node.getBottomUpProviders();
+            for (final ProviderHandler rp : rps) {
+
+                boolean foundFallback = false;
+                final Resource resource = rp.getResource(ctx, resourceResolver, fullPath, parameters);
+                if (resource != null) {
+                    if ( resource.getResourceMetadata() != null && resource.getResourceMetadata().get(ResourceMetadata.INTERNAL_CONTINUE_RESOLVING) != null ) {
+                        if ( logger.isDebugEnabled() ) {
+                            logger.debug("Resolved Full {} using {} from {} - continue resolving flag is set!", new Object[] { fullPath, rp, Arrays.toString(rps) });
                         }
+                        fallbackResource = resource;
+                        fallbackResource.getResourceMetadata().remove(ResourceMetadata.INTERNAL_CONTINUE_RESOLVING);
+                        foundFallback = true;
+                    } else {
+                        if ( logger.isDebugEnabled() ) {
+                            logger.debug("Resolved Full {} using {} from {} ", new Object[] { fullPath, rp, Arrays.toString(rps) });
+                        }
+                        return resource;
                     }
-                    if ( rp.ownsRoots() && !foundFallback ) {
-                        logger.debug("Resource null {} ", fullPath);
-                        return fallbackResource;
-                    }
+                }
+                if ( rp.ownsRoots() && !foundFallback ) {
+                    logger.debug("Resource null {} ", fullPath);
+                    return fallbackResource;
                 }
             }
 
@@ -371,9 +391,8 @@ public class ResourceProviderEntry implements Comparable<ResourceProviderEntry>
             //              as it is important e.g. for servlet resolution
             //              to get the parent resource for resource traversal.
             if ( !isResolve ) {
-                if (entries.size() > 0 && entries.size() == elements.length) {
-                    final ResourceProviderEntry lastEntry = entries.get(entries.size() - 1);
-                    if (lastEntry.getResourceProviders().length == 0) {
+                if (node.getDepth() > 0 && node.getDepth() == CompiledProviderTree.countSegments(fullPath)) {
+                    if (node.getEntry().getResourceProviders().length == 0) {
                         logger.debug("Resolved Synthetic {}", fullPath);
                         return new SyntheticResource(resourceResolver, fullPath, ResourceProvider.RESOURCE_TYPE_SYNTHETIC);
                     }
@@ -421,23 +440,18 @@ public class ResourceProviderEntry implements Comparable<ResourceProviderEntry>
     private List<ProviderHandler> getModifyingProviderHandlers(final ResourceResolverContext ctx,
                                                         final ResourceResolver resourceResolver,
                                                         final String fullPath) {
-        final String[] elements = split(fullPath);
-        final List<ResourceProviderEntry> entries = new ArrayList<ResourceProviderEntry>();
-        this.populateProviderPath(entries, elements);
+        final CompiledProviderTree.Node node = this.getCompiledTree().find(fullPath);
 
         final List<ProviderHandler> viableProviderHandlers = new ArrayList<ProviderHandler>();
 
         // build up a list of viable ModifyingResourceProviders in order of specificity
-        for (int i = entries.size() - 1; i >= 0; i--) {
-            final ProviderHandler[] rps = entries.get(i).getResourceProviders();
-            for (final ProviderHandler rp : rps) {
-                final ResourceProvider provider = rp.getResourceProvider(ctx);
-                if ( provider instanceof ModifyingResourceProvider ) {
-                    viableProviderHandlers.add(rp);
-                }
-                if ( rp.ownsRoots() ) {
-                    return viableProviderHandlers;
-                }
+        for (final ProviderHandler rp : node.getBottomUpProviders()) {
+            final ResourceProvider provider = rp.getResourceProvider(ctx);
+            if ( provider instanceof ModifyingResourceProvider ) {
+                viableProviderHandlers.add(rp);
+            }
+            if ( rp.ownsRoots() ) {
+                return viableProviderHandlers;
             }
         }
 
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Dictionary;
@@ -448,6 +449,47 @@ public class MockedResourceResolverImplTest {
         Assert.assertEquals(singleResource, resource);
     }
 
+    /**
+     * Test getResource for a resource created after a failed lookup without
+     * the resource resolver, e.g. through an adapted session. The lookup
+     * cache is disabled by default, so the resource is found.
+     * @throws LoginException
+     */
+    @Test
+    public void testGetResourceCreatedAfterFailedLookup() throws LoginException {
+        ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(null);
+        Assert.assertNotNull(resourceResolver);
+        Assert.assertNull(resourceResolver.getResource("/single/created"));
+        Assert.assertNull(resourceResolver.getResource("/single/created"));
+
+        Resource createdResource = buildResource("/single/created", EMPTY_RESOURCE_LIST, resourceResolver, resourceProvider);
+        Assert.assertEquals(createdResource, resourceResolver.getResource("/single/created"));
+    }
+
+    /**
+     * Test the lookup cache: a failed lookup is remembered until the
+     * resource resolver is refreshed.
+     * @throws Exception
+     */
+    @Test
+    public void testGetResourceWithLookupCache() throws Exception {
+        Field lookupCacheSize = ResourceResolverFactoryActivator.class.getDeclaredField("lookupCacheSize");
+        lookupCacheSize.setAccessible(true);
+        lookupCacheSize.setInt(activator, 10);
+
+        ResourceResolverImpl resourceResolver = (ResourceResolverImpl) resourceResolverFactory.getResourceResolver(null);
+        Assert.assertNull(resourceResolver.getResource("/single/cached"));
+        Assert.assertNull(resourceResolver.getResource("/single/cached"));
+        assertEquals(1, resourceResolver.getLookupCacheHitCount());
+
+        Resource cachedResource = buildResource("/single/cached", EMPTY_RESOURCE_LIST, resourceResolver, resourceProvider);
+        Assert.assertNull(resourceResolver.getResource("/single/cached"));
+
+        resourceResolver.refresh();
+        Assert.assertEquals(cachedResource, resourceResolver.getResource("/single/cached"));
+        resourceResolver.close();
+    }
+
     /**
      * Test getResource where path contains intermediate . verifying fix for SLING-864
      * @throws LoginException
@@ -26,6 +26,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -42,6 +43,8 @@ import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.SyntheticResource;
+import org.apache.sling.api.resource.mapping.MappingSession;
+import org.apache.sling.api.resource.mapping.ResourceMapper;
 import org.apache.sling.resourceresolver.impl.helper.ResourceResolverContext;
 import org.junit.Before;
 import org.junit.Test;
@@ -413,6 +416,29 @@ public class ResourceResolverImplTest {
         assertFalse(resolver.isResourceType(r, "h:p"));
     }
 
+    @Test public void test_resourceMapper() {
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getScheme()).thenReturn("http");
+        Mockito.when(request.getServerName()).thenReturn("localhost");
+        Mockito.when(request.getServerPort()).thenReturn(80);
+        Mockito.when(request.getContextPath()).thenReturn("/ctx");
+
+        final ResourceMapper mapper = resResolver.adaptTo(ResourceMapper.class);
+        assertNotNull(mapper);
+
+        final List<String> paths = Arrays.asList("/a b.html", "/c.html#top", "/a b.html");
+        final Map<String, String> mapped = mapper.map(request, paths);
+        assertEquals(2, mapped.size());
+        for (final String path : paths) {
+            assertEquals(resResolver.map(request, path), mapped.get(path));
+        }
+        assertEquals("/ctx/a%20b.html", mapped.get("/a b.html"));
+
+        final MappingSession session = mapper.createSession(null);
+        assertEquals(resResolver.map("/a b.html"), session.map("/a b.html"));
+        assertEquals("/a%20b.html", session.map("/a b.html"));
+    }
+
     private static class PathBasedResourceResolverImpl extends ResourceResolverImpl {
 
         private final Map<String, Resource> resources = new HashMap<String, Resource>();
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ServiceResourceResolverPoolTest {
+
+    private static final Map<String, Object> AUTH_INFO = Collections.emptyMap();
+
+    private CommonResourceResolverFactoryImpl commonFactory;
+
+    private ServiceResourceResolverPool pool;
+
+    @Before public void setup() {
+        commonFactory = new CommonResourceResolverFactoryImpl(new ResourceResolverFactoryActivator());
+        pool = new ServiceResourceResolverPool(commonFactory, 2, 60000);
+    }
+
+    @After public void tearDown() {
+        pool.close();
+    }
+
+    private ResourceResolverImpl unwrap(final ResourceResolver rr) {
+        return ((PooledResourceResolver) rr).getDelegate();
+    }
+
+    @Test public void testReuse() throws Exception {
+        final ResourceResolver rr1 = pool.borrow("a", AUTH_INFO);
+        assertTrue(rr1.isLive());
+        assertEquals(1, pool.getActiveCount());
+        rr1.close();
+        assertFalse(rr1.isLive());
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+
+        final ResourceResolver rr2 = pool.borrow("a", AUTH_INFO);
+        assertNotSame(rr1, rr2);
+        assertTrue(rr2.isLive());
+        assertEquals(0, pool.getIdleCount());
+        rr2.close();
+
+        assertEquals(2, pool.getBorrowCount());
+        assertEquals(1, pool.getCreateCount());
+        assertEquals(1, pool.getReuseCount());
+    }
+
+    @Test public void testClosedWrapper() throws Exception {
+        final ResourceResolver rr = pool.borrow("a", AUTH_INFO);
+        rr.close();
+        // closing twice must not return the resolver twice
+        rr.close();
+        assertEquals(1, pool.getIdleCount());
+        try {
+            rr.getResource("/");
+            fail("Closed resolver must not be usable");
+        } catch (final IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test public void testKeysAreSeparated() throws Exception {
+        final ResourceResolver rr1 = pool.borrow("a", AUTH_INFO);
+        rr1.close();
+        final ResourceResolver rr2 = pool.borrow("b", AUTH_INFO);
+        rr2.close();
+        assertEquals(2, pool.getCreateCount());
+        assertEquals(0, pool.getReuseCount());
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test public void testMaxIdle() throws Exception {
+        final ResourceResolver rr1 = pool.borrow("a", AUTH_INFO);
+        final ResourceResolver rr2 = pool.borrow("a", AUTH_INFO);
+        final ResourceResolver rr3 = pool.borrow("a", AUTH_INFO);
+        assertEquals(3, pool.getActiveCount());
+        rr1.close();
+        rr2.close();
+        rr3.close();
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(1, pool.getEvictionCount());
+    }
+
+    @Test public void testDeadResolverIsNotReused() throws Exception {
+        final ResourceResolver rr1 = pool.borrow("a", AUTH_INFO);
+        final ResourceResolverImpl impl = unwrap(rr1);
+        impl.close();
+        rr1.close();
+        assertEquals(0, pool.getIdleCount());
+
+        final ResourceResolver rr2 = pool.borrow("a", AUTH_INFO);
+        assertNotSame(impl, unwrap(rr2));
+        assertEquals(2, pool.getCreateCount());
+        rr2.close();
+    }
+
+    @Test public void testIdleTimeout() throws Exception {
+        pool.close();
+        pool = new ServiceResourceResolverPool(commonFactory, 2, 0);
+        final ResourceResolver rr = pool.borrow("a", AUTH_INFO);
+        final ResourceResolverImpl impl = unwrap(rr);
+        rr.close();
+        assertEquals(1, pool.getIdleCount());
+        Thread.sleep(5);
+        pool.evict();
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(1, pool.getEvictionCount());
+        assertFalse(impl.isLive());
+    }
+
+    @Test public void testCloseClosesIdle() throws Exception {
+        final ResourceResolver rr1 = pool.borrow("a", AUTH_INFO);
+        final ResourceResolver rr2 = pool.borrow("a", AUTH_INFO);
+        final ResourceResolverImpl impl1 = unwrap(rr1);
+        final ResourceResolverImpl impl2 = unwrap(rr2);
+        rr1.close();
+        pool.close();
+        assertFalse(impl1.isLive());
+        assertTrue(impl2.isLive());
+        rr2.close();
+        assertFalse(impl2.isLive());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test public void testResourcesUsePooledResolver() throws Exception {
+        final ResourceResolver rr = pool.borrow("a", AUTH_INFO);
+        final Resource resource = rr.resolve("/missing");
+        assertSame(rr, resource.getResourceResolver());
+        rr.close();
+        try {
+            resource.getValueMap();
+            fail("Resource of a closed resolver must not be usable");
+        } catch (final IllegalStateException expected) {
+            // expected
+        }
+        try {
+            resource.adaptTo(ValueMap.class);
+            fail("Resource of a closed resolver must not be usable");
+        } catch (final IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test public void testEscapedResolverIsNotReused() throws Exception {
+        final ResourceResolver rr1 = pool.borrow("a", AUTH_INFO);
+        final PooledResourceResolver pooled1 = (PooledResourceResolver) rr1;
+        final Resource mock = Mockito.mock(Resource.class);
+        Mockito.when(mock.adaptTo(ValueMap.class)).thenReturn(ValueMap.EMPTY);
+        Mockito.when(mock.adaptTo(Runnable.class)).thenReturn(Mockito.mock(Runnable.class));
+
+        new PooledResource(pooled1, mock).adaptTo(ValueMap.class);
+        assertFalse(pooled1.isEscaped());
+        rr1.close();
+        assertEquals(1, pool.getIdleCount());
+
+        final ResourceResolver rr2 = pool.borrow("a", AUTH_INFO);
+        final PooledResourceResolver pooled2 = (PooledResourceResolver) rr2;
+        final ResourceResolverImpl impl = unwrap(rr2);
+        new PooledResource(pooled2, mock).adaptTo(Runnable.class);
+        assertTrue(pooled2.isEscaped());
+        rr2.close();
+        assertEquals(0, pool.getIdleCount());
+        assertFalse(impl.isLive());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ParsedURITest {
+
+    private static final String[] URIS = {
+        "/",
+        "/content/page.html",
+        "/content/a page+with%signs.html",
+        "/content/Rüdiger/€/😀.html",
+        "/content/jcr:content/a;b=c,d$e",
+        "/content/\"quoted\"<tag>|{}^`\\",
+        "http://localhost/content/page.html",
+        "HTTP://LocalHost:8080/content/a page.html",
+        "https://host:08443/",
+        "http://host:/content",
+        "http://user@host/content",
+        "http://[::1]:8080/content",
+        "http://host_name/content",
+        "http://host",
+        "http:///content",
+        "//host/content",
+        "/content/page.html?a=b c",
+        "/content/page.html#top",
+        " /content/page.html",
+        "<http://host/content>",
+        "content/relative.html",
+        "mailto:someone@example.com"
+    };
+
+    @Test public void testSameAsURI() {
+        for (final String s : URIS) {
+            assertEquals(s, describe(new URI(s, false), null), describe(ParsedURI.parse(s), null));
+            assertEquals(s, describe(new URI(s, false), "/ctx/new path/ö"), describe(ParsedURI.parse(s), "/ctx/new path/ö"));
+        }
+    }
+
+    @Test public void testEscaping() {
+        assertEquals("/content/a%20b%2B%25.html", ParsedURI.parse("/content/a b+%.html").toString());
+        assertEquals("http://host:80/%C3%BC", ParsedURI.parse("HTTP://host:080/ü").toString());
+        assertEquals("/content/a b+%.html", ParsedURI.parse("/content/a b+%.html").getPath());
+    }
+
+    private String describe(final URI uri, final String newPath) {
+        final StringBuilder buf = new StringBuilder();
+        buf.append(uri.getScheme()).append('|').append(uri.getHost()).append('|').append(uri.getPort());
+        buf.append('|').append(uri.getPath());
+        try {
+            if (newPath != null) {
+                uri.setPath(newPath);
+            }
+            buf.append('|').append(uri.toString());
+        } catch (final URIException e) {
+            buf.append("|failed");
+        }
+        return buf.toString();
+    }
+
+    private String describe(final ParsedURI uri, final String newPath) {
+        final StringBuilder buf = new StringBuilder();
+        buf.append(uri.getScheme()).append('|').append(uri.getHost()).append('|').append(uri.getPort());
+        buf.append('|').append(uri.getPath());
+        try {
+            final String result = newPath == null ? uri.toString() : uri.toString(newPath);
+            buf.append('|').append(result);
+        } catch (final URIException e) {
+            buf.append("|failed");
+        }
+        return buf.toString();
+    }
+}
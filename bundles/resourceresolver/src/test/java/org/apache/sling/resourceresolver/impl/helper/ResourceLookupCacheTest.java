@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ResourceLookupCacheTest {
+
+    @Test public void testMissingPath() {
+        final ResourceLookupCache cache = new ResourceLookupCache(10);
+        assertFalse(cache.isMissing("/a", false));
+        cache.setMissing("/a", false);
+        assertTrue(cache.isMissing("/a", false));
+        assertTrue(cache.isMissing("/a", false));
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test public void testResolveAndGetAreSeparate() {
+        final ResourceLookupCache cache = new ResourceLookupCache(10);
+        cache.setMissing("/a", false);
+        assertFalse(cache.isMissing("/a", true));
+        cache.setMissing("/a", true);
+        assertTrue(cache.isMissing("/a", true));
+    }
+
+    @Test public void testClear() {
+        final ResourceLookupCache cache = new ResourceLookupCache(10);
+        cache.setMissing("/a", false);
+        cache.clear();
+        assertFalse(cache.isMissing("/a", false));
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void testEviction() {
+        final ResourceLookupCache cache = new ResourceLookupCache(2);
+        cache.setMissing("/a", false);
+        cache.setMissing("/b", false);
+        // access /a so that /b is the least recently used path
+        assertTrue(cache.isMissing("/a", false));
+        cache.setMissing("/c", false);
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.isMissing("/a", false));
+        assertFalse(cache.isMissing("/b", false));
+        assertTrue(cache.isMissing("/c", false));
+    }
+}
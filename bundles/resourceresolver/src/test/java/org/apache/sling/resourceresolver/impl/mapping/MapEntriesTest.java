@@ -23,7 +23,10 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
@@ -36,10 +39,16 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.SlingConstants;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
@@ -55,6 +64,7 @@ import org.mockito.MockitoAnnotations;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.osgi.framework.BundleContext;
+import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 public class MapEntriesTest {
@@ -1368,4 +1378,207 @@ public class MapEntriesTest {
         Boolean resfreshed = (Boolean ) method.invoke(mapEntries, "/node", true);
         assertTrue(resfreshed.booleanValue());
     }
+
+    @Test
+    public void test_background_load_replays_pending_events() throws Exception {
+        final Resource parent = mock(Resource.class);
+        when(parent.getPath()).thenReturn("/parent");
+        final Resource child = getAliasResource(parent, "child", "alias");
+        final Resource child2 = getAliasResource(parent, "child2", "alias2");
+        when(resourceResolver.getResource("/parent/child2")).thenReturn(child2);
+
+        final CountDownLatch queryStarted = new CountDownLatch(1);
+        final CountDownLatch releaseQuery = new CountDownLatch(1);
+        when(resourceResolver.findResources(anyString(), eq("sql"))).thenAnswer(new Answer<Iterator<Resource>>() {
+
+            public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                if (invocation.getArguments()[0].toString().contains("sling:alias")) {
+                    queryStarted.countDown();
+                    releaseQuery.await(10, TimeUnit.SECONDS);
+                    return Collections.singleton(child).iterator();
+                }
+                return Collections.<Resource> emptySet().iterator();
+            }
+        });
+        when(resourceResolverFactory.isBackgroundMappingLoadEnabled()).thenReturn(true);
+
+        final MapEntries entries = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        try {
+            assertTrue(queryStarted.await(10, TimeUnit.SECONDS));
+            assertTrue(entries.isLoading());
+            assertFalse(entries.isOptimizeAliasResolutionEnabled());
+
+            // added while the aliases are queried
+            entries.handleEvent(getAliasAddedEvent("/parent/child2"));
+            releaseQuery.countDown();
+            waitForBackgroundLoad(entries);
+
+            assertTrue(entries.isOptimizeAliasResolutionEnabled());
+            final Map<String, String> aliasMapEntry = entries.getAliasMap("/parent");
+            assertEquals("child", aliasMapEntry.get("alias"));
+            assertEquals("child2", aliasMapEntry.get("alias2"));
+        } finally {
+            entries.dispose();
+        }
+    }
+
+    @Test
+    public void test_background_load_reloads_on_pending_events_overflow() throws Exception {
+        final Resource parent = mock(Resource.class);
+        when(parent.getPath()).thenReturn("/parent");
+        final Resource child = getAliasResource(parent, "child", "alias");
+        final Resource child2 = getAliasResource(parent, "child2", "alias2");
+
+        final AtomicInteger aliasQueries = new AtomicInteger();
+        final CountDownLatch queryStarted = new CountDownLatch(1);
+        final CountDownLatch releaseQuery = new CountDownLatch(1);
+        when(resourceResolver.findResources(anyString(), eq("sql"))).thenAnswer(new Answer<Iterator<Resource>>() {
+
+            public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                if (invocation.getArguments()[0].toString().contains("sling:alias")) {
+                    if (aliasQueries.incrementAndGet() == 1) {
+                        queryStarted.countDown();
+                        releaseQuery.await(10, TimeUnit.SECONDS);
+                        return Collections.singleton(child).iterator();
+                    }
+                    return Arrays.asList(child, child2).iterator();
+                }
+                return Collections.<Resource> emptySet().iterator();
+            }
+        });
+        when(resourceResolverFactory.isBackgroundMappingLoadEnabled()).thenReturn(true);
+        when(resourceResolverFactory.getBackgroundMappingLoadRetries()).thenReturn(1);
+
+        final MapEntries entries = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        try {
+            assertTrue(queryStarted.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i <= MapEntries.MAX_PENDING_EVENTS; i++) {
+                entries.handleEvent(getAliasAddedEvent("/parent/child2"));
+            }
+            releaseQuery.countDown();
+            waitForBackgroundLoad(entries);
+
+            // the dropped events are covered by loading everything again
+            assertEquals(2, aliasQueries.get());
+            verify(resourceResolver, never()).getResource("/parent/child2");
+            final Map<String, String> aliasMapEntry = entries.getAliasMap("/parent");
+            assertEquals("child", aliasMapEntry.get("alias"));
+            assertEquals("child2", aliasMapEntry.get("alias2"));
+        } finally {
+            entries.dispose();
+        }
+    }
+
+    @Test
+    public void test_background_load_applies_all_events_without_retries() throws Exception {
+        final Resource parent = mock(Resource.class);
+        when(parent.getPath()).thenReturn("/parent");
+        final Resource child = getAliasResource(parent, "child", "alias");
+        final Resource child2 = getAliasResource(parent, "child2", "alias2");
+
+        final AtomicInteger aliasQueries = new AtomicInteger();
+        final CountDownLatch queryStarted = new CountDownLatch(1);
+        final CountDownLatch releaseQuery = new CountDownLatch(1);
+        when(resourceResolver.findResources(anyString(), eq("sql"))).thenAnswer(new Answer<Iterator<Resource>>() {
+
+            public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                if (invocation.getArguments()[0].toString().contains("sling:alias")) {
+                    if (aliasQueries.incrementAndGet() == 1) {
+                        queryStarted.countDown();
+                        releaseQuery.await(10, TimeUnit.SECONDS);
+                        return Collections.singleton(child).iterator();
+                    }
+                    return Arrays.asList(child, child2).iterator();
+                }
+                return Collections.<Resource> emptySet().iterator();
+            }
+        });
+        when(resourceResolverFactory.isBackgroundMappingLoadEnabled()).thenReturn(true);
+        when(resourceResolverFactory.getBackgroundMappingLoadRetries()).thenReturn(0);
+        when(resourceResolver.getResource("/parent/child2")).thenReturn(child2);
+
+        final MapEntries entries = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        try {
+            assertTrue(queryStarted.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i <= MapEntries.MAX_PENDING_EVENTS; i++) {
+                entries.handleEvent(getAliasAddedEvent("/parent/child2"));
+            }
+            releaseQuery.countDown();
+            waitForBackgroundLoad(entries);
+
+            // nothing is loaded again, the queued events are applied instead
+            assertEquals(1, aliasQueries.get());
+            verify(resourceResolver, atLeastOnce()).getResource("/parent/child2");
+            final Map<String, String> aliasMapEntry = entries.getAliasMap("/parent");
+            assertEquals("child", aliasMapEntry.get("alias"));
+            assertEquals("child2", aliasMapEntry.get("alias2"));
+        } finally {
+            entries.dispose();
+        }
+    }
+
+    @Test
+    public void test_dispose_stops_background_load() throws Exception {
+        final Resource system = mock(Resource.class);
+        when(system.getPath()).thenReturn("/jcr:system/node");
+
+        final CountDownLatch queryStarted = new CountDownLatch(1);
+        when(resourceResolver.findResources(anyString(), eq("sql"))).thenAnswer(new Answer<Iterator<Resource>>() {
+
+            public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                // a query which never ends
+                return new Iterator<Resource>() {
+
+                    public boolean hasNext() {
+                        return true;
+                    }
+
+                    public Resource next() {
+                        queryStarted.countDown();
+                        return system;
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        });
+        when(resourceResolverFactory.isBackgroundMappingLoadEnabled()).thenReturn(true);
+
+        final MapEntries entries = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin);
+        assertTrue(queryStarted.await(10, TimeUnit.SECONDS));
+        final Field field = MapEntries.class.getDeclaredField("loaderThread");
+        field.setAccessible(true);
+        final Thread loaderThread = (Thread) field.get(entries);
+
+        entries.dispose();
+        loaderThread.join(10000);
+        assertFalse(loaderThread.isAlive());
+    }
+
+    private Resource getAliasResource(final Resource parent, final String name, final String alias) {
+        final String path = parent.getPath() + "/" + name;
+        final Resource resource = mock(Resource.class);
+        when(resource.getParent()).thenReturn(parent);
+        when(resource.getPath()).thenReturn(path);
+        when(resource.getName()).thenReturn(name);
+        when(resource.adaptTo(ValueMap.class)).thenReturn(buildValueMap("sling:alias", alias));
+        return resource;
+    }
+
+    private Event getAliasAddedEvent(final String path) {
+        final Hashtable<String, Object> props = new Hashtable<String, Object>();
+        props.put(SlingConstants.PROPERTY_PATH, path);
+        props.put(SlingConstants.PROPERTY_ADDED_ATTRIBUTES, new String[] { "sling:alias" });
+        return new Event(SlingConstants.TOPIC_RESOURCE_CHANGED, props);
+    }
+
+    private void waitForBackgroundLoad(final MapEntries entries) throws InterruptedException {
+        final long end = System.currentTimeMillis() + 10000;
+        while (entries.isLoading() && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertFalse(entries.isLoading());
+    }
 }
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ResolveMapIndexTest {
+
+    private static final String[] PATTERNS = {
+        "^http/localhost.80/",
+        "^http/localhost.80/content/a$",
+        "^" + MapEntries.ANY_SCHEME_HOST + "/virtual$",
+        MapEntries.ANY_SCHEME_HOST + "/content",
+        "^http/local\\.host.80/x",
+        "^https/([^/]+).443/foo",
+        "^(?i)http/ABC",
+        "^a|http/zzz",
+        "^http/ab?c",
+        "^" + MapEntries.ANY_SCHEME_HOST + "\\.html",
+        "^http/localhost.80/\\d+"
+    };
+
+    private static final String[] REQUEST_PATHS = {
+        "http/localhost.80/content/a",
+        "http/localhost.80/virtual",
+        "https/host.443/foo",
+        "http/ac",
+        "http/abc",
+        "http/ABC",
+        "http/zzz",
+        "http/local.host.80/x",
+        "http/localXhost.80/x",
+        "http/localhost.80/123",
+        "x"
+    };
+
+    @Test public void test_prefix_tokens() {
+        assertPrefix("http/localhost", "^http/localhost", 1);
+        assertPrefix("http/local.host", "^http/local\\.host", 1);
+        assertPrefix("http/a", "^http/ab?", 1);
+        assertPrefix("http/ab", "^http/ab+", 1);
+        assertPrefix("http/", "^http/\\d+", 1);
+        assertPrefix("", "^(?i)http", 1);
+        assertPrefix("", "^a|http/zzz", 1);
+        assertPrefix("a", "^a(b|c)", 1);
+    }
+
+    @Test public void test_candidates_contain_all_matches() {
+        final List<MapEntry> entries = createEntries();
+        final ResolveMapIndex index = new ResolveMapIndex(entries);
+
+        for (final String requestPath : REQUEST_PATHS) {
+            final List<MapEntry> candidates = getCandidates(index, requestPath);
+            for (final MapEntry entry : entries) {
+                if (entry.replace(requestPath) != null) {
+                    assertTrue(entry + " must be a candidate for " + requestPath, candidates.contains(entry));
+                }
+            }
+        }
+    }
+
+    @Test public void test_candidates_are_filtered() {
+        final ResolveMapIndex index = new ResolveMapIndex(createEntries());
+
+        final List<MapEntry> candidates = getCandidates(index, "https/host.443/foo");
+        for (final MapEntry entry : candidates) {
+            assertFalse(entry.getPattern().startsWith("^http/"));
+        }
+    }
+
+    @Test public void test_candidates_keep_order() {
+        final List<MapEntry> entries = createEntries();
+        final ResolveMapIndex index = new ResolveMapIndex(entries);
+
+        final List<MapEntry> candidates = getCandidates(index, "http/localhost.80/content/a");
+        int last = -1;
+        for (final MapEntry entry : candidates) {
+            final int pos = entries.indexOf(entry);
+            assertTrue(pos > last);
+            last = pos;
+        }
+    }
+
+    @Test public void test_empty_list() {
+        final ResolveMapIndex index = new ResolveMapIndex(Collections.<MapEntry> emptyList());
+        assertFalse(index.getCandidates("http/localhost.80/").hasNext());
+    }
+
+    private void assertPrefix(final String expected, final String pattern, final int start) {
+        final int[] tokens = ResolveMapIndex.getPrefixTokens(pattern, start);
+        final int[] expectedTokens = new int[expected.length()];
+        for (int i = 0; i < expected.length(); i++) {
+            expectedTokens[i] = expected.charAt(i);
+        }
+        assertEquals(expected.length(), tokens.length);
+        for (int i = 0; i < tokens.length; i++) {
+            // an unescaped dot is a wildcard token
+            if (tokens[i] < 0) {
+                tokens[i] = '.';
+            }
+        }
+        assertArrayEquals(expectedTokens, tokens);
+    }
+
+    private List<MapEntry> createEntries() {
+        final List<MapEntry> entries = new ArrayList<MapEntry>();
+        for (final String pattern : PATTERNS) {
+            entries.add(new MapEntry(pattern, -1, false, 0, "/redirect"));
+        }
+        Collections.sort(entries);
+        return entries;
+    }
+
+    private List<MapEntry> getCandidates(final ResolveMapIndex index, final String requestPath) {
+        final List<MapEntry> candidates = new ArrayList<MapEntry>();
+        final Iterator<MapEntry> i = index.getCandidates(requestPath);
+        while (i.hasNext()) {
+            candidates.add(i.next());
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class VanityPathStoreTest {
+
+    private File directory;
+
+    @Before
+    public void setup() throws Exception {
+        directory = File.createTempFile("vanityPathStore", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (final File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void test_reset_and_lookup() throws Exception {
+        final VanityPathStore store = new VanityPathStore(directory, 100);
+        assertFalse(store.isExisting());
+
+        final List<String[]> entries = new ArrayList<String[]>();
+        for (int i = 0; i < 1000; i++) {
+            entries.add(new String[] { "/vanity" + i, "/content/page" + (i % 10) });
+        }
+        entries.add(new String[] { "/v\u00e4nity\u20ac", "/content/umlaut" });
+        store.reset(entries);
+
+        assertEquals(Arrays.asList("/content/page5"), store.getTargets("/vanity5"));
+        assertEquals(Arrays.asList("/content/umlaut"), store.getTargets("/v\u00e4nity\u20ac"));
+        assertEquals(100, store.getVanityPaths("/content/page5").size());
+        assertTrue(store.getTargets("/vanity").isEmpty());
+        assertTrue(store.getTargets("/vanity10000").isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void test_add_and_remove() throws Exception {
+        final VanityPathStore store = new VanityPathStore(directory, 100);
+        store.add("/vanity", "/content/a");
+        store.add("/vanity", "/content/b");
+        store.add("/other", "/content/a");
+        assertEquals(Arrays.asList("/content/a", "/content/b"), store.getTargets("/vanity"));
+
+        assertEquals(Arrays.asList("/other", "/vanity"), store.removeTarget("/content/a"));
+        assertEquals(Arrays.asList("/content/b"), store.getTargets("/vanity"));
+        assertTrue(store.getTargets("/other").isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void test_compaction() throws Exception {
+        final VanityPathStore store = new VanityPathStore(directory, 5);
+        for (int i = 0; i < 20; i++) {
+            store.add("/vanity" + i, "/content/page" + i);
+        }
+        store.removeTarget("/content/page3");
+
+        assertEquals(Arrays.asList("/content/page0"), store.getTargets("/vanity0"));
+        assertEquals(Arrays.asList("/content/page19"), store.getTargets("/vanity19"));
+        assertTrue(store.getTargets("/vanity3").isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void test_reopen() throws Exception {
+        VanityPathStore store = new VanityPathStore(directory, 100);
+        store.reset(Collections.singletonList(new String[] { "/vanity", "/content/a" }));
+        store.add("/added", "/content/b");
+        store.removeTarget("/content/a");
+        store.close();
+
+        store = new VanityPathStore(directory, 100);
+        assertTrue(store.isExisting());
+        assertTrue(store.getTargets("/vanity").isEmpty());
+        assertEquals(Arrays.asList("/content/b"), store.getTargets("/added"));
+        store.close();
+    }
+
+    @Test
+    public void test_valid() throws Exception {
+        VanityPathStore store = new VanityPathStore(directory, 100);
+        assertFalse(store.isValid("config"));
+        store.reset(Collections.singletonList(new String[] { "/vanity", "/content/a" }));
+        store.markValid("config");
+        store.close();
+
+        store = new VanityPathStore(directory, 100);
+        assertTrue(store.isValid("config"));
+        assertFalse(store.isValid("other"));
+        assertEquals(Arrays.asList("/content/a"), store.getTargets("/vanity"));
+        // not closed cleanly
+        store.close();
+
+        store = new VanityPathStore(directory, 100);
+        assertTrue(store.isExisting());
+        assertFalse(store.isValid("config"));
+        store.close();
+    }
+
+    @Test
+    public void test_targets_below() throws Exception {
+        final VanityPathStore store = new VanityPathStore(directory, 100);
+        store.reset(Arrays.asList(new String[] { "/a", "/content/tree" }, new String[] { "/b", "/content/tree/child" },
+                new String[] { "/c", "/content/treetop" }));
+        store.add("/d", "/content/tree/child/grandchild");
+        store.add("/e", "/content/tree/removed");
+        store.removeTarget("/content/tree/removed");
+
+        assertEquals(Arrays.asList("/content/tree", "/content/tree/child", "/content/tree/child/grandchild"),
+                store.getTargetsBelow("/content/tree"));
+        assertEquals(Arrays.asList("/content/tree/child/grandchild"), store.getTargetsBelow("/content/tree/child/grandchild"));
+        assertTrue(store.getTargetsBelow("/content/other").isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void test_compaction_keeps_single_segment_file() throws Exception {
+        VanityPathStore store = new VanityPathStore(directory, 2);
+        for (int i = 0; i < 10; i++) {
+            store.add("/vanity" + i, "/content/page" + i);
+        }
+        store.close();
+
+        store = new VanityPathStore(directory, 2);
+        assertTrue(store.isExisting());
+        assertEquals(Arrays.asList("/content/page9"), store.getTargets("/vanity9"));
+        int segments = 0;
+        for (final File file : directory.listFiles()) {
+            if (file.getName().endsWith(".idx")) {
+                segments++;
+            }
+        }
+        assertEquals(1, segments);
+        store.close();
+    }
+}
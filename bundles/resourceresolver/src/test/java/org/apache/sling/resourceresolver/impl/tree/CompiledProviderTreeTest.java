@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.tree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.sling.api.resource.ResourceProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.osgi.framework.Constants;
+
+public class CompiledProviderTreeTest {
+
+    private ResourceProviderEntry root;
+
+    private ProviderHandler apps;
+
+    private ProviderHandler sample;
+
+    @Before public void setUp() {
+        this.root = new ResourceProviderEntry("/", new ProviderHandler[] { createHandler(0) });
+        this.apps = createHandler(1);
+        this.sample = createHandler(2);
+        this.root.addResourceProvider("/apps", this.apps);
+        this.root.addResourceProvider("/apps/sling/sample", this.sample);
+    }
+
+    @Test public void testFind() {
+        final CompiledProviderTree tree = this.root.getCompiledTree();
+
+        assertEquals(0, tree.find("/").getDepth());
+        assertEquals(0, tree.find("/content/page").getDepth());
+        assertEquals(1, tree.find("/apps").getDepth());
+        assertEquals(1, tree.find("/apps/").getDepth());
+        assertEquals(2, tree.find("/apps/sling").getDepth());
+        assertEquals(3, tree.find("/apps/sling/sample/html.jsp").getDepth());
+        assertEquals(2, tree.find("/apps/sling/samples").getDepth());
+        assertEquals(1, tree.find("/apps/slingshot/sample").getDepth());
+    }
+
+    @Test public void testProviderOrder() {
+        final CompiledProviderTree.Node node = this.root.getCompiledTree().find("/apps/sling/sample/html.jsp");
+        assertArrayEquals(new ProviderHandler[] { this.sample, this.apps }, node.getBottomUpProviders());
+        assertArrayEquals(new ProviderHandler[] { this.apps, this.sample }, node.getTopDownProviders());
+
+        // the root providers are not part of the chain
+        assertEquals(0, this.root.getCompiledTree().find("/content").getBottomUpProviders().length);
+    }
+
+    @Test public void testRecompiledOnChange() {
+        final CompiledProviderTree before = this.root.getCompiledTree();
+        this.root.removeResourceProvider("/apps/sling/sample", this.sample);
+        final CompiledProviderTree after = this.root.getCompiledTree();
+
+        assertNotSame(before, after);
+        assertSame(this.sample, before.find("/apps/sling/sample").getBottomUpProviders()[0]);
+        assertArrayEquals(new ProviderHandler[] { this.apps }, after.find("/apps/sling/sample").getBottomUpProviders());
+    }
+
+    @Test public void testCountSegments() {
+        for (final String path : new String[] { "/", "", "/a", "/a/", "//a//b", "/a/b/c", "a/b" }) {
+            assertEquals(path, ResourceProviderEntry.split(path).length, CompiledProviderTree.countSegments(path));
+        }
+    }
+
+    private ProviderHandler createHandler(final long id) {
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put(Constants.SERVICE_ID, id);
+        return new ResourceProviderHandler(Mockito.mock(ResourceProvider.class), props);
+    }
+}
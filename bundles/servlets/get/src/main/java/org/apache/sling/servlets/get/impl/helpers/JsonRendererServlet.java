@@ -31,6 +31,7 @@ import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
 import org.apache.sling.commons.json.JSONException;
 import org.apache.sling.commons.json.io.JSONRenderer;
 import org.apache.sling.commons.json.io.JSONWriter;
+import org.apache.sling.commons.json.sling.JsonResourceWriter;
 import org.apache.sling.commons.json.sling.ResourceTraversor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -89,11 +90,30 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
         resp.setContentType(req.getResponseContentType());
         resp.setCharacterEncoding("UTF-8");
 
+        final boolean tidy = isTidy(req);
+        final boolean harray = hasSelector(req, HARRAY);
+
+        // Without rendering options the tree is streamed, after checking
+        // that the nr of nodes isn't bigger than the allowed nr.
+        if (!tidy && !harray) {
+            final ResourceCounter counter = new ResourceCounter(maximumResults, maxRecursionLevels);
+            final int allowedLevel = counter.countResources(r);
+            try {
+                if (allowedLevel != -1) {
+                    sendMultipleChoices(r, resp, tidy, allowedLevel);
+                    return;
+                } else if (counter.canStream()) {
+                    JsonResourceWriter.write(new JSONWriter(resp.getWriter()), r, maxRecursionLevels);
+                    return;
+                }
+            } catch (JSONException je) {
+                reportException(je);
+            }
+        }
+
         // We check the tree to see if the nr of nodes isn't bigger than the allowed nr.
         boolean allowDump = true;
         int allowedLevel = 0;
-        final boolean tidy = isTidy(req);
-        final boolean harray = hasSelector(req, HARRAY);
         ResourceTraversor traversor = null;
         try {
             traversor = new ResourceTraversor(maxRecursionLevels, maximumResults, r, tidy);
@@ -120,22 +140,29 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
                 }
 
             } else {
-                // We are not allowed to do the dump.
-                // Send a 300
-                String tidyUrl = (tidy) ? "tidy." : "";
-                resp.setStatus(HttpServletResponse.SC_MULTIPLE_CHOICES);
-                JSONWriter writer = new JSONWriter(resp.getWriter());
-                writer.array();
-                while (allowedLevel >= 0) {
-                    writer.value(r.getResourceMetadata().getResolutionPath() + "." + tidyUrl + allowedLevel + ".json");
-                    allowedLevel--;
-                }
-                writer.endArray();
+                sendMultipleChoices(r, resp, tidy, allowedLevel);
             }
         } catch (JSONException je) {
             reportException(je);
         }
     }
+
+    /**
+     * We are not allowed to do the dump, send a 300 listing the URLs of the
+     * allowed levels.
+     */
+    private void sendMultipleChoices(final Resource r, final SlingHttpServletResponse resp,
+            final boolean tidy, int allowedLevel) throws IOException, JSONException {
+        String tidyUrl = (tidy) ? "tidy." : "";
+        resp.setStatus(HttpServletResponse.SC_MULTIPLE_CHOICES);
+        JSONWriter writer = new JSONWriter(resp.getWriter());
+        writer.array();
+        while (allowedLevel >= 0) {
+            writer.value(r.getResourceMetadata().getResolutionPath() + "." + tidyUrl + allowedLevel + ".json");
+            allowedLevel--;
+        }
+        writer.endArray();
+    }
     
     /**
      * Get recursion level from selectors. as per SLING-167: the last selector, if present, gives the recursion level.
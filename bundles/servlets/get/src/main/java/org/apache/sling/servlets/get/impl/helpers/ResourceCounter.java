@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.get.impl.helpers;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceUtil;
+
+/**
+ * The <code>ResourceCounter</code> checks whether a resource tree may be
+ * streamed with the <code>JsonResourceWriter</code> instead of collecting
+ * it into a <code>JSONObject</code> tree with the <code>ResourceTraversor</code>.
+ * <p>
+ * The maximum number of resources is checked with {@link #countResources(Resource)}.
+ * This pass only counts the resources per level, so the memory used is
+ * bounded by the depth of the tree and not by its size.
+ */
+class ResourceCounter {
+
+    /**
+     * The deepest level which can be written, the <code>JSONWriter</code>
+     * supports at most 50 nested objects and arrays.
+     */
+    static final int MAX_STREAMED_LEVELS = 48;
+
+    private final long maxResources;
+
+    private final int maxRecursionLevels;
+
+    /** The deepest level found by {@link #countResources(Resource)} */
+    private int depth;
+
+    ResourceCounter(final long maxResources, final int maxRecursionLevels) {
+        this.maxResources = maxResources;
+        this.maxRecursionLevels = maxRecursionLevels;
+    }
+
+    /**
+     * Counts the resources below the given resource to check whether the tree
+     * may be written. The result is the same as the one of
+     * <code>ResourceTraversor.collectResources()</code>, which counts the
+     * resources breadth-first: the tree may be written if the number of
+     * resources up to the requested level does not exceed the maximum.
+     * Otherwise the deepest level, whose children still fit, is returned.
+     * <p>
+     * The resources are visited depth-first counting the resources per level.
+     * Once the resources up to some level exceed the maximum, the levels
+     * below it are not visited anymore, so at most a few times the maximum
+     * number of resources are visited.
+     *
+     * @param resource The resource to write
+     * @return -1 if the tree may be written, otherwise the allowed level.
+     */
+    int countResources(final Resource resource) {
+        this.depth = 0;
+        // SLING-2320: always allow enumeration of one's children;
+        // DOS-limitation is for deeper traversals.
+        if (maxRecursionLevels == 0 || maxRecursionLevels == 1) {
+            this.depth = maxRecursionLevels;
+            return -1;
+        }
+
+        // the number of resources per level, level 0 is the resource itself
+        long[] counts = new long[16];
+        // the first level whose resources exceed the maximum
+        int limit = Integer.MAX_VALUE;
+
+        final List<Iterator<Resource>> stack = new ArrayList<Iterator<Resource>>();
+        stack.add(ResourceUtil.listChildren(resource));
+        while (!stack.isEmpty()) {
+            final int level = stack.size();
+            final Iterator<Resource> children = stack.get(level - 1);
+            if (level >= limit || !children.hasNext()) {
+                stack.remove(level - 1);
+                continue;
+            }
+
+            final Resource child = children.next();
+            if (level >= counts.length) {
+                final long[] newCounts = new long[counts.length * 2];
+                System.arraycopy(counts, 0, newCounts, 0, counts.length);
+                counts = newCounts;
+            }
+            counts[level]++;
+            if (level > this.depth) {
+                this.depth = level;
+            }
+
+            // check whether a level from here on is exceeded now
+            long total = 0;
+            for (int i = 1; i < limit && i < counts.length; i++) {
+                total += counts[i];
+                if (i >= level && total > maxResources) {
+                    limit = i;
+                    break;
+                }
+            }
+            if (limit == 1) {
+                break;
+            }
+
+            if ((maxRecursionLevels < 0 || level < maxRecursionLevels) && level + 1 < limit) {
+                stack.add(ResourceUtil.listChildren(child));
+            }
+        }
+
+        return (limit == Integer.MAX_VALUE) ? -1 : limit - 1;
+    }
+
+    /**
+     * Returns <code>true</code> if the tree counted by
+     * {@link #countResources(Resource)} is not too deep to be streamed.
+     */
+    boolean canStream() {
+        return this.depth <= MAX_STREAMED_LEVELS;
+    }
+}
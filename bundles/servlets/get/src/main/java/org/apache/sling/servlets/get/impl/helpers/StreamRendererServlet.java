@@ -17,15 +17,21 @@
 package org.apache.sling.servlets.get.impl.helpers;
 
 import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static org.apache.sling.api.servlets.HttpConstants.HEADER_ETAG;
 import static org.apache.sling.api.servlets.HttpConstants.HEADER_IF_MODIFIED_SINCE;
 import static org.apache.sling.api.servlets.HttpConstants.HEADER_LAST_MODIFIED;
 
 import java.io.BufferedInputStream;
 import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
@@ -79,6 +85,16 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
     static final int IO_BUFFER_SIZE = 2048;
 
+    /**
+     * The If-None-Match request header
+     */
+    static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+
+    /**
+     * The If-Range request header
+     */
+    static final String HEADER_IF_RANGE = "If-Range";
+
     /** default log */
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -125,17 +141,7 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
             return;
         }
 
-        // check the last modification time and If-Modified-Since header
-        if (!included) {
-            ResourceMetadata meta = resource.getResourceMetadata();
-            long modifTime = meta.getModificationTime();
-            if (unmodified(request, modifTime)) {
-                response.setStatus(SC_NOT_MODIFIED);
-                return;
-            }
-        }
-
-        // fall back to plain text rendering if the resource has no stream
+        // a linked file is rendered and validated as the linked resource
         if (resource.getResourceType().equals(JcrConstants.NT_LINKEDFILE)) {
             try {
                 String actualResourcePath = resource.adaptTo(Node.class).getProperty(JcrConstants.JCR_CONTENT).getNode().getPath();
@@ -146,10 +152,38 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
                 throw new IOException(e);
             }
         }
-        InputStream stream = resource.adaptTo(InputStream.class);
-        if (stream != null) {
 
-            streamResource(resource, stream, included, request, response);
+        // check the entity tag and the last modification time against the
+        // If-None-Match and If-Modified-Since headers before opening the
+        // stream of the resource
+        if (!included) {
+            ResourceMetadata meta = resource.getResourceMetadata();
+            final String etag = getETag(resource);
+            final String ifNoneMatch = request.getHeader(HEADER_IF_NONE_MATCH);
+            final boolean notModified;
+            if (ifNoneMatch != null) {
+                // If-Modified-Since is ignored if If-None-Match is present
+                notModified = etag != null && matches(ifNoneMatch, etag, false);
+            } else {
+                notModified = unmodified(request, meta.getModificationTime());
+            }
+            if (notModified) {
+                if (etag != null) {
+                    response.setHeader(HEADER_ETAG, etag);
+                }
+                response.setStatus(SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        // prefer transferring the file directly if the resource is backed
+        // by a file, fall back to plain text rendering if the resource has
+        // no stream
+        final File file = getFile(resource);
+        InputStream stream = (file != null) ? null : resource.adaptTo(InputStream.class);
+        if (file != null || stream != null) {
+
+            streamResource(resource, file, stream, included, request, response);
 
         } else {
 
@@ -204,11 +238,89 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
         return false;
     }
 
+    /**
+     * Returns the weak entity tag of the resource or <code>null</code> if the
+     * resource has no modification time. The tag is derived from the path,
+     * the modification time and the content length of the resource as
+     * provided by the resource metadata, so it is computed without accessing
+     * the contents. As the modification time has a resolution of a second
+     * and is not guaranteed to change with the binary, the tag is weak: it
+     * is used for conditional GET requests but never matches an If-Range
+     * header, so range requests validated by it get the full contents.
+     */
+    static String getETag(final Resource resource) {
+        final ResourceMetadata meta = resource.getResourceMetadata();
+        final long modifTime = meta.getModificationTime();
+        if (modifTime <= 0) {
+            return null;
+        }
+
+        final StringBuilder etag = new StringBuilder(48);
+        etag.append("W/\"");
+        etag.append(Integer.toHexString(resource.getPath().hashCode()));
+        etag.append('-').append(Long.toHexString(modifTime));
+        final long length = meta.getContentLength();
+        if (length >= 0) {
+            etag.append('-').append(Long.toHexString(length));
+        }
+        etag.append('"');
+        return etag.toString();
+    }
+
+    /**
+     * Returns <code>true</code> if the comma separated list of entity tags of
+     * a request header matches the entity tag of the resource.
+     *
+     * @param header The value of the If-None-Match or If-Range header
+     * @param etag The entity tag of the resource
+     * @param strong Whether the strong comparison function is used in which
+     *            weak entity tags never match.
+     */
+    static boolean matches(final String header, final String etag, final boolean strong) {
+        final boolean weak = etag.startsWith("W/");
+        if (strong && weak) {
+            return false;
+        }
+        final String opaqueTag = weak ? etag.substring(2) : etag;
+        final String trimmed = header.trim();
+        if (trimmed.equals("*")) {
+            return !strong;
+        }
+        final StringTokenizer tokens = new StringTokenizer(trimmed, ",");
+        while (tokens.hasMoreTokens()) {
+            String candidate = tokens.nextToken().trim();
+            if (candidate.startsWith("W/")) {
+                if (strong) {
+                    continue;
+                }
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the file the resource adapts to if it is a regular readable
+     * file or <code>null</code> otherwise.
+     */
+    private File getFile(final Resource resource) {
+        final File file = resource.adaptTo(File.class);
+        return (file != null && file.isFile() && file.canRead()) ? file : null;
+    }
+
+    /**
+     * Streams the resource either from the <code>file</code> or the
+     * <code>stream</code>. Exactly one of both is not <code>null</code>.
+     */
     private void streamResource(final Resource resource,
-            final InputStream stream, final boolean included,
+            final File file, final InputStream stream, final boolean included,
             final SlingHttpServletRequest request,
             final SlingHttpServletResponse response) throws IOException {
         // finally stream the resource
+        FileInputStream fileStream = null;
         try {
 
             final ArrayList<Range> ranges;
@@ -221,7 +333,7 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
                 // parse optional ranges
                 ranges = parseRange(request, response,
-                    resource.getResourceMetadata());
+                    resource.getResourceMetadata(), getETag(resource));
                 if (ranges == null) {
                     // there was something wrong, the parseRange has sent a
                     // response and we are done
@@ -234,15 +346,28 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
             ServletOutputStream out = response.getOutputStream();
 
+            // the channel to transfer from if the resource is a file
+            final FileChannel channel;
+            if (file != null) {
+                fileStream = new FileInputStream(file);
+                channel = fileStream.getChannel();
+            } else {
+                channel = null;
+            }
+
             if (ranges == FULL) {
 
                 // return full resource
                 setContentLength(response,
                     resource.getResourceMetadata().getContentLength());
-                byte[] buf = new byte[IO_BUFFER_SIZE];
-                int rd;
-                while ((rd = stream.read(buf)) >= 0) {
-                    out.write(buf, 0, rd);
+                if (channel != null) {
+                    staticCopyRange(channel, out, 0, channel.size());
+                } else {
+                    byte[] buf = new byte[IO_BUFFER_SIZE];
+                    int rd;
+                    while ((rd = stream.read(buf)) >= 0) {
+                        out.write(buf, 0, rd);
+                    }
                 }
 
             } else {
@@ -257,20 +382,25 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
                         + "-" + range.end + "/" + range.length);
                     setContentLength(response, range.end - range.start + 1);
 
-                    copy(stream, out, range);
+                    if (channel != null) {
+                        staticCopyRange(channel, out, range.start, range.end + 1);
+                    } else {
+                        copy(stream, out, range);
+                    }
 
                 } else {
 
                     response.setContentType("multipart/byteranges; boundary="
                         + mimeSeparation);
 
-                    copy(resource, out, ranges.iterator());
+                    copy(resource, channel, out, ranges.iterator());
                 }
 
             }
 
         } finally {
             closeSilently(stream);
+            closeSilently(fileStream);
         }
     }
 
@@ -333,6 +463,7 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
         final long modifTime = meta.getModificationTime();
         if (modifTime > 0) {
             response.setDateHeader(HEADER_LAST_MODIFIED, modifTime);
+            response.setHeader(HEADER_ETAG, getETag(resource));
         }
 
         final String defaultContentType = "application/octet-stream";
@@ -464,11 +595,14 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
      * the face of an exception).
      *
      * @param resource The resource from which to send ranges
+     * @param channel The channel of the file of the resource to transfer the
+     *            ranges from or <code>null</code> to read the ranges from
+     *            the input stream of the resource
      * @param ostream The output stream to write to
      * @param ranges Iterator of the ranges the client wanted to retrieve
      * @exception IOException if an input/output error occurs
      */
-    private void copy(Resource resource, ServletOutputStream ostream,
+    private void copy(Resource resource, FileChannel channel, ServletOutputStream ostream,
             Iterator<Range> ranges) throws IOException {
 
         String contentType = resource.getResourceMetadata().getContentType();
@@ -476,9 +610,14 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
         while ((exception == null) && (ranges.hasNext())) {
 
-            InputStream resourceInputStream = resource.adaptTo(InputStream.class);
-            InputStream istream = new BufferedInputStream(resourceInputStream,
-                IO_BUFFER_SIZE);
+            // the file channel is positioned for each range, streams have
+            // to be opened again for each range
+            InputStream istream = null;
+            if (channel == null) {
+                InputStream resourceInputStream = resource.adaptTo(InputStream.class);
+                istream = new BufferedInputStream(resourceInputStream,
+                    IO_BUFFER_SIZE);
+            }
 
             try {
                 Range currentRange = ranges.next();
@@ -495,7 +634,11 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
                 // Copy content
                 try {
-                    copy(istream, ostream, currentRange);
+                    if (channel != null) {
+                        staticCopyRange(channel, ostream, currentRange.start, currentRange.end + 1);
+                    } else {
+                        copy(istream, ostream, currentRange);
+                    }
                 } catch(IOException e) {
                     exception = e;
                 }
@@ -564,27 +707,51 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
         }
     }
 
+    /**
+     * Transfers the bytes from <code>start</code> up to but not including
+     * <code>end</code> from the file channel to the output stream. The
+     * channel is positioned directly at the start of the range and the
+     * transfer is left to the channel implementation, which avoids reading
+     * skipped bytes and copying through a heap buffer of this servlet.
+     */
+    // static, package-private method to make unit testing easier
+    static void staticCopyRange(FileChannel channel,
+            OutputStream ostream, long start, long end) throws IOException {
+        final WritableByteChannel target = Channels.newChannel(ostream);
+        final long last = Math.min(end, channel.size());
+        long position = start;
+        while (position < last) {
+            final long transferred = channel.transferTo(position, last - position, target);
+            if (transferred <= 0) {
+                break;
+            }
+            position += transferred;
+        }
+    }
+
     /**
      * Parse the range header.
      *
      * @param request The servlet request we are processing
      * @param response The servlet response we are creating
+     * @param metadata The metadata of the resource
+     * @param etag The entity tag of the resource or <code>null</code>
      * @return ArrayList of ranges parsed from the Range header or {@link #FULL}
      *         if the full resource should be returned or <code>null</code> if
      *         an error occurred parsing the header and the request has been
      *         finished sending an error status.
      */
     private ArrayList<Range> parseRange(HttpServletRequest request,
-            HttpServletResponse response, ResourceMetadata metadata)
-            throws IOException {
+            HttpServletResponse response, ResourceMetadata metadata,
+            String etag) throws IOException {
 
         // Checking If-Range
-        String headerValue = request.getHeader("If-Range");
+        String headerValue = request.getHeader(HEADER_IF_RANGE);
         if (headerValue != null) {
 
             long headerValueTime = (-1L);
             try {
-                headerValueTime = request.getDateHeader("If-Range");
+                headerValueTime = request.getDateHeader(HEADER_IF_RANGE);
             } catch (IllegalArgumentException e) {
                 // Ignore
             }
@@ -592,9 +759,11 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
             if (headerValueTime == (-1L)) {
 
                 // If the ETag the client gave does not match the entity
-                // etag, then the entire entity is returned.
-                // Sling: no etag support yet, return full range
-                return FULL;
+                // etag, then the entire entity is returned. If-Range
+                // requires the strong comparison.
+                if (etag == null || !matches(headerValue, etag, true)) {
+                    return FULL;
+                }
 
             } else if (metadata.getModificationTime() > (headerValueTime + 1000)) {
 
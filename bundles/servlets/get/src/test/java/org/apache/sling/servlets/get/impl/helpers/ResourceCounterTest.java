@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.get.impl.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.commons.json.io.JSONWriter;
+import org.apache.sling.commons.json.sling.JsonResourceWriter;
+import org.apache.sling.commons.json.sling.ResourceTraversor;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ResourceCounterTest {
+
+    private ResourceResolver resolver;
+
+    private Map<Resource, List<Resource>> children;
+
+    @Before
+    public void setup() {
+        resolver = Mockito.mock(ResourceResolver.class);
+        children = new HashMap<Resource, List<Resource>>();
+        Mockito.when(resolver.listChildren(Mockito.any(Resource.class))).thenAnswer(new Answer<Iterator<Resource>>() {
+            public Iterator<Resource> answer(InvocationOnMock invocation) {
+                final List<Resource> list = children.get(invocation.getArguments()[0]);
+                return (list == null) ? new ArrayList<Resource>().iterator() : list.iterator();
+            }
+        });
+    }
+
+    private Resource resource(final Resource parent, final String name, final Map<String, Object> props) {
+        final String path = (parent == null) ? "/" + name : parent.getPath() + "/" + name;
+        final Resource r = Mockito.mock(Resource.class);
+        Mockito.when(r.getPath()).thenReturn(path);
+        Mockito.when(r.getResourceResolver()).thenReturn(resolver);
+        Mockito.when(r.adaptTo(ValueMap.class)).thenReturn(new ValueMapDecorator(props));
+        if (parent != null) {
+            List<Resource> list = children.get(parent);
+            if (list == null) {
+                list = new ArrayList<Resource>();
+                children.put(parent, list);
+            }
+            list.add(r);
+        }
+        return r;
+    }
+
+    private Resource resource(final Resource parent, final String name) {
+        final Map<String, Object> props = new LinkedHashMap<String, Object>();
+        props.put("title", name);
+        return resource(parent, name, props);
+    }
+
+    /** Creates a tree with the given number of children per level */
+    private Resource tree(final int... widths) {
+        final Resource root = resource(null, "root");
+        addChildren(root, widths, 0);
+        return root;
+    }
+
+    private void addChildren(final Resource parent, final int[] widths, final int level) {
+        if (level < widths.length) {
+            for (int i = 0; i < widths[level]; i++) {
+                addChildren(resource(parent, "n" + i), widths, level + 1);
+            }
+        }
+    }
+
+    private String write(final Resource r, final int levels) throws Exception {
+        final StringWriter out = new StringWriter();
+        JsonResourceWriter.write(new JSONWriter(out), r, levels);
+        return out.toString();
+    }
+
+    private void assertSameAsTraversor(final Resource r, final int levels, final long max) throws Exception {
+        final ResourceTraversor traversor = new ResourceTraversor(levels, max, r, false);
+        final int expected = traversor.collectResources();
+        assertEquals("Allowed level for " + levels + " levels and " + max + " resources",
+                expected, new ResourceCounter(max, levels).countResources(r));
+        if (expected == -1) {
+            assertEquals(traversor.getJSONObject().toString(), write(r, levels));
+        }
+    }
+
+    @Test
+    public void testSameAsTraversor() throws Exception {
+        final Resource root = tree(3, 2, 4);
+        for (int levels = -1; levels <= 4; levels++) {
+            for (long max = 0; max <= 40; max++) {
+                assertSameAsTraversor(root, levels, max);
+            }
+        }
+    }
+
+    @Test
+    public void testUnbalancedSameAsTraversor() throws Exception {
+        final Resource root = resource(null, "root");
+        final Resource a = resource(root, "a");
+        Resource deep = resource(root, "deep");
+        for (int i = 0; i < 6; i++) {
+            deep = resource(deep, "d" + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            resource(a, "a" + i);
+        }
+        for (int levels = -1; levels <= 8; levels++) {
+            for (long max = 0; max <= 20; max++) {
+                assertSameAsTraversor(root, levels, max);
+            }
+        }
+    }
+
+    @Test
+    public void testChildrenAlwaysAllowed() throws Exception {
+        final Resource root = tree(100);
+        assertEquals(-1, new ResourceCounter(10, 1).countResources(root));
+        assertEquals(0, new ResourceCounter(10, -1).countResources(root));
+    }
+
+    @Test
+    public void testCountStopsAtLimit() throws Exception {
+        final Resource root = tree(5, 1000);
+        final ResourceCounter counter = new ResourceCounter(20, -1);
+        assertEquals(1, counter.countResources(root));
+
+        // the children of the first levels are not listed once exceeded
+        Mockito.verify(resolver, Mockito.atMost(6)).listChildren(Mockito.any(Resource.class));
+    }
+
+    @Test
+    public void testCanWrite() throws Exception {
+        final Resource root = resource(null, "root");
+        Resource deep = root;
+        for (int i = 0; i < ResourceCounter.MAX_STREAMED_LEVELS; i++) {
+            deep = resource(deep, "d" + i);
+        }
+        final ResourceCounter counter = new ResourceCounter(1000, -1);
+        assertEquals(-1, counter.countResources(root));
+        assertTrue(counter.canStream());
+
+        resource(deep, "tooDeep");
+        assertEquals(-1, counter.countResources(root));
+        assertFalse(counter.canStream());
+    }
+}
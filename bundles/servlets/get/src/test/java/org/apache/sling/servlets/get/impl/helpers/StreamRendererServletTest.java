@@ -19,15 +19,31 @@
 package org.apache.sling.servlets.get.impl.helpers;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.Random;
 
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.request.RequestPathInfo;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
 import org.junit.Test;
+import org.mockito.Mockito;
 
 public class StreamRendererServletTest {
 
@@ -47,6 +63,108 @@ public class StreamRendererServletTest {
         assertEquals("34", result);
     }
     
+    @Test
+    public void testCopyFileRange() throws IOException {
+        final byte[] expected = new byte[StreamRendererServlet.IO_BUFFER_SIZE * 5 + 17];
+        new Random(1234).nextBytes(expected);
+        final File file = File.createTempFile("streamrenderer", ".bin");
+        try {
+            final FileOutputStream fos = new FileOutputStream(file);
+            try {
+                fos.write(expected);
+            } finally {
+                fos.close();
+            }
+
+            final FileInputStream fis = new FileInputStream(file);
+            try {
+                final FileChannel channel = fis.getChannel();
+                assertCopyFileRange(channel, expected, 0, expected.length);
+                assertCopyFileRange(channel, expected, 0, 1);
+                assertCopyFileRange(channel, expected, 5000, 5000);
+                assertCopyFileRange(channel, expected, 4711, expected.length - 3);
+
+                // ranges beyond the end of the file are cut
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                StreamRendererServlet.staticCopyRange(channel, out, expected.length - 2, expected.length + 100);
+                assertEquals(2, out.size());
+            } finally {
+                fis.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void assertCopyFileRange(FileChannel channel, byte[] expected, int a, int b) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamRendererServlet.staticCopyRange(channel, out, a, b);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(expected, a, b), out.toByteArray()));
+    }
+
+    @Test
+    public void testETag() {
+        final Resource resource = mockResource("/content/file.bin", 1234567890000L, 42);
+        final String etag = StreamRendererServlet.getETag(resource);
+        assertTrue(etag, etag.startsWith("W/\"") && etag.endsWith("\""));
+        assertEquals(etag, StreamRendererServlet.getETag(mockResource("/content/file.bin", 1234567890000L, 42)));
+        assertFalse(etag.equals(StreamRendererServlet.getETag(mockResource("/content/file.bin", 1234567891000L, 42))));
+        assertFalse(etag.equals(StreamRendererServlet.getETag(mockResource("/content/file.bin", 1234567890000L, 43))));
+        assertNull(StreamRendererServlet.getETag(mockResource("/content/file.bin", 0, 42)));
+    }
+
+    @Test
+    public void testMatches() {
+        final String etag = "\"abc\"";
+        assertTrue(StreamRendererServlet.matches("\"abc\"", etag, true));
+        assertTrue(StreamRendererServlet.matches("\"x\", \"abc\"", etag, true));
+        assertTrue(StreamRendererServlet.matches("W/\"abc\"", etag, false));
+        assertFalse(StreamRendererServlet.matches("W/\"abc\"", etag, true));
+        assertTrue(StreamRendererServlet.matches("*", etag, false));
+        assertFalse(StreamRendererServlet.matches("\"abd\"", etag, false));
+    }
+
+    @Test
+    public void testWeakETagMatches() {
+        final String etag = "W/\"abc\"";
+        assertTrue(StreamRendererServlet.matches("W/\"abc\"", etag, false));
+        assertTrue(StreamRendererServlet.matches("\"abc\"", etag, false));
+        assertFalse(StreamRendererServlet.matches("\"abd\"", etag, false));
+        // If-Range never matches a weak tag
+        assertFalse(StreamRendererServlet.matches("W/\"abc\"", etag, true));
+        assertFalse(StreamRendererServlet.matches("\"abc\"", etag, true));
+    }
+
+    @Test
+    public void testNotModifiedWithoutOpeningStream() throws Exception {
+        final Resource resource = mockResource("/content/file.bin", 1234567890000L, 42);
+        Mockito.when(resource.getResourceType()).thenReturn("nt:file");
+
+        final SlingHttpServletRequest request = Mockito.mock(SlingHttpServletRequest.class);
+        final RequestPathInfo rpi = Mockito.mock(RequestPathInfo.class);
+        Mockito.when(request.getRequestPathInfo()).thenReturn(rpi);
+        Mockito.when(request.getResource()).thenReturn(resource);
+        Mockito.when(request.getHeader(StreamRendererServlet.HEADER_IF_NONE_MATCH)).thenReturn(
+            StreamRendererServlet.getETag(resource));
+        final SlingHttpServletResponse response = Mockito.mock(SlingHttpServletResponse.class);
+
+        new StreamRendererServlet(false, new String[0]).doGet(request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        Mockito.verify(response).setHeader("ETag", StreamRendererServlet.getETag(resource));
+        Mockito.verify(resource, Mockito.never()).adaptTo(InputStream.class);
+    }
+
+    private Resource mockResource(final String path, final long modificationTime, final long length) {
+        final ResourceMetadata meta = new ResourceMetadata();
+        meta.setModificationTime(modificationTime);
+        meta.setContentLength(length);
+        final Resource resource = Mockito.mock(Resource.class);
+        Mockito.when(resource.getPath()).thenReturn(path);
+        Mockito.when(resource.getResourceMetadata()).thenReturn(meta);
+        return resource;
+    }
+
     private void runTests(int randomSeed) throws IOException {
         final Random random = new Random(randomSeed);
         assertCopyRange(random, StreamRendererServlet.IO_BUFFER_SIZE * 2 + 42);
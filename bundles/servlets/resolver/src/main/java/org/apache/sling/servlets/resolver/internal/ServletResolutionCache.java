@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.Servlet;
+
+import org.apache.sling.servlets.resolver.internal.helper.AbstractResourceCollector;
+
+/**
+ * The <code>ServletResolutionCache</code> caches the servlet resolved for a
+ * resource collector together with the locations which have been searched to
+ * find the servlet.
+ * <p>
+ * Lookups are lock free. Once the cache grows beyond its maximum size, the
+ * least recently used entries are evicted. A change at a path only removes
+ * the entries whose resolution searched that path, a parent or a child of it;
+ * all other entries are kept.
+ */
+class ServletResolutionCache {
+
+    /** Percentage of the maximum size which is evicted at once. */
+    private static final int EVICTION_PERCENTAGE = 10;
+
+    private final Map<AbstractResourceCollector, CacheEntry> entries;
+
+    private final int maxSize;
+
+    /** Logical clock used to record the last access of an entry. */
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final AtomicLong flushes = new AtomicLong();
+
+    ServletResolutionCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new ConcurrentHashMap<AbstractResourceCollector, CacheEntry>(maxSize);
+    }
+
+    /**
+     * Returns the cached servlet for the collector or <code>null</code>.
+     */
+    Servlet get(final AbstractResourceCollector collector) {
+        final CacheEntry entry = this.entries.get(collector);
+        if (entry != null) {
+            entry.lastAccess = this.clock.incrementAndGet();
+            this.hits.incrementAndGet();
+            return entry.servlet;
+        }
+        this.misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Caches the servlet resolved for the collector.
+     * @param locations The locations searched for resolving the servlet.
+     */
+    void put(final AbstractResourceCollector collector, final Servlet servlet, final List<String> locations) {
+        final CacheEntry entry = new CacheEntry(servlet, locations.toArray(new String[locations.size()]));
+        entry.lastAccess = this.clock.incrementAndGet();
+        this.entries.put(collector, entry);
+        if (this.entries.size() > this.maxSize) {
+            this.evict();
+        }
+    }
+
+    /**
+     * Removes the least recently used entries so that the cache is
+     * below its maximum size again.
+     */
+    private synchronized void evict() {
+        final int size = this.entries.size();
+        if (size <= this.maxSize) {
+            return;
+        }
+        final List<Map.Entry<AbstractResourceCollector, CacheEntry>> sorted =
+                new ArrayList<Map.Entry<AbstractResourceCollector, CacheEntry>>(this.entries.entrySet());
+        Collections.sort(sorted, new Comparator<Map.Entry<AbstractResourceCollector, CacheEntry>>() {
+            public int compare(final Map.Entry<AbstractResourceCollector, CacheEntry> o1,
+                    final Map.Entry<AbstractResourceCollector, CacheEntry> o2) {
+                final long a1 = o1.getValue().lastAccess;
+                final long a2 = o2.getValue().lastAccess;
+                return a1 < a2 ? -1 : (a1 == a2 ? 0 : 1);
+            }
+        });
+        final int count = Math.min(sorted.size(), size - this.maxSize + this.maxSize * EVICTION_PERCENTAGE / 100);
+        for (int i = 0; i < count; i++) {
+            final Map.Entry<AbstractResourceCollector, CacheEntry> e = sorted.get(i);
+            if (this.entries.remove(e.getKey()) != null) {
+                this.evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries whose resolution depends on the given path.
+     * @return The number of removed entries
+     */
+    int invalidate(final String path) {
+        int count = 0;
+        final Iterator<CacheEntry> i = this.entries.values().iterator();
+        while (i.hasNext()) {
+            final CacheEntry entry = i.next();
+            if (entry.dependsOn(path)) {
+                i.remove();
+                count++;
+            }
+        }
+        this.invalidations.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void flush() {
+        this.entries.clear();
+        this.flushes.incrementAndGet();
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    int getMaxSize() {
+        return this.maxSize;
+    }
+
+    long getHitCount() {
+        return this.hits.get();
+    }
+
+    long getMissCount() {
+        return this.misses.get();
+    }
+
+    long getEvictionCount() {
+        return this.evictions.get();
+    }
+
+    long getInvalidationCount() {
+        return this.invalidations.get();
+    }
+
+    long getFlushCount() {
+        return this.flushes.get();
+    }
+
+    private static final class CacheEntry {
+
+        final Servlet servlet;
+
+        /** searched locations, without trailing slash */
+        final String[] locations;
+
+        volatile long lastAccess;
+
+        CacheEntry(final Servlet servlet, final String[] locations) {
+            this.servlet = servlet;
+            this.locations = locations;
+        }
+
+        /**
+         * A change at the path affects this entry if the path is one of the
+         * locations, inside one of them or an ancestor of one of them.
+         */
+        boolean dependsOn(final String path) {
+            for (final String location : this.locations) {
+                if (isSameOrDescendant(path, location) || isSameOrDescendant(location, path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isSameOrDescendant(final String path, final String ancestor) {
+            if (!path.startsWith(ancestor)) {
+                return false;
+            }
+            return path.length() == ancestor.length()
+                    || ancestor.endsWith("/")
+                    || path.charAt(ancestor.length()) == '/';
+        }
+    }
+}
@@ -40,7 +40,6 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
@@ -189,14 +188,11 @@ public class SlingServletResolver
     private Servlet fallbackErrorServlet;
 
     /** The script resolution cache. */
-    private Map<AbstractResourceCollector, Servlet> cache;
+    private ServletResolutionCache cache;
 
     /** The cache size. */
     private int cacheSize;
 
-    /** Flag to log warning if cache size exceed only once. */
-    private volatile boolean logCacheSizeWarning;
-
     /** Registration as event handler. */
     private ServiceRegistration eventHandlerReg;
 
@@ -624,7 +620,8 @@ public class SlingServletResolver
     private Servlet getServletInternal(final AbstractResourceCollector locationUtil,
             final SlingHttpServletRequest request,
             final ResourceResolver resolver) {
-        final Servlet scriptServlet = (this.cache != null ? this.cache.get(locationUtil) : null);
+        final ServletResolutionCache localCache = this.cache;
+        final Servlet scriptServlet = (localCache != null ? localCache.get(locationUtil) : null);
         if (scriptServlet != null) {
             if ( LOGGER.isDebugEnabled() ) {
                 LOGGER.debug("Using cached servlet {}", RequestUtil.getServletName(scriptServlet));
@@ -632,7 +629,8 @@ public class SlingServletResolver
             return scriptServlet;
         }
 
-        final Collection<Resource> candidates = locationUtil.getServlets(resolver);
+        final List<String> locations = (localCache != null ? new ArrayList<String>() : null);
+        final Collection<Resource> candidates = locationUtil.getServlets(resolver, locations);
 
         if (LOGGER.isDebugEnabled()) {
             if (candidates.isEmpty()) {
@@ -654,14 +652,8 @@ public class SlingServletResolver
                 final boolean isOptingServlet = candidate instanceof OptingServlet;
                 boolean servletAcceptsRequest = !isOptingServlet || (request != null && ((OptingServlet) candidate).accepts(request));
                 if (servletAcceptsRequest) {
-                    if (!hasOptingServlet && !isOptingServlet && this.cache != null) {
-                        if ( this.cache.size() < this.cacheSize ) {
-                            this.cache.put(locationUtil, candidate);
-                        } else if ( this.logCacheSizeWarning ) {
-                            this.logCacheSizeWarning = false;
-                            LOGGER.warn("Script cache has reached its limit of {}. You might want to increase the cache size for the servlet resolver.",
-                                    this.cacheSize);
-                        }
+                    if (!hasOptingServlet && !isOptingServlet && localCache != null) {
+                        localCache.put(locationUtil, candidate, locations);
                     }
                     LOGGER.debug("Using servlet provided by candidate resource {}", candidateResource.getPath());
                     return candidate;
@@ -840,8 +832,7 @@ public class SlingServletResolver
         // create cache - if a cache size is configured
         this.cacheSize = OsgiUtil.toInteger(properties.get(PROP_CACHE_SIZE), DEFAULT_CACHE_SIZE);
         if (this.cacheSize > 5) {
-            this.cache = new ConcurrentHashMap<AbstractResourceCollector, Servlet>(cacheSize);
-            this.logCacheSizeWarning = true;
+            this.cache = new ServletResolutionCache(cacheSize);
         } else {
             this.cacheSize = 0;
         }
@@ -1073,13 +1064,17 @@ public class SlingServletResolver
                 // this is a resource or resource provider event
 
                 // if the path of the event is a sub path of a search path
-                // we flush the whole cache
+                // we remove all entries which searched this path
                 final String path = (String) event.getProperty(SlingConstants.PROPERTY_PATH);
                 if ( path != null ) {
                     int index = 0;
-                    while (!flushCache && index < searchPaths.length) {
+                    while (index < searchPaths.length) {
                         if (path.startsWith(this.searchPaths[index])) {
-                            flushCache = true;
+                            final int count = this.cache.invalidate(path);
+                            if ( count > 0 ) {
+                                LOGGER.debug("Removed {} cached servlets depending on {}", count, path);
+                            }
+                            break;
                         }
                         index++;
                     }
@@ -1092,8 +1087,10 @@ public class SlingServletResolver
     }
 
     private void flushCache() {
-        this.cache.clear();
-        this.logCacheSizeWarning = true;
+        final ServletResolutionCache localCache = this.cache;
+        if (localCache != null) {
+            localCache.flush();
+        }
     }
 
     /** The list of property names checked by {@link #getName(ServiceReference)} */
@@ -1387,7 +1384,8 @@ public class SlingServletResolver
         }
 
         public int getCacheSize() {
-            return cache.size();
+            final ServletResolutionCache localCache = cache;
+            return localCache != null ? localCache.size() : 0;
         }
 
         public void flushCache() {
@@ -1398,5 +1396,40 @@ public class SlingServletResolver
             return cacheSize;
         }
 
+        public long getHitCount() {
+            final ServletResolutionCache localCache = cache;
+            return localCache != null ? localCache.getHitCount() : 0;
+        }
+
+        public long getMissCount() {
+            final ServletResolutionCache localCache = cache;
+            return localCache != null ? localCache.getMissCount() : 0;
+        }
+
+        public double getHitRatio() {
+            final ServletResolutionCache localCache = cache;
+            if (localCache == null) {
+                return 0;
+            }
+            final long hits = localCache.getHitCount();
+            final long total = hits + localCache.getMissCount();
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        public long getEvictionCount() {
+            final ServletResolutionCache localCache = cache;
+            return localCache != null ? localCache.getEvictionCount() : 0;
+        }
+
+        public long getInvalidationCount() {
+            final ServletResolutionCache localCache = cache;
+            return localCache != null ? localCache.getInvalidationCount() : 0;
+        }
+
+        public long getFlushCount() {
+            final ServletResolutionCache localCache = cache;
+            return localCache != null ? localCache.getFlushCount() : 0;
+        }
+
     }
 }
@@ -20,6 +20,7 @@ package org.apache.sling.servlets.resolver.internal.helper;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -65,12 +66,26 @@ public abstract class AbstractResourceCollector {
     }
 
     public final Collection<Resource> getServlets(final ResourceResolver resolver) {
+        return getServlets(resolver, null);
+    }
+
+    /**
+     * Returns the ordered collection of servlet resources like
+     * {@link #getServlets(ResourceResolver)} and adds all searched locations
+     * (without trailing slash) to the given list.
+     *
+     * @param resolver The resource resolver
+     * @param locations The list to add the searched locations to or
+     *            <code>null</code>
+     * @return The ordered collection of servlet resources
+     */
+    public final Collection<Resource> getServlets(final ResourceResolver resolver, final List<String> locations) {
 
         final SortedSet<Resource> resources = new TreeSet<Resource>();
-        final Iterator<String> locations = new LocationIterator(resourceType, resourceSuperType,
-                                                                baseResourceType, resolver);
-        while (locations.hasNext()) {
-            final String location = locations.next();
+        final Iterator<String> locationIt = new LocationIterator(resourceType, resourceSuperType,
+                                                                 baseResourceType, resolver);
+        while (locationIt.hasNext()) {
+            final String location = locationIt.next();
 
             // get the location resource, use a synthetic resource if there
             // is no real location. There may still be children at this
@@ -81,6 +96,9 @@ public abstract class AbstractResourceCollector {
             } else {
                 path = location;
             }
+            if ( locations != null ) {
+                locations.add(path);
+            }
             final Resource locationRes = getResource(resolver, path);
             getWeightedResources(resources, locationRes);
         }
@@ -37,6 +37,48 @@ public interface SlingServletResolverCacheMBean {
      */
     int getMaximumCacheSize();
 
+    /**
+     * Get the number of servlet resolutions answered by the cache
+     *
+     * @return the number of cache hits
+     */
+    long getHitCount();
+
+    /**
+     * Get the number of servlet resolutions not answered by the cache
+     *
+     * @return the number of cache misses
+     */
+    long getMissCount();
+
+    /**
+     * Get the ratio of cache hits to all servlet resolutions
+     *
+     * @return the hit ratio between 0 and 1
+     */
+    double getHitRatio();
+
+    /**
+     * Get the number of entries evicted as the cache reached its maximum size
+     *
+     * @return the number of evicted entries
+     */
+    long getEvictionCount();
+
+    /**
+     * Get the number of entries removed because a resource they depend on changed
+     *
+     * @return the number of invalidated entries
+     */
+    long getInvalidationCount();
+
+    /**
+     * Get the number of times the whole cache has been flushed
+     *
+     * @return the number of flushes
+     */
+    long getFlushCount();
+
     /**
      * Flush the servlet resolver cache.
      */
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.servlets.resolver.internal.helper.AbstractResourceCollector;
+import org.junit.Test;
+
+public class ServletResolutionCacheTest {
+
+    private final Servlet servlet = new HttpServlet() {
+        private static final long serialVersionUID = 1L;
+    };
+
+    @Test public void testGetAndPut() {
+        final ServletResolutionCache cache = new ServletResolutionCache(10);
+        assertNull(cache.get(collector("a/b")));
+        cache.put(collector("a/b"), servlet, Arrays.asList("/apps/a/b", "/libs/a/b"));
+        assertSame(servlet, cache.get(collector("a/b")));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test public void testInvalidateDependentEntries() {
+        final ServletResolutionCache cache = new ServletResolutionCache(10);
+        cache.put(collector("a/b"), servlet, Arrays.asList("/apps/a/b", "/libs/a/b", "/apps/sling/servlet/default"));
+        cache.put(collector("a/bc"), servlet, Arrays.asList("/apps/a/bc", "/libs/a/bc", "/apps/sling/servlet/default"));
+        cache.put(collector("x/y"), servlet, Arrays.asList("/apps/x/y", "/libs/x/y"));
+
+        // a script below a location
+        assertEquals(1, cache.invalidate("/apps/a/b/html.jsp"));
+        assertNull(cache.get(collector("a/b")));
+        assertNotNull(cache.get(collector("a/bc")));
+
+        // an ancestor of a location
+        assertEquals(1, cache.invalidate("/libs/x"));
+        assertNull(cache.get(collector("x/y")));
+
+        // a location shared by several entries
+        assertEquals(1, cache.invalidate("/apps/sling/servlet/default/GET.servlet"));
+        assertEquals(0, cache.size());
+        assertEquals(3, cache.getInvalidationCount());
+    }
+
+    @Test public void testUnrelatedChange() {
+        final ServletResolutionCache cache = new ServletResolutionCache(10);
+        cache.put(collector("a/b"), servlet, Arrays.asList("/apps/a/b", "/libs/a/b"));
+        assertEquals(0, cache.invalidate("/apps/other/html.jsp"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test public void testEvictLeastRecentlyUsed() {
+        final ServletResolutionCache cache = new ServletResolutionCache(10);
+        for (int i = 0; i < 10; i++) {
+            cache.put(collector("t" + i), servlet, Arrays.asList("/apps/t" + i));
+        }
+        // t0 is used again and must survive the eviction
+        cache.get(collector("t0"));
+        cache.put(collector("t10"), servlet, Arrays.asList("/apps/t10"));
+
+        assertEquals(9, cache.size());
+        assertEquals(2, cache.getEvictionCount());
+        assertNotNull(cache.get(collector("t0")));
+        assertNull(cache.get(collector("t1")));
+        assertNull(cache.get(collector("t2")));
+        assertNotNull(cache.get(collector("t10")));
+    }
+
+    @Test public void testFlush() {
+        final ServletResolutionCache cache = new ServletResolutionCache(10);
+        cache.put(collector("a/b"), servlet, Arrays.asList("/apps/a/b"));
+        cache.flush();
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getFlushCount());
+    }
+
+    private AbstractResourceCollector collector(final String resourceType) {
+        return new AbstractResourceCollector(null, resourceType, null, "html", null) {
+            {
+                this.hashCode = resourceType.hashCode();
+            }
+
+            @Override
+            protected void getWeightedResources(final Set<Resource> resources, final Resource location) {
+                // not used
+            }
+        };
+    }
+}
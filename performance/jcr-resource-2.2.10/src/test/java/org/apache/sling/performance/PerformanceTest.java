@@ -39,6 +39,7 @@ import org.apache.sling.jcr.resource.internal.helper.jcr.JcrResourceProviderFact
 import org.apache.sling.performance.annotation.PerformanceTestSuite;
 import org.apache.sling.performance.tests.ResolveNonExistingWithManyAliasTest;
 import org.apache.sling.performance.tests.ResolveNonExistingWithManyVanityPathTest;
+import org.apache.sling.performance.tests.ResolveWithManyMapEntriesTest;
 import org.apache.sling.performance.tests.StartupWithManyAliasTest;
 import org.apache.sling.performance.tests.StartupWithManyVanityTest;
 import org.apache.sling.resourceresolver.impl.CommonResourceResolverFactoryImpl;
@@ -130,6 +131,9 @@ public class PerformanceTest {
         testCenter.addTestObject(new ResolveNonExistingWithManyVanityPathTest("ResolveNonExistingWith1000VanityPathTest",helper, 100, 10));
         testCenter.addTestObject(new ResolveNonExistingWithManyVanityPathTest("ResolveNonExistingWith5000VanityPathTest",helper, 100, 50));
         testCenter.addTestObject(new ResolveNonExistingWithManyVanityPathTest("ResolveNonExistingWith10000VanityPathTest",helper, 100, 100));
+        testCenter.addTestObject(new ResolveWithManyMapEntriesTest("ResolveWith100MapEntriesTest",helper, 100, 1000));
+        testCenter.addTestObject(new ResolveWithManyMapEntriesTest("ResolveWith1000MapEntriesTest",helper, 1000, 10000));
+        testCenter.addTestObject(new ResolveWithManyMapEntriesTest("ResolveWith10000MapEntriesTest",helper, 10000, 40000));
         testCenter.addTestObject(new ResolveNonExistingWithManyAliasTest("ResolveNonExistingWith100AliasTest",helper, 100));
         testCenter.addTestObject(new ResolveNonExistingWithManyAliasTest("ResolveNonExistingWith1000AliasTest",helper, 1000));
         testCenter.addTestObject(new ResolveNonExistingWithManyAliasTest("ResolveNonExistingWith5000AliasTest",helper, 5000));
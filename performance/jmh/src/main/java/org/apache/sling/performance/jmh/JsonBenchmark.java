@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.io.CharArrayWriter;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.commons.json.JSONArray;
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
+import org.apache.sling.commons.json.io.JSONParser;
+import org.apache.sling.commons.json.io.JSONWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the <code>JSONWriter</code>, <code>JSONTokener</code> and
+ * <code>JSONParser</code> of the commons json bundle with the former
+ * implementations in {@link LegacyJSONWriter} and {@link LegacyJSONTokener}.
+ * <p>
+ * The payloads resemble the JSON Sling produces and reads: the
+ * <code>.infinity.json</code> rendering of a page, a discovery announcement
+ * and a list of search results.
+ * <p>
+ * Run with <code>-prof gc</code> to also report the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"page", "announcement", "results"})
+    public String payload;
+
+    private JSONObject json;
+
+    private String text;
+
+    private String richText;
+
+    private final CharArrayWriter out = new CharArrayWriter(64 * 1024);
+
+    @Setup
+    public void setup() throws JSONException {
+        if ("page".equals(payload)) {
+            json = createPage();
+        } else if ("announcement".equals(payload)) {
+            json = createAnnouncement();
+        } else {
+            json = createResults();
+        }
+        text = json.toString();
+        richText = createRichText();
+    }
+
+    @Benchmark
+    public int write() throws JSONException {
+        out.reset();
+        final JSONWriter writer = new JSONWriter(out);
+        writeObject(writer, json);
+        return out.size();
+    }
+
+    @Benchmark
+    public int writeLegacy() throws JSONException {
+        out.reset();
+        final LegacyJSONWriter writer = new LegacyJSONWriter(out);
+        writeObject(writer, json);
+        return out.size();
+    }
+
+    @Benchmark
+    public String quote() {
+        return JSONObject.quote(richText);
+    }
+
+    @Benchmark
+    public String quoteLegacy() {
+        return LegacyJSONWriter.quote(richText);
+    }
+
+    @Benchmark
+    public JSONObject parse() throws JSONException {
+        return new JSONObject(text);
+    }
+
+    @Benchmark
+    public JSONObject parseLegacy() throws JSONException {
+        return new LegacyJSONTokener(text).nextObject();
+    }
+
+    @Benchmark
+    public int parseEvents() throws JSONException {
+        final JSONParser parser = new JSONParser(new StringReader(text));
+        int count = 0;
+        while (parser.hasNext()) {
+            if (parser.next() == JSONParser.Event.VALUE_STRING) {
+                count += parser.getString().length();
+            }
+        }
+        return count;
+    }
+
+    // ---------- writing the payload
+
+    private static void writeObject(final JSONWriter writer, final JSONObject object) throws JSONException {
+        writer.object();
+        final Iterator<String> keys = object.keys();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            writer.key(key);
+            writeValue(writer, object.get(key));
+        }
+        writer.endObject();
+    }
+
+    private static void writeValue(final JSONWriter writer, final Object value) throws JSONException {
+        if (value instanceof JSONObject) {
+            writeObject(writer, (JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            final JSONArray array = (JSONArray) value;
+            writer.array();
+            for (int i = 0; i < array.length(); i++) {
+                writeValue(writer, array.get(i));
+            }
+            writer.endArray();
+        } else {
+            writer.value(value);
+        }
+    }
+
+    private static void writeObject(final LegacyJSONWriter writer, final JSONObject object) throws JSONException {
+        writer.object();
+        final Iterator<String> keys = object.keys();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            writer.key(key);
+            writeValue(writer, object.get(key));
+        }
+        writer.endObject();
+    }
+
+    private static void writeValue(final LegacyJSONWriter writer, final Object value) throws JSONException {
+        if (value instanceof JSONObject) {
+            writeObject(writer, (JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            final JSONArray array = (JSONArray) value;
+            writer.array();
+            for (int i = 0; i < array.length(); i++) {
+                writeValue(writer, array.get(i));
+            }
+            writer.endArray();
+        } else {
+            writer.value(value);
+        }
+    }
+
+    // ---------- payloads
+
+    private static String createRichText() {
+        return "<p>The <b>Geometrixx</b> triangle is \"the\" shape for the summer.</p>\n"
+            + "<p>Prices start at 42 &euro; &ndash; see <a href=\"/content/geometrixx/en/products.html\">"
+            + "all products</a>.</p>\n<script type=\"text/javascript\">track('page');</script>";
+    }
+
+    /** The .infinity.json of a page with a paragraph system */
+    private static JSONObject createPage() throws JSONException {
+        final JSONObject page = new JSONObject();
+        page.put("jcr:primaryType", "cq:Page");
+        page.put("jcr:createdBy", "admin");
+        page.put("jcr:created", "Thu Jan 14 2016 10:45:21 GMT+0100");
+
+        final JSONObject content = new JSONObject();
+        content.put("jcr:primaryType", "cq:PageContent");
+        content.put("jcr:title", "Triangle");
+        content.put("sling:resourceType", "geometrixx/components/contentpage");
+        content.put("cq:template", "/apps/geometrixx/templates/contentpage");
+        content.put("cq:lastModified", "Thu Jan 14 2016 10:45:21 GMT+0100");
+        content.put("cq:lastModifiedBy", "admin");
+        content.put("hideInNav", false);
+        content.put("cq:tags", new JSONArray().put("geometrixx:shape/triangle").put("geometrixx:season/summer"));
+        page.put("jcr:content", content);
+
+        final JSONObject par = new JSONObject();
+        par.put("jcr:primaryType", "nt:unstructured");
+        par.put("sling:resourceType", "foundation/components/parsys");
+        for (int i = 0; i < 40; i++) {
+            final JSONObject component = new JSONObject();
+            component.put("jcr:primaryType", "nt:unstructured");
+            if (i % 3 == 0) {
+                component.put("sling:resourceType", "foundation/components/image");
+                component.put("fileReference", "/content/dam/geometrixx/shapes/tri_" + i + ".png");
+                component.put("imageRotate", "0");
+                component.put("width", 480L);
+                component.put("height", 320L);
+            } else {
+                component.put("sling:resourceType", "foundation/components/text");
+                component.put("text", createRichText());
+                component.put("textIsRich", true);
+            }
+            par.put("component_" + i, component);
+        }
+        content.put("par", par);
+        return page;
+    }
+
+    /** A discovery announcement of a topology with a few instances */
+    private static JSONObject createAnnouncement() throws JSONException {
+        final JSONObject announcement = new JSONObject();
+        announcement.put("ownerId", "4c3d0b1e-5e7a-4c8d-9a6b-2f1e0d9c8b7a");
+        announcement.put("protocolVersion", 1);
+        announcement.put("created", 1452764721000L);
+        announcement.put("inherited", false);
+        announcement.put("serverInfo", "localhost:4502");
+        announcement.put("resetBackoff", false);
+
+        final JSONArray instances = new JSONArray();
+        for (int i = 0; i < 20; i++) {
+            final JSONObject instance = new JSONObject();
+            instance.put("slingId", "4c3d0b1e-5e7a-4c8d-9a6b-2f1e0d9c8b" + (10 + i));
+            instance.put("isLeader", i == 0);
+            instance.put("isLocal", i == 3);
+            instance.put("clusterId", "cluster-" + (i % 4));
+            final JSONObject properties = new JSONObject();
+            properties.put("org.apache.sling.instance.name", "Instance " + i);
+            properties.put("org.apache.sling.instance.description", "Publish instance #" + i + " in \"dc-eu-west\"");
+            properties.put("org.apache.sling.instance.endpoints", "http://10.0.0." + i + ":4503/");
+            instance.put("properties", properties);
+            instances.put(instance);
+        }
+        announcement.put("localCluster", new JSONObject().put("id", "cluster-0").put("instances", instances));
+        announcement.put("topology", new JSONArray().put("cluster-1").put("cluster-2").put("cluster-3"));
+        return announcement;
+    }
+
+    /** The results of a query servlet request */
+    private static JSONObject createResults() throws JSONException {
+        final JSONObject results = new JSONObject();
+        results.put("success", true);
+        results.put("results", 100);
+        results.put("total", 1234);
+        results.put("more", true);
+        results.put("offset", 0);
+        final JSONArray hits = new JSONArray();
+        for (int i = 0; i < 100; i++) {
+            final JSONObject hit = new JSONObject();
+            hit.put("path", "/content/dam/geometrixx/documents/report_" + i + ".pdf");
+            hit.put("excerpt", "Quarterly <strong>report</strong> for Q" + (i % 4 + 1) + "/2015...");
+            hit.put("name", "report_" + i + ".pdf");
+            hit.put("title", "Report \u00e9dition " + i);
+            hit.put("lastModified", 1452764721000L + i * 1000);
+            hit.put("size", 125000.5 + i);
+            hits.put(hit);
+        }
+        results.put("hits", hits);
+        return results;
+    }
+}
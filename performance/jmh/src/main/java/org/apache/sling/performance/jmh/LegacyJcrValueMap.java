@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.util.Text;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.jcr.resource.JcrResourceUtil;
+import org.apache.sling.jcr.resource.internal.helper.BooleanConverter;
+import org.apache.sling.jcr.resource.internal.helper.CalendarConverter;
+import org.apache.sling.jcr.resource.internal.helper.Converter;
+import org.apache.sling.jcr.resource.internal.helper.DateConverter;
+import org.apache.sling.jcr.resource.internal.helper.NumberConverter;
+import org.apache.sling.jcr.resource.internal.helper.StringConverter;
+
+/**
+ * Copy of the read path of <code>JcrValueMap</code> as it has been
+ * implemented before the array backed property cache: a map of cache
+ * entries plus a map of values, a repository lookup per property accessed
+ * and a conversion on every typed read. Only the lookup of simple property
+ * names and the conversions to the types read by the
+ * {@link ValueMapBenchmark} are copied. Used as the baseline for the
+ * {@link ValueMapBenchmark}.
+ */
+public class LegacyJcrValueMap extends AbstractMap<String, Object> implements ValueMap {
+
+    private final Node node;
+
+    private final String[] namespacePrefixes;
+
+    private final Map<String, Entry> cache = new LinkedHashMap<String, Entry>();
+
+    private final Map<String, Object> valueCache = new LinkedHashMap<String, Object>();
+
+    private boolean fullyRead;
+
+    public LegacyJcrValueMap(final Node node, final String[] namespacePrefixes) {
+        this.node = node;
+        this.namespacePrefixes = namespacePrefixes;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(final String name, final Class<T> type) {
+        if (type == null) {
+            return (T) get(name);
+        }
+        final Entry entry = read(name);
+        return (entry == null) ? null : entry.convertToType(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(final String name, final T defaultValue) {
+        if (defaultValue == null) {
+            return (T) get(name);
+        }
+        Class<T> type = (Class<T>) defaultValue.getClass();
+        if (Calendar.class.isAssignableFrom(type)) {
+            type = (Class<T>) Calendar.class;
+        }
+        final T value = get(name, type);
+        return (value == null) ? defaultValue : value;
+    }
+
+    @Override
+    public Object get(final Object name) {
+        final Entry entry = read(name.toString());
+        return (entry == null) ? null : entry.propertyValue;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        readFully();
+        return Collections.unmodifiableSet(valueCache.entrySet());
+    }
+
+    private Entry read(final String name) {
+        final Entry cached = cache.get(name);
+        if (fullyRead || cached != null) {
+            return cached;
+        }
+        try {
+            final String key = escapeKeyName(name);
+            if (node.hasProperty(key)) {
+                return cacheProperty(node.getProperty(key));
+            }
+        } catch (final RepositoryException re) {
+            throw new IllegalArgumentException(re);
+        }
+        return null;
+    }
+
+    private void readFully() {
+        if (!fullyRead) {
+            try {
+                final PropertyIterator pi = node.getProperties();
+                while (pi.hasNext()) {
+                    cacheProperty(pi.nextProperty());
+                }
+                fullyRead = true;
+            } catch (final RepositoryException re) {
+                throw new IllegalArgumentException(re);
+            }
+        }
+    }
+
+    private Entry cacheProperty(final Property prop) throws RepositoryException {
+        final String key = Text.unescapeIllegalJcrChars(prop.getName());
+        Entry entry = cache.get(key);
+        if (entry == null) {
+            entry = new Entry(prop);
+            cache.put(key, entry);
+            if (entry.propertyValue != null) {
+                valueCache.put(key, entry.propertyValue);
+            }
+        }
+        return entry;
+    }
+
+    private String escapeKeyName(final String key) {
+        final int indexOfPrefix = key.indexOf(':');
+        if (indexOfPrefix > 0 && key.length() > indexOfPrefix + 1) {
+            final String prefix = key.substring(0, indexOfPrefix);
+            for (final String existingPrefix : namespacePrefixes) {
+                if (existingPrefix.equals(prefix)) {
+                    return prefix + ":" + Text.escapeIllegalJcrChars(key.substring(indexOfPrefix + 1));
+                }
+            }
+        }
+        return Text.escapeIllegalJcrChars(key);
+    }
+
+    private static final class Entry {
+
+        private final boolean isArray;
+
+        private final Object propertyValue;
+
+        Entry(final Property prop) throws RepositoryException {
+            this.isArray = prop.isMultiple();
+            this.propertyValue = (prop.getType() != PropertyType.BINARY) ? JcrResourceUtil.toJavaObject(prop) : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T convertToType(final Class<T> type) {
+            if (isArray) {
+                final Object[] source = (Object[]) propertyValue;
+                if (type.isArray()) {
+                    return (T) convertToArray(source, type.getComponentType());
+                }
+                return source.length > 0 ? convert(source[0], type) : null;
+            }
+            if (type.isArray()) {
+                return (T) convertToArray(new Object[] {propertyValue}, type.getComponentType());
+            }
+            return convert(propertyValue, type);
+        }
+
+        private static <T> T[] convertToArray(final Object[] source, final Class<T> type) {
+            final List<T> values = new ArrayList<T>();
+            for (final Object value : source) {
+                final T converted = convert(value, type);
+                if (converted != null) {
+                    values.add(converted);
+                }
+            }
+            @SuppressWarnings("unchecked")
+            final T[] result = (T[]) Array.newInstance(type, values.size());
+            return values.toArray(result);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T convert(final Object value, final Class<T> type) {
+            if (type.isInstance(value)) {
+                return (T) value;
+            }
+            if (String.class == type) {
+                return (T) getConverter(value).toString();
+            } else if (Integer.class == type) {
+                return (T) getConverter(value).toInteger();
+            } else if (Long.class == type) {
+                return (T) getConverter(value).toLong();
+            } else if (Double.class == type) {
+                return (T) getConverter(value).toDouble();
+            } else if (BigDecimal.class == type) {
+                return (T) getConverter(value).toBigDecimal();
+            } else if (Boolean.class == type) {
+                return (T) getConverter(value).toBoolean();
+            } else if (Date.class == type) {
+                return (T) getConverter(value).toDate();
+            } else if (Calendar.class == type) {
+                return (T) getConverter(value).toCalendar();
+            }
+            return null;
+        }
+
+        private static Converter getConverter(final Object value) {
+            if (value instanceof Number) {
+                return new NumberConverter((Number) value);
+            } else if (value instanceof Boolean) {
+                return new BooleanConverter((Boolean) value);
+            } else if (value instanceof Date) {
+                return new DateConverter((Date) value);
+            } else if (value instanceof Calendar) {
+                return new CalendarConverter((Calendar) value);
+            }
+            return new StringConverter(value);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.resourceresolver.impl.CommonResourceResolverFactoryImpl;
+import org.apache.sling.resourceresolver.impl.ResourceAccessSecurityTracker;
+import org.apache.sling.resourceresolver.impl.ResourceResolverFactoryActivator;
+import org.apache.sling.resourceresolver.impl.ResourceResolverImpl;
+import org.apache.sling.resourceresolver.impl.helper.ParsedURI;
+import org.apache.sling.resourceresolver.impl.helper.ResourceResolverContext;
+import org.apache.sling.resourceresolver.impl.helper.URI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures <code>ResourceResolver.map()</code> for a set of links as they
+ * are typically rewritten on a page, and compares the URI handling done by
+ * <code>map()</code> using {@link ParsedURI} with the former handling using
+ * {@link URI}.
+ * <p>
+ * The resolver has no resource providers and no mappings, so the
+ * <code>map()</code> benchmark measures the fixed cost of every call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark {
+
+    private static final String[] LINKS = {
+        "/content/geometrixx/en.html",
+        "/content/geometrixx/en/products.html",
+        "/content/geometrixx/en/products/triangle.html",
+        "/content/geometrixx/en/products/triangle/overview.html",
+        "/content/geometrixx/en/products/triangle/features.print.a4.html",
+        "/content/geometrixx/en/company/news/2014/01/press release.html",
+        "/content/geometrixx/en/events/userconference/sessions.html#day1",
+        "/content/geometrixx/en/search.html?q=triangle&page=2",
+        "/content/dam/geometrixx/documents/GeoCube_Datasheet.pdf",
+        "/content/dam/geometrixx/portraits/Rüdiger Müller.jpg/jcr:content/renditions/thumbnail.png",
+        "/etc/designs/geometrixx/static.css",
+        "/etc/clientlibs/granite/jquery.min.js",
+        "http://www.geometrixx.com/content/geometrixx/en/toolbar/contacts.html",
+        "https://shop.geometrixx.com:8443/content/geometrixx-outdoors/en/cart.html"
+    };
+
+    private ResourceResolver resolver;
+
+    /** the links without query and fragment, as map() escapes them */
+    private String[] paths;
+
+    @Setup
+    public void setUp() {
+        this.paths = new String[LINKS.length];
+        for (int i = 0; i < LINKS.length; i++) {
+            final int pos = LINKS[i].indexOf('#') != -1 ? LINKS[i].indexOf('#') : LINKS[i].indexOf('?');
+            this.paths[i] = pos != -1 ? LINKS[i].substring(0, pos) : LINKS[i];
+        }
+        final CommonResourceResolverFactoryImpl factory =
+                new CommonResourceResolverFactoryImpl(new ResourceResolverFactoryActivator());
+        this.resolver = new ResourceResolverImpl(factory,
+                new ResourceResolverContext(false, null, new ResourceAccessSecurityTracker()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.resolver.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(14)
+    public void map(final Blackhole bh) {
+        for (final String link : LINKS) {
+            bh.consume(this.resolver.map(link));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(14)
+    public void escape(final Blackhole bh) {
+        for (final String path : this.paths) {
+            final ParsedURI uri = ParsedURI.parse(path);
+            bh.consume(uri.toString(uri.getPath()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(14)
+    public void escapeLegacy(final Blackhole bh) {
+        for (final String path : this.paths) {
+            final URI uri = new URI(path, false);
+            uri.setPath(uri.getPath());
+            bh.consume(uri.toString());
+        }
+    }
+}
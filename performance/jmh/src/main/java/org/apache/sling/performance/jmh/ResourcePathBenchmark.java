@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.resourceresolver.impl.helper.ResourcePathIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the path utilities of <code>ResourceUtil</code> and the
+ * <code>ResourcePathIterator</code> with the former implementation in
+ * {@link LegacyResourceUtil}.
+ * <p>
+ * Run with <code>-prof gc</code> to also report the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourcePathBenchmark {
+
+    @Param({"/content/geometrixx/en/products/triangle/jcr:content/par/text",
+        "/content/geometrixx/en/products/triangle.print.a4.html",
+        "/content//geometrixx/./en/../en/products/"})
+    public String path;
+
+    @Benchmark
+    public String normalize() {
+        return ResourceUtil.normalize(path);
+    }
+
+    @Benchmark
+    public String normalizeLegacy() {
+        return LegacyResourceUtil.normalize(path);
+    }
+
+    @Benchmark
+    public String getParent() {
+        return ResourceUtil.getParent(path);
+    }
+
+    @Benchmark
+    public String getParentLegacy() {
+        return LegacyResourceUtil.getParent(path);
+    }
+
+    @Benchmark
+    public String getName() {
+        return ResourceUtil.getName(path);
+    }
+
+    @Benchmark
+    public String getNameLegacy() {
+        return LegacyResourceUtil.getName(path);
+    }
+
+    @Benchmark
+    public int resourcePathIterator() {
+        int hash = 0;
+        final Iterator<String> i = new ResourcePathIterator(path);
+        while (i.hasNext()) {
+            hash += i.next().hashCode();
+        }
+        return hash;
+    }
+
+    @Benchmark
+    public int resourcePathIteratorLegacy() {
+        return LegacyResourceUtil.iterate(path);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.performance.jmh;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.oak.jcr.Jcr;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.jcr.resource.internal.HelperData;
+import org.apache.sling.jcr.resource.internal.JcrValueMap;
+import org.apache.sling.jcr.resource.internal.helper.jcr.PathMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the typed reads of a component rendering from the
+ * {@link JcrValueMap} of a node with a realistic set of properties, and
+ * compares them with the former implementation copied to
+ * {@link LegacyJcrValueMap}.
+ * <p>
+ * The node is stored in an in-memory Oak repository. Run with
+ * <code>-prof gc</code> to compare the allocations per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueMapBenchmark {
+
+    private Repository repository;
+
+    private Session session;
+
+    private Node node;
+
+    private HelperData helper;
+
+    private String[] namespacePrefixes;
+
+    @Setup
+    public void setUp() throws RepositoryException {
+        this.repository = new Jcr().createRepository();
+        this.session = this.repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
+        this.namespacePrefixes = this.session.getNamespacePrefixes();
+        this.helper = new HelperData(null, new PathMapper());
+
+        final Node content = this.session.getRootNode().addNode("content", "nt:unstructured");
+        this.node = content.addNode("text", "nt:unstructured");
+        this.node.setProperty("sling:resourceType", "geometrixx/components/text");
+        this.node.setProperty("jcr:title", "Triangle");
+        this.node.setProperty("jcr:description", "The triangle is the simplest of the polygons.");
+        this.node.setProperty("text", "<p>Triangles are the shapes of choice for <b>structural</b> engineers.</p>");
+        this.node.setProperty("textIsRich", true);
+        this.node.setProperty("columns", 3L);
+        this.node.setProperty("width", 640L);
+        this.node.setProperty("height", 480L);
+        this.node.setProperty("ratio", 1.3333d);
+        this.node.setProperty("tags", new String[] {"geometrixx:shapes/triangle", "geometrixx:shapes", "marketing:products"});
+        this.node.setProperty("jcr:created", Calendar.getInstance());
+        this.node.setProperty("jcr:createdBy", "admin");
+        this.node.setProperty("jcr:lastModified", Calendar.getInstance());
+        this.node.setProperty("jcr:lastModifiedBy", "author");
+        this.node.setProperty("cq:lastReplicated", Calendar.getInstance());
+        this.node.setProperty("cq:lastReplicationAction", "Activate");
+        this.node.setProperty("linkURL", "/content/geometrixx/en/products/triangle");
+        this.node.setProperty("openInNewWindow", false);
+        this.node.setProperty("alt", "A triangle");
+        this.node.setProperty("imageRotate", "0");
+        this.node.setProperty("fileReference", "/content/dam/geometrixx/shapes/tri_pink.png");
+        this.node.setProperty("priority", "10");
+        this.node.setProperty("hidden", "false");
+        this.session.save();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.session.logout();
+    }
+
+    /** The reads of a typical component script */
+    private static void render(final ValueMap properties, final Blackhole bh) {
+        bh.consume(properties.get("sling:resourceType", String.class));
+        bh.consume(properties.get("jcr:title", "Untitled"));
+        bh.consume(properties.get("text", String.class));
+        bh.consume(properties.get("textIsRich", false));
+        bh.consume(properties.get("columns", 1));
+        bh.consume(properties.get("priority", Integer.class));
+        bh.consume(properties.get("tags", String[].class));
+        bh.consume(properties.get("jcr:lastModified", Date.class));
+        bh.consume(properties.get("cssClass", "default"));
+    }
+
+    @Benchmark
+    public void componentRender(final Blackhole bh) {
+        render(new JcrValueMap(this.node, this.helper), bh);
+    }
+
+    @Benchmark
+    public void componentRenderLegacy(final Blackhole bh) {
+        render(new LegacyJcrValueMap(this.node, this.namespacePrefixes), bh);
+    }
+
+    @Benchmark
+    public void repeatedReads(final Blackhole bh) {
+        final ValueMap properties = new JcrValueMap(this.node, this.helper);
+        for (int i = 0; i < 10; i++) {
+            render(properties, bh);
+        }
+    }
+
+    @Benchmark
+    public void repeatedReadsLegacy(final Blackhole bh) {
+        final ValueMap properties = new LegacyJcrValueMap(this.node, this.namespacePrefixes);
+        for (int i = 0; i < 10; i++) {
+            render(properties, bh);
+        }
+    }
+
+    @Benchmark
+    public Object singleRead() {
+        return new JcrValueMap(this.node, this.helper).get("sling:resourceType", String.class);
+    }
+
+    @Benchmark
+    public Object singleReadLegacy() {
+        return new LegacyJcrValueMap(this.node, this.namespacePrefixes).get("sling:resourceType", String.class);
+    }
+}